@@ -0,0 +1,92 @@
+package service;
+
+import model.Activity;
+import model.CartItem;
+import model.Item;
+import repo.ActivityRepository;
+import repo.ItemRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 效能量測用的記憶體資料 (BenchmarkData)
+ * ------------------------------------------------------------
+ * 以固定亂數種子產生商品、活動與購物車，
+ * 並提供不連線資料庫的 ItemRepository／ActivityRepository，
+ * 量測結果只反映計算本身，不受 MySQL 與網路影響。
+ * ------------------------------------------------------------
+ */
+final class BenchmarkData {
+
+    private static final String[] CATEGORIES = {"01", "02", "05", "09", "10"};
+    private static final String[] CATEGORY_NAMES = {"化妝品", "香水", "3C電子", "酒類", "書籍"};
+    private static final String[] GROUPS = {"01", "09", "01,02", "05", "ALL", "02,10", "09,10"};
+    private static final int CATALOG_SIZE = 500;
+
+    private final Map<String, Item> catalog = new LinkedHashMap<>();
+    private final List<Activity> activities = new ArrayList<>();
+
+    BenchmarkData(int activityCount, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            int category = random.nextInt(CATEGORIES.length);
+            String code = String.format("BENCH%04d", i);
+            BigDecimal price = BigDecimal.valueOf(100 + random.nextInt(20000));
+            catalog.put(code, new Item(code, "測試商品" + i, CATEGORIES[category], CATEGORY_NAMES[category], price));
+        }
+        for (int i = 0; i < activityCount; i++) {
+            BigDecimal threshold = BigDecimal.valueOf(1000L * (1 + random.nextInt(20)));
+            BigDecimal award = threshold.divide(BigDecimal.TEN);
+            activities.add(new Activity("BENCH" + i, "滿額活動" + i, null, null,
+                    GROUPS[i % GROUPS.length], threshold, award));
+        }
+    }
+
+    /** 以記憶體資料建立 PromotionService */
+    PromotionService newService() {
+        ItemRepository items = new ItemRepository() {
+            @Override
+            public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) {
+                List<Item> result = new ArrayList<>(itemCodes.size());
+                for (String code : itemCodes) {
+                    Item item = catalog.get(code);
+                    if (item != null) result.add(item);
+                }
+                return result;
+            }
+
+            @Override
+            public Item findItemByCode(String itemCode) {
+                return catalog.get(itemCode);
+            }
+        };
+        ActivityRepository activityRepository = new ActivityRepository() {
+            @Override
+            public List<Activity> findValidActivities(Date targetDate) {
+                return activities;
+            }
+        };
+        return new PromotionService(items, activityRepository);
+    }
+
+    /** 產生指定筆數的購物車（商品資訊已補齊） */
+    List<CartItem> cart(int size, long seed) {
+        Random random = new Random(seed);
+        List<String> codes = new ArrayList<>(catalog.keySet());
+        List<CartItem> cart = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            CartItem cartItem = new CartItem(codes.get(random.nextInt(codes.size())), 1 + random.nextInt(3));
+            cartItem.setItem(catalog.get(cartItem.getItemCode()));
+            cart.add(cartItem);
+        }
+        return cart;
+    }
+
+    List<Activity> getActivities() { return activities; }
+}
@@ -0,0 +1,129 @@
+package service;
+
+import event.EventPublisher;
+import model.CartItem;
+import model.Line;
+import model.Receipt;
+import util.TextAlignUtil;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 促銷計算效能量測 (PromotionBenchmark)
+ * ------------------------------------------------------------
+ * 以 JMH 量測促銷流程的各個步驟：
+ *  1. calculateReceipt：整筆交易（查商品 → 活動索引 → 三步折扣 → 總額）
+ *  2. applyPromotions：條件活動折扣與分攤（distributeDiscount）
+ *  3. eligibleLines：活動分類比對（原 isCategoryMatch，現由 PromotionIndex 處理）
+ *  4. calculateTotals：收據總額加總
+ *  5. padRight：收據列印的文字對齊
+ *
+ * 參數：購物車筆數、活動數量、是否為公司會員。
+ * 同時輸出吞吐量與平均時間；main() 會加上 GC profiler 以取得配置量
+ * （gc.alloc.rate.norm 為每次呼叫配置的位元組數）。
+ *
+ * 商品與活動使用 BenchmarkData 的記憶體資料，不需要連線資料庫。
+ * 執行方式請參考 ReadMe.md「效能量測」。
+ * ------------------------------------------------------------
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromotionBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int cartSize;
+
+    @Param({"5", "50"})
+    public int activityCount;
+
+    @Param({"false", "true"})
+    public boolean member;
+
+    private PromotionService service;
+    private PromotionIndex index;
+    private MemberDiscountStage memberStage;
+    private DiscountContext memberContext;
+    private List<CartItem> cart;
+    private Receipt pricedReceipt;
+    private List<Line> pricedLines;
+    private Date transactionDate;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkData data = new BenchmarkData(activityCount, 20251110L);
+        service = data.newService();
+        // 折扣與活動訊息經由 EventPublisher 非同步輸出（導向 System.out 無法涵蓋背景執行緒）；
+        // 沒有輸出端的發布器不啟動背景執行緒，publish 直接返回，量測時沒有背景輸出
+        service.setEventPublisher(new EventPublisher(1, EventPublisher.OverflowPolicy.DROP, List.of()));
+        index = PromotionIndex.build(data.getActivities());
+        memberStage = MemberDiscountStage.fromSystemProperties();
+        memberContext = new DiscountContext(service, new Receipt(), member, index, service.getEventPublisher(), false);
+        cart = data.cart(cartSize, 42L);
+        transactionDate = new Date();
+
+        pricedReceipt = service.calculateReceipt(cart, transactionDate, member);
+        pricedLines = pricedReceipt.getLines();
+    }
+
+    @Benchmark
+    public Receipt calculateReceipt() {
+        return service.calculateReceipt(cart, transactionDate, member);
+    }
+
+    /** 每次重新建立明細（促銷折扣會累加），再套用全部活動 */
+    @Benchmark
+    public Receipt applyPromotions() {
+        List<Line> lines = new ArrayList<>(cart.size());
+        for (CartItem cartItem : cart) {
+            Line line = service.toLine(cartItem);
+            if (member) memberStage.apply(line, memberContext);
+            lines.add(line);
+        }
+        Receipt receipt = new Receipt();
+        receipt.setLines(lines);
+        service.applyPromotionActivities(receipt, lines, index, null, null, false);
+        return receipt;
+    }
+
+    @Benchmark
+    public List<List<Line>> eligibleLines() {
+        return index.eligibleLinesByActivity(pricedLines);
+    }
+
+    @Benchmark
+    public Object calculateTotals() {
+        pricedReceipt.calculateTotals();
+        return pricedReceipt.getFinalAmount();
+    }
+
+    @Benchmark
+    public void padRight(Blackhole blackhole) {
+        for (Line line : pricedLines) {
+            blackhole.consume(TextAlignUtil.padRight(line.getItemName(), 30));
+        }
+    }
+
+    /** 執行全部量測並附加 GC profiler（配置量） */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PromotionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -1,8 +1,10 @@
 package Main;
 
+import event.EventPublisher;
 import model.CartItem;
 import model.Line;
 import model.Receipt;
+import server.PricingServer;
 import service.PromotionService;
 
 import java.math.BigDecimal;
@@ -18,12 +20,18 @@ import util.TextAlignUtil;
  *  2. 判斷會員身份（公司會員享酒類95折）
  *  3. 透過 PromotionService 進行資料庫查詢與促銷攤提折扣計算
  *  4. 印出完整收據與折扣明細
+ *  5. java Main.App --server [port]：改以 HTTP 計價服務執行（見 server.PricingServer）
  * ------------------------------------------------------------
  * 作者：yi chen
  * 建立日期：2025-11-10
  */
 public class App {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws java.io.IOException {
+        if (args.length > 0 && "--server".equals(args[0])) {
+            PricingServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
 
         // 取得當下系統時間
@@ -51,6 +59,9 @@ public class App {
         	// 呼叫促銷服務
             PromotionService service = new PromotionService();
             Receipt receipt = service.calculateReceipt(cartItems, transactionDate, isCompanyMember);
+
+            // 折扣訊息由背景執行緒輸出，先等它們印完再印收據
+            EventPublisher.getDefault().flush();
             
             // 輸出收據
             printReceipt(receipt, sdfDate.format(transactionDate), isCompanyMember);
@@ -0,0 +1,468 @@
+package config;
+
+import event.ConnectionLeaked;
+import event.EventPublisher;
+import event.RepositoryError;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JDBC 連線池 (ConnectionPool)
+ * ------------------------------------------------------------
+ * 重複使用已建立的 MySQL 實體連線，避免每張收據都重新做
+ * TCP 握手與帳號驗證。功能包含：
+ *  1. 最小／最大連線數（minSize / maxSize）
+ *  2. 借用逾時（borrowTimeoutMs），連線用盡時最多等待的時間
+ *  3. 借出前驗證（Connection.isValid），自動丟棄已斷線的連線
+ *  4. 洩漏偵測：借出超過 leakThresholdMs 未歸還時印出借用位置
+ *  5. 統計資訊：使用中、閒置、累計等待時間、逾時次數等
+ *  6. 丟棄失效連線後於背景補足 minSize
+ *
+ * 借出的 Connection 為代理物件，呼叫 close() 時會歸還連線池，
+ * 因此 Repository 仍可照常使用 try-with-resources。
+ * 由代理連線建立的 Statement、ResultSet、DatabaseMetaData 也是代理物件，
+ * getConnection() 回傳代理連線，不會把實體連線交給呼叫端。
+ * ------------------------------------------------------------
+ */
+public class ConnectionPool {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+    private final int validationTimeoutSec;
+    private final long leakThresholdMs;
+
+    /** 閒置中的實體連線（後進先出，讓常用連線保持溫熱） */
+    private final LinkedBlockingDeque<Connection> idle = new LinkedBlockingDeque<>();
+
+    /** 目前借出中的連線，用於洩漏偵測 */
+    private final Set<Lease> leased = ConcurrentHashMap.newKeySet();
+
+    /** 控制同時借出數量不超過 maxSize */
+    private final Semaphore permits;
+
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    // 統計數據
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+
+    /** 由代理連線建立、需要再包一層的 JDBC 物件型別 */
+    private static final Set<Class<?>> WRAPPED_TYPES = Set.of(Statement.class, PreparedStatement.class,
+            CallableStatement.class, ResultSet.class, DatabaseMetaData.class);
+
+    /** 補足最小連線數失敗、偵測到洩漏時發布事件 */
+    private volatile EventPublisher events = EventPublisher.getDefault();
+
+    /** 背景工作：洩漏偵測、補足最小連線數 */
+    private final ScheduledExecutorService maintenance;
+
+    /**
+     * 建立連線池，並預先建立 minSize 條連線。
+     *
+     * @param url JDBC 連線字串
+     * @param user 帳號
+     * @param password 密碼
+     * @param minSize 最小連線數（啟動時預先建立）
+     * @param maxSize 最大連線數
+     * @param borrowTimeoutMs 借用逾時（毫秒）
+     * @param validationTimeoutSec 借出前驗證逾時（秒），0 表示不驗證
+     * @param leakThresholdMs 洩漏判定時間（毫秒），0 表示不偵測
+     */
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize, long borrowTimeoutMs,
+                          int validationTimeoutSec, long leakThresholdMs) {
+        if (maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("連線池大小設定錯誤: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.validationTimeoutSec = validationTimeoutSec;
+        this.leakThresholdMs = leakThresholdMs;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pos-pool-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        if (leakThresholdMs > 0) {
+            long period = Math.max(leakThresholdMs / 2, 1000);
+            maintenance.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        replenish();
+    }
+
+    /** 建立連線直到達到最小連線數；資料庫尚未啟動時僅發布 RepositoryError，借用時再建立 */
+    private void replenish() {
+        try {
+            while (!closed.get() && totalConnections.get() < minSize) {
+                Connection conn = createPhysical();
+                if (closed.get()) {
+                    closePhysical(conn);
+                    return;
+                }
+                idle.offerLast(conn);
+            }
+        } catch (SQLException e) {
+            events.publish(new RepositoryError("連線池建立最小連線數失敗", e));
+        }
+    }
+
+    /** 連線數低於 minSize 時交給背景執行緒補足，不讓借用端等待建立連線 */
+    private void scheduleReplenish() {
+        if (closed.get() || totalConnections.get() >= minSize) return;
+        try {
+            maintenance.execute(this::replenish);
+        } catch (RejectedExecutionException ignored) {
+            // 連線池已關閉
+        }
+    }
+
+    private Connection createPhysical() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        createdCount.increment();
+        return conn;
+    }
+
+    private void closePhysical(Connection conn) {
+        totalConnections.decrementAndGet();
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // 實體連線已失效，直接丟棄
+        }
+        scheduleReplenish();
+    }
+
+    /**
+     * 借用一條連線。
+     * 若所有連線皆被借出，最多等待 borrowTimeoutMs，逾時則拋出 SQLException。
+     *
+     * @return 代理連線；close() 時自動歸還
+     * @throws SQLException 連線池已關閉、借用逾時或無法建立新連線
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed.get()) throw new SQLException("連線池已關閉");
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待連線時被中斷", e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+        if (!acquired) {
+            timeoutCount.increment();
+            throw new SQLException("借用連線逾時（" + borrowTimeoutMs + " ms），使用中: " + getActiveCount() + "/" + maxSize);
+        }
+
+        try {
+            Connection physical = takeValidIdle();
+            if (physical == null) {
+                physical = createPhysical();
+            }
+            borrowCount.increment();
+            Lease lease = new Lease(physical);
+            leased.add(lease);
+            return lease.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** 從閒置佇列取出一條通過驗證的連線，若無則回傳 null */
+    private Connection takeValidIdle() {
+        Connection conn;
+        while ((conn = idle.pollFirst()) != null) {
+            if (isUsable(conn)) return conn;
+            validationFailures.increment();
+            closePhysical(conn);
+        }
+        return null;
+    }
+
+    private boolean isUsable(Connection conn) {
+        try {
+            if (conn.isClosed()) return false;
+            return validationTimeoutSec <= 0 || conn.isValid(validationTimeoutSec);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** 歸還連線：還原交易狀態後放回閒置佇列 */
+    private void release(Lease lease) {
+        leased.remove(lease);
+        Connection conn = lease.physical;
+        try {
+            // 背景補足與借用端同時建立連線時可能略多於 maxSize，多出的連線直接關閉
+            if (closed.get() || conn.isClosed() || totalConnections.get() > maxSize) {
+                closePhysical(conn);
+                return;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            idle.offerFirst(conn);
+        } catch (SQLException e) {
+            closePhysical(conn);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** 定期檢查借出過久的連線，發布 ConnectionLeaked（附借用位置）以便追查 */
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : leased) {
+            if (!lease.reported && now - lease.borrowedAt > leakThresholdMs) {
+                lease.reported = true;
+                leakCount.increment();
+                events.publish(new ConnectionLeaked(leakThresholdMs, lease.borrowSite));
+            }
+        }
+    }
+
+    /** 設定事件發布器（預設為 {@link EventPublisher#getDefault()}） */
+    public void setEventPublisher(EventPublisher events) {
+        this.events = events;
+    }
+
+    /** 關閉連線池與所有閒置連線；借出中的連線於歸還時關閉 */
+    public void shutdown() {
+        if (!closed.compareAndSet(false, true)) return;
+        maintenance.shutdownNow();
+        Connection conn;
+        while ((conn = idle.pollFirst()) != null) {
+            closePhysical(conn);
+        }
+    }
+
+    public int getActiveCount() { return leased.size(); }
+    public int getIdleCount() { return idle.size(); }
+    public int getMinSize() { return minSize; }
+    public int getMaxSize() { return maxSize; }
+
+    /**
+     * 取得目前連線池統計快照。
+     */
+    public PoolStats getStats() {
+        return new PoolStats(
+                getActiveCount(),
+                getIdleCount(),
+                totalConnections.get(),
+                permits.getQueueLength(),
+                borrowCount.sum(),
+                TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()),
+                timeoutCount.sum(),
+                createdCount.sum(),
+                validationFailures.sum(),
+                leakCount.sum());
+    }
+
+    /**
+     * 一次借用的紀錄：保存實體連線、借出時間與借用位置，
+     * 並產生交給呼叫端的代理連線。
+     */
+    private final class Lease implements InvocationHandler {
+        private final Connection physical;
+        private final Connection proxy;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final Throwable borrowSite;
+        private final AtomicBoolean returned = new AtomicBoolean();
+        private volatile boolean reported;
+
+        Lease(Connection physical) {
+            this.physical = physical;
+            this.borrowSite = leakThresholdMs > 0 ? new Throwable("連線借用位置") : null;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) release(this);
+                    return null;
+                case "isClosed":
+                    return returned.get() || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + "]";
+                case "unwrap":
+                    // Connection／Wrapper 回傳代理本身，不交出實體連線（否則可繞過歸還與洩漏偵測）；
+                    // 驅動程式專屬的介面只在借用期間提供
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return true;
+                    break;
+                default:
+                    break;
+            }
+            if (returned.get()) throw new SQLException("連線已歸還連線池，無法再使用");
+            try {
+                return wrap(method.getReturnType(), method.invoke(physical, args), proxy);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /** Statement、ResultSet、DatabaseMetaData 再包一層代理；其他回傳值原樣回傳 */
+        private Object wrap(Class<?> type, Object target, Object parent) {
+            if (target == null || !WRAPPED_TYPES.contains(type)) return target;
+            return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{type}, new PooledObject(target, parent));
+        }
+
+        /**
+         * 代理連線建立的 JDBC 物件：getConnection() 回傳代理連線，
+         * ResultSet.getStatement() 回傳建立它的代理 Statement，unwrap 成自身介面時回傳代理，
+         * 其餘呼叫交給實體物件。
+         */
+        private final class PooledObject implements InvocationHandler {
+            private final Object target;
+            private final Object parent;
+
+            PooledObject(Object target, Object parent) {
+                this.target = target;
+                this.parent = parent;
+            }
+
+            @Override
+            public Object invoke(Object self, Method method, Object[] args) throws Throwable {
+                if (args == null) {
+                    switch (method.getName()) {
+                        case "getConnection":
+                            return proxy;
+                        case "getStatement":
+                            if (parent instanceof Statement) return parent;
+                            break;
+                        case "hashCode":
+                            return System.identityHashCode(self);
+                        case "toString":
+                            return "Pooled[" + target + "]";
+                        default:
+                            break;
+                    }
+                } else if (args.length == 1 && method.getName().equals("equals")) {
+                    return self == args[0];
+                } else if (args.length == 1 && method.getName().equals("unwrap")
+                        && ((Class<?>) args[0]).isInstance(self)) {
+                    return self;    // 不交出實體 Statement（其 getConnection() 會回傳實體連線）
+                }
+                try {
+                    return wrap(method.getReturnType(), method.invoke(target, args), self);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+    }
+
+    /**
+     * 連線池統計快照 (PoolStats)
+     * ------------------------------------------------------------
+     * active：借出中　idle：閒置　total：實體連線總數
+     * waiting：正在等待借用的執行緒數
+     * totalWaitMs：累計等待借用時間　timeouts：借用逾時次數
+     */
+    public static final class PoolStats {
+        private final int active;
+        private final int idle;
+        private final int total;
+        private final int waiting;
+        private final long borrows;
+        private final long totalWaitMs;
+        private final long timeouts;
+        private final long created;
+        private final long validationFailures;
+        private final long leaks;
+
+        PoolStats(int active, int idle, int total, int waiting, long borrows, long totalWaitMs,
+                  long timeouts, long created, long validationFailures, long leaks) {
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.waiting = waiting;
+            this.borrows = borrows;
+            this.totalWaitMs = totalWaitMs;
+            this.timeouts = timeouts;
+            this.created = created;
+            this.validationFailures = validationFailures;
+            this.leaks = leaks;
+        }
+
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getTotal() { return total; }
+        public int getWaiting() { return waiting; }
+        public long getBorrows() { return borrows; }
+        public long getTotalWaitMs() { return totalWaitMs; }
+        public long getTimeouts() { return timeouts; }
+        public long getCreated() { return created; }
+        public long getValidationFailures() { return validationFailures; }
+        public long getLeaks() { return leaks; }
+
+        @Override
+        public String toString() {
+            return "PoolStats{" +
+                    "active=" + active +
+                    ", idle=" + idle +
+                    ", total=" + total +
+                    ", waiting=" + waiting +
+                    ", borrows=" + borrows +
+                    ", totalWaitMs=" + totalWaitMs +
+                    ", timeouts=" + timeouts +
+                    ", created=" + created +
+                    ", validationFailures=" + validationFailures +
+                    ", leaks=" + leaks +
+                    '}';
+        }
+    }
+}
@@ -8,6 +8,7 @@ package config;
  *  1. 連線網址 (URL)
  *  2. 使用者帳號與密碼
  *  3. JDBC Driver 載入機制
+ *  4. 連線池設定與共用連線池（{@link ConnectionPool}）
  *
  * 所有需要連線資料庫的類別（例如 Repository 類別）
  * 都應該透過 DatabaseConfig 取得連線資訊，
@@ -27,11 +28,18 @@ public class DatabaseConfig {
      * - useSSL=false：關閉 SSL 驗證，避免本地端出現警告。
      * - serverTimezone=UTC：指定伺服器時區，避免時區錯誤。
      * - allowPublicKeyRetrieval=true：允許公開金鑰抓取（必要於新版 MySQL 驗證）。
+     * - useServerPrepStmts=true：使用伺服器端 prepared statement，SQL 只解析一次。
+     * - cachePrepStmts=true：每條連線快取 prepared statement（同一 SQL 字串重複使用）；
+     *   prepStmtCacheSqlLimit 需大於商品批次查詢最長的 SQL（IN 條件 256 個參數）。
      */
     public static final String URL = "jdbc:mysql://localhost:3306/twg4700002" +
             "?useSSL=false" +
             "&serverTimezone=UTC" +
-            "&allowPublicKeyRetrieval=true";
+            "&allowPublicKeyRetrieval=true" +
+            "&useServerPrepStmts=true" +
+            "&cachePrepStmts=true" +
+            "&prepStmtCacheSize=64" +
+            "&prepStmtCacheSqlLimit=4096";
 
     /** 資料庫帳號 */
     public static final String USER = "possystem";
@@ -39,6 +47,28 @@ public class DatabaseConfig {
     /** 資料庫密碼 */
     public static final String PASSWORD = "possystem";
 
+    /**
+     * 連線池設定
+     * ------------------------------------------------------------
+     * 可透過 JVM 系統參數調整，例如：
+     *   -Dpos.db.pool.min=4 -Dpos.db.pool.max=16
+     * ------------------------------------------------------------
+     */
+    /** 最小連線數（啟動時預先建立） */
+    public static final int POOL_MIN_SIZE = Integer.getInteger("pos.db.pool.min", 2);
+
+    /** 最大連線數 */
+    public static final int POOL_MAX_SIZE = Integer.getInteger("pos.db.pool.max", 10);
+
+    /** 借用連線最長等待時間（毫秒） */
+    public static final long POOL_BORROW_TIMEOUT_MS = Long.getLong("pos.db.pool.borrowTimeoutMs", 3000L);
+
+    /** 借出前驗證連線的逾時秒數（0 表示不驗證） */
+    public static final int POOL_VALIDATION_TIMEOUT_SEC = Integer.getInteger("pos.db.pool.validationTimeoutSec", 2);
+
+    /** 連線借出超過此時間未歸還即視為洩漏（毫秒，0 表示不偵測） */
+    public static final long POOL_LEAK_THRESHOLD_MS = Long.getLong("pos.db.pool.leakThresholdMs", 30000L);
+
     /**
      * 靜態初始化區塊 (Static Initializer)
      * ------------------------------------------------------------
@@ -57,4 +87,40 @@ public class DatabaseConfig {
             System.err.println(" MySQL JDBC Driver error ");
         }
     }
+
+    /**
+     * 共用連線池，於第一次取得連線時才建立（Lazy Holder），
+     * 並在 JVM 結束時關閉所有實體連線。
+     */
+    private static class PoolHolder {
+        private static final ConnectionPool POOL = createPool();
+
+        private static ConnectionPool createPool() {
+            ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD,
+                    POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_BORROW_TIMEOUT_MS,
+                    POOL_VALIDATION_TIMEOUT_SEC, POOL_LEAK_THRESHOLD_MS);
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::shutdown, "pos-pool-shutdown"));
+            return pool;
+        }
+    }
+
+    /**
+     * 從共用連線池借用一條連線，使用完畢呼叫 close() 即歸還。
+     *
+     * @return 連線池代理連線
+     * @throws java.sql.SQLException 借用逾時或無法建立連線
+     */
+    public static java.sql.Connection getConnection() throws java.sql.SQLException {
+        return PoolHolder.POOL.getConnection();
+    }
+
+    /** 取得共用連線池（用於查詢統計或關閉） */
+    public static ConnectionPool getPool() {
+        return PoolHolder.POOL;
+    }
+
+    /** 取得連線池統計快照（使用中、閒置、等待時間、逾時次數等） */
+    public static ConnectionPool.PoolStats getPoolStats() {
+        return PoolHolder.POOL.getStats();
+    }
 }
@@ -0,0 +1,22 @@
+package event;
+
+/** 活動表異動，活動快取已清除快照，下次查詢時重新載入 */
+public class ActivitiesChanged extends PricingEvent {
+
+    private final String table;
+
+    /**
+     * Constructor
+     * @param table 偵測到異動的資料表
+     */
+    public ActivitiesChanged(String table) {
+        this.table = table;
+    }
+
+    public String getTable() { return table; }
+
+    @Override
+    public String toText() {
+        return "[活動快取] 偵測到 " + table + " 異動，重新載入活動";
+    }
+}
@@ -0,0 +1,29 @@
+package event;
+
+/** 連線借出超過洩漏判定時間仍未歸還（Console 輸出時附上借用位置） */
+public class ConnectionLeaked extends PricingEvent {
+
+    private final long leakThresholdMs;
+    private final Throwable borrowSite;
+
+    /**
+     * Constructor
+     * @param leakThresholdMs 洩漏判定時間（毫秒）
+     * @param borrowSite 借用時記錄的呼叫堆疊
+     */
+    public ConnectionLeaked(long leakThresholdMs, Throwable borrowSite) {
+        this.leakThresholdMs = leakThresholdMs;
+        this.borrowSite = borrowSite;
+    }
+
+    public long getLeakThresholdMs() { return leakThresholdMs; }
+    public Throwable getBorrowSite() { return borrowSite; }
+
+    @Override
+    public boolean isError() { return true; }
+
+    @Override
+    public String toText() {
+        return "警告: 連線借出超過 " + leakThresholdMs + " ms 未歸還，疑似連線洩漏，借用位置如下:";
+    }
+}
@@ -0,0 +1,47 @@
+package event;
+
+import java.io.PrintStream;
+
+/**
+ * Console 輸出端：以原本的訊息格式輸出，錯誤事件輸出到 System.err 並附上 stack trace
+ * （資料庫錯誤的例外、洩漏連線的借用位置）。
+ */
+public class ConsoleEventSink implements EventSink {
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    public ConsoleEventSink() {
+        this(System.out, System.err);
+    }
+
+    /**
+     * Constructor
+     * @param out 一般事件輸出
+     * @param err 錯誤事件輸出
+     */
+    public ConsoleEventSink(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    @Override
+    public void accept(PricingEvent event) {
+        if (!event.isError()) {
+            out.println(event.toText());
+            return;
+        }
+        err.println(event.toText());
+        if (event instanceof RepositoryError && ((RepositoryError) event).getCause() != null) {
+            ((RepositoryError) event).getCause().printStackTrace(err);
+        } else if (event instanceof ConnectionLeaked && ((ConnectionLeaked) event).getBorrowSite() != null) {
+            ((ConnectionLeaked) event).getBorrowSite().printStackTrace(err);
+        }
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+        err.flush();
+    }
+}
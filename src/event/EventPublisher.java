@@ -0,0 +1,208 @@
+package event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 計價事件發布器 (EventPublisher)
+ * ------------------------------------------------------------
+ * 計價執行緒只把事件放進 {@link EventRingBuffer} 就返回，
+ * 由一個背景執行緒依序交給各個 {@link EventSink} 輸出，
+ * Console 的同步鎖與 I/O 不再拖慢結帳或讓多個計算執行緒互相等待：
+ *  1. 佇列已滿時依 {@link OverflowPolicy} 丟棄事件（計數）或等待空位
+ *  2. 沒有任何輸出端時 publish 直接返回
+ *  3. flush 等待目前為止的事件全部輸出（例如印收據之前）
+ *
+ * 預設發布器由系統參數設定：
+ *  - pos.events.sinks：console（預設）或 none
+ *  - pos.events.capacity：佇列容量（預設 8192）
+ *  - pos.events.policy：DROP（預設）或 BLOCK
+ * JVM 結束前會輸出剩餘的事件。
+ * ------------------------------------------------------------
+ */
+public class EventPublisher implements AutoCloseable {
+
+    /** 佇列已滿時的處理方式 */
+    public enum OverflowPolicy {
+        /** 丟棄新事件，計價不受影響 */
+        DROP,
+        /** 等待背景執行緒騰出空位（事件不遺失，但計價可能變慢） */
+        BLOCK
+    }
+
+    /** 背景執行緒沒有事件時的等待時間 */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final EventRingBuffer<PricingEvent> buffer;
+    private final OverflowPolicy policy;
+    private final List<EventSink> sinks;
+    private final Thread writer;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long delivered;
+    private volatile boolean closed;
+
+    /**
+     * Constructor
+     * @param capacity 佇列容量
+     * @param policy 佇列已滿時的處理方式
+     * @param sinks 輸出端（依序呼叫）
+     */
+    public EventPublisher(int capacity, OverflowPolicy policy, List<EventSink> sinks) {
+        this.buffer = new EventRingBuffer<>(capacity);
+        this.policy = policy;
+        this.sinks = Collections.unmodifiableList(new ArrayList<>(sinks));
+        if (this.sinks.isEmpty()) {
+            this.writer = null;
+            return;
+        }
+        this.writer = new Thread(this::drainLoop, "pricing-event-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /** 取得預設發布器（第一次使用時依系統參數建立） */
+    public static EventPublisher getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /** 是否有任何輸出端（沒有時呼叫端可省略建立事件） */
+    public boolean isEnabled() {
+        return writer != null && !closed;
+    }
+
+    /**
+     * 發布事件（可由多個執行緒同時呼叫，不會阻塞，BLOCK 模式且佇列已滿時除外）。
+     *
+     * @param event 事件
+     * @return 事件是否進入佇列
+     */
+    public boolean publish(PricingEvent event) {
+        if (!isEnabled()) return false;
+        while (!buffer.offer(event)) {
+            if (policy == OverflowPolicy.DROP || closed) {
+                dropped.increment();
+                return false;
+            }
+            LockSupport.unpark(writer);
+            Thread.onSpinWait();
+        }
+        published.increment();
+        return true;
+    }
+
+    /**
+     * 等待目前為止發布的事件全部輸出。
+     *
+     * @param timeoutMs 最長等待時間（毫秒）
+     * @return 是否在時間內全部輸出
+     */
+    public boolean flush(long timeoutMs) {
+        if (writer == null) return true;
+        long target = published.sum();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (delivered < target) {
+            if (!writer.isAlive() || System.nanoTime() - deadline > 0) return false;
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(IDLE_PARK_NANOS / 10);
+        }
+        return true;
+    }
+
+    /** 等待目前為止發布的事件全部輸出（最多 1 秒） */
+    public void flush() {
+        flush(1000);
+    }
+
+    public long getPublishedCount() { return published.sum(); }
+    public long getDroppedCount() { return dropped.sum(); }
+    public long getDeliveredCount() { return delivered; }
+    public OverflowPolicy getPolicy() { return policy; }
+
+    /** 停止接受事件，輸出剩餘事件後關閉所有輸出端 */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (writer == null) return;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 背景執行緒：批次取出事件交給輸出端，佇列清空後 flush 一次 */
+    private void drainLoop() {
+        while (true) {
+            boolean stopping = closed;
+            int drained = 0;
+            PricingEvent event;
+            while ((event = buffer.poll()) != null) {
+                deliver(event);
+                drained++;
+            }
+            if (drained > 0) {
+                sinks.forEach(EventPublisher::flushQuietly);
+                delivered += drained;
+                continue;
+            }
+            if (stopping) break;
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        sinks.forEach(sink -> {
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                System.err.println("事件輸出端關閉失敗: " + e.getMessage());
+            }
+        });
+    }
+
+    private void deliver(PricingEvent event) {
+        for (EventSink sink : sinks) {
+            try {
+                sink.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("事件輸出失敗 (" + event.getType() + "): " + e.getMessage());
+            }
+        }
+    }
+
+    private static void flushQuietly(EventSink sink) {
+        try {
+            sink.flush();
+        } catch (RuntimeException e) {
+            System.err.println("事件輸出端 flush 失敗: " + e.getMessage());
+        }
+    }
+
+    /** 預設發布器（依系統參數建立，JVM 結束前輸出剩餘事件） */
+    private static final class DefaultHolder {
+        private static final EventPublisher INSTANCE = create();
+
+        private static EventPublisher create() {
+            List<EventSink> sinks = new ArrayList<>();
+            for (String name : System.getProperty("pos.events.sinks", "console").split(",")) {
+                String sink = name.trim();
+                if ("console".equalsIgnoreCase(sink)) {
+                    sinks.add(new ConsoleEventSink());
+                } else if (!sink.isEmpty() && !"none".equalsIgnoreCase(sink)) {
+                    System.err.println("未知的事件輸出端: " + sink);
+                }
+            }
+            EventPublisher publisher = new EventPublisher(
+                    Integer.getInteger("pos.events.capacity", 8192),
+                    OverflowPolicy.valueOf(System.getProperty("pos.events.policy", "DROP").toUpperCase()),
+                    sinks);
+            Runtime.getRuntime().addShutdownHook(new Thread(publisher::close, "pricing-event-shutdown"));
+            return publisher;
+        }
+    }
+}
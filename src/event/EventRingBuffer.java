@@ -0,0 +1,85 @@
+package event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 無鎖環狀佇列 (EventRingBuffer)
+ * ------------------------------------------------------------
+ * 多個計價執行緒寫入、一個背景執行緒讀出（multi-producer / single-consumer）：
+ *  1. 寫入端以 CAS 取得序號，不使用 synchronized 或 Lock
+ *  2. 每格記錄目前的序號，讀出端以序號判斷該格是否已寫入完成
+ *  3. 容量固定為 2 的次方，滿了由呼叫端決定丟棄或等待
+ * ------------------------------------------------------------
+ */
+class EventRingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> elements;
+    /** 每格的序號：== 寫入序號表示可寫入，== 寫入序號 + 1 表示可讀出 */
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    /** 只有讀出端會修改 */
+    private volatile long head;
+
+    /**
+     * Constructor
+     * @param capacity 容量（調整為不小於此值的 2 的次方）
+     */
+    EventRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+    /**
+     * 寫入一個元素（可由多個執行緒同時呼叫）。
+     *
+     * @return 佇列已滿時回傳 false
+     */
+    boolean offer(T element) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(slot, element);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                return false;
+            }
+            // 其他執行緒已取得此序號，重新讀取 tail
+        }
+    }
+
+    /**
+     * 讀出一個元素（只能由單一執行緒呼叫）。
+     *
+     * @return 沒有可讀的元素時回傳 null
+     */
+    T poll() {
+        long position = head;
+        int slot = (int) position & mask;
+        if (sequences.get(slot) != position + 1) return null;
+        T element = elements.get(slot);
+        elements.lazySet(slot, null);
+        sequences.set(slot, position + mask + 1);
+        head = position + 1;
+        return element;
+    }
+
+    /** 目前的元素數（估計值） */
+    int size() {
+        return (int) Math.max(0L, tail.get() - head);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
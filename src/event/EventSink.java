@@ -0,0 +1,20 @@
+package event;
+
+/**
+ * 事件輸出端 (EventSink)
+ * ------------------------------------------------------------
+ * 由 {@link EventPublisher} 的背景執行緒依序呼叫（同一時間只有一個執行緒），
+ * 實作不需要考慮同步；輸出失敗時不應丟出例外影響其他輸出端。
+ * ------------------------------------------------------------
+ */
+public interface EventSink {
+
+    /** 輸出一個事件 */
+    void accept(PricingEvent event);
+
+    /** 一批事件輸出完畢（例如 flush 檔案緩衝） */
+    default void flush() {}
+
+    /** 關閉輸出端 */
+    default void close() {}
+}
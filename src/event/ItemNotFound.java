@@ -0,0 +1,25 @@
+package event;
+
+/** 購物車商品查無資料（或交易日尚無生效價格），該項目不列入收據 */
+public class ItemNotFound extends PricingEvent {
+
+    private final String itemCode;
+
+    /**
+     * Constructor
+     * @param itemCode 商品代碼
+     */
+    public ItemNotFound(String itemCode) {
+        this.itemCode = itemCode;
+    }
+
+    public String getItemCode() { return itemCode; }
+
+    @Override
+    public boolean isError() { return true; }
+
+    @Override
+    public String toText() {
+        return "警告: 未找到商品 " + itemCode;
+    }
+}
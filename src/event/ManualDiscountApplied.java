@@ -0,0 +1,32 @@
+package event;
+
+import java.math.BigDecimal;
+
+/** 手動折扣已套用（Step 1） */
+public class ManualDiscountApplied extends PricingEvent {
+
+    private final String itemCode;
+    private final String itemName;
+    private final BigDecimal discount;
+
+    /**
+     * Constructor
+     * @param itemCode 商品代碼
+     * @param itemName 商品名稱
+     * @param discount 折讓金額
+     */
+    public ManualDiscountApplied(String itemCode, String itemName, BigDecimal discount) {
+        this.itemCode = itemCode;
+        this.itemName = itemName;
+        this.discount = discount;
+    }
+
+    public String getItemCode() { return itemCode; }
+    public String getItemName() { return itemName; }
+    public BigDecimal getDiscount() { return discount; }
+
+    @Override
+    public String toText() {
+        return String.format("[手動折扣] %s 折讓 %.0f 元", itemName, discount);
+    }
+}
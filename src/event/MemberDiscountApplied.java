@@ -0,0 +1,36 @@
+package event;
+
+import java.math.BigDecimal;
+
+/** 公司會員折扣已套用（Step 2） */
+public class MemberDiscountApplied extends PricingEvent {
+
+    private final String itemCode;
+    private final String itemName;
+    private final BigDecimal rate;
+    private final BigDecimal discount;
+
+    /**
+     * Constructor
+     * @param itemCode 商品代碼
+     * @param itemName 商品名稱
+     * @param rate 折扣率（例如 0.95）
+     * @param discount 折扣金額
+     */
+    public MemberDiscountApplied(String itemCode, String itemName, BigDecimal rate, BigDecimal discount) {
+        this.itemCode = itemCode;
+        this.itemName = itemName;
+        this.rate = rate;
+        this.discount = discount;
+    }
+
+    public String getItemCode() { return itemCode; }
+    public String getItemName() { return itemName; }
+    public BigDecimal getRate() { return rate; }
+    public BigDecimal getDiscount() { return discount; }
+
+    @Override
+    public String toText() {
+        return "[會員折扣] " + itemName + " → 套用" + rate.movePointRight(2).stripTrailingZeros().toPlainString() + "折";
+    }
+}
@@ -0,0 +1,34 @@
+package event;
+
+/**
+ * 計價事件 (PricingEvent)
+ * ------------------------------------------------------------
+ * 計價流程中需要對外輸出的事件（折扣套用、活動觸發、資料查詢失敗），
+ * 由 {@link EventPublisher} 非同步送往各個 {@link EventSink}：
+ *  - ManualDiscountApplied：手動折扣
+ *  - MemberDiscountApplied：公司會員折扣
+ *  - PromotionTriggered：促銷活動達到門檻
+ *  - RepositoryError：資料庫查詢失敗
+ *  - ItemNotFound：查無商品
+ *  - ActivitiesChanged：活動表異動，活動快取重新載入
+ *  - ConnectionLeaked：連線池偵測到疑似洩漏的連線
+ *  - RequestFailed：計價服務處理請求失敗
+ * 事件建立後不再改變，可安全地跨執行緒傳遞。
+ * ------------------------------------------------------------
+ */
+public abstract class PricingEvent {
+
+    /** 事件發生時間（epoch 毫秒） */
+    private final long timestamp = System.currentTimeMillis();
+
+    public long getTimestamp() { return timestamp; }
+
+    /** 事件類型名稱（例如 PromotionTriggered），供結構化輸出使用 */
+    public String getType() { return getClass().getSimpleName(); }
+
+    /** 是否為錯誤事件（Console 輸出到 System.err） */
+    public boolean isError() { return false; }
+
+    /** 單行文字描述（Console 輸出格式，與原本的訊息相同） */
+    public abstract String toText();
+}
@@ -0,0 +1,42 @@
+package event;
+
+import java.math.BigDecimal;
+
+/** 促銷活動達到門檻並已分攤折扣（Step 3） */
+public class PromotionTriggered extends PricingEvent {
+
+    private final String activityCode;
+    private final String activityName;
+    private final String discountGroup;
+    private final BigDecimal eligibleTotal;
+    private final BigDecimal discount;
+
+    /**
+     * Constructor
+     * @param activityCode 活動代碼
+     * @param activityName 活動名稱
+     * @param discountGroup 適用分類
+     * @param eligibleTotal 符合條件商品的金額
+     * @param discount 折扣金額
+     */
+    public PromotionTriggered(String activityCode, String activityName, String discountGroup,
+                              BigDecimal eligibleTotal, BigDecimal discount) {
+        this.activityCode = activityCode;
+        this.activityName = activityName;
+        this.discountGroup = discountGroup;
+        this.eligibleTotal = eligibleTotal;
+        this.discount = discount;
+    }
+
+    public String getActivityCode() { return activityCode; }
+    public String getActivityName() { return activityName; }
+    public String getDiscountGroup() { return discountGroup; }
+    public BigDecimal getEligibleTotal() { return eligibleTotal; }
+    public BigDecimal getDiscount() { return discount; }
+
+    @Override
+    public String toText() {
+        return String.format("[促銷觸發] %s | 分類: %s | 總金額: %,.0f | 折扣: %,.0f",
+                activityName, discountGroup, eligibleTotal, discount);
+    }
+}
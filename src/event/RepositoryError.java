@@ -0,0 +1,29 @@
+package event;
+
+/** 資料庫查詢失敗（取代原本直接呼叫 printStackTrace） */
+public class RepositoryError extends PricingEvent {
+
+    private final String message;
+    private final Throwable cause;
+
+    /**
+     * Constructor
+     * @param message 錯誤說明（例如「查询商品信息失败」）
+     * @param cause 例外
+     */
+    public RepositoryError(String message, Throwable cause) {
+        this.message = message;
+        this.cause = cause;
+    }
+
+    public String getMessage() { return message; }
+    public Throwable getCause() { return cause; }
+
+    @Override
+    public boolean isError() { return true; }
+
+    @Override
+    public String toText() {
+        return cause == null ? message : message + ": " + cause.getMessage();
+    }
+}
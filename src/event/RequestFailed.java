@@ -0,0 +1,29 @@
+package event;
+
+/** 計價服務處理 HTTP 請求時發生非預期的錯誤（回應 500） */
+public class RequestFailed extends PricingEvent {
+
+    private final String path;
+    private final Throwable cause;
+
+    /**
+     * Constructor
+     * @param path 請求路徑
+     * @param cause 例外
+     */
+    public RequestFailed(String path, Throwable cause) {
+        this.path = path;
+        this.cause = cause;
+    }
+
+    public String getPath() { return path; }
+    public Throwable getCause() { return cause; }
+
+    @Override
+    public boolean isError() { return true; }
+
+    @Override
+    public String toText() {
+        return "計價服務處理請求失敗（" + path + "）: " + cause;
+    }
+}
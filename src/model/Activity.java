@@ -1,7 +1,10 @@
 package model;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * 促銷活動資料模型 (Activity)
@@ -11,7 +14,7 @@ import java.util.Date;
  *  - 活動代碼與名稱
  *  - 活動起迄日期
  *  - 適用商品類別代碼
- *  - 滿額條件與折扣金額
+ *  - 滿額條件與折扣金額（G1 為第一級，G2..Gn 為其他級距，可選擇每滿門檻累送）
  * ------------------------------------------------------------
  * 在系統中主要用途：
  *  1. 由 ActivityRepository 透過 JDBC 讀取資料庫紀錄後建立物件。
@@ -41,6 +44,12 @@ public class Activity {
 
     /** 折扣或贈送金額 */
     private BigDecimal awardAmtG1;
+
+    /** 第二級以後的級距（G2..Gn，依欄位順序） */
+    private List<ActivityTier> additionalTiers = Collections.emptyList();
+
+    /** 是否每滿門檻累送（符合金額為門檻的幾倍就送幾次折扣） */
+    private boolean repeatAward;
     
     // No-arg Constructor
     public Activity() {}
@@ -88,6 +97,32 @@ public class Activity {
     
     public BigDecimal getAwardAmtG1() { return awardAmtG1; }
     public void setAwardAmtG1(BigDecimal awardAmtG1) { this.awardAmtG1 = awardAmtG1; }
+
+    /**
+     * 加入一個級距（G2..Gn）。門檻或折扣為 null（欄位未填）時略過。
+     *
+     * @param meetCriteriaAmt 滿額條件金額
+     * @param awardAmt 折扣金額
+     */
+    public void addTier(BigDecimal meetCriteriaAmt, BigDecimal awardAmt) {
+        if (meetCriteriaAmt == null || awardAmt == null) return;
+        if (additionalTiers.isEmpty()) additionalTiers = new ArrayList<>(2);
+        additionalTiers.add(new ActivityTier(meetCriteriaAmt, awardAmt));
+    }
+
+    /** 第二級以後的級距（依加入順序，不可修改） */
+    public List<ActivityTier> getAdditionalTiers() { return Collections.unmodifiableList(additionalTiers); }
+
+    /** 全部級距：G1 在前，其後依加入順序（未排序） */
+    public List<ActivityTier> getTiers() {
+        List<ActivityTier> tiers = new ArrayList<>(1 + additionalTiers.size());
+        tiers.add(new ActivityTier(meetCriteriaAmtG1, awardAmtG1));
+        tiers.addAll(additionalTiers);
+        return tiers;
+    }
+
+    public boolean isRepeatAward() { return repeatAward; }
+    public void setRepeatAward(boolean repeatAward) { this.repeatAward = repeatAward; }
     
     //toString 輸出字串
     @Override
@@ -100,6 +135,8 @@ public class Activity {
                 ", itemDiscountGroup='" + itemDiscountGroup + '\'' +
                 ", meetCriteriaAmtG1=" + meetCriteriaAmtG1 +
                 ", awardAmtG1=" + awardAmtG1 +
+                (additionalTiers.isEmpty() ? "" : ", additionalTiers=" + additionalTiers) +
+                (repeatAward ? ", repeatAward=true" : "") +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package model;
+
+import java.math.BigDecimal;
+
+/**
+ * 促銷活動級距 (ActivityTier)
+ * ------------------------------------------------------------
+ * 對應活動表的一組 meet_criteria_amt_gN / award_amt_gN 欄位：
+ * 符合金額達到門檻時給予的折扣金額，例如滿 3,000 送 300、滿 6,000 送 700。
+ * 建立後不再改變。
+ * ------------------------------------------------------------
+ */
+public final class ActivityTier {
+
+    /** 滿額條件金額 */
+    private final BigDecimal meetCriteriaAmt;
+
+    /** 折扣或贈送金額 */
+    private final BigDecimal awardAmt;
+
+    /**
+     * Constructor
+     * @param meetCriteriaAmt 滿額條件金額
+     * @param awardAmt 折扣金額
+     */
+    public ActivityTier(BigDecimal meetCriteriaAmt, BigDecimal awardAmt) {
+        this.meetCriteriaAmt = meetCriteriaAmt;
+        this.awardAmt = awardAmt;
+    }
+
+    public BigDecimal getMeetCriteriaAmt() { return meetCriteriaAmt; }
+    public BigDecimal getAwardAmt() { return awardAmt; }
+
+    @Override
+    public String toString() {
+        return meetCriteriaAmt.toPlainString() + ":" + awardAmt.toPlainString();
+    }
+}
@@ -0,0 +1,57 @@
+package model;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 一筆待計算的交易（購物籃）。
+ *
+ * 用於批次計算（日結重算、離線終端機佇列回放），
+ * 包含購物車內容、交易日期與會員身份。
+ *
+ */
+public class Basket {
+
+    /** 購物車商品 */
+    private List<CartItem> cartItems;
+
+    /** 交易日期 */
+    private Date transactionDate;
+
+    /** 是否為公司會員 */
+    private boolean companyMember;
+
+    /** no-args constructor */
+    public Basket() {}
+
+    /**
+     * Constructor
+     * @param cartItems 購物車商品
+     * @param transactionDate 交易日期
+     * @param companyMember 是否為公司會員
+     */
+    public Basket(List<CartItem> cartItems, Date transactionDate, boolean companyMember) {
+        this.cartItems = cartItems;
+        this.transactionDate = transactionDate;
+        this.companyMember = companyMember;
+    }
+
+    // Getters and Setters
+    public List<CartItem> getCartItems() { return cartItems; }
+    public void setCartItems(List<CartItem> cartItems) { this.cartItems = cartItems; }
+
+    public Date getTransactionDate() { return transactionDate; }
+    public void setTransactionDate(Date transactionDate) { this.transactionDate = transactionDate; }
+
+    public boolean isCompanyMember() { return companyMember; }
+    public void setCompanyMember(boolean companyMember) { this.companyMember = companyMember; }
+
+    @Override
+    public String toString() {
+        return "Basket{" +
+                "cartItems=" + (cartItems == null ? 0 : cartItems.size()) +
+                ", transactionDate=" + transactionDate +
+                ", companyMember=" + companyMember +
+                '}';
+    }
+}
@@ -91,6 +91,14 @@ public class Line {
         recalcTotals();
     }
     
+    /**
+     * 清除促銷折扣（購物車增量重算時，重新套用活動前使用）。
+     */
+    public void clearPromotionDiscount() {
+        this.promotionDiscount = BigDecimal.ZERO;
+        recalcTotals();
+    }
+    
     /**
      * 重新計算總折扣與最終金額。
      */
@@ -1,10 +1,13 @@
 package model;
 
 import java.math.BigDecimal;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
 
 /**
  * 收據類別。
@@ -15,8 +18,11 @@ import java.util.Map;
  */
 public class Receipt {
 	
-    /** 銷售明細列表（每個 Line 代表一項商品） */
-    private List<Line> lines;  
+    /** 銷售明細列表（每個 Line 代表一項商品；包裝呼叫端的清單以記錄異動次數） */
+    private LineList lines;
+
+    /** 明細異動次數（新增、刪除、取代明細或更換明細清單時遞增） */
+    private long linesVersion;
     
     /** 原價總計（所有商品的原價加總） */
     private BigDecimal totalOriginalAmount;
@@ -35,10 +41,22 @@ public class Receipt {
     
     /** 活動折扣清單（記錄每個活動名稱與折扣金額） */
     private Map<String, BigDecimal> activityDiscounts;
+
+    /** 商品代碼 → 第一筆明細的位置（查詢時才建立，明細異動時維護或重建） */
+    private Map<String, Integer> lineIndex;
+
+    /** 索引對應的明細異動次數（直接經由 getLines() 修改明細時，以此判斷索引需要重建） */
+    private long indexedVersion;
+
+    /**
+     * 總金額對應的明細異動次數（addLine 只在與目前明細一致時做差額更新，否則重新計算）。
+     * 直接設定總金額後為 -1，calculateTotals 後為目前的異動次數。
+     */
+    private long totalsVersion;
     
     /** no-args constructor */
     public Receipt() {
-        this.lines = new ArrayList<>();
+        this.lines = new LineList(new ArrayList<>());
         this.totalOriginalAmount = BigDecimal.ZERO;
         this.totalMemberAmount = BigDecimal.ZERO;
         this.totalPromotionDiscount = BigDecimal.ZERO;
@@ -48,23 +66,50 @@ public class Receipt {
     }
     
     // Getters and Setters
+    /**
+     * 取得明細清單。經由此清單增刪或取代明細時會記錄異動次數，
+     * 明細索引與 addLine 的差額更新都會據此判斷是否需要重建。
+     */
     public List<Line> getLines() { return lines; }
-    public void setLines(List<Line> lines) { this.lines = lines; }
+
+    /**
+     * 更換明細清單（清單本身不複製；之後請經由 getLines() 修改，直接修改原清單無法追蹤）。
+     */
+    public void setLines(List<Line> lines) {
+        this.lines = new LineList(lines);
+        this.linesVersion++;
+        this.lineIndex = null;
+    }
     
     public BigDecimal getTotalOriginalAmount() { return totalOriginalAmount; }
-    public void setTotalOriginalAmount(BigDecimal totalOriginalAmount) { this.totalOriginalAmount = totalOriginalAmount; }
+    public void setTotalOriginalAmount(BigDecimal totalOriginalAmount) {
+        this.totalOriginalAmount = totalOriginalAmount;
+        this.totalsVersion = -1;
+    }
     
     public BigDecimal getTotalMemberAmount() { return totalMemberAmount; }
-    public void setTotalMemberAmount(BigDecimal totalMemberAmount) { this.totalMemberAmount = totalMemberAmount; }
+    public void setTotalMemberAmount(BigDecimal totalMemberAmount) {
+        this.totalMemberAmount = totalMemberAmount;
+        this.totalsVersion = -1;
+    }
     
     public BigDecimal getTotalPromotionDiscount() { return totalPromotionDiscount; }
-    public void setTotalPromotionDiscount(BigDecimal totalPromotionDiscount) { this.totalPromotionDiscount = totalPromotionDiscount; }
+    public void setTotalPromotionDiscount(BigDecimal totalPromotionDiscount) {
+        this.totalPromotionDiscount = totalPromotionDiscount;
+        this.totalsVersion = -1;
+    }
     
     public BigDecimal getTotalDiscountAmount() { return totalDiscountAmount; }
-    public void setTotalDiscountAmount(BigDecimal totalDiscountAmount) { this.totalDiscountAmount = totalDiscountAmount; }
+    public void setTotalDiscountAmount(BigDecimal totalDiscountAmount) {
+        this.totalDiscountAmount = totalDiscountAmount;
+        this.totalsVersion = -1;
+    }
     
     public BigDecimal getFinalAmount() { return finalAmount; }
-    public void setFinalAmount(BigDecimal finalAmount) { this.finalAmount = finalAmount; }
+    public void setFinalAmount(BigDecimal finalAmount) {
+        this.finalAmount = finalAmount;
+        this.totalsVersion = -1;
+    }
     
     public Map<String, BigDecimal> getActivityDiscounts() { return activityDiscounts; }
     public void setActivityDiscounts(Map<String, BigDecimal> activityDiscounts) { this.activityDiscounts = activityDiscounts; }
@@ -72,12 +117,8 @@ public class Receipt {
 
     /**
      * 計算所有金額總和。
-     * 使用 Stream API 依序計算：
-     * 
-	 * stream()：將 List 轉成資料流以便操作
-	 * map()：取出每個 Line 的指定欄位（例如金額）
-	 * reduce()：將所有值加總成一個結果
-	 *   
+     * 以 {@link ReceiptTotals} 一次迴圈同時累加：
+     *
      * 1. 原價總計
      * 2. 會員價總計（扣會員折扣）
      * 3. 促銷折扣總計
@@ -85,30 +126,8 @@ public class Receipt {
      * 5. 最終應付金額
      */
     public void calculateTotals() {
-    	// 原價總計：取出每筆 Line 的原價並加總
-        this.totalOriginalAmount = lines.stream()          
-                .map(Line::getOriginalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // 會員折扣後總計：原價 - 會員折扣，再加總
-        this.totalMemberAmount = lines.stream()				
-                .map(line -> line.getOriginalAmount().subtract(line.getMemberDiscount()))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // 促銷折扣總計：取出每筆促銷折扣金額並加總
-        this.totalPromotionDiscount = lines.stream()
-                .map(Line::getPromotionDiscount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // 總折扣金額：取出每筆會員+促銷折扣的合計，加總
-        this.totalDiscountAmount = lines.stream()
-                .map(Line::getTotalDiscount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // 最終應付金額：取出每筆最終金額並加總
-        this.finalAmount = lines.stream()
-                .map(Line::getFinalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        ReceiptTotals.of(lines).applyTo(this);
+        totalsVersion = linesVersion;
     }
     
     /**
@@ -122,40 +141,169 @@ public class Receipt {
     }
     
     /**
-     * 新增一筆明細（Line）並重新計算總金額。
+     * 新增一筆明細（Line）並更新總金額。
+     * 總金額與明細一致時，以目前的總金額加上新明細的金額，不重新掃描所有明細；
+     * 否則（例如 setLines 或直接經由 getLines() 修改後尚未 calculateTotals）重新計算整張收據。
      *
      * @param line 新增的商品明細
      */
     public void addLine(Line line) {
-        this.lines.add(line);
-        calculateTotals();   //每當新增一筆明細後，就立即重新計算整張收據的金額總和
+        boolean delta = totalsVersion == linesVersion;
+        appendLine(line);
+        if (!delta) {
+            calculateTotals();
+            return;
+        }
+        ReceiptTotals totals = ReceiptTotals.of(this);
+        totals.add(line);
+        totals.applyTo(this);
+        totalsVersion = linesVersion;
     }
     
     /**
-     * 依商品代碼查找對應的銷售明細。
-    *
-	*   stream()：將明細清單轉為資料流
-	*   filter()：篩選出 itemCode 相同的項目
-	*   findFirst()：取第一筆符合的結果
-	*   orElse(null)：若找不到則回傳 null
-    *
-    * @param itemCode 商品代碼
-    * @return 對應的 Line 物件，若找不到則回傳 null
-    */ 
+     * 新增一筆明細但不更新總金額（總金額由呼叫端負責更新，與 setLine／removeLine 相同）。
+     * 供自行以 {@link ReceiptTotals} 差額維護總金額的呼叫端使用（例如購物車工作階段）。
+     *
+     * @param line 新增的商品明細
+     */
+    public void appendLine(Line line) {
+        boolean indexed = isIndexCurrent();
+        this.lines.add(line);
+        if (indexed) {
+            if (line.getItemCode() != null) lineIndex.putIfAbsent(line.getItemCode(), lines.size() - 1);
+            indexedVersion = linesVersion;
+        }
+    }
+
+    /**
+     * 依商品代碼查找對應的銷售明細（同一代碼有多筆時回傳第一筆）。
+     * 以商品代碼索引查詢，不逐筆掃描明細。
+     *
+     * @param itemCode 商品代碼
+     * @return 對應的 Line 物件，若找不到則回傳 null
+     */
     public Line findLineByItemCode(String itemCode) {
-        return lines.stream()
-                .filter(line -> itemCode.equals(line.getItemCode()))
-                .findFirst()
-                .orElse(null);
+        int position = indexOfItemCode(itemCode);
+        return position < 0 ? null : lines.get(position);
+    }
+
+    /**
+     * 依商品代碼查找第一筆明細的位置。
+     * 索引在 addLine／setLine／removeLine／setLines 時維護；
+     * 直接經由 getLines() 增刪或取代明細時（包含明細數不變的修改），下次查詢會自動重建索引。
+     *
+     * @param itemCode 商品代碼
+     * @return 明細位置，若找不到則回傳 -1
+     */
+    public int indexOfItemCode(String itemCode) {
+        if (itemCode == null) return -1;
+        if (!isIndexCurrent()) rebuildLineIndex();
+        Integer position = lineIndex.get(itemCode);
+        if (position == null) return -1;
+        if (position >= lines.size() || !itemCode.equals(lines.get(position).getItemCode())) {
+            // 明細已被直接修改，重建後再查一次
+            rebuildLineIndex();
+            position = lineIndex.get(itemCode);
+        }
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * 取代指定位置的明細（總金額由呼叫端負責更新）。
+     *
+     * @param position 明細位置
+     * @param line 新明細
+     * @return 原本的明細
+     */
+    public Line setLine(int position, Line line) {
+        boolean indexed = isIndexCurrent();
+        Line previous = lines.set(position, line);
+        if (indexed && Objects.equals(previous.getItemCode(), line.getItemCode())) {
+            indexedVersion = linesVersion;
+        } else {
+            lineIndex = null;
+        }
+        return previous;
+    }
+
+    /**
+     * 刪除指定位置的明細（總金額由呼叫端負責更新）。
+     *
+     * @param position 明細位置
+     * @return 被刪除的明細
+     */
+    public Line removeLine(int position) {
+        Line removed = lines.remove(position);
+        lineIndex = null;
+        return removed;
+    }
+
+    private boolean isIndexCurrent() {
+        return lineIndex != null && indexedVersion == linesVersion;
+    }
+
+    private void rebuildLineIndex() {
+        Map<String, Integer> index = new HashMap<>(Math.max(16, lines.size() * 2));
+        for (int i = 0, n = lines.size(); i < n; i++) {
+            String itemCode = lines.get(i).getItemCode();
+            if (itemCode != null) index.putIfAbsent(itemCode, i);
+        }
+        lineIndex = index;
+        indexedVersion = linesVersion;
     }
     
     private BigDecimal manualReceiptDiscount = BigDecimal.ZERO; // 全館折扣
 
     public void applyManualReceiptDiscount(BigDecimal discount) {
         this.manualReceiptDiscount = discount;
-        BigDecimal sum = this.lines.stream()
-                .map(Line::getFinalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        this.finalAmount = sum.subtract(discount);
+        this.finalAmount = ReceiptTotals.of(lines).getFinalAmount().subtract(discount);
+        this.totalsVersion = -1;
+    }
+
+    /**
+     * 明細清單包裝：委派給呼叫端提供的清單，
+     * 每次新增、刪除或取代明細時遞增收據的明細異動次數。
+     */
+    private final class LineList extends AbstractList<Line> implements RandomAccess {
+        private final List<Line> delegate;
+
+        LineList(List<Line> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Line get(int index) { return delegate.get(index); }
+
+        @Override
+        public int size() { return delegate.size(); }
+
+        @Override
+        public Line set(int index, Line line) {
+            Line previous = delegate.set(index, line);
+            linesVersion++;
+            return previous;
+        }
+
+        @Override
+        public void add(int index, Line line) {
+            delegate.add(index, line);
+            linesVersion++;
+            modCount++;
+        }
+
+        @Override
+        public Line remove(int index) {
+            Line removed = delegate.remove(index);
+            linesVersion++;
+            modCount++;
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+            linesVersion++;
+            modCount++;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 收據總額累加器 (ReceiptTotals)
+ * ------------------------------------------------------------
+ * 以一次迴圈同時累加收據的五個總額，取代逐欄位各掃描一次明細：
+ *  1. 原價總計        2. 會員折扣後總計   3. 促銷折扣總計
+ *  4. 總折扣金額      5. 最終應付金額
+ * 會員折扣後總計以「原價總計 - 會員折扣總計」求得，不必對每筆明細做減法。
+ *
+ * 支援差額更新：明細金額變動前先 {@link #subtract(Line)}，變動後再 {@link #add(Line)}，
+ * 總額即為最新，不需要重新掃描整張收據（收銀台逐筆掃描、大量明細的企業訂單）。
+ * BigDecimal 加減法沒有誤差，差額更新與重新計算的結果完全相同。
+ * ------------------------------------------------------------
+ */
+public class ReceiptTotals {
+
+    private BigDecimal originalAmount = BigDecimal.ZERO;
+    private BigDecimal memberDiscount = BigDecimal.ZERO;
+    private BigDecimal promotionDiscount = BigDecimal.ZERO;
+    private BigDecimal totalDiscount = BigDecimal.ZERO;
+    private BigDecimal finalAmount = BigDecimal.ZERO;
+
+    /**
+     * 一次迴圈計算明細的五個總額。
+     *
+     * @param lines 明細
+     * @return 總額
+     */
+    public static ReceiptTotals of(List<Line> lines) {
+        ReceiptTotals totals = new ReceiptTotals();
+        for (int i = 0, n = lines.size(); i < n; i++) {
+            totals.add(lines.get(i));
+        }
+        return totals;
+    }
+
+    /**
+     * 以收據目前的總額為起點（之後以差額更新）。
+     *
+     * @param receipt 收據
+     * @return 總額
+     */
+    public static ReceiptTotals of(Receipt receipt) {
+        ReceiptTotals totals = new ReceiptTotals();
+        totals.originalAmount = receipt.getTotalOriginalAmount();
+        totals.memberDiscount = receipt.getTotalOriginalAmount().subtract(receipt.getTotalMemberAmount());
+        totals.promotionDiscount = receipt.getTotalPromotionDiscount();
+        totals.totalDiscount = receipt.getTotalDiscountAmount();
+        totals.finalAmount = receipt.getFinalAmount();
+        return totals;
+    }
+
+    /** 加入一筆明細的金額 */
+    public void add(Line line) {
+        originalAmount = originalAmount.add(line.getOriginalAmount());
+        memberDiscount = memberDiscount.add(line.getMemberDiscount());
+        promotionDiscount = promotionDiscount.add(line.getPromotionDiscount());
+        totalDiscount = totalDiscount.add(line.getTotalDiscount());
+        finalAmount = finalAmount.add(line.getFinalAmount());
+    }
+
+    /** 扣除一筆明細的金額（明細變動或刪除前呼叫） */
+    public void subtract(Line line) {
+        originalAmount = originalAmount.subtract(line.getOriginalAmount());
+        memberDiscount = memberDiscount.subtract(line.getMemberDiscount());
+        promotionDiscount = promotionDiscount.subtract(line.getPromotionDiscount());
+        totalDiscount = totalDiscount.subtract(line.getTotalDiscount());
+        finalAmount = finalAmount.subtract(line.getFinalAmount());
+    }
+
+    /** 將總額寫入收據 */
+    public void applyTo(Receipt receipt) {
+        receipt.setTotalOriginalAmount(originalAmount);
+        receipt.setTotalMemberAmount(getMemberAmount());
+        receipt.setTotalPromotionDiscount(promotionDiscount);
+        receipt.setTotalDiscountAmount(totalDiscount);
+        receipt.setFinalAmount(finalAmount);
+    }
+
+    public BigDecimal getOriginalAmount() { return originalAmount; }
+    public BigDecimal getMemberAmount() { return originalAmount.subtract(memberDiscount); }
+    public BigDecimal getPromotionDiscount() { return promotionDiscount; }
+    public BigDecimal getTotalDiscount() { return totalDiscount; }
+    public BigDecimal getFinalAmount() { return finalAmount; }
+}
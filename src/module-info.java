@@ -8,6 +8,8 @@
 module pos.promotion.system {
     requires java.sql;
     requires java.desktop;
+    requires java.net.http;     // 壓力測試 LoadGenerator
+    requires jdk.httpserver;    // 計價服務 PricingServer
     requires java.base;
     requires org.junit.jupiter.api;  // ✅ JUnit API
     requires org.junit.jupiter.engine; // ✅ JUnit 引擎
@@ -18,4 +20,5 @@ module pos.promotion.system {
     exports repo;
     exports service;
     exports config;
+    exports event;
 }
\ No newline at end of file
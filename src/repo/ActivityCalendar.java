@@ -0,0 +1,155 @@
+package repo;
+
+import model.Activity;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 活動日曆 (ActivityCalendar)
+ * ------------------------------------------------------------
+ * 一次載入全部活動，依起訖日期建立分段索引，之後任何日期都不再查詢資料庫：
+ *  1. 所有活動的開始日與「結束日 + 1」排序後作為分段邊界
+ *  2. 相鄰兩個邊界之間的每一天，有效活動完全相同，建立時就算好這一段的活動清單
+ *  3. 查詢日期 D：二分搜尋找到所在分段 O(log n)，直接回傳該段的清單（k 筆，不複製）
+ *
+ * 適用：重算歷史交易、預覽未來活動、離線佇列跨多日回放 ——
+ * 一整年的回放只需載入一次，不會每張收據查詢一次。
+ *
+ * 建立後不再改變（活動表異動時重新 {@link #load}），可由多個執行緒同時查詢；
+ * 回傳的清單不可修改，同一分段的每次查詢回傳同一個物件。
+ * 活動順序與來源相同，查詢結果與 {@link ActivityLookup#findValidActivities} 逐日查詢一致。
+ * 起訖日期為 null 的活動視為沒有開始（或結束）日期的限制。
+ * ------------------------------------------------------------
+ */
+public class ActivityCalendar implements ActivityLookup {
+
+    private final ZoneId zone;
+    private final int activityCount;
+
+    /** 分段起點（epoch day，遞增）；第 i 段為 [boundaries[i], boundaries[i+1]) */
+    private final long[] boundaries;
+
+    /** 各分段的有效活動；第一個邊界之前沒有活動 */
+    private final List<List<Activity>> segments;
+
+    private ActivityCalendar(ZoneId zone, int activityCount, long[] boundaries, List<List<Activity>> segments) {
+        this.zone = zone;
+        this.activityCount = activityCount;
+        this.boundaries = boundaries;
+        this.segments = segments;
+    }
+
+    /**
+     * 從資料庫載入全部活動。
+     *
+     * @param repository 活動資料表
+     * @return 活動日曆
+     */
+    public static ActivityCalendar load(ActivityRepository repository) {
+        return of(repository.findAllActivities(), ZoneId.systemDefault());
+    }
+
+    /**
+     * 以記憶體資料的全部活動建立。
+     *
+     * @param catalog 記憶體資料
+     * @return 活動日曆
+     */
+    public static ActivityCalendar of(InMemoryCatalog catalog) {
+        return of(catalog.getActivities(), ZoneId.systemDefault());
+    }
+
+    /**
+     * 建立活動日曆。
+     *
+     * @param activities 全部活動（順序即查詢結果的順序）
+     * @param zone 判斷交易日使用的時區
+     * @return 活動日曆
+     */
+    public static ActivityCalendar of(Collection<Activity> activities, ZoneId zone) {
+        List<Activity> list = new ArrayList<>(activities);
+        long[] starts = new long[list.size()];
+        long[] ends = new long[list.size()];    // 結束日的下一天（不含）
+
+        TreeSet<Long> points = new TreeSet<>();
+        for (int i = 0; i < list.size(); i++) {
+            Activity activity = list.get(i);
+            starts[i] = activity.getStartActivityDate() == null ? Long.MIN_VALUE
+                    : toLocalDate(activity.getStartActivityDate(), zone).toEpochDay();
+            ends[i] = activity.getEndActivityDate() == null ? Long.MAX_VALUE
+                    : toLocalDate(activity.getEndActivityDate(), zone).toEpochDay() + 1;
+            if (starts[i] >= ends[i]) continue;     // 結束日早於開始日：任何一天都無效
+            points.add(starts[i]);
+            if (ends[i] != Long.MAX_VALUE) points.add(ends[i]);
+        }
+
+        long[] boundaries = new long[points.size()];
+        int b = 0;
+        for (long point : points) boundaries[b++] = point;
+
+        // 每個活動加入它涵蓋的分段（維持來源順序）
+        List<List<Activity>> building = new ArrayList<>(boundaries.length);
+        for (int i = 0; i < boundaries.length; i++) building.add(new ArrayList<>());
+        for (int i = 0; i < list.size(); i++) {
+            if (starts[i] >= ends[i]) continue;
+            int from = Arrays.binarySearch(boundaries, starts[i]);
+            for (int s = from; s < boundaries.length && boundaries[s] < ends[i]; s++) {
+                building.get(s).add(list.get(i));
+            }
+        }
+
+        // 內容相同的相鄰分段共用同一個清單
+        List<List<Activity>> segments = new ArrayList<>(boundaries.length);
+        List<Activity> previous = null;
+        for (List<Activity> segment : building) {
+            List<Activity> frozen = segment.equals(previous) ? segments.get(segments.size() - 1)
+                    : Collections.unmodifiableList(segment);
+            segments.add(frozen);
+            previous = segment;
+        }
+        return new ActivityCalendar(zone, list.size(), boundaries, Collections.unmodifiableList(segments));
+    }
+
+    /**
+     * 查詢交易日有效的活動。
+     *
+     * @param targetDate 交易日期
+     * @return 不可修改的活動清單
+     */
+    @Override
+    public List<Activity> findValidActivities(Date targetDate) {
+        return findValidActivities(toLocalDate(targetDate, zone));
+    }
+
+    /**
+     * 查詢指定日期有效的活動。
+     *
+     * @param date 日期
+     * @return 不可修改的活動清單
+     */
+    public List<Activity> findValidActivities(LocalDate date) {
+        int index = Arrays.binarySearch(boundaries, date.toEpochDay());
+        if (index < 0) index = -index - 2;      // 最後一個 <= date 的邊界
+        return index < 0 ? Collections.emptyList() : segments.get(index);
+    }
+
+    /** 載入的活動數 */
+    public int getActivityCount() { return activityCount; }
+
+    /** 分段數（活動起訖日期的不同邊界數） */
+    public int getSegmentCount() { return boundaries.length; }
+
+    private static LocalDate toLocalDate(Date date, ZoneId zone) {
+        if (date instanceof java.sql.Date) return ((java.sql.Date) date).toLocalDate();
+        return Instant.ofEpochMilli(date.getTime()).atZone(zone).toLocalDate();
+    }
+}
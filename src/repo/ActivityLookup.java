@@ -0,0 +1,47 @@
+package repo;
+
+import model.Activity;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 促銷活動查詢介面 (ActivityLookup)
+ * ------------------------------------------------------------
+ * PromotionService 只依賴此介面，不直接依賴資料庫：
+ *  - ActivityRepository：以 JDBC 查詢 crm_promo_rebate_h
+ *  - InMemoryCatalog：常駐記憶體的活動資料（CSV 載入）
+ *  - CachedActivityRepository：依營業日快取任一實作的結果
+ *  - ActivityCalendar：一次載入全部活動，任何日期以分段索引查詢
+ * ------------------------------------------------------------
+ */
+public interface ActivityLookup {
+
+    /**
+     * 查詢指定日期有效的促銷活動。
+     *
+     * @param targetDate 交易日期
+     * @return 活動清單，若無則回傳空集合
+     */
+    List<Activity> findValidActivities(Date targetDate);
+
+    /**
+     * 查詢指定日期有效的促銷活動；與 {@link #findValidActivities} 不同，查詢失敗時丟出例外，
+     * 不以空集合代替（快取據此判斷結果能否保存）。不會失敗的實作沿用 findValidActivities。
+     *
+     * @param targetDate 交易日期
+     * @return 活動清單，若無則回傳空集合
+     * @throws LookupFailedException 查詢失敗時
+     */
+    default List<Activity> loadValidActivities(Date targetDate) {
+        return findValidActivities(targetDate);
+    }
+
+    /**
+     * 取得活動資料的異動指紋，用於判斷快取是否需要重新載入。
+     * 資料不會變動或無法判斷時回傳 null（快取保留現有快照）。
+     */
+    default String findChangeFingerprint() {
+        return null;
+    }
+}
@@ -1,21 +1,34 @@
 package repo;
 
 import config.DatabaseConfig;
+import event.EventPublisher;
+import event.RepositoryError;
 import model.Activity;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 /**
  * ActivityRepository 負責與資料庫互動，
  * 查詢目前有效的促銷活動（crm_promo_rebate_h 表）。
- * 
+ *
  * 使用 JDBC 連線資料庫，將查詢結果封裝成 {@link Activity} 物件。
- * 
+ * 級距欄位（meet_criteria_amt_g2..gN / award_amt_g2..gN）與累送欄位（repeat_award_flag）
+ * 第一次查詢時由資料表中繼資料偵測，表中沒有這些欄位時只讀取 G1。
+ *
  */
-public class ActivityRepository {
-    
+public class ActivityRepository implements ActivityLookup {
+
+    private static final String TABLE = "crm_promo_rebate_h";
+
+    /** 活動表欄位（第一次查詢時偵測，之後重用） */
+    private volatile ActivityColumns columns;
+
     /**
      * 根據指定日期查詢「當天有效」的促銷活動。
      * <p>
@@ -25,47 +38,220 @@ public class ActivityRepository {
      * </p>
      *
      * @param targetDate 查詢的目標日期（通常為交易日期）
-     * @return 活動清單（List<Activity>），若無則回傳空集合
+     * @return 活動清單（List<Activity>），若無或查詢失敗則回傳空集合
      */
+    @Override
     public List<Activity> findValidActivities(java.util.Date targetDate) {
-    	
+        try {
+            return loadValidActivities(targetDate);
+        } catch (LookupFailedException e) {
+            EventPublisher.getDefault().publish(new RepositoryError(e.getMessage(), e.getCause()));
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 同 {@link #findValidActivities}，但查詢失敗時丟出 LookupFailedException（快取不保存失敗的結果）。
+     */
+    @Override
+    public List<Activity> loadValidActivities(java.util.Date targetDate) {
+
     	// 建立活動清單
         List<Activity> activities = new ArrayList<>();
-        
-        // SQL 查詢語句：找出指定日期內有效的活動
-        String sql = "SELECT activity_code, activity_name, start_activity_date, " +
-                    "end_activity_date, item_discount_group, meet_criteria_amt_g1, award_amt_g1 " +
-                    "FROM crm_promo_rebate_h " +
-                    "WHERE ? BETWEEN DATE(start_activity_date) AND DATE(end_activity_date)";
-        
+
         // try-with-resources：自動關閉連線與 Statement
-        try (Connection conn = DriverManager.getConnection(DatabaseConfig.URL, DatabaseConfig.USER, DatabaseConfig.PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-        	// 將 java.util.Date 轉換成 java.sql.Date，並設定為 SQL 查詢中的第 1 個參數（?）
-        	// getTime() 取得毫秒時間戳；new Date(...) 建立 SQL 專用日期物件
-            pstmt.setDate(1, new Date(targetDate.getTime()));   
-            // 執行查詢，取得結果
-            ResultSet rs = pstmt.executeQuery();				
-            
-            // 將每一筆資料轉成 Activity 物件
-            while (rs.next()) {
-                Activity activity = new Activity(
-                    rs.getString("activity_code"),
-                    rs.getString("activity_name"),
-                    rs.getDate("start_activity_date"),
-                    rs.getDate("end_activity_date"),
-                    rs.getString("item_discount_group"),
-                    rs.getBigDecimal("meet_criteria_amt_g1"),
-                    rs.getBigDecimal("award_amt_g1")
-                );
-                // 加入活動清單
-                activities.add(activity);						// <== 將資料封裝成物件
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            ActivityColumns columns = columns(conn);
+
+            // SQL 查詢語句：找出指定日期內有效的活動
+            String sql = "SELECT " + columns.getSelectList() + " FROM " + TABLE + " " +
+                        "WHERE ? BETWEEN DATE(start_activity_date) AND DATE(end_activity_date)";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            	// 將 java.util.Date 轉換成 java.sql.Date，並設定為 SQL 查詢中的第 1 個參數（?）
+            	// getTime() 取得毫秒時間戳；new Date(...) 建立 SQL 專用日期物件
+                pstmt.setDate(1, new Date(targetDate.getTime()));
+                // 執行查詢，取得結果
+                ResultSet rs = pstmt.executeQuery();
+
+                // 將每一筆資料轉成 Activity 物件
+                while (rs.next()) {
+                    activities.add(columns.toActivity(rs));			// <== 將資料封裝成物件
+                }
+            }
+        } catch (SQLException e) {
+            throw new LookupFailedException("查询活动信息失败", e);
+        }
+        return activities;
+    }
+
+    /**
+     * 取得活動表的異動指紋，用於判斷快取是否需要重新載入。
+     * <p>
+     * 由筆數、最大起訖日期與各筆主要欄位的 CRC32 加總組成，
+     * 新增、刪除或修改活動（門檻、折扣、級距、適用分類）都會改變指紋。
+     * </p>
+     *
+     * @return 指紋字串；查詢失敗時回傳 null
+     */
+    @Override
+    public String findChangeFingerprint() {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            String sql = "SELECT COUNT(*), MAX(start_activity_date), MAX(end_activity_date), " +
+                        "SUM(CRC32(CONCAT_WS('|', " + columns(conn).getSelectList() + "))) " +
+                        "FROM " + TABLE;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1) + "|" + rs.getString(2) + "|" + rs.getString(3) + "|" + rs.getString(4);
+                }
             }
         } catch (SQLException e) {
-            System.err.println("查询活动信息失败: " + e.getMessage());
-            e.printStackTrace();
+            EventPublisher.getDefault().publish(new RepositoryError("查询活动异动指纹失败", e));
+        }
+        return null;
+    }
+
+    /**
+     * 查詢全部活動（ActivityCalendar 一次載入，之後任何日期都不再查詢資料庫）。
+     * 與 {@link #findValidActivities} 相同為全表掃描、不排序，活動順序與單日查詢一致。
+     *
+     * @return 活動清單，若無則回傳空集合
+     */
+    public List<Activity> findAllActivities() {
+        List<Activity> activities = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            ActivityColumns columns = columns(conn);
+            String sql = "SELECT " + columns.getSelectList() + " FROM " + TABLE;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    activities.add(columns.toActivity(rs));
+                }
+            }
+        } catch (SQLException e) {
+            EventPublisher.getDefault().publish(new RepositoryError("查询活动信息失败", e));
         }
         return activities;
     }
-}
\ No newline at end of file
+
+    /**
+     * 查詢指定日期當天及之後仍有效的活動（離線快照使用，終端機可在斷線期間跨日使用）。
+     *
+     * @param fromDate 起始日期
+     * @return 活動清單（依開始日期排序），若無則回傳空集合
+     */
+    public List<Activity> findCurrentAndUpcomingActivities(java.util.Date fromDate) {
+        List<Activity> activities = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            ActivityColumns columns = columns(conn);
+            String sql = "SELECT " + columns.getSelectList() + " FROM " + TABLE + " " +
+                        "WHERE DATE(end_activity_date) >= ? ORDER BY start_activity_date";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setDate(1, new Date(fromDate.getTime()));
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    activities.add(columns.toActivity(rs));
+                }
+            }
+        } catch (SQLException e) {
+            EventPublisher.getDefault().publish(new RepositoryError("查询活动信息失败", e));
+        }
+        return activities;
+    }
+
+    /** 取得活動表欄位；偵測失敗時本次只使用 G1，下次查詢再重新偵測 */
+    private ActivityColumns columns(Connection conn) {
+        ActivityColumns detected = columns;
+        if (detected != null) return detected;
+        Set<String> names = new HashSet<>();
+        try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, TABLE, "%")) {
+            while (rs.next()) names.add(rs.getString("COLUMN_NAME"));
+        } catch (SQLException e) {
+            EventPublisher.getDefault().publish(new RepositoryError("查询活动表栏位失败，只使用第一级门槛", e));
+            return ActivityColumns.G1_ONLY;
+        }
+        detected = ActivityColumns.of(names);
+        columns = detected;
+        return detected;
+    }
+
+    /**
+     * 活動表的級距與累送欄位（資料庫與 CSV 載入共用）。
+     * meet_criteria_amt_g1 / award_amt_g1 之後，從 g2 起連續成對存在的
+     * meet_criteria_amt_gN / award_amt_gN 視為第 N 級；
+     * repeat_award_flag 存在時讀取累送設定（Y／1／true 表示每滿門檻累送）。
+     */
+    static final class ActivityColumns {
+
+        static final String REPEAT_COLUMN = "repeat_award_flag";
+
+        static final ActivityColumns G1_ONLY = new ActivityColumns(1, false);
+
+        private final int tierCount;
+        private final boolean repeatColumn;
+        private final String selectList;
+
+        private ActivityColumns(int tierCount, boolean repeatColumn) {
+            this.tierCount = tierCount;
+            this.repeatColumn = repeatColumn;
+            StringBuilder select = new StringBuilder("activity_code, activity_name, start_activity_date, " +
+                    "end_activity_date, item_discount_group");
+            for (int g = 1; g <= tierCount; g++) {
+                select.append(", ").append(meetColumn(g)).append(", ").append(awardColumn(g));
+            }
+            if (repeatColumn) select.append(", ").append(REPEAT_COLUMN);
+            this.selectList = select.toString();
+        }
+
+        /**
+         * 依欄位名稱（不分大小寫）決定級距數與是否有累送欄位。
+         *
+         * @param columnNames 資料表欄位或 CSV 標題
+         * @return 欄位設定
+         */
+        static ActivityColumns of(Collection<String> columnNames) {
+            Set<String> names = new HashSet<>();
+            for (String name : columnNames) names.add(name.trim().toLowerCase(Locale.ROOT));
+            int tierCount = 1;
+            while (names.contains(meetColumn(tierCount + 1)) && names.contains(awardColumn(tierCount + 1))) {
+                tierCount++;
+            }
+            boolean repeat = names.contains(REPEAT_COLUMN);
+            return tierCount == 1 && !repeat ? G1_ONLY : new ActivityColumns(tierCount, repeat);
+        }
+
+        static String meetColumn(int group) { return "meet_criteria_amt_g" + group; }
+        static String awardColumn(int group) { return "award_amt_g" + group; }
+
+        /** 累送欄位的值是否表示累送 */
+        static boolean isRepeat(String flag) {
+            if (flag == null) return false;
+            String value = flag.trim();
+            return value.equalsIgnoreCase("Y") || value.equals("1") || value.equalsIgnoreCase("true");
+        }
+
+        int getTierCount() { return tierCount; }
+        boolean hasRepeatColumn() { return repeatColumn; }
+
+        /** SELECT 欄位清單（依序為基本欄位、G1..Gn、累送欄位） */
+        String getSelectList() { return selectList; }
+
+        /** 將目前這一筆資料轉成 Activity */
+        Activity toActivity(ResultSet rs) throws SQLException {
+            Activity activity = new Activity(
+                rs.getString("activity_code"),
+                rs.getString("activity_name"),
+                rs.getDate("start_activity_date"),
+                rs.getDate("end_activity_date"),
+                rs.getString("item_discount_group"),
+                rs.getBigDecimal("meet_criteria_amt_g1"),
+                rs.getBigDecimal("award_amt_g1")
+            );
+            for (int g = 2; g <= tierCount; g++) {
+                activity.addTier(rs.getBigDecimal(meetColumn(g)), rs.getBigDecimal(awardColumn(g)));
+            }
+            if (repeatColumn) activity.setRepeatAward(isRepeat(rs.getString(REPEAT_COLUMN)));
+            return activity;
+        }
+    }
+}
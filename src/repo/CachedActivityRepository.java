@@ -0,0 +1,293 @@
+package repo;
+
+import event.ActivitiesChanged;
+import event.EventPublisher;
+import event.RepositoryError;
+import model.Activity;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CachedActivityRepository 以「營業日」為 key 快取當天有效的促銷活動。
+ * ------------------------------------------------------------
+ * 活動清單只會在跨日或行銷人員修改 crm_promo_rebate_h 時改變，
+ * 因此同一營業日只查詢一次資料庫，之後所有收據都從記憶體取得：
+ *  1. 依營業日保存活動快照（不可修改的 List，可安全共用）
+ *  2. invalidate / invalidateAll / reload：手動清除或重新載入
+ *  3. 可選的定期異動檢查：比對活動表的指紋（筆數、最大日期、CRC），
+ *     一旦改變即清除所有快照
+ *  4. 同一營業日同時未命中時只查詢一次資料庫，其餘執行緒等待同一次查詢結果
+ *
+ * 查詢資料庫期間若快照被清除（異動檢查或手動清除），
+ * 查回的結果仍交給呼叫端，但不放回快取，避免舊資料一直留到下次異動。
+ * 查詢失敗（{@link LookupFailedException}）時不建立快照：這次的收據沒有活動，
+ * 下一次查詢重新讀取資料庫，不會讓一次失敗整天停用所有促銷。
+ * ------------------------------------------------------------
+ */
+public class CachedActivityRepository implements ActivityLookup {
+
+    /** 最多保留的營業日快照數（重跑歷史資料時避免無限成長） */
+    public static final int DEFAULT_MAX_SNAPSHOTS = Integer.getInteger("pos.cache.activity.maxSnapshots", 31);
+
+    /** 預設異動檢查間隔（毫秒），0 表示不檢查 */
+    public static final long DEFAULT_CHECK_INTERVAL_MS = Long.getLong("pos.cache.activity.checkIntervalMs", 60 * 1000L);
+
+    private final ActivityLookup delegate;
+    private final ZoneId zone;
+
+    /** 營業日 → 活動快照（依存取順序，超過上限淘汰最舊的日期） */
+    private final Map<LocalDate, List<Activity>> snapshots;
+
+    /** 營業日 → 查詢中的結果；同一營業日同時只有一次資料庫查詢（受 snapshots 的鎖保護） */
+    private final Map<LocalDate, CompletableFuture<List<Activity>>> inFlight = new HashMap<>();
+
+    /** 每次清除快照就加一；查詢開始後世代改變，結果不放回快取（受 snapshots 的鎖保護） */
+    private long generation;
+
+    private ScheduledExecutorService changeChecker;
+    private volatile String lastFingerprint;
+
+    /** 偵測到活動表異動時發布 ActivitiesChanged，查詢失敗時發布 RepositoryError */
+    private volatile EventPublisher events = EventPublisher.getDefault();
+
+    // 統計數據
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /** 使用預設設定包裝資料庫查詢 */
+    public CachedActivityRepository(ActivityLookup delegate) {
+        this(delegate, DEFAULT_MAX_SNAPSHOTS, ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructor
+     * @param delegate 實際查詢活動的來源
+     * @param maxSnapshots 最多保留的營業日快照數
+     * @param zone 判斷營業日使用的時區
+     */
+    public CachedActivityRepository(ActivityLookup delegate, int maxSnapshots, ZoneId zone) {
+        this.delegate = delegate;
+        this.zone = zone;
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LocalDate, List<Activity>> eldest) {
+                return size() > maxSnapshots;
+            }
+        };
+    }
+
+    /**
+     * 取得指定日期有效的活動。
+     * 同一營業日第一次呼叫時查詢資料庫，之後直接回傳同一份快照。
+     *
+     * @param targetDate 交易日期
+     * @return 不可修改的活動清單
+     */
+    @Override
+    public List<Activity> findValidActivities(Date targetDate) {
+        try {
+            return loadValidActivities(targetDate);
+        } catch (LookupFailedException e) {
+            events.publish(new RepositoryError(e.getMessage(), e.getCause()));
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 同 {@link #findValidActivities}，但查詢失敗時丟出 LookupFailedException（等待同一次查詢的執行緒也會收到）。
+     */
+    @Override
+    public List<Activity> loadValidActivities(Date targetDate) {
+        LocalDate businessDate = toBusinessDate(targetDate);
+        CompletableFuture<List<Activity>> pending = new CompletableFuture<>();
+        CompletableFuture<List<Activity>> existing;
+        long startGeneration;
+        synchronized (snapshots) {
+            List<Activity> snapshot = snapshots.get(businessDate);
+            if (snapshot != null) {
+                hits.increment();
+                return snapshot;
+            }
+            existing = inFlight.putIfAbsent(businessDate, pending);
+            startGeneration = generation;
+        }
+        // 在鎖外等待，查詢的執行緒完成時才能取得鎖放入快照
+        if (existing != null) return await(existing);
+        return load(businessDate, targetDate, pending, startGeneration);
+    }
+
+    /**
+     * 重新載入指定日期的活動快照。
+     *
+     * @param targetDate 交易日期
+     * @return 新的活動快照
+     * @throws LookupFailedException 查詢失敗時（不建立新快照）
+     */
+    public List<Activity> reload(Date targetDate) {
+        LocalDate businessDate = toBusinessDate(targetDate);
+        CompletableFuture<List<Activity>> pending = new CompletableFuture<>();
+        long startGeneration;
+        synchronized (snapshots) {
+            startGeneration = ++generation;
+            inFlight.put(businessDate, pending);
+        }
+        return load(businessDate, targetDate, pending, startGeneration);
+    }
+
+    /** 清除指定營業日的快照 */
+    public void invalidate(LocalDate businessDate) {
+        synchronized (snapshots) {
+            generation++;
+            inFlight.remove(businessDate);
+            if (snapshots.remove(businessDate) != null) invalidations.increment();
+        }
+    }
+
+    /** 清除所有快照（活動表有異動時） */
+    public void invalidateAll() {
+        synchronized (snapshots) {
+            generation++;
+            inFlight.clear();
+            if (!snapshots.isEmpty()) invalidations.increment();
+            snapshots.clear();
+        }
+    }
+
+    /**
+     * 取得已快取的活動快照，不查詢資料庫。
+     *
+     * @param targetDate 交易日期
+     * @return 快照；尚未載入時回傳 null
+     */
+    public List<Activity> peek(Date targetDate) {
+        synchronized (snapshots) {
+            return snapshots.get(toBusinessDate(targetDate));
+        }
+    }
+
+    /** 異動指紋直接查詢來源（不快取） */
+    @Override
+    public String findChangeFingerprint() {
+        return delegate.findChangeFingerprint();
+    }
+
+    /**
+     * 查詢資料庫，把結果交給等待同一營業日的執行緒；
+     * 查詢期間快照沒有被清除時才放入快取。
+     *
+     * @param pending 已登記在 inFlight 的查詢結果
+     * @param startGeneration 登記時的世代
+     */
+    private List<Activity> load(LocalDate businessDate, Date targetDate,
+                                CompletableFuture<List<Activity>> pending, long startGeneration) {
+        List<Activity> snapshot;
+        try {
+            loads.increment();
+            snapshot = Collections.unmodifiableList(delegate.loadValidActivities(targetDate));
+        } catch (RuntimeException e) {
+            synchronized (snapshots) {
+                inFlight.remove(businessDate, pending);
+            }
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (snapshots) {
+            inFlight.remove(businessDate, pending);
+            if (generation == startGeneration) snapshots.put(businessDate, snapshot);
+        }
+        pending.complete(snapshot);
+        return snapshot;
+    }
+
+    /** 等待其他執行緒的查詢結果；查詢失敗時丟出原本的例外 */
+    private static List<Activity> await(CompletableFuture<List<Activity>> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private LocalDate toBusinessDate(Date date) {
+        if (date instanceof java.sql.Date) return ((java.sql.Date) date).toLocalDate();
+        return Instant.ofEpochMilli(date.getTime()).atZone(zone).toLocalDate();
+    }
+
+    // ---------------------------------------------------------------
+    // 定期異動檢查
+    // ---------------------------------------------------------------
+
+    /**
+     * 啟動定期異動檢查；指紋改變時清除所有快照。
+     *
+     * @param intervalMs 檢查間隔（毫秒），0 或負數表示不啟動
+     */
+    public synchronized void startChangeCheck(long intervalMs) {
+        if (intervalMs <= 0 || changeChecker != null) return;
+        lastFingerprint = delegate.findChangeFingerprint();
+        changeChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pos-activity-change-check");
+            t.setDaemon(true);
+            return t;
+        });
+        changeChecker.scheduleWithFixedDelay(this::checkForChanges, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** 設定事件發布器（預設為 {@link EventPublisher#getDefault()}） */
+    public void setEventPublisher(EventPublisher events) {
+        this.events = events;
+    }
+
+    /** 停止定期異動檢查 */
+    public synchronized void stopChangeCheck() {
+        if (changeChecker != null) {
+            changeChecker.shutdownNow();
+            changeChecker = null;
+        }
+    }
+
+    /**
+     * 比對活動表指紋，若有變動則清除快照。
+     *
+     * @return 是否偵測到異動
+     */
+    public boolean checkForChanges() {
+        String fingerprint = delegate.findChangeFingerprint();
+        if (fingerprint == null) return false;   // 查詢失敗時保留現有快照
+        if (Objects.equals(fingerprint, lastFingerprint)) return false;
+        boolean changed = lastFingerprint != null;
+        lastFingerprint = fingerprint;
+        if (changed) {
+            events.publish(new ActivitiesChanged("crm_promo_rebate_h"));
+            invalidateAll();
+        }
+        return changed;
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getLoads() { return loads.sum(); }
+    public long getInvalidations() { return invalidations.sum(); }
+
+    public int getSnapshotCount() {
+        synchronized (snapshots) {
+            return snapshots.size();
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package repo;
+
+import event.EventPublisher;
+import event.RepositoryError;
+import model.Item;
+
+import java.util.ArrayList;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * CachedItemRepository 在任一 {@link ItemLookup}（資料庫或記憶體資料）前加上一層記憶體快取。
+ * ------------------------------------------------------------
+ * 同一批熱門商品（例如 WINE001、COSM001）整天被重複掃描，
+ * 因此以商品代碼為 key 快取 {@link Item} 物件：
+ *  1. TTL：超過存活時間的資料視為過期，重新查詢資料庫
+ *  2. 容量上限：超過 maxEntries 時依 LRU 或 LFU 淘汰
+ *  3. 負向快取：查無此商品的代碼也會暫存，避免重複查詢；
+ *     只有來源查詢成功時才記錄，查詢失敗（{@link LookupFailedException}）時未命中的代碼不放入快取
+ *  4. 只有未命中的代碼才會合併成一次批次查詢送往資料庫
+ *  5. 命中／未命中／淘汰等統計，供各門市調整快取大小
+ * ------------------------------------------------------------
+ */
+public class CachedItemRepository implements ItemLookup {
+
+    /** 淘汰策略 */
+    public enum EvictionPolicy {
+        /** 最近最少使用 */
+        LRU,
+        /** 最不常使用 */
+        LFU
+    }
+
+    /** 預設存活時間（毫秒），可用 -Dpos.cache.item.ttlMs 調整 */
+    public static final long DEFAULT_TTL_MS = Long.getLong("pos.cache.item.ttlMs", 5 * 60 * 1000L);
+
+    /** 負向快取（查無商品）存活時間（毫秒） */
+    public static final long DEFAULT_NEGATIVE_TTL_MS = Long.getLong("pos.cache.item.negativeTtlMs", 60 * 1000L);
+
+    /** 預設最大快取筆數 */
+    public static final int DEFAULT_MAX_ENTRIES = Integer.getInteger("pos.cache.item.maxEntries", 10000);
+
+    /** 預設淘汰策略 */
+    public static final EvictionPolicy DEFAULT_POLICY =
+            EvictionPolicy.valueOf(System.getProperty("pos.cache.item.policy", "LRU"));
+
+    private final ItemLookup delegate;
+    private final long ttlMs;
+    private final long negativeTtlMs;
+    private final int maxEntries;
+    private final EvictionPolicy policy;
+
+    /** 來源查詢失敗時發布 RepositoryError */
+    private volatile EventPublisher events = EventPublisher.getDefault();
+
+    /**
+     * 快取本體，依最近使用排序（最舊在前）。
+     * 不用 access-order 的 LinkedHashMap：那樣連 get() 都會改變順序，
+     * peekItems() 就不再是無副作用的查看；LRU 命中時改由 touchRecency() 明確移到最後。
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    /** LFU 使用：使用次數 → 該次數的商品代碼（依加入先後） */
+    private final Map<Integer, LinkedHashSet<String>> frequencyBuckets = new HashMap<>();
+    private int minFrequency;
+
+    // 統計數據
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    /** 使用預設設定包裝資料庫查詢 */
+    public CachedItemRepository(ItemLookup delegate) {
+        this(delegate, DEFAULT_TTL_MS, DEFAULT_NEGATIVE_TTL_MS, DEFAULT_MAX_ENTRIES, DEFAULT_POLICY);
+    }
+
+    /**
+     * Constructor
+     * @param delegate 實際查詢商品的來源
+     * @param ttlMs 商品資料存活時間（毫秒）
+     * @param negativeTtlMs 查無商品的暫存時間（毫秒），0 表示不做負向快取
+     * @param maxEntries 最大快取筆數
+     * @param policy 淘汰策略（LRU / LFU）
+     */
+    public CachedItemRepository(ItemLookup delegate, long ttlMs, long negativeTtlMs,
+                                int maxEntries, EvictionPolicy policy) {
+        if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries 必須大於 0");
+        this.delegate = delegate;
+        this.ttlMs = ttlMs;
+        this.negativeTtlMs = negativeTtlMs;
+        this.maxEntries = maxEntries;
+        this.policy = policy;
+    }
+
+    /**
+     * 批次查詢商品：先查快取，只把未命中的代碼合併成一次資料庫查詢。
+     * 回傳順序依輸入代碼順序（重複代碼只回傳一次），查無資料的代碼不回傳。
+     * 快取項目記錄其價格所屬的營業日，不同營業日的查詢視為未命中。
+     */
+    @Override
+    public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) {
+        return findItems(itemCodes, asOfDate, false);
+    }
+
+    /**
+     * 同 {@link #findItemsByCodes(List, Date)}，但來源查詢失敗時丟出 LookupFailedException。
+     */
+    @Override
+    public List<Item> loadItemsByCodes(List<String> itemCodes, Date asOfDate) {
+        return findItems(itemCodes, asOfDate, true);
+    }
+
+    /**
+     * 查快取並批次查詢未命中的代碼。
+     * 來源查詢失敗時不記錄負向快取；failOnError 為 false 時發布 RepositoryError 並只回傳快取命中的商品。
+     */
+    private List<Item> findItems(List<String> itemCodes, Date asOfDate, boolean failOnError) {
+        List<Item> result = new ArrayList<>(itemCodes.size());
+        if (itemCodes.isEmpty()) return result;
+
+        Map<String, Item> found = new HashMap<>();
+        LinkedHashSet<String> missing = new LinkedHashSet<>();
+        long now = System.currentTimeMillis();
+        long priceDay = toEpochDay(asOfDate);
+
+        synchronized (this) {
+            for (String code : itemCodes) {
+                if (found.containsKey(code) || missing.contains(code)) continue;
+                Entry entry = lookup(code, now, priceDay);
+                if (entry == null) {
+                    missing.add(code);
+                } else {
+                    found.put(code, entry.item);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            loads.increment();
+            List<Item> loaded;
+            try {
+                loaded = delegate.loadItemsByCodes(new ArrayList<>(missing), asOfDate);
+            } catch (LookupFailedException e) {
+                if (failOnError) throw e;
+                events.publish(new RepositoryError(e.getMessage(), e.getCause()));
+                missing.clear();    // 查詢失敗，不能判定查無商品
+                loaded = Collections.emptyList();
+            }
+            synchronized (this) {
+                for (Item item : loaded) {
+                    found.put(item.getItemCode(), item);
+                    store(item.getItemCode(), item, now, priceDay);
+                }
+                for (String code : missing) {
+                    if (!found.containsKey(code)) {
+                        found.put(code, null);
+                        if (negativeTtlMs > 0) store(code, null, now, priceDay);
+                    }
+                }
+            }
+        }
+
+        for (String code : new LinkedHashSet<>(itemCodes)) {
+            Item item = found.get(code);
+            if (item != null) result.add(item);
+        }
+        return result;
+    }
+
+    /** 設定事件發布器（預設為 {@link EventPublisher#getDefault()}） */
+    public void setEventPublisher(EventPublisher events) {
+        this.events = events;
+    }
+
+    /** 查詢單一商品，同樣經過快取 */
+    @Override
+    public Item findItemByCode(String itemCode) {
+        List<Item> items = findItemsByCodes(List.of(itemCode));
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    /** 走訪全部商品直接交給來源處理（整份目錄不放進快取） */
+    @Override
+    public void forEachItem(Date asOfDate, Consumer<Item> action) {
+        delegate.forEachItem(asOfDate, action);
+    }
+
+    /**
+     * 取得已快取的商品，不查詢資料庫、不計入命中統計，也不影響 LRU／LFU 淘汰順序。
+     * 忽略存活時間（過期但屬於同一營業日的資料仍會回傳），供資料庫逾時時的備援使用。
+     *
+     * @param itemCodes 商品代碼清單
+     * @param asOfDate 交易日期
+     * @return 商品代碼 → 商品（只含快取中有資料的代碼）
+     */
+    public synchronized Map<String, Item> peekItems(List<String> itemCodes, Date asOfDate) {
+        long priceDay = toEpochDay(asOfDate);
+        Map<String, Item> result = new HashMap<>();
+        for (String code : itemCodes) {
+            Entry entry = entries.get(code);
+            if (entry != null && entry.item != null && entry.priceDay == priceDay) result.put(code, entry.item);
+        }
+        return result;
+    }
+
+    /** 清除單一商品快取（例如價格異動時） */
+    public synchronized void invalidate(String itemCode) {
+        Entry removed = entries.remove(itemCode);
+        if (removed != null && policy == EvictionPolicy.LFU) unlinkFrequency(itemCode, removed.frequency);
+    }
+
+    /** 清除全部快取 */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        frequencyBuckets.clear();
+        minFrequency = 0;
+    }
+
+    public synchronized int size() { return entries.size(); }
+
+    // ---------------------------------------------------------------
+    // 內部快取操作（呼叫端需持有 this 的鎖）
+    // ---------------------------------------------------------------
+
+    /** 取得未過期且屬於同一營業日的快取項目；否則移除並視為未命中 */
+    private Entry lookup(String code, long now, long priceDay) {
+        Entry entry = entries.get(code);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAt <= now || entry.priceDay != priceDay) {
+            entries.remove(code);
+            if (policy == EvictionPolicy.LFU) unlinkFrequency(code, entry.frequency);
+            expirations.increment();
+            misses.increment();
+            return null;
+        }
+        if (entry.item == null) negativeHits.increment();
+        else hits.increment();
+        if (policy == EvictionPolicy.LFU) touchFrequency(code, entry);
+        else touchRecency(code, entry);
+        return entry;
+    }
+
+    private void store(String code, Item item, long now, long priceDay) {
+        long expiresAt = now + (item == null ? negativeTtlMs : ttlMs);
+        Entry existing = entries.get(code);
+        if (existing != null) {
+            existing.item = item;
+            existing.expiresAt = expiresAt;
+            existing.priceDay = priceDay;
+            if (policy == EvictionPolicy.LRU) touchRecency(code, existing);
+            return;
+        }
+        if (entries.size() >= maxEntries) evictOne();
+        Entry entry = new Entry(item, expiresAt, priceDay);
+        entries.put(code, entry);
+        if (policy == EvictionPolicy.LFU) {
+            frequencyBuckets.computeIfAbsent(1, f -> new LinkedHashSet<>()).add(code);
+            minFrequency = 1;
+        }
+    }
+
+    private void evictOne() {
+        String victim;
+        if (policy == EvictionPolicy.LRU) {
+            Iterator<String> it = entries.keySet().iterator();
+            if (!it.hasNext()) return;
+            victim = it.next();
+        } else {
+            if (frequencyBuckets.isEmpty()) return;
+            if (!frequencyBuckets.containsKey(minFrequency)) {
+                // 過期或手動清除後 minFrequency 可能失效，重新找出最小使用次數
+                minFrequency = Collections.min(frequencyBuckets.keySet());
+            }
+            LinkedHashSet<String> bucket = frequencyBuckets.get(minFrequency);
+            victim = bucket.iterator().next();
+            unlinkFrequency(victim, minFrequency);
+        }
+        entries.remove(victim);
+        evictions.increment();
+    }
+
+    /** LRU：把剛使用的項目移到最後（最新） */
+    private void touchRecency(String code, Entry entry) {
+        entries.remove(code);
+        entries.put(code, entry);
+    }
+
+    private void touchFrequency(String code, Entry entry) {
+        int frequency = entry.frequency;
+        unlinkFrequency(code, frequency);
+        if (frequency == minFrequency && !frequencyBuckets.containsKey(frequency)) minFrequency = frequency + 1;
+        entry.frequency = frequency + 1;
+        frequencyBuckets.computeIfAbsent(entry.frequency, f -> new LinkedHashSet<>()).add(code);
+    }
+
+    private void unlinkFrequency(String code, int frequency) {
+        LinkedHashSet<String> bucket = frequencyBuckets.get(frequency);
+        if (bucket == null) return;
+        bucket.remove(code);
+        if (bucket.isEmpty()) frequencyBuckets.remove(frequency);
+    }
+
+    private static long toEpochDay(Date date) {
+        return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /** 快取項目；item 為 null 代表查無此商品（負向快取） */
+    private static final class Entry {
+        private Item item;
+        private long expiresAt;
+        private long priceDay;
+        private int frequency = 1;
+
+        Entry(Item item, long expiresAt, long priceDay) {
+            this.item = item;
+            this.expiresAt = expiresAt;
+            this.priceDay = priceDay;
+        }
+    }
+
+    /**
+     * 取得快取統計快照。
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), negativeHits.sum(), misses.sum(),
+                evictions.sum(), expirations.sum(), loads.sum(), size());
+    }
+
+    /**
+     * 快取統計快照 (CacheStats)
+     * ------------------------------------------------------------
+     * hits：命中　negativeHits：命中負向快取　misses：未命中
+     * evictions：容量淘汰　expirations：過期移除　loads：資料庫批次查詢次數
+     */
+    public static final class CacheStats {
+        private final long hits;
+        private final long negativeHits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long loads;
+        private final int size;
+
+        CacheStats(long hits, long negativeHits, long misses, long evictions,
+                   long expirations, long loads, int size) {
+            this.hits = hits;
+            this.negativeHits = negativeHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.loads = loads;
+            this.size = size;
+        }
+
+        public long getHits() { return hits; }
+        public long getNegativeHits() { return negativeHits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+        public long getLoads() { return loads; }
+        public int getSize() { return size; }
+
+        /** 命中率（含負向快取命中） */
+        public double getHitRate() {
+            long total = hits + negativeHits + misses;
+            return total == 0 ? 0.0 : (double) (hits + negativeHits) / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CacheStats{hits=%d, negativeHits=%d, misses=%d, evictions=%d, " +
+                            "expirations=%d, loads=%d, size=%d, hitRate=%.2f%%}",
+                    hits, negativeHits, misses, evictions, expirations, loads, size, getHitRate() * 100);
+        }
+    }
+}
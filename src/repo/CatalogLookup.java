@@ -0,0 +1,8 @@
+package repo;
+
+/**
+ * 同時提供商品與活動查詢的離線資料來源（CSV 記憶體資料、二進位快照檔）。
+ * 門市在不連線資料庫時，以同一個物件作為 PromotionService 的兩個資料來源。
+ */
+public interface CatalogLookup extends ItemLookup, ActivityLookup {
+}
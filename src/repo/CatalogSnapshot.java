@@ -0,0 +1,327 @@
+package repo;
+
+import model.Activity;
+import model.ActivityTier;
+import model.Item;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 二進位商品目錄快照 (CatalogSnapshot)
+ * ------------------------------------------------------------
+ * 終端機啟動時以 memory-map 開啟快照檔，直接從對映的檔案回答查詢，
+ * 不需要連線 MySQL，也不需要把整個商品目錄載入 heap：
+ *  1. 商品依代碼排序，以二分搜尋找到固定長度的紀錄
+ *  2. 價格歷史以基本型別存放，依交易時間二分搜尋生效價格
+ *  3. 字串放在共用字串池，只在組成 Item 時才解碼
+ *  4. 開啟時檢查格式版本與 CRC32，避免讀到損毀或寫到一半的檔案
+ * ------------------------------------------------------------
+ * 檔案格式（big-endian）：
+ * <pre>
+ *   Header (64 bytes)
+ *     0  int   MAGIC "PCAT"        4  short VERSION
+ *     8  long  建立時間（epoch 毫秒）
+ *     16 int   商品數   20 int 價格數   24 int 活動數   28 int 字串池大小
+ *     32 int   商品區位移  36 int 價格區位移  40 int 活動區位移  44 int 字串池位移
+ *     48 long  CRC32（Header 之後的所有內容）
+ *   商品 (24 bytes)：代碼, 名稱, 分類代碼, 分類名稱（字串位移）, 第一筆價格, 價格筆數
+ *   價格 (20 bytes)：生效時間 long, unscaled long, scale int（依生效時間遞增）
+ *   活動 (48 bytes)：代碼, 名稱, 適用分類（字串位移）, 起日, 迄日（epoch day）,
+ *                    門檻 unscaled long + scale int, 折扣 unscaled long + scale int,
+ *                    G2..Gn 級距與累送（字串位移，例如 "*6000:700;9000:1000"，版本 2 起）
+ *   字串池：2 bytes 長度 + UTF-8 內容
+ * </pre>
+ * 查詢規則與 ItemRepository／ActivityRepository 的 SQL 相同。
+ * 快照內容不會改變，可由多個執行緒同時查詢。
+ * ------------------------------------------------------------
+ */
+public class CatalogSnapshot implements CatalogLookup {
+
+    static final int MAGIC = 0x50434154;   // "PCAT"
+    static final short VERSION = 2;
+
+    /** 版本 1 沒有級距欄位，其餘格式相同，仍可開啟 */
+    static final short VERSION_G1_ONLY = 1;
+    static final int HEADER_SIZE = 64;
+    static final int ITEM_RECORD = 24;
+    static final int PRICE_RECORD = 20;
+    static final int ACTIVITY_RECORD = 48;
+    static final int NULL_REF = -1;
+    static final int NULL_SCALE = Integer.MIN_VALUE;
+
+    private final ByteBuffer buffer;
+    private final ZoneId zone;
+    private final long createdAt;
+    private final int itemCount;
+    private final int itemsOffset;
+    private final int pricesOffset;
+    private final int poolOffset;
+
+    /** 活動數量很少，開啟時解碼一次 */
+    private final List<Activity> activities;
+    private final int[] activityStartDays;
+    private final int[] activityEndDays;
+
+    /** 分類代碼與名稱重複度高，解碼後共用同一個 String */
+    private final Map<Integer, String> sharedStrings = new ConcurrentHashMap<>();
+
+    private CatalogSnapshot(ByteBuffer buffer, ZoneId zone) throws IOException {
+        this.buffer = buffer;
+        this.zone = zone;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是商品目錄快照檔");
+        }
+        short version = buffer.getShort(4);
+        if (version != VERSION && version != VERSION_G1_ONLY) {
+            throw new IOException("不支援的快照版本: " + version + "（目前版本 " + VERSION + "）");
+        }
+        this.createdAt = buffer.getLong(8);
+        this.itemCount = buffer.getInt(16);
+        int activityCount = buffer.getInt(24);
+        this.itemsOffset = buffer.getInt(32);
+        this.pricesOffset = buffer.getInt(36);
+        int activitiesOffset = buffer.getInt(40);
+        this.poolOffset = buffer.getInt(44);
+        if (poolOffset + buffer.getInt(28) != buffer.capacity()) {
+            throw new IOException("快照檔長度不符（檔案可能不完整）");
+        }
+
+        List<Activity> loaded = new ArrayList<>(activityCount);
+        this.activityStartDays = new int[activityCount];
+        this.activityEndDays = new int[activityCount];
+        for (int i = 0; i < activityCount; i++) {
+            int at = activitiesOffset + i * ACTIVITY_RECORD;
+            activityStartDays[i] = buffer.getInt(at + 12);
+            activityEndDays[i] = buffer.getInt(at + 16);
+            Activity activity = new Activity(
+                    string(buffer.getInt(at)),
+                    string(buffer.getInt(at + 4)),
+                    toSqlDate(activityStartDays[i]),
+                    toSqlDate(activityEndDays[i]),
+                    sharedString(buffer.getInt(at + 8)),
+                    decimal(at + 20),
+                    decimal(at + 32));
+            if (version != VERSION_G1_ONLY) applyTierSpec(activity, string(buffer.getInt(at + 44)));
+            loaded.add(activity);
+        }
+        this.activities = Collections.unmodifiableList(loaded);
+    }
+
+    /**
+     * 開啟快照檔（檢查 CRC32）。
+     *
+     * @param file 快照檔
+     * @return 快照
+     * @throws IOException 檔案不存在、版本不符或內容損毀
+     */
+    public static CatalogSnapshot open(Path file) throws IOException {
+        return open(file, ZoneId.systemDefault(), true);
+    }
+
+    /**
+     * 開啟快照檔。
+     *
+     * @param file 快照檔
+     * @param zone 判斷交易日使用的時區
+     * @param verifyChecksum 是否檢查 CRC32（需讀過整個檔案一次）
+     * @return 快照
+     * @throws IOException 檔案不存在、版本不符或內容損毀
+     */
+    public static CatalogSnapshot open(Path file, ZoneId zone, boolean verifyChecksum) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("快照檔超過 2GB: " + file);
+            // 對映建立後即可關閉 channel，對映在 buffer 被回收前持續有效
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (verifyChecksum && mapped.capacity() >= HEADER_SIZE) {
+            CRC32 crc = new CRC32();
+            crc.update(mapped.slice(HEADER_SIZE, mapped.capacity() - HEADER_SIZE));
+            if (crc.getValue() != mapped.getLong(48)) {
+                throw new IOException("快照檔 CRC32 不符（檔案損毀）: " + file);
+            }
+        }
+        return new CatalogSnapshot(mapped, zone);
+    }
+
+    /** 查詢單一商品（價格取生效時間最新的一筆，與 ItemRepository 相同） */
+    @Override
+    public Item findItemByCode(String itemCode) {
+        int record = findRecord(itemCode);
+        if (record < 0) return null;
+        int count = buffer.getInt(record + 20);
+        int price = count == 0 ? -1 : buffer.getInt(record + 16) + count - 1;
+        return toItem(record, price);
+    }
+
+    /** 批次查詢商品，價格取交易時間當時生效的最新一筆 */
+    @Override
+    public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) {
+        List<Item> result = new ArrayList<>(itemCodes.size());
+        long asOf = asOfDate.getTime();
+        for (String code : new LinkedHashSet<>(itemCodes)) {
+            int record = findRecord(code);
+            if (record < 0) continue;
+            result.add(toItem(record, effectivePrice(record, asOf)));
+        }
+        return result;
+    }
+
+    /** 走訪全部商品（依代碼排序），價格取交易時間當時生效的一筆 */
+    @Override
+    public void forEachItem(Date asOfDate, Consumer<Item> action) {
+        long asOf = asOfDate.getTime();
+        for (int i = 0; i < itemCount; i++) {
+            int record = itemsOffset + i * ITEM_RECORD;
+            action.accept(toItem(record, effectivePrice(record, asOf)));
+        }
+    }
+
+    /** 查詢交易日有效的活動（依匯出順序） */
+    @Override
+    public List<Activity> findValidActivities(Date targetDate) {
+        long day = targetDate instanceof java.sql.Date
+                ? ((java.sql.Date) targetDate).toLocalDate().toEpochDay()
+                : Instant.ofEpochMilli(targetDate.getTime()).atZone(zone).toLocalDate().toEpochDay();
+        List<Activity> result = new ArrayList<>();
+        for (int i = 0; i < activityStartDays.length; i++) {
+            if (day >= activityStartDays[i] && day <= activityEndDays[i]) result.add(activities.get(i));
+        }
+        return result;
+    }
+
+    public long getCreatedAt() { return createdAt; }
+    public int getItemCount() { return itemCount; }
+    public int getActivityCount() { return activities.size(); }
+    public int getSizeBytes() { return buffer.capacity(); }
+
+    // ---------------------------------------------------------------
+    // 對映檔案的讀取
+    // ---------------------------------------------------------------
+
+    /** 二分搜尋商品紀錄，回傳紀錄位移；找不到回傳 -1 */
+    private int findRecord(String itemCode) {
+        if (itemCode == null) return -1;
+        byte[] key = itemCode.getBytes(StandardCharsets.UTF_8);
+        int low = 0, high = itemCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int record = itemsOffset + mid * ITEM_RECORD;
+            int cmp = compareString(buffer.getInt(record), key);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return record;
+        }
+        return -1;
+    }
+
+    /** 生效時間 <= asOf 的最後一筆價格位置；沒有則回傳 -1 */
+    private int effectivePrice(int record, long asOf) {
+        int first = buffer.getInt(record + 16);
+        int low = first, high = first + buffer.getInt(record + 20) - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(pricesOffset + mid * PRICE_RECORD) <= asOf) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private Item toItem(int record, int priceIndex) {
+        BigDecimal unitPrice = priceIndex < 0 ? null : decimal(pricesOffset + priceIndex * PRICE_RECORD + 8);
+        return new Item(
+                string(buffer.getInt(record)),
+                string(buffer.getInt(record + 4)),
+                sharedString(buffer.getInt(record + 8)),
+                sharedString(buffer.getInt(record + 12)),
+                unitPrice);
+    }
+
+    /** 比較字串池中的字串與查詢代碼（無號位元組字典序，與寫入時的排序相同） */
+    private int compareString(int ref, byte[] key) {
+        int at = poolOffset + ref;
+        int length = Short.toUnsignedInt(buffer.getShort(at));
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.toUnsignedInt(buffer.get(at + 2 + i)) - Byte.toUnsignedInt(key[i]);
+            if (cmp != 0) return cmp;
+        }
+        return length - key.length;
+    }
+
+    private String string(int ref) {
+        if (ref == NULL_REF) return null;
+        int at = poolOffset + ref;
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort(at))];
+        buffer.get(at + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String sharedString(int ref) {
+        if (ref == NULL_REF) return null;
+        return sharedStrings.computeIfAbsent(ref, this::string);
+    }
+
+    private BigDecimal decimal(int at) {
+        int scale = buffer.getInt(at + 8);
+        return scale == NULL_SCALE ? null : BigDecimal.valueOf(buffer.getLong(at), scale);
+    }
+
+    /**
+     * 將 G2..Gn 級距與累送設定編成字串："*"（累送）開頭，之後為以分號分隔的 門檻:折扣。
+     *
+     * @return 只有 G1 且不累送時回傳 null
+     */
+    static String tierSpec(Activity activity) {
+        List<ActivityTier> tiers = activity.getAdditionalTiers();
+        if (tiers.isEmpty() && !activity.isRepeatAward()) return null;
+        StringBuilder spec = new StringBuilder(activity.isRepeatAward() ? "*" : "");
+        for (int i = 0; i < tiers.size(); i++) {
+            if (i > 0) spec.append(';');
+            spec.append(tiers.get(i));
+        }
+        return spec.toString();
+    }
+
+    private static void applyTierSpec(Activity activity, String spec) {
+        if (spec == null) return;
+        if (spec.startsWith("*")) {
+            activity.setRepeatAward(true);
+            spec = spec.substring(1);
+        }
+        if (spec.isEmpty()) return;
+        for (String tier : spec.split(";")) {
+            int colon = tier.indexOf(':');
+            activity.addTier(new BigDecimal(tier.substring(0, colon)), new BigDecimal(tier.substring(colon + 1)));
+        }
+    }
+
+    private static java.sql.Date toSqlDate(int epochDay) {
+        if (epochDay == Integer.MIN_VALUE || epochDay == Integer.MAX_VALUE) return null;
+        return java.sql.Date.valueOf(LocalDate.ofEpochDay(epochDay));
+    }
+}
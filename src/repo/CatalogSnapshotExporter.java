@@ -0,0 +1,70 @@
+package repo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+
+/**
+ * 商品目錄快照匯出工作 (CatalogSnapshotExporter)
+ * ------------------------------------------------------------
+ * 由總部（或門市主機）定期執行，產生終端機離線使用的 {@link CatalogSnapshot}：
+ *  - 資料庫：商品主檔、分類名稱、目前及之後生效的價格、目前及之後有效的活動
+ *  - CSV：InMemoryCatalog 的全部資料（測試、展示環境）
+ *
+ * 執行方式：
+ * <pre>
+ *   java repo.CatalogSnapshotExporter data/catalog.snap            # 從資料庫匯出
+ *   java repo.CatalogSnapshotExporter data/catalog.snap data       # 從 CSV 目錄匯出
+ * </pre>
+ * ------------------------------------------------------------
+ */
+public class CatalogSnapshotExporter {
+
+    /**
+     * 從資料庫匯出快照。
+     *
+     * @param file 快照檔
+     * @param asOfDate 匯出時間（之前已被取代的價格、已結束的活動不匯出）
+     * @return 是否成功
+     * @throws IOException 寫入失敗
+     */
+    public static boolean exportFromDatabase(Path file, Date asOfDate) throws IOException {
+        CatalogSnapshotWriter writer = new CatalogSnapshotWriter();
+        if (!new ItemRepository().exportCatalog(writer, asOfDate)) return false;
+        new ActivityRepository().findCurrentAndUpcomingActivities(asOfDate).forEach(writer::addActivity);
+        writer.write(file);
+        return true;
+    }
+
+    /**
+     * 從記憶體資料匯出快照。
+     *
+     * @param catalog CSV 載入的資料
+     * @param file 快照檔
+     * @throws IOException 寫入失敗
+     */
+    public static void exportFromCatalog(InMemoryCatalog catalog, Path file) throws IOException {
+        CatalogSnapshotWriter writer = new CatalogSnapshotWriter();
+        catalog.exportTo(writer);
+        writer.write(file);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("用法: java repo.CatalogSnapshotExporter <快照檔> [CSV 目錄]");
+            System.exit(1);
+        }
+        Path file = Paths.get(args[0]);
+        long start = System.currentTimeMillis();
+        if (args.length > 1) {
+            exportFromCatalog(InMemoryCatalog.load(Paths.get(args[1])), file);
+        } else if (!exportFromDatabase(file, new Date())) {
+            System.exit(2);
+        }
+        CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+        System.out.printf("已匯出 %s：%d 項商品、%d 個活動、%,d bytes（%d ms）%n",
+                file, snapshot.getItemCount(), snapshot.getActivityCount(), snapshot.getSizeBytes(),
+                System.currentTimeMillis() - start);
+    }
+}
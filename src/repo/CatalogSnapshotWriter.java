@@ -0,0 +1,275 @@
+package repo;
+
+import model.Activity;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static repo.CatalogSnapshot.*;
+
+/**
+ * 商品目錄快照寫入器 (CatalogSnapshotWriter)
+ * ------------------------------------------------------------
+ * 收集商品主檔、分類名稱、價格歷史與活動，寫成 {@link CatalogSnapshot} 格式的二進位檔：
+ *  1. 所有字串放在共用字串池，重複的分類名稱只存一次
+ *  2. 商品依代碼（UTF-8 位元組）排序，載入端以二分搜尋查詢
+ *  3. 價格以 (生效時間, unscaled, scale) 的基本型別存放
+ *  4. 先寫入暫存檔再搬移，正在讀取舊快照的終端機不受影響
+ * ------------------------------------------------------------
+ */
+public class CatalogSnapshotWriter {
+
+    private final ZoneId zone;
+    private final Map<String, ItemEntry> items = new HashMap<>();
+    private final List<Activity> activities = new ArrayList<>();
+
+    public CatalogSnapshotWriter() {
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructor
+     * @param zone 活動起訖日期換算為日期使用的時區
+     */
+    public CatalogSnapshotWriter(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * 加入商品主檔（同一代碼重複加入時以後者為準，價格保留）。
+     *
+     * @param itemCode 商品代碼
+     * @param itemName 商品名稱
+     * @param category01 主分類代碼
+     * @param category01Name 主分類名稱
+     */
+    public void addItem(String itemCode, String itemName, String category01, String category01Name) {
+        ItemEntry entry = items.computeIfAbsent(itemCode, ItemEntry::new);
+        entry.itemName = itemName;
+        entry.category01 = category01;
+        entry.category01Name = category01Name;
+        entry.master = true;
+    }
+
+    /**
+     * 加入一筆價格（商品須先以 addItem 加入，否則匯出時略過）。
+     *
+     * @param itemCode 商品代碼
+     * @param beginMillis 生效時間（epoch 毫秒）
+     * @param unitPrice 單價
+     */
+    public void addPrice(String itemCode, long beginMillis, BigDecimal unitPrice) {
+        items.computeIfAbsent(itemCode, ItemEntry::new).prices.add(new PriceEntry(beginMillis, unitPrice));
+    }
+
+    /** 加入一個活動（依加入順序寫出） */
+    public void addActivity(Activity activity) {
+        activities.add(activity);
+    }
+
+    public int getItemCount() { return items.size(); }
+    public int getActivityCount() { return activities.size(); }
+
+    /**
+     * 寫出快照檔。
+     *
+     * @param file 目標檔案（先寫入同目錄的暫存檔再取代）
+     * @throws IOException 寫入失敗，或金額無法以 long 表示
+     */
+    public void write(Path file) throws IOException {
+        StringPool pool = new StringPool();
+        List<ItemEntry> sorted = new ArrayList<>();
+        for (ItemEntry entry : items.values()) {
+            if (!entry.master) continue;
+            entry.codeBytes = entry.itemCode.getBytes(StandardCharsets.UTF_8);
+            sorted.add(entry);
+        }
+        sorted.sort((a, b) -> Arrays.compareUnsigned(a.codeBytes, b.codeBytes));
+
+        int priceCount = 0;
+        for (ItemEntry entry : sorted) {
+            entry.prices.sort(Comparator.comparingLong(p -> p.beginMillis));
+            priceCount += entry.prices.size();
+        }
+
+        // 先登記所有字串，才能計算字串池大小
+        int[][] itemRefs = new int[sorted.size()][];
+        for (int i = 0; i < sorted.size(); i++) {
+            ItemEntry entry = sorted.get(i);
+            itemRefs[i] = new int[] {
+                    pool.add(entry.itemCode), pool.add(entry.itemName),
+                    pool.add(entry.category01), pool.add(entry.category01Name)};
+        }
+        int[][] activityRefs = new int[activities.size()][];
+        for (int i = 0; i < activities.size(); i++) {
+            Activity activity = activities.get(i);
+            activityRefs[i] = new int[] {
+                    pool.add(activity.getActivityCode()), pool.add(activity.getActivityName()),
+                    pool.add(activity.getItemDiscountGroup()), pool.add(CatalogSnapshot.tierSpec(activity))};
+        }
+
+        int itemsOffset = HEADER_SIZE;
+        int pricesOffset = itemsOffset + sorted.size() * ITEM_RECORD;
+        int activitiesOffset = pricesOffset + priceCount * PRICE_RECORD;
+        int poolOffset = activitiesOffset + activities.size() * ACTIVITY_RECORD;
+        long total = (long) poolOffset + pool.size();
+        if (total > Integer.MAX_VALUE) throw new IOException("快照超過 2GB，請分割商品目錄");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) total);
+
+        int priceIndex = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            ItemEntry entry = sorted.get(i);
+            int at = itemsOffset + i * ITEM_RECORD;
+            buffer.putInt(at, itemRefs[i][0]);
+            buffer.putInt(at + 4, itemRefs[i][1]);
+            buffer.putInt(at + 8, itemRefs[i][2]);
+            buffer.putInt(at + 12, itemRefs[i][3]);
+            buffer.putInt(at + 16, priceIndex);
+            buffer.putInt(at + 20, entry.prices.size());
+            for (PriceEntry price : entry.prices) {
+                int p = pricesOffset + priceIndex * PRICE_RECORD;
+                buffer.putLong(p, price.beginMillis);
+                putDecimal(buffer, p + 8, price.unitPrice, entry.itemCode);
+                priceIndex++;
+            }
+        }
+
+        for (int i = 0; i < activities.size(); i++) {
+            Activity activity = activities.get(i);
+            int at = activitiesOffset + i * ACTIVITY_RECORD;
+            buffer.putInt(at, activityRefs[i][0]);
+            buffer.putInt(at + 4, activityRefs[i][1]);
+            buffer.putInt(at + 8, activityRefs[i][2]);
+            buffer.putInt(at + 12, epochDay(activity.getStartActivityDate(), Integer.MIN_VALUE));
+            buffer.putInt(at + 16, epochDay(activity.getEndActivityDate(), Integer.MAX_VALUE));
+            putDecimal(buffer, at + 20, activity.getMeetCriteriaAmtG1(), activity.getActivityCode());
+            putDecimal(buffer, at + 32, activity.getAwardAmtG1(), activity.getActivityCode());
+            buffer.putInt(at + 44, activityRefs[i][3]);
+        }
+
+        pool.writeTo(buffer, poolOffset);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, (int) total - HEADER_SIZE);
+
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, VERSION);
+        buffer.putLong(8, System.currentTimeMillis());
+        buffer.putInt(16, sorted.size());
+        buffer.putInt(20, priceCount);
+        buffer.putInt(24, activities.size());
+        buffer.putInt(28, pool.size());
+        buffer.putInt(32, itemsOffset);
+        buffer.putInt(36, pricesOffset);
+        buffer.putInt(40, activitiesOffset);
+        buffer.putInt(44, poolOffset);
+        buffer.putLong(48, crc.getValue());
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                buffer.clear();
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** 金額以 unscaled long + scale 存放；null 以 NULL_SCALE 表示 */
+    private static void putDecimal(ByteBuffer buffer, int at, BigDecimal value, String owner) throws IOException {
+        if (value == null) {
+            buffer.putLong(at, 0L);
+            buffer.putInt(at + 8, NULL_SCALE);
+            return;
+        }
+        try {
+            buffer.putLong(at, value.unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IOException("金額超出範圍: " + owner + " " + value, e);
+        }
+        buffer.putInt(at + 8, value.scale());
+    }
+
+    private int epochDay(java.util.Date date, int missing) {
+        if (date == null) return missing;
+        if (date instanceof java.sql.Date) return (int) ((java.sql.Date) date).toLocalDate().toEpochDay();
+        return (int) Instant.ofEpochMilli(date.getTime()).atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    /** 共用字串池：每個字串存一次，格式為 2 bytes 長度 + UTF-8 內容 */
+    private static final class StringPool {
+        private final Map<String, Integer> offsets = new LinkedHashMap<>();
+        private final List<byte[]> contents = new ArrayList<>();
+        private int size;
+
+        int add(String value) throws IOException {
+            if (value == null) return NULL_REF;
+            Integer offset = offsets.get(value);
+            if (offset != null) return offset;
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) throw new IOException("字串過長: " + value.substring(0, 32));
+            offsets.put(value, size);
+            contents.add(bytes);
+            int start = size;
+            size += 2 + bytes.length;
+            return start;
+        }
+
+        int size() { return size; }
+
+        void writeTo(ByteBuffer buffer, int start) {
+            int at = start;
+            for (byte[] bytes : contents) {
+                buffer.putShort(at, (short) bytes.length);
+                buffer.put(at + 2, bytes);
+                at += 2 + bytes.length;
+            }
+        }
+    }
+
+    private static final class ItemEntry {
+        private final String itemCode;
+        private String itemName;
+        private String category01;
+        private String category01Name;
+        private boolean master;
+        private final List<PriceEntry> prices = new ArrayList<>();
+        private byte[] codeBytes;
+
+        ItemEntry(String itemCode) {
+            this.itemCode = itemCode;
+        }
+    }
+
+    private static final class PriceEntry {
+        private final long beginMillis;
+        private final BigDecimal unitPrice;
+
+        PriceEntry(long beginMillis, BigDecimal unitPrice) {
+            this.beginMillis = beginMillis;
+            this.unitPrice = unitPrice;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package repo;
+
+import model.Activity;
+import model.Item;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 常駐記憶體的商品與活動資料 (InMemoryCatalog)
+ * ------------------------------------------------------------
+ * 從 CSV 檔載入與資料庫相同結構的資料，查詢時完全不連線 MySQL：
+ *  - im_item.csv：item_code, item_c_name, category01
+ *  - im_item_category.csv：category_code, category_type, category_name
+ *  - im_item_price.csv：item_code, begin_date, unit_price
+ *  - crm_promo_rebate_h.csv：activity_code, activity_name, start_activity_date,
+ *    end_activity_date, item_discount_group, meet_criteria_amt_g1, award_amt_g1
+ *    （可再加上 meet_criteria_amt_g2, award_amt_g2 ... 級距欄位與 repeat_award_flag 累送欄位）
+ *
+ * 第一列為欄位名稱（順序不限）；含逗號的欄位以雙引號包住（例如 "01,02"）。
+ * 日期可為 yyyy-MM-dd 或 yyyy-MM-dd HH:mm:ss。
+ *
+ * 查詢規則與 ItemRepository／ActivityRepository 的 SQL 相同：
+ *  1. 批次查詢的價格取 begin_date <= 交易時間的最新一筆
+ *  2. 單一商品查詢取 begin_date 最新的一筆
+ *  3. 活動取交易日介於起訖日期（只比較日期）之間者（以 ActivityCalendar 分段索引查詢）
+ *
+ * 載入後資料不再改變，可由多個執行緒同時查詢。
+ * 用途：效能量測、負載測試，以及總部資料庫連線壅塞時門市以本地資料繼續結帳。
+ * ------------------------------------------------------------
+ */
+public class InMemoryCatalog implements CatalogLookup {
+
+    public static final String ITEM_FILE = "im_item.csv";
+    public static final String CATEGORY_FILE = "im_item_category.csv";
+    public static final String PRICE_FILE = "im_item_price.csv";
+    public static final String ACTIVITY_FILE = "crm_promo_rebate_h.csv";
+
+    private static final String CATEGORY_TYPE = "category01";
+
+    private final ZoneId zone;
+
+    /** 商品代碼 → 商品主檔（不含價格） */
+    private final Map<String, ItemRow> items;
+
+    /** 商品代碼 → (生效時間 → 單價) */
+    private final Map<String, NavigableMap<LocalDateTime, BigDecimal>> prices;
+
+    /** 活動（依檔案順序） */
+    private final List<Activity> activities;
+
+    /** 活動的日期索引 */
+    private final ActivityCalendar calendar;
+
+    /**
+     * Constructor
+     * @param items 商品主檔
+     * @param prices 價格歷史
+     * @param activities 活動
+     * @param zone 判斷交易日使用的時區
+     */
+    private InMemoryCatalog(Map<String, ItemRow> items, Map<String, NavigableMap<LocalDateTime, BigDecimal>> prices,
+                            List<Activity> activities, ZoneId zone) {
+        this.items = items;
+        this.prices = prices;
+        this.activities = activities;
+        this.zone = zone;
+        this.calendar = ActivityCalendar.of(activities, zone);
+    }
+
+    /**
+     * 從目錄載入四個 CSV 檔。
+     *
+     * @param directory 資料目錄
+     * @return 記憶體資料
+     * @throws IOException 檔案不存在或格式錯誤
+     */
+    public static InMemoryCatalog load(Path directory) throws IOException {
+        return load(directory, ZoneId.systemDefault());
+    }
+
+    /**
+     * 從目錄載入四個 CSV 檔。
+     *
+     * @param directory 資料目錄
+     * @param zone 判斷交易日使用的時區
+     * @return 記憶體資料
+     * @throws IOException 檔案不存在或格式錯誤
+     */
+    public static InMemoryCatalog load(Path directory, ZoneId zone) throws IOException {
+        Builder builder = new Builder();
+        for (Map<String, String> row : readCsv(directory.resolve(CATEGORY_FILE))) {
+            if (CATEGORY_TYPE.equals(row.get("category_type"))) {
+                builder.addCategory(row.get("category_code"), row.get("category_name"));
+            }
+        }
+        for (Map<String, String> row : readCsv(directory.resolve(ITEM_FILE))) {
+            builder.addItem(row.get("item_code"), row.get("item_c_name"), row.get("category01"));
+        }
+        for (Map<String, String> row : readCsv(directory.resolve(PRICE_FILE))) {
+            builder.addPrice(row.get("item_code"), parseDateTime(row.get("begin_date")), decimal(row.get("unit_price")));
+        }
+        List<Map<String, String>> activityRows = readCsv(directory.resolve(ACTIVITY_FILE));
+        ActivityRepository.ActivityColumns columns = activityRows.isEmpty()
+                ? ActivityRepository.ActivityColumns.G1_ONLY
+                : ActivityRepository.ActivityColumns.of(activityRows.get(0).keySet());
+        for (Map<String, String> row : activityRows) {
+            Activity activity = new Activity(
+                    row.get("activity_code"),
+                    row.get("activity_name"),
+                    java.sql.Date.valueOf(parseDateTime(row.get("start_activity_date")).toLocalDate()),
+                    java.sql.Date.valueOf(parseDateTime(row.get("end_activity_date")).toLocalDate()),
+                    row.get("item_discount_group"),
+                    decimal(row.get("meet_criteria_amt_g1")),
+                    decimal(row.get("award_amt_g1"))
+            );
+            for (int g = 2; g <= columns.getTierCount(); g++) {
+                activity.addTier(decimal(row.get(ActivityRepository.ActivityColumns.meetColumn(g))),
+                        decimal(row.get(ActivityRepository.ActivityColumns.awardColumn(g))));
+            }
+            if (columns.hasRepeatColumn()) {
+                activity.setRepeatAward(ActivityRepository.ActivityColumns.isRepeat(
+                        row.get(ActivityRepository.ActivityColumns.REPEAT_COLUMN)));
+            }
+            builder.addActivity(activity);
+        }
+        return builder.build(zone);
+    }
+
+    /**
+     * 逐筆加入資料建立 InMemoryCatalog（CSV 載入與 SyntheticCatalogGenerator 共用）。
+     * 分類需在使用它的商品之前加入。
+     */
+    static final class Builder {
+        private final Map<String, String> categoryNames = new HashMap<>();
+        private final Map<String, ItemRow> items = new LinkedHashMap<>();
+        private final Map<String, NavigableMap<LocalDateTime, BigDecimal>> prices = new HashMap<>();
+        private final List<Activity> activities = new ArrayList<>();
+
+        void addCategory(String categoryCode, String categoryName) {
+            categoryNames.put(categoryCode, categoryName);
+        }
+
+        void addItem(String itemCode, String itemName, String category01) {
+            items.put(itemCode, new ItemRow(itemCode, itemName, category01, categoryNames.get(category01)));
+        }
+
+        void addPrice(String itemCode, LocalDateTime beginDate, BigDecimal unitPrice) {
+            prices.computeIfAbsent(itemCode, code -> new TreeMap<>()).put(beginDate, unitPrice);
+        }
+
+        void addActivity(Activity activity) {
+            activities.add(activity);
+        }
+
+        InMemoryCatalog build(ZoneId zone) {
+            return new InMemoryCatalog(items, prices, Collections.unmodifiableList(activities), zone);
+        }
+    }
+
+    /** 查詢單一商品（價格取 begin_date 最新的一筆，與 ItemRepository 相同） */
+    @Override
+    public Item findItemByCode(String itemCode) {
+        ItemRow row = items.get(itemCode);
+        if (row == null) return null;
+        NavigableMap<LocalDateTime, BigDecimal> history = prices.get(itemCode);
+        return row.toItem(history == null || history.isEmpty() ? null : history.lastEntry().getValue());
+    }
+
+    /** 批次查詢商品，價格取交易時間當時生效的最新一筆 */
+    @Override
+    public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) {
+        List<Item> result = new ArrayList<>(itemCodes.size());
+        LocalDateTime asOf = LocalDateTime.ofInstant(Instant.ofEpochMilli(asOfDate.getTime()), zone);
+        for (String code : new LinkedHashSet<>(itemCodes)) {
+            ItemRow row = items.get(code);
+            if (row == null) continue;
+            NavigableMap<LocalDateTime, BigDecimal> history = prices.get(code);
+            Map.Entry<LocalDateTime, BigDecimal> price = history == null ? null : history.floorEntry(asOf);
+            result.add(row.toItem(price == null ? null : price.getValue()));
+        }
+        return result;
+    }
+
+    /** 走訪全部商品（依檔案順序），價格取交易時間當時生效的一筆 */
+    @Override
+    public void forEachItem(Date asOfDate, Consumer<Item> action) {
+        LocalDateTime asOf = LocalDateTime.ofInstant(Instant.ofEpochMilli(asOfDate.getTime()), zone);
+        for (ItemRow row : items.values()) {
+            NavigableMap<LocalDateTime, BigDecimal> history = prices.get(row.itemCode);
+            Map.Entry<LocalDateTime, BigDecimal> price = history == null ? null : history.floorEntry(asOf);
+            action.accept(row.toItem(price == null ? null : price.getValue()));
+        }
+    }
+
+    /** 查詢交易日有效的活動（依檔案順序，不可修改） */
+    @Override
+    public List<Activity> findValidActivities(Date targetDate) {
+        return calendar.findValidActivities(targetDate);
+    }
+
+    /**
+     * 將全部資料匯出到快照寫入器（例如由 CSV 產生離線快照）。
+     *
+     * @param writer 快照寫入器
+     */
+    void exportTo(CatalogSnapshotWriter writer) {
+        for (ItemRow row : items.values()) {
+            writer.addItem(row.itemCode, row.itemName, row.category01, row.category01Name);
+            NavigableMap<LocalDateTime, BigDecimal> history = prices.get(row.itemCode);
+            if (history == null) continue;
+            for (Map.Entry<LocalDateTime, BigDecimal> price : history.entrySet()) {
+                writer.addPrice(row.itemCode, price.getKey().atZone(zone).toInstant().toEpochMilli(), price.getValue());
+            }
+        }
+        for (Activity activity : activities) {
+            writer.addActivity(activity);
+        }
+    }
+
+    /** 全部活動（依檔案順序，不可修改） */
+    public List<Activity> getActivities() { return activities; }
+
+    public int getItemCount() { return items.size(); }
+    public int getActivityCount() { return activities.size(); }
+
+    // ---------------------------------------------------------------
+    // CSV 解析
+    // ---------------------------------------------------------------
+
+    /** 讀取 CSV，每列以「欄位名稱 → 值」表示；空字串視為 null */
+    private static List<Map<String, String>> readCsv(Path file) throws IOException {
+        List<Map<String, String>> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String headerLine = reader.readLine();
+            if (headerLine == null) return rows;
+            if (headerLine.startsWith("\uFEFF")) headerLine = headerLine.substring(1);   // Excel 匯出的 BOM
+            List<String> header = splitCsvLine(headerLine);
+
+            String line;
+            int lineNo = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+                List<String> values = splitCsvLine(line);
+                if (values.size() != header.size()) {
+                    throw new IOException(file.getFileName() + " 第 " + lineNo + " 列欄位數不符：" + line);
+                }
+                Map<String, String> row = new HashMap<>();
+                for (int i = 0; i < header.size(); i++) {
+                    String value = values.get(i).trim();
+                    row.put(header.get(i).trim(), value.isEmpty() ? null : value);
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /** 切割一列 CSV（支援雙引號包住的欄位與 "" 跳脫） */
+    private static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static LocalDateTime parseDateTime(String value) {
+        if (value.length() <= 10) return LocalDate.parse(value).atStartOfDay();
+        return LocalDateTime.parse(value.replace(' ', 'T'));
+    }
+
+    private static BigDecimal decimal(String value) {
+        return value == null ? null : new BigDecimal(value);
+    }
+
+    /** 商品主檔（價格依查詢時間決定） */
+    private static final class ItemRow {
+        private final String itemCode;
+        private final String itemName;
+        private final String category01;
+        private final String category01Name;
+
+        ItemRow(String itemCode, String itemName, String category01, String category01Name) {
+            this.itemCode = itemCode;
+            this.itemName = itemName;
+            this.category01 = category01;
+            this.category01Name = category01Name;
+        }
+
+        Item toItem(BigDecimal unitPrice) {
+            return new Item(itemCode, itemName, category01, category01Name, unitPrice);
+        }
+    }
+}
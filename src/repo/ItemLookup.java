@@ -0,0 +1,65 @@
+package repo;
+
+import model.Item;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 商品查詢介面 (ItemLookup)
+ * ------------------------------------------------------------
+ * PromotionService 只依賴此介面，不直接依賴資料庫：
+ *  - ItemRepository：以 JDBC 查詢 MySQL
+ *  - InMemoryCatalog：常駐記憶體的商品資料（CSV 載入）
+ *  - CachedItemRepository：包在任一實作外的記憶體快取
+ *  - OffHeapItemStore：整份商品目錄放在堆外記憶體的索引
+ * ------------------------------------------------------------
+ */
+public interface ItemLookup {
+
+    /**
+     * 查詢單一商品（價格取最新一筆）。
+     *
+     * @param itemCode 商品代碼
+     * @return 商品；查無資料時回傳 null
+     */
+    Item findItemByCode(String itemCode);
+
+    /**
+     * 批次查詢商品，每個商品只回傳一筆交易日當時生效的價格。
+     * 回傳順序依輸入代碼順序（重複代碼只回傳一次），查無資料的代碼不回傳。
+     *
+     * @param itemCodes 商品代碼清單
+     * @param asOfDate 交易日期
+     * @return 商品清單
+     */
+    List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate);
+
+    /**
+     * 批次查詢商品；與 {@link #findItemsByCodes(List, Date)} 不同，查詢失敗時丟出例外，
+     * 不回傳空的或不完整的清單（快取據此判斷未回傳的代碼是否真的查無資料）。
+     * 不會失敗的實作沿用 findItemsByCodes。
+     *
+     * @param itemCodes 商品代碼清單
+     * @param asOfDate 交易日期
+     * @return 商品清單
+     * @throws LookupFailedException 查詢失敗時
+     */
+    default List<Item> loadItemsByCodes(List<String> itemCodes, Date asOfDate) {
+        return findItemsByCodes(itemCodes, asOfDate);
+    }
+
+    /**
+     * 逐一走訪全部商品（價格取交易日當時生效的一筆），用於建立整份商品目錄的索引。
+     *
+     * @param asOfDate 交易日期
+     * @param action 對每個商品執行的動作
+     */
+    void forEachItem(Date asOfDate, Consumer<Item> action);
+
+    /** 批次查詢商品，價格取今天生效的最新一筆 */
+    default List<Item> findItemsByCodes(List<String> itemCodes) {
+        return findItemsByCodes(itemCodes, new Date());
+    }
+}
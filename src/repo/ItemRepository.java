@@ -2,11 +2,18 @@
 package repo;
 
 import config.DatabaseConfig;
+import event.EventPublisher;
+import event.RepositoryError;
 import model.Item;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * ItemRepository 負責與資料庫互動，提供商品資料查詢功能。
@@ -19,7 +26,7 @@ import java.util.List;
  *  - im_item_category：商品分類表
  *  - im_item_price：商品價格表
  */
-public class ItemRepository {
+public class ItemRepository implements ItemLookup {
     
     /**
      * 查詢單一商品的詳細資料（包含分類名稱與最新價格）。
@@ -29,6 +36,7 @@ public class ItemRepository {
      * @param itemCode 商品代碼
      * @return 對應的 Item 物件；若查無資料則回傳 null
      */
+    @Override
     public Item findItemByCode(String itemCode) {
     	
     	// SQL 查詢：取得商品資訊、分類名稱與最新價格
@@ -42,8 +50,8 @@ public class ItemRepository {
         
         
         try (
-        	// 建立資料庫連線
-        	Connection conn = DriverManager.getConnection(DatabaseConfig.URL, DatabaseConfig.USER, DatabaseConfig.PASSWORD);
+        	// 從連線池借用連線（close 時歸還）
+        	Connection conn = DatabaseConfig.getConnection();
         	// 建立預處理查詢物件	
             PreparedStatement pstmt = conn.prepareStatement(sql)
         ) {
@@ -65,80 +73,241 @@ public class ItemRepository {
                 );
             }
         } catch (SQLException e) {
-            System.err.println("查询商品信息失败: " + e.getMessage());
-            e.printStackTrace();
+            EventPublisher.getDefault().publish(new RepositoryError("查询商品信息失败", e));
         }
         return null;
     }
     
     /**
-     * 批次查詢多筆商品資料（依商品代碼清單）。
-     *
-     * 動態組合 SQL 的 IN 條件，並使用 FIELD() 函數保持輸入順序。
+     * 批次查詢多筆商品資料（依商品代碼清單），價格取今天生效的最新一筆。
      *
      * @param itemCodes 商品代碼清單
      * @return 查詢結果的 Item 物件列表
+     * @see #findItemsByCodes(List, java.util.Date)
      */
+    @Override
     public List<Item> findItemsByCodes(List<String> itemCodes) {
+        return findItemsByCodes(itemCodes, new java.util.Date());
+    }
+
+    /**
+     * IN 條件的固定大小：每種大小的 SQL 字串固定不變，
+     * 搭配連線參數 cachePrepStmts／useServerPrepStmts，伺服器端只需解析一次。
+     */
+    private static final int[] IN_BUCKETS = {1, 4, 16, 64, 256};
+
+    /** 單一 SQL 的 IN 條件最大代碼數；呼叫端分段查詢時使用其倍數，分段後不會再產生補位 */
+    public static final int MAX_IN_SIZE = IN_BUCKETS[IN_BUCKETS.length - 1];
+
+    /** 各大小對應的 SQL（類別載入時建立） */
+    private static final String[] IN_BUCKET_SQL = new String[IN_BUCKETS.length];
+
+    static {
+        for (int b = 0; b < IN_BUCKETS.length; b++) {
+            StringBuilder sql = new StringBuilder(
+                "SELECT i.item_code, i.item_c_name, i.category01, " +
+                "c.category_name as category01_name, ip.unit_price " +
+                "FROM im_item i " +
+                "LEFT JOIN im_item_category c ON i.category01 = c.category_code AND c.category_type = 'category01' " +
+                "LEFT JOIN im_item_price ip ON i.item_code = ip.item_code " +
+                "AND ip.begin_date = (SELECT MAX(p2.begin_date) FROM im_item_price p2 " +   // 只取交易日當時生效的最新價格
+                "WHERE p2.item_code = i.item_code AND p2.begin_date <= ?) " +
+                "WHERE i.item_code IN (");
+            for (int i = 0; i < IN_BUCKETS[b]; i++) {
+                sql.append(i == 0 ? "?" : ",?");
+            }
+            IN_BUCKET_SQL[b] = sql.append(")").toString();
+        }
+    }
+
+    /**
+     * 批次查詢多筆商品資料，每個商品只回傳一筆「交易日當時生效」的價格。
+     *
+     * IN 條件只使用固定的幾種大小（1、4、16、64、256），不足的位置以重複的代碼補滿，
+     * 同一種大小的 SQL 永遠相同，prepared statement 快取才能命中；
+     * 超過 256 筆時分段查詢，大型訂單的單一 SQL 也不會超過封包上限。
+     * 不再使用 ORDER BY FIELD()，查詢結果在程式端依輸入順序重新排列。
+     * 價格表以相關子查詢限制為 begin_date <= 交易日的最大 begin_date，
+     * 避免有 N 筆歷史價格的商品被 JOIN 成 N 列。
+     *
+     * 建議索引（讓子查詢只需掃描索引即可取得最新價格）：
+     * <pre>
+     *   CREATE INDEX idx_item_price_code_begin ON im_item_price (item_code, begin_date, unit_price);
+     * </pre>
+     *
+     * @param itemCodes 商品代碼清單
+     * @param asOfDate 交易日期，只採用此時間之前生效的價格
+     * @return 查詢結果的 Item 物件列表（每個商品一筆，依輸入順序）；查詢失敗時回傳空集合
+     */
+    @Override
+    public List<Item> findItemsByCodes(List<String> itemCodes, java.util.Date asOfDate) {
+        try {
+            return loadItemsByCodes(itemCodes, asOfDate);
+        } catch (LookupFailedException e) {
+            EventPublisher.getDefault().publish(new RepositoryError(e.getMessage(), e.getCause()));
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 同 {@link #findItemsByCodes(List, java.util.Date)}，但查詢失敗時丟出 LookupFailedException，
+     * 不回傳部分結果（快取據此不把未回傳的代碼記為查無商品）。
+     */
+    @Override
+    public List<Item> loadItemsByCodes(List<String> itemCodes, java.util.Date asOfDate) {
         List<Item> items = new ArrayList<>();
         if (itemCodes.isEmpty()) return items;
-        
-        //SQL 查詢語句
-        StringBuilder sql = new StringBuilder(
-            "SELECT i.item_code, i.item_c_name, i.category01, " +
-            "c.category_name as category01_name, ip.unit_price " +
-            "FROM im_item i " +
-            "LEFT JOIN im_item_category c ON i.category01 = c.category_code AND c.category_type = 'category01' " +
-            "LEFT JOIN im_item_price ip ON i.item_code = ip.item_code " +
-            "WHERE i.item_code IN ("
-        );
-        /** 
-         * WHERE i.item_code IN (?, ?, ?) 
-         * ORDER BY FIELD(i.item_code, ?, ?, ?) 
-         * */
-	    // 根據 itemCodes 清單的長度，動態加入對應數量的「?」佔位符
-	    // 例如傳入 3 個商品代碼 → 生成 "(?, ?, ?)"
-        for (int i = 0; i < itemCodes.size(); i++) {
-            sql.append("?");
-            if (i < itemCodes.size() - 1) sql.append(",");
+
+        List<String> codes = new ArrayList<>(new LinkedHashSet<>(itemCodes));
+        Map<String, Item> found = new HashMap<>(codes.size() * 2);
+        Timestamp asOf = new Timestamp(asOfDate.getTime());
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            int from = 0;
+            for (int bucket : planBuckets(codes.size())) {
+                int to = Math.min(from + bucket, codes.size());
+                try (PreparedStatement pstmt = conn.prepareStatement(IN_BUCKET_SQL[bucketIndex(bucket)])) {
+                    // 設定價格生效日參數
+                    pstmt.setTimestamp(1, asOf);
+                    // 設定 IN 條件參數，不足的位置重複最後一個代碼
+                    for (int i = 0; i < bucket; i++) {
+                        pstmt.setString(i + 2, codes.get(Math.min(from + i, to - 1)));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            Item item = new Item(
+                                rs.getString("item_code"),
+                                rs.getString("item_c_name"),
+                                rs.getString("category01"),
+                                rs.getString("category01_name"),
+                                rs.getBigDecimal("unit_price")
+                            );
+                            found.put(item.getItemCode(), item);
+                        }
+                    }
+                }
+                from = to;
+            }
+        } catch (SQLException e) {
+            throw new LookupFailedException("批量查询商品信息失败", e);
         }
-        sql.append(") ORDER BY FIELD(i.item_code, ");  //補排序
-        
-        // FIELD() 確保查詢結果順序與輸入順序一致
-        for (int i = 0; i < itemCodes.size(); i++) {
-            sql.append("?");
-            if (i < itemCodes.size() - 1) sql.append(",");
+
+        // 依輸入順序重新排列（取代 ORDER BY FIELD）
+        for (String code : codes) {
+            Item item = found.get(code);
+            if (item != null) items.add(item);
         }
-        sql.append(")");
-        
-        
-        try (Connection conn = DriverManager.getConnection(DatabaseConfig.URL, DatabaseConfig.USER, DatabaseConfig.PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
-            
-        	// 設定 IN 條件參數
-            for (int i = 0; i < itemCodes.size(); i++) {
-                pstmt.setString(i + 1, itemCodes.get(i));
+        return items;
+    }
+
+    /**
+     * 計算查詢 count 個代碼使用的 IN 條件大小：先以最大的 256 分段，
+     * 剩下的代碼使用能容納的最小大小（例如 300 筆 → 256 + 64）。
+     *
+     * @param count 不重複的代碼數
+     * @return 每次查詢的 IN 條件大小
+     */
+    public static int[] planBuckets(int count) {
+        int largest = IN_BUCKETS[IN_BUCKETS.length - 1];
+        int full = count / largest;
+        int remainder = count % largest;
+        int[] plan = new int[full + (remainder > 0 ? 1 : 0)];
+        Arrays.fill(plan, 0, full, largest);
+        if (remainder > 0) {
+            for (int bucket : IN_BUCKETS) {
+                if (bucket >= remainder) {
+                    plan[full] = bucket;
+                    break;
+                }
             }
-            // 設定 FIELD() 函數參數以保持順序
-            for (int i = 0; i < itemCodes.size(); i++) {
-                pstmt.setString(i + 1 + itemCodes.size(), itemCodes.get(i));
+        }
+        return plan;
+    }
+
+    private static int bucketIndex(int bucket) {
+        return Arrays.binarySearch(IN_BUCKETS, bucket);
+    }
+
+    /**
+     * 逐一走訪全部商品，價格取交易日當時生效的一筆（用於建立整份商品目錄的索引）。
+     * 以串流方式讀取（MySQL fetch size = Integer.MIN_VALUE），不會整批載入記憶體。
+     *
+     * @param asOfDate 交易日期
+     * @param action 對每個商品執行的動作
+     */
+    @Override
+    public void forEachItem(java.util.Date asOfDate, Consumer<Item> action) {
+        String sql = "SELECT i.item_code, i.item_c_name, i.category01, " +
+                    "c.category_name as category01_name, ip.unit_price " +
+                    "FROM im_item i " +
+                    "LEFT JOIN im_item_category c ON i.category01 = c.category_code AND c.category_type = 'category01' " +
+                    "LEFT JOIN im_item_price ip ON i.item_code = ip.item_code " +
+                    "AND ip.begin_date = (SELECT MAX(p2.begin_date) FROM im_item_price p2 " +
+                    "WHERE p2.item_code = i.item_code AND p2.begin_date <= ?)";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setTimestamp(1, new Timestamp(asOfDate.getTime()));
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(new Item(
+                        rs.getString("item_code"),
+                        rs.getString("item_c_name"),
+                        rs.getString("category01"),
+                        rs.getString("category01_name"),
+                        rs.getBigDecimal("unit_price")
+                    ));
+                }
             }
-            // 執行查詢
-            ResultSet rs = pstmt.executeQuery();
-            // 將每筆資料封裝成 Item 物件並加入清單
-            while (rs.next()) {
-                items.add(new Item(
-                    rs.getString("item_code"),
-                    rs.getString("item_c_name"),
-                    rs.getString("category01"),
-                    rs.getString("category01_name"),
-                    rs.getBigDecimal("unit_price")
-                ));
+        } catch (SQLException e) {
+            EventPublisher.getDefault().publish(new RepositoryError("查询全部商品失败", e));
+        }
+    }
+
+    /**
+     * 將商品主檔與價格匯出到快照寫入器（離線快照使用）。
+     * 價格只匯出「目前生效」與「之後才生效」的紀錄，已被取代的歷史價格不匯出。
+     * 查詢以串流方式讀取（MySQL fetch size = Integer.MIN_VALUE），大量商品也不會整批載入記憶體。
+     *
+     * @param writer 快照寫入器
+     * @param asOfDate 匯出時間
+     * @return 是否匯出成功
+     */
+    public boolean exportCatalog(CatalogSnapshotWriter writer, java.util.Date asOfDate) {
+        String itemSql = "SELECT i.item_code, i.item_c_name, i.category01, c.category_name as category01_name " +
+                    "FROM im_item i " +
+                    "LEFT JOIN im_item_category c ON i.category01 = c.category_code AND c.category_type = 'category01'";
+        String priceSql = "SELECT ip.item_code, ip.begin_date, ip.unit_price FROM im_item_price ip " +
+                    "WHERE ip.begin_date > ? OR ip.begin_date = (SELECT MAX(p2.begin_date) FROM im_item_price p2 " +
+                    "WHERE p2.item_code = ip.item_code AND p2.begin_date <= ?)";
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(itemSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                pstmt.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        writer.addItem(rs.getString("item_code"), rs.getString("item_c_name"),
+                                rs.getString("category01"), rs.getString("category01_name"));
+                    }
+                }
             }
+            try (PreparedStatement pstmt = conn.prepareStatement(priceSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                Timestamp asOf = new Timestamp(asOfDate.getTime());
+                pstmt.setTimestamp(1, asOf);
+                pstmt.setTimestamp(2, asOf);
+                pstmt.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        writer.addPrice(rs.getString("item_code"), rs.getTimestamp("begin_date").getTime(),
+                                rs.getBigDecimal("unit_price"));
+                    }
+                }
+            }
+            return true;
         } catch (SQLException e) {
-            System.err.println("批量查询商品信息失败: " + e.getMessage());
-            e.printStackTrace();
+            EventPublisher.getDefault().publish(new RepositoryError("匯出商品目錄失败", e));
+            return false;
         }
-        return items;
     }
-}
\ No newline at end of file
+}
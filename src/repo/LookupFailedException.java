@@ -0,0 +1,20 @@
+package repo;
+
+/**
+ * 資料來源查詢失敗（例如資料庫連線逾時、SQL 錯誤）。
+ * 由 {@link ActivityLookup#loadValidActivities}、{@link ItemLookup#loadItemsByCodes} 丟出，
+ * 讓快取分辨「查無資料」與「查詢失敗」：失敗的結果不放入快取，下次查詢重新讀取。
+ */
+public class LookupFailedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor
+     * @param message 錯誤說明（與 RepositoryError 的訊息相同）
+     * @param cause 原本的例外
+     */
+    public LookupFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
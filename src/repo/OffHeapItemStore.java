@@ -0,0 +1,361 @@
+package repo;
+
+import model.Item;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 堆外商品索引 (OffHeapItemStore)
+ * ------------------------------------------------------------
+ * 把整份商品目錄放在 direct ByteBuffer（堆外記憶體），heap 上只留分類表，
+ * 商品數量再多，heap 用量與 GC 負擔也幾乎不變：
+ *  1. 以商品代碼 UTF-8 位元組計算雜湊，開放定址（linear probing）找到紀錄
+ *  2. 固定長度紀錄：代碼、名稱（字串區位移）、分類編號、以「分」為單位的價格
+ *  3. 查詢時才組成 {@link Item}，只有實際掃描到的商品才會產生物件
+ *
+ * 價格於建立當時凍結（價格取建立時間當時生效的一筆），適用建立當天的交易日；
+ * 其他交易日的查詢交給 fallback（例如資料庫），未提供 fallback 時一律以建立時的價格回答。
+ * 單一商品查詢（findItemByCode）同樣回傳建立時的價格。
+ *
+ * 建立後內容不再改變，可由多個執行緒同時查詢；每日營業開始前重新建立即可。
+ * ------------------------------------------------------------
+ * 紀錄格式（24 bytes）：
+ * <pre>
+ *   0  int   代碼位移      4  int   名稱位移（-1 表示 null）
+ *   8  long  價格（分）    16 short 分類編號（-1 表示 null）
+ *   18 short 代碼長度      20 short 名稱長度
+ *   22 byte  價格 scale（-1 表示無價格，-2 表示存在 overflow 表）
+ * </pre>
+ * 雜湊表每格 8 bytes：雜湊值 int、紀錄編號 + 1 int（0 表示空格）。
+ * ------------------------------------------------------------
+ */
+public class OffHeapItemStore implements ItemLookup {
+
+    private static final int RECORD = 24;
+    private static final int SLOT = 8;
+    private static final int MINOR_SCALE = 2;
+    private static final byte NO_PRICE = -1;
+    private static final byte OVERFLOW_PRICE = -2;
+    private static final int MAX_CATEGORIES = 0x7FFF;
+
+    private final ItemLookup fallback;
+    private final ZoneId zone;
+    private final long builtAt;
+    private final LocalDate businessDay;
+
+    private ByteBuffer records;
+    private ByteBuffer strings;
+    private ByteBuffer slots;
+    private int itemCount;
+    private int slotMask;
+
+    /** 分類編號 → 分類代碼／名稱（分類只有幾十個，放在 heap 共用同一個 String） */
+    private final List<String> categoryCodes = new ArrayList<>();
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<String, Integer> categoryIds = new HashMap<>();
+
+    /** 無法以「分」表示的價格（小數超過兩位或超出 long），數量極少 */
+    private final Map<Integer, BigDecimal> overflowPrices = new HashMap<>();
+
+    /**
+     * Constructor
+     * @param builtAt 價格凍結時間
+     * @param fallback 其他交易日使用的查詢（可為 null）
+     * @param zone 判斷交易日使用的時區
+     * @param expectedItems 預估商品數
+     */
+    private OffHeapItemStore(Date builtAt, ItemLookup fallback, ZoneId zone, int expectedItems) {
+        this.fallback = fallback;
+        this.zone = zone;
+        this.builtAt = builtAt.getTime();
+        this.businessDay = toBusinessDay(builtAt);
+        int capacity = Math.max(16, expectedItems);
+        this.records = allocate(capacity * RECORD);
+        this.strings = allocate(capacity * 32);
+        int slotCount = Integer.highestOneBit(Math.max(32, capacity * 2 - 1) << 1);
+        this.slots = allocate(slotCount * SLOT);
+        this.slotMask = slotCount - 1;
+    }
+
+    /**
+     * 由任一商品來源建立堆外索引（系統時區）。
+     *
+     * @param source 商品來源（資料庫、CSV 或快照）
+     * @param asOfDate 價格凍結時間（通常為營業開始時間）
+     * @param fallback 其他交易日使用的查詢（可為 null）
+     * @return 堆外索引
+     */
+    public static OffHeapItemStore load(ItemLookup source, Date asOfDate, ItemLookup fallback) {
+        return load(source, asOfDate, fallback, ZoneId.systemDefault(), 1024);
+    }
+
+    /**
+     * 由任一商品來源建立堆外索引。
+     *
+     * @param source 商品來源
+     * @param asOfDate 價格凍結時間
+     * @param fallback 其他交易日使用的查詢（可為 null）
+     * @param zone 判斷交易日使用的時區
+     * @param expectedItems 預估商品數（不足時自動擴充）
+     * @return 堆外索引
+     */
+    public static OffHeapItemStore load(ItemLookup source, Date asOfDate, ItemLookup fallback,
+                                        ZoneId zone, int expectedItems) {
+        OffHeapItemStore store = new OffHeapItemStore(asOfDate, fallback, zone, expectedItems);
+        source.forEachItem(asOfDate, store::put);
+        return store;
+    }
+
+    /** 查詢單一商品（回傳建立時的價格） */
+    @Override
+    public Item findItemByCode(String itemCode) {
+        int record = findRecord(itemCode);
+        return record < 0 ? null : toItem(record);
+    }
+
+    /** 批次查詢商品；非建立當天的交易日交給 fallback */
+    @Override
+    public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) {
+        if (!servesDate(asOfDate)) return fallback.findItemsByCodes(itemCodes, asOfDate);
+        List<Item> result = new ArrayList<>(itemCodes.size());
+        for (String code : new LinkedHashSet<>(itemCodes)) {
+            int record = findRecord(code);
+            if (record >= 0) result.add(toItem(record));
+        }
+        return result;
+    }
+
+    /** 走訪全部商品（依建立順序）；非建立當天的交易日交給 fallback */
+    @Override
+    public void forEachItem(Date asOfDate, Consumer<Item> action) {
+        if (!servesDate(asOfDate)) {
+            fallback.forEachItem(asOfDate, action);
+            return;
+        }
+        for (int i = 0; i < itemCount; i++) {
+            action.accept(toItem(i));
+        }
+    }
+
+    public int getItemCount() { return itemCount; }
+    public int getCategoryCount() { return categoryCodes.size(); }
+    public long getBuiltAt() { return builtAt; }
+
+    /** 堆外記憶體用量（bytes，含預留空間） */
+    public long getOffHeapBytes() {
+        return (long) records.capacity() + strings.capacity() + slots.capacity();
+    }
+
+    // ---------------------------------------------------------------
+    // 建立（只在 load 時由單一執行緒呼叫）
+    // ---------------------------------------------------------------
+
+    /** 加入一項商品；代碼重複時以後者為準 */
+    private void put(Item item) {
+        if (item.getItemCode() == null) return;
+        byte[] code = item.getItemCode().getBytes(StandardCharsets.UTF_8);
+        if (code.length > 0xFFFF) throw new IllegalArgumentException("商品代碼過長: " + item.getItemCode());
+        int hash = hash(code);
+        int slot = probe(code, hash);
+        int record;
+        if (slots.getInt(slot * SLOT + 4) != 0) {
+            record = slots.getInt(slot * SLOT + 4) - 1;
+            overflowPrices.remove(record);
+        } else {
+            if ((itemCount + 1) * 2 > slotMask + 1) {
+                rehash();
+                slot = probe(code, hash);
+            }
+            record = itemCount++;
+            records = ensureCapacity(records, itemCount * RECORD);
+            slots.putInt(slot * SLOT, hash);
+            slots.putInt(slot * SLOT + 4, record + 1);
+            records.putInt(record * RECORD, appendString(code));
+            records.putShort(record * RECORD + 18, (short) code.length);
+        }
+
+        int at = record * RECORD;
+        byte[] name = item.getItemName() == null ? null : item.getItemName().getBytes(StandardCharsets.UTF_8);
+        if (name != null && name.length > 0xFFFF) name = Arrays.copyOf(name, 0xFFFF);
+        records.putInt(at + 4, name == null ? -1 : appendString(name));
+        records.putShort(at + 20, (short) (name == null ? 0 : name.length));
+        records.putShort(at + 16, (short) categoryId(item.getCategory01(), item.getCategory01Name()));
+        putPrice(record, item.getUnitPrice());
+    }
+
+    private void putPrice(int record, BigDecimal price) {
+        int at = record * RECORD;
+        records.putLong(at + 8, 0L);
+        if (price == null) {
+            records.put(at + 22, NO_PRICE);
+            return;
+        }
+        if (price.scale() >= 0 && price.scale() <= MINOR_SCALE) {
+            try {
+                records.putLong(at + 8, price.movePointRight(MINOR_SCALE).longValueExact());
+                records.put(at + 22, (byte) price.scale());
+                return;
+            } catch (ArithmeticException e) {
+                // 超出 long，放入 overflow 表
+            }
+        }
+        overflowPrices.put(record, price);
+        records.put(at + 22, OVERFLOW_PRICE);
+    }
+
+    private int categoryId(String code, String name) {
+        if (code == null) return -1;
+        Integer id = categoryIds.get(code);
+        if (id != null) {
+            if (name != null) categoryNames.set(id, name);
+            return id;
+        }
+        if (categoryCodes.size() >= MAX_CATEGORIES) throw new IllegalStateException("分類數超過上限 " + MAX_CATEGORIES);
+        categoryIds.put(code, categoryCodes.size());
+        categoryCodes.add(code);
+        categoryNames.add(name);
+        return categoryCodes.size() - 1;
+    }
+
+    private int appendString(byte[] bytes) {
+        int offset = strings.position();
+        strings = ensureCapacity(strings, offset + bytes.length);
+        strings.put(bytes);
+        return offset;
+    }
+
+    /** 雜湊表擴充為兩倍並重新放入所有紀錄 */
+    private void rehash() {
+        int slotCount = (slotMask + 1) * 2;
+        ByteBuffer grown = allocate(slotCount * SLOT);
+        int mask = slotCount - 1;
+        for (int i = 0; i <= slotMask; i++) {
+            int ref = slots.getInt(i * SLOT + 4);
+            if (ref == 0) continue;
+            int hash = slots.getInt(i * SLOT);
+            int slot = hash & mask;
+            while (grown.getInt(slot * SLOT + 4) != 0) slot = (slot + 1) & mask;
+            grown.putInt(slot * SLOT, hash);
+            grown.putInt(slot * SLOT + 4, ref);
+        }
+        slots = grown;
+        slotMask = mask;
+    }
+
+    // ---------------------------------------------------------------
+    // 查詢
+    // ---------------------------------------------------------------
+
+    private boolean servesDate(Date asOfDate) {
+        return fallback == null || businessDay.equals(toBusinessDay(asOfDate));
+    }
+
+    /** 回傳紀錄編號；找不到回傳 -1 */
+    private int findRecord(String itemCode) {
+        if (itemCode == null) return -1;
+        byte[] code = itemCode.getBytes(StandardCharsets.UTF_8);
+        int ref = slots.getInt(probe(code, hash(code)) * SLOT + 4);
+        return ref - 1;
+    }
+
+    /** 找到代碼所在的格子，或第一個空格 */
+    private int probe(byte[] code, int hash) {
+        int slot = hash & slotMask;
+        while (true) {
+            int ref = slots.getInt(slot * SLOT + 4);
+            if (ref == 0) return slot;
+            if (slots.getInt(slot * SLOT) == hash && codeEquals(ref - 1, code)) return slot;
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    private boolean codeEquals(int record, byte[] code) {
+        int at = record * RECORD;
+        if (Short.toUnsignedInt(records.getShort(at + 18)) != code.length) return false;
+        int offset = records.getInt(at);
+        for (int i = 0; i < code.length; i++) {
+            if (strings.get(offset + i) != code[i]) return false;
+        }
+        return true;
+    }
+
+    /** 組成 Item（只在查詢命中時才建立物件） */
+    private Item toItem(int record) {
+        int at = record * RECORD;
+        int category = records.getShort(at + 16);
+        return new Item(
+                string(records.getInt(at), Short.toUnsignedInt(records.getShort(at + 18))),
+                string(records.getInt(at + 4), Short.toUnsignedInt(records.getShort(at + 20))),
+                category < 0 ? null : categoryCodes.get(category),
+                category < 0 ? null : categoryNames.get(category),
+                price(record));
+    }
+
+    private BigDecimal price(int record) {
+        int at = record * RECORD;
+        byte scale = records.get(at + 22);
+        if (scale == NO_PRICE) return null;
+        if (scale == OVERFLOW_PRICE) return overflowPrices.get(record);
+        // 還原原本的 scale（例如 18500 與 18500.00），與其他來源的 BigDecimal 完全相同
+        return BigDecimal.valueOf(records.getLong(at + 8), MINOR_SCALE).setScale(scale);
+    }
+
+    private String string(int offset, int length) {
+        if (offset < 0) return null;
+        byte[] bytes = new byte[length];
+        strings.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private LocalDate toBusinessDay(Date date) {
+        if (date instanceof java.sql.Date) return ((java.sql.Date) date).toLocalDate();
+        return Instant.ofEpochMilli(date.getTime()).atZone(zone).toLocalDate();
+    }
+
+    // ---------------------------------------------------------------
+    // 工具
+    // ---------------------------------------------------------------
+
+    /** FNV-1a，最後再打散高位元，讓連號代碼（WINE001、WINE002…）平均分布 */
+    private static int hash(byte[] bytes) {
+        int h = 0x811C9DC5;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xFF)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /** 容量不足時配置兩倍大小的新 buffer 並複製內容（保留 position） */
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int required) {
+        if (required <= buffer.capacity()) return buffer;
+        long capacity = buffer.capacity();
+        while (capacity < required) capacity *= 2;
+        if (capacity > Integer.MAX_VALUE - 8) {
+            if (required > Integer.MAX_VALUE - 8) throw new IllegalStateException("堆外索引超過 2GB");
+            capacity = Integer.MAX_VALUE - 8;
+        }
+        ByteBuffer grown = allocate((int) capacity);
+        int position = buffer.position();
+        grown.put(0, buffer, 0, buffer.capacity());
+        grown.position(position);
+        return grown;
+    }
+}
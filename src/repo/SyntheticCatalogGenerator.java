@@ -0,0 +1,523 @@
+package repo;
+
+import config.DatabaseConfig;
+import model.Activity;
+import model.Basket;
+import model.CartItem;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 合成商品目錄與購物籃產生器 (SyntheticCatalogGenerator)
+ * ------------------------------------------------------------
+ * 以固定亂數種子產生與 im_item*、crm_promo_rebate_h 相同結構的資料，
+ * 供效能量測、壓力測試與長時間測試使用（同一組參數每次產生的資料完全相同）：
+ *  1. 分類：熱門分類的商品較多（Zipf 分布）
+ *  2. 商品：價格為對數常態分布（中位數約 800 元），每個商品 0～N 次調價
+ *  3. 活動：起訖日期互相重疊（7～90 天），約 10% 為 "ALL"、60% 單一分類、30% 多分類（"01,05"）
+ *  4. 購物籃：商品熱門度為 Zipf 分布（少數商品佔大部分掃描），
+ *     多數購物籃只有幾種商品，少數企業訂單可達 maxBasketLines 種
+ *
+ * 輸出：
+ *  - {@link #toInMemoryCatalog()}：直接建立記憶體資料（不經過檔案）
+ *  - {@link #writeCsv(Path)}：InMemoryCatalog 的 CSV 格式（-Dpos.data.source=memory -Dpos.data.dir 指定目錄）
+ *  - {@link #loadInto(Connection)}：批次寫入 MySQL（請使用空的測試資料庫）
+ *  - {@link #baskets(long)}：購物籃串流
+ *
+ * 使用方式：
+ *   java repo.SyntheticCatalogGenerator csv [目錄]    （預設 data/synthetic）
+ *   java repo.SyntheticCatalogGenerator mysql          （寫入 DatabaseConfig 的資料庫）
+ *   參數：-Dpos.synth.seed、-Dpos.synth.items、-Dpos.synth.categories、
+ *         -Dpos.synth.activities、-Dpos.synth.start、-Dpos.synth.days、
+ *         -Dpos.synth.categorySkew、-Dpos.synth.popularitySkew
+ * ------------------------------------------------------------
+ */
+public class SyntheticCatalogGenerator {
+
+    private static final String[] CATEGORY_NAMES = {
+            "化妝品", "香水", "保養品", "3C電子", "家電", "食品", "零食", "酒類",
+            "書籍", "精品", "手錶", "玩具", "服飾", "菸草", "茶葉", "保健食品"};
+
+    /** JDBC 批次寫入的筆數 */
+    private static final int JDBC_BATCH = 1000;
+
+    private final long seed;
+    private int itemCount = 300_000;
+    private int categoryCount = 40;
+    private int activityCount = 2_000;
+    private int maxPriceChanges = 3;
+    private LocalDate startDate = LocalDate.of(2025, 10, 1);
+    private int days = 90;
+    private double categorySkew = 0.8;
+    private double popularitySkew = 1.1;
+    private int maxBasketLines = 200;
+    private double largeBasketRate = 0.01;
+    private double memberRate = 0.3;
+    private ZoneId zone = ZoneId.systemDefault();
+
+    /** 商品熱門度的累積分布（第一次產生購物籃時建立） */
+    private double[] popularityCdf;
+
+    /**
+     * Constructor
+     * @param seed 亂數種子
+     */
+    public SyntheticCatalogGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    // ---------------------------------------------------------------
+    // 參數
+    // ---------------------------------------------------------------
+
+    public int getItemCount() { return itemCount; }
+    public void setItemCount(int itemCount) { this.itemCount = itemCount; popularityCdf = null; }
+
+    public int getCategoryCount() { return categoryCount; }
+    public void setCategoryCount(int categoryCount) { this.categoryCount = categoryCount; }
+
+    public int getActivityCount() { return activityCount; }
+    public void setActivityCount(int activityCount) { this.activityCount = activityCount; }
+
+    /** 每個商品最多調價次數（不含初始價格） */
+    public void setMaxPriceChanges(int maxPriceChanges) { this.maxPriceChanges = maxPriceChanges; }
+
+    /** 活動與交易日期的起始日 */
+    public LocalDate getStartDate() { return startDate; }
+    public void setStartDate(LocalDate startDate) { this.startDate = startDate; }
+
+    /** 活動與交易日期涵蓋的天數 */
+    public int getDays() { return days; }
+    public void setDays(int days) { this.days = days; }
+
+    /** 分類商品數的 Zipf 指數（0 表示平均分配） */
+    public void setCategorySkew(double categorySkew) { this.categorySkew = categorySkew; }
+
+    /** 商品熱門度的 Zipf 指數（0 表示平均分配） */
+    public void setPopularitySkew(double popularitySkew) { this.popularitySkew = popularitySkew; popularityCdf = null; }
+
+    /** 購物籃最多幾種商品 */
+    public int getMaxBasketLines() { return maxBasketLines; }
+    public void setMaxBasketLines(int maxBasketLines) { this.maxBasketLines = maxBasketLines; }
+
+    /** 企業訂單（50 種商品以上）的比例 */
+    public void setLargeBasketRate(double largeBasketRate) { this.largeBasketRate = largeBasketRate; }
+
+    /** 公司會員交易的比例 */
+    public void setMemberRate(double memberRate) { this.memberRate = memberRate; }
+
+    /** 產生交易時間與載入記憶體資料使用的時區 */
+    public void setZone(ZoneId zone) { this.zone = zone; }
+
+    /** 第 index 個商品的代碼（0 起算，熱門度依序遞減） */
+    public static String itemCode(int index) {
+        return String.format("SKU%06d", index + 1);
+    }
+
+    /** 第 index 個分類的代碼（0 起算） */
+    public static String categoryCode(int index) {
+        return String.format("%02d", index + 1);
+    }
+
+    private static String categoryName(int index) {
+        String name = CATEGORY_NAMES[index % CATEGORY_NAMES.length];
+        return index < CATEGORY_NAMES.length ? name : name + (index / CATEGORY_NAMES.length + 1);
+    }
+
+    // ---------------------------------------------------------------
+    // 輸出
+    // ---------------------------------------------------------------
+
+    /**
+     * 建立記憶體資料（不經過檔案）。
+     *
+     * @return 記憶體資料
+     */
+    public InMemoryCatalog toInMemoryCatalog() {
+        InMemoryCatalog.Builder builder = new InMemoryCatalog.Builder();
+        emit(new Sink<RuntimeException>() {
+            @Override
+            public void category(String code, String name) { builder.addCategory(code, name); }
+
+            @Override
+            public void item(String code, String name, String category) { builder.addItem(code, name, category); }
+
+            @Override
+            public void price(String code, LocalDate begin, BigDecimal unitPrice) {
+                builder.addPrice(code, begin.atStartOfDay(), unitPrice);
+            }
+
+            @Override
+            public void activity(Activity activity) { builder.addActivity(activity); }
+        });
+        return builder.build(zone);
+    }
+
+    /**
+     * 寫出 InMemoryCatalog 格式的四個 CSV 檔。
+     *
+     * @param directory 輸出目錄（不存在時建立）
+     * @throws IOException 寫入失敗
+     */
+    public void writeCsv(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (BufferedWriter categories = Files.newBufferedWriter(directory.resolve(InMemoryCatalog.CATEGORY_FILE), StandardCharsets.UTF_8);
+             BufferedWriter items = Files.newBufferedWriter(directory.resolve(InMemoryCatalog.ITEM_FILE), StandardCharsets.UTF_8);
+             BufferedWriter prices = Files.newBufferedWriter(directory.resolve(InMemoryCatalog.PRICE_FILE), StandardCharsets.UTF_8);
+             BufferedWriter activities = Files.newBufferedWriter(directory.resolve(InMemoryCatalog.ACTIVITY_FILE), StandardCharsets.UTF_8)) {
+            categories.write("category_code,category_type,category_name\n");
+            items.write("item_code,item_c_name,category01\n");
+            prices.write("item_code,begin_date,unit_price\n");
+            activities.write("activity_code,activity_name,start_activity_date,end_activity_date," +
+                    "item_discount_group,meet_criteria_amt_g1,award_amt_g1\n");
+
+            emit(new Sink<IOException>() {
+                @Override
+                public void category(String code, String name) throws IOException {
+                    categories.write(code + ",category01," + csv(name) + "\n");
+                }
+
+                @Override
+                public void item(String code, String name, String category) throws IOException {
+                    items.write(code + "," + csv(name) + "," + category + "\n");
+                }
+
+                @Override
+                public void price(String code, LocalDate begin, BigDecimal unitPrice) throws IOException {
+                    prices.write(code + "," + begin + "," + unitPrice.toPlainString() + "\n");
+                }
+
+                @Override
+                public void activity(Activity activity) throws IOException {
+                    activities.write(activity.getActivityCode() + "," + csv(activity.getActivityName()) + "," +
+                            activity.getStartActivityDate() + "," + activity.getEndActivityDate() + "," +
+                            csv(activity.getItemDiscountGroup()) + "," +
+                            activity.getMeetCriteriaAmtG1().toPlainString() + "," +
+                            activity.getAwardAmtG1().toPlainString() + "\n");
+                }
+            });
+        }
+    }
+
+    /**
+     * 以 JDBC 批次寫入 im_item_category、im_item、im_item_price、crm_promo_rebate_h。
+     * 不會清除既有資料；代碼重複時由資料庫的主鍵限制回報錯誤。
+     *
+     * @param conn 資料庫連線（寫入完成後 commit，並還原原本的 autoCommit 設定）
+     * @throws SQLException 寫入失敗（已 rollback）
+     */
+    public void loadInto(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (JdbcSink sink = new JdbcSink(conn)) {
+            emit(sink);
+            sink.flush();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * 購物籃串流（無限，依序呼叫 next 取得）。
+     * 商品代碼與 {@link #itemCode(int)} 相同，日期落在 startDate 起 days 天內的 08:00～22:00。
+     *
+     * @param basketSeed 購物籃的亂數種子（與商品目錄的種子分開，同一份目錄可產生多組交易）
+     * @return 購物籃產生器
+     */
+    public BasketStream baskets(long basketSeed) {
+        return new BasketStream(basketSeed, getPopularityCdf());
+    }
+
+    private synchronized double[] getPopularityCdf() {
+        if (popularityCdf == null) popularityCdf = zipfCdf(itemCount, popularitySkew);
+        return popularityCdf;
+    }
+
+    /** 購物籃產生器（不可由多個執行緒共用） */
+    public final class BasketStream implements Iterator<Basket> {
+        private final Random random;
+        private final double[] cdf;
+
+        private BasketStream(long basketSeed, double[] cdf) {
+            this.random = new Random(basketSeed);
+            this.cdf = cdf;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return true;
+        }
+
+        @Override
+        public Basket next() {
+            int lines;
+            if (maxBasketLines > 50 && random.nextDouble() < largeBasketRate) {
+                lines = 50 + random.nextInt(maxBasketLines - 49);            // 企業訂單
+            } else {
+                lines = Math.min(maxBasketLines, 1 + geometric(random, 0.25)); // 平均約 4 種商品
+            }
+            List<CartItem> cartItems = new ArrayList<>(lines);
+            for (int i = 0; i < lines; i++) {
+                double q = random.nextDouble();
+                int quantity = q < 0.7 ? 1 : q < 0.9 ? 2 : 3 + random.nextInt(8);
+                cartItems.add(new CartItem(itemCode(sample(cdf, random)), quantity));
+            }
+            long second = 8 * 3600L + random.nextInt(14 * 3600);
+            Date date = Date.from(startDate.plusDays(random.nextInt(Math.max(1, days)))
+                    .atStartOfDay(zone).plusSeconds(second).toInstant());
+            return new Basket(cartItems, date, random.nextDouble() < memberRate);
+        }
+
+        /**
+         * 取得接下來的 count 筆購物籃。
+         *
+         * @param count 筆數
+         * @return 購物籃
+         */
+        public List<Basket> next(int count) {
+            List<Basket> baskets = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) baskets.add(next());
+            return baskets;
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // 產生資料
+    // ---------------------------------------------------------------
+
+    /** 產生的資料列 */
+    private interface Sink<E extends Exception> {
+        void category(String code, String name) throws E;
+        void item(String code, String name, String category) throws E;
+        void price(String code, LocalDate begin, BigDecimal unitPrice) throws E;
+        void activity(Activity activity) throws E;
+    }
+
+    /** 依固定順序產生全部資料（三種輸出共用，內容完全相同） */
+    private <E extends Exception> void emit(Sink<E> sink) throws E {
+        Random random = new Random(seed);
+        double[] categoryCdf = zipfCdf(categoryCount, categorySkew);
+        for (int c = 0; c < categoryCount; c++) {
+            sink.category(categoryCode(c), categoryName(c));
+        }
+
+        // 初始價格從一年前開始生效，調價日期落在起始日前半年到期間結束之間
+        LocalDate firstPriceDate = startDate.minusYears(1);
+        int changeWindow = 180 + days;
+        for (int i = 0; i < itemCount; i++) {
+            int category = sample(categoryCdf, random);
+            String code = itemCode(i);
+            sink.item(code, categoryName(category) + "商品" + code.substring(3), categoryCode(category));
+
+            long base = roundPrice(Math.exp(Math.log(800) + random.nextGaussian()));
+            sink.price(code, firstPriceDate, BigDecimal.valueOf(base));
+            Set<Integer> changeDays = new TreeSet<>();
+            int changes = random.nextInt(maxPriceChanges + 1);
+            for (int k = 0; k < changes; k++) changeDays.add(random.nextInt(changeWindow));
+            for (int offset : changeDays) {
+                long price = roundPrice(base * (0.8 + random.nextDouble() * 0.4));
+                sink.price(code, startDate.minusDays(180).plusDays(offset), BigDecimal.valueOf(price));
+            }
+        }
+
+        for (int a = 0; a < activityCount; a++) {
+            LocalDate start = startDate.plusDays(random.nextInt(Math.max(1, days))).minusDays(random.nextInt(30));
+            LocalDate end = start.plusDays(6 + random.nextInt(85));
+
+            String group;
+            String label;
+            double kind = random.nextDouble();
+            if (kind < 0.1) {
+                group = "ALL";
+                label = "全館";
+            } else {
+                int first = sample(categoryCdf, random);
+                Set<String> codes = new LinkedHashSet<>();
+                codes.add(categoryCode(first));
+                if (kind >= 0.7) {
+                    int wanted = 2 + random.nextInt(3);
+                    for (int tries = 0; codes.size() < Math.min(wanted, categoryCount) && tries < 20; tries++) {
+                        codes.add(categoryCode(sample(categoryCdf, random)));
+                    }
+                }
+                group = String.join(",", codes);
+                label = categoryName(first) + (codes.size() > 1 ? "等" + codes.size() + "類" : "");
+            }
+
+            long threshold = 1000L * (1 + random.nextInt(30));
+            long award = Math.max(10, Math.round(threshold * (5 + random.nextInt(11)) / 1000.0) * 10);
+            sink.activity(new Activity(String.format("SYN%06d", a + 1),
+                    label + "滿" + threshold + "送" + award,
+                    java.sql.Date.valueOf(start), java.sql.Date.valueOf(end), group,
+                    BigDecimal.valueOf(threshold), BigDecimal.valueOf(award)));
+        }
+    }
+
+    /** 100 元以下取整數，以上取到 10 元 */
+    private static long roundPrice(double price) {
+        if (price < 100) return Math.max(10, Math.round(price));
+        return Math.round(price / 10) * 10;
+    }
+
+    /** 成功機率 p 的幾何分布（失敗次數） */
+    private static int geometric(Random random, double p) {
+        return (int) (Math.log(1 - random.nextDouble()) / Math.log(1 - p));
+    }
+
+    /** Zipf 分布的累積機率：第 k 個的權重為 1 / (k + 1)^skew */
+    private static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int k = 0; k < n; k++) {
+            total += 1.0 / Math.pow(k + 1, skew);
+            cdf[k] = total;
+        }
+        for (int k = 0; k < n; k++) cdf[k] /= total;
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /** JDBC 批次寫入 */
+    private static final class JdbcSink implements Sink<SQLException>, AutoCloseable {
+        private final PreparedStatement categories;
+        private final PreparedStatement items;
+        private final PreparedStatement prices;
+        private final PreparedStatement activities;
+        private final int[] pending = new int[4];
+
+        JdbcSink(Connection conn) throws SQLException {
+            categories = conn.prepareStatement(
+                    "INSERT INTO im_item_category (category_code, category_type, category_name) VALUES (?, 'category01', ?)");
+            items = conn.prepareStatement(
+                    "INSERT INTO im_item (item_code, item_c_name, category01) VALUES (?, ?, ?)");
+            prices = conn.prepareStatement(
+                    "INSERT INTO im_item_price (item_code, begin_date, unit_price) VALUES (?, ?, ?)");
+            activities = conn.prepareStatement(
+                    "INSERT INTO crm_promo_rebate_h (activity_code, activity_name, start_activity_date, " +
+                    "end_activity_date, item_discount_group, meet_criteria_amt_g1, award_amt_g1) VALUES (?, ?, ?, ?, ?, ?, ?)");
+        }
+
+        @Override
+        public void category(String code, String name) throws SQLException {
+            categories.setString(1, code);
+            categories.setString(2, name);
+            add(categories, 0);
+        }
+
+        @Override
+        public void item(String code, String name, String category) throws SQLException {
+            items.setString(1, code);
+            items.setString(2, name);
+            items.setString(3, category);
+            add(items, 1);
+        }
+
+        @Override
+        public void price(String code, LocalDate begin, BigDecimal unitPrice) throws SQLException {
+            prices.setString(1, code);
+            prices.setTimestamp(2, Timestamp.valueOf(begin.atStartOfDay()));
+            prices.setBigDecimal(3, unitPrice);
+            add(prices, 2);
+        }
+
+        @Override
+        public void activity(Activity activity) throws SQLException {
+            activities.setString(1, activity.getActivityCode());
+            activities.setString(2, activity.getActivityName());
+            activities.setDate(3, (java.sql.Date) activity.getStartActivityDate());
+            activities.setDate(4, (java.sql.Date) activity.getEndActivityDate());
+            activities.setString(5, activity.getItemDiscountGroup());
+            activities.setBigDecimal(6, activity.getMeetCriteriaAmtG1());
+            activities.setBigDecimal(7, activity.getAwardAmtG1());
+            add(activities, 3);
+        }
+
+        private void add(PreparedStatement statement, int slot) throws SQLException {
+            statement.addBatch();
+            if (++pending[slot] == JDBC_BATCH) flushThrough(slot);
+        }
+
+        /** 寫入剩下的批次 */
+        void flush() throws SQLException {
+            flushThrough(3);
+        }
+
+        /**
+         * 寫入 0..slot 的批次：依分類 → 商品 → 價格的順序，
+         * 被參照的資料一定先寫入（符合外鍵）。
+         */
+        private void flushThrough(int slot) throws SQLException {
+            PreparedStatement[] statements = {categories, items, prices, activities};
+            for (int i = 0; i <= slot; i++) {
+                if (pending[i] > 0) statements[i].executeBatch();
+                pending[i] = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            categories.close();
+            items.close();
+            prices.close();
+            activities.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        String target = args.length > 0 ? args[0] : "csv";
+        SyntheticCatalogGenerator generator = new SyntheticCatalogGenerator(Long.getLong("pos.synth.seed", 20251110L));
+        generator.setItemCount(Integer.getInteger("pos.synth.items", generator.itemCount));
+        generator.setCategoryCount(Integer.getInteger("pos.synth.categories", generator.categoryCount));
+        generator.setActivityCount(Integer.getInteger("pos.synth.activities", generator.activityCount));
+        generator.setDays(Integer.getInteger("pos.synth.days", generator.days));
+        generator.setStartDate(LocalDate.parse(System.getProperty("pos.synth.start", generator.startDate.toString())));
+        generator.setCategorySkew(Double.parseDouble(System.getProperty("pos.synth.categorySkew", String.valueOf(generator.categorySkew))));
+        generator.setPopularitySkew(Double.parseDouble(System.getProperty("pos.synth.popularitySkew", String.valueOf(generator.popularitySkew))));
+
+        if ("mysql".equalsIgnoreCase(target)) {
+            try (Connection conn = DatabaseConfig.getConnection()) {
+                generator.loadInto(conn);
+            }
+            System.out.println("已寫入資料庫: " + generator.itemCount + " 個商品、" + generator.activityCount + " 個活動");
+        } else {
+            Path directory = Paths.get(args.length > 1 ? args[1] : "data/synthetic");
+            generator.writeCsv(directory);
+            System.out.println("已寫入 " + directory.toAbsolutePath() + ": " +
+                    generator.itemCount + " 個商品、" + generator.activityCount + " 個活動");
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package server;
+
+import util.LatencyHistogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 計價服務壓力測試 (LoadGenerator)
+ * ------------------------------------------------------------
+ * 以 JDK 的 java.net.http.HttpClient 對 {@link PricingServer} 持續送出計價請求：
+ *  1. concurrency 個工作執行緒，各自以 keep-alive 連線同步送出請求（封閉式負載）
+ *  2. 先暖機 warmupSeconds（不列入統計），再量測 seconds 秒
+ *  3. batchSize = 1 時呼叫 POST /price，大於 1 時呼叫 POST /price/batch
+ *  4. 輸出每秒計價筆數（購物籃／秒）、每秒請求數與請求延遲的 p50／p99／p99.9／max
+ *
+ * 購物籃由 -Dpos.load.items（逗號分隔的商品代碼，預設為 data/ 範例商品）
+ * 隨機組成 1 到 -Dpos.load.maxLines 種商品，固定亂數種子，每次執行的請求內容相同。
+ *
+ * 使用方式：
+ *   java server.LoadGenerator [url] [concurrency] [seconds] [batchSize] [warmupSeconds]
+ *   例如：java server.LoadGenerator http://localhost:8080 32 30 1 5
+ * ------------------------------------------------------------
+ */
+public class LoadGenerator {
+
+    private static final String DEFAULT_ITEMS =
+            "WINE001,WINE002,LIQUOR001,COSM001,COSM002,PERF001,PERF002,ELEC001,ELEC002,FOOD001,BOOK001";
+
+    private final URI target;
+    private final int concurrency;
+    private final int batchSize;
+    private final String[] itemCodes;
+    private final int maxLines;
+    private final HttpClient client;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder baskets = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean recording;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor
+     * @param baseUrl 計價服務位址，例如 http://localhost:8080
+     * @param concurrency 同時進行的請求數
+     * @param batchSize 每個請求的購物籃數
+     * @param itemCodes 組成購物籃的商品代碼
+     * @param maxLines 每個購物籃最多幾種商品
+     */
+    public LoadGenerator(String baseUrl, int concurrency, int batchSize, String[] itemCodes, int maxLines) {
+        this.target = URI.create(baseUrl + (batchSize > 1 ? "/price/batch" : "/price"));
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+        this.itemCodes = itemCodes;
+        this.maxLines = Math.max(1, maxLines);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)   // JDK HTTP 伺服器不支援 h2c，直接使用 HTTP/1.1 keep-alive
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(2, task -> {
+                    Thread thread = new Thread(task, "load-http-client");
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .build();
+    }
+
+    /**
+     * 執行壓力測試。
+     *
+     * @param warmupSeconds 暖機秒數
+     * @param seconds 量測秒數
+     * @return 量測結果
+     * @throws InterruptedException 被中斷時
+     */
+    public Result run(int warmupSeconds, int seconds) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, task -> {
+            Thread thread = new Thread(task, "load-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            long seed = 42L + i;
+            futures.add(workers.submit(() -> work(new Random(seed))));
+        }
+
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        recording = true;
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(seconds);
+        recording = false;
+        long elapsed = System.nanoTime() - start;
+        running = false;
+
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+        return new Result(requests.sum(), baskets.sum(), failures.sum(), elapsed, latency.snapshot());
+    }
+
+    private void work(Random random) {
+        while (running) {
+            String body = batchSize > 1 ? batchBody(random) : basketBody(random, new StringBuilder()).toString();
+            HttpRequest request = HttpRequest.newBuilder(target)
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                ok = response.statusCode() == 200;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                ok = false;
+            }
+            if (!recording) continue;
+            latency.record(System.nanoTime() - start);
+            requests.increment();
+            if (ok) baskets.add(batchSize);
+            else failures.increment();
+        }
+    }
+
+    private String batchBody(Random random) {
+        StringBuilder out = new StringBuilder(batchSize * 128);
+        out.append("{\"baskets\":[");
+        for (int i = 0; i < batchSize; i++) {
+            if (i > 0) out.append(',');
+            basketBody(random, out);
+        }
+        return out.append("]}").toString();
+    }
+
+    private StringBuilder basketBody(Random random, StringBuilder out) {
+        out.append("{\"companyMember\":").append(random.nextBoolean()).append(",\"items\":[");
+        int lines = 1 + random.nextInt(maxLines);
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) out.append(',');
+            out.append("{\"itemCode\":");
+            PricingJson.writeString(itemCodes[random.nextInt(itemCodes.length)], out);
+            out.append(",\"quantity\":").append(1 + random.nextInt(3)).append('}');
+        }
+        return out.append("]}");
+    }
+
+    /** 量測結果 */
+    public static final class Result {
+        private final long requests;
+        private final long baskets;
+        private final long failures;
+        private final long elapsedNanos;
+        private final LatencyHistogram.Snapshot latency;
+
+        Result(long requests, long baskets, long failures, long elapsedNanos, LatencyHistogram.Snapshot latency) {
+            this.requests = requests;
+            this.baskets = baskets;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+        }
+
+        public long getRequests() { return requests; }
+        public long getBaskets() { return baskets; }
+        public long getFailures() { return failures; }
+        public LatencyHistogram.Snapshot getLatency() { return latency; }
+
+        /** 每秒成功計價的購物籃數 */
+        public double getBasketsPerSecond() {
+            return baskets * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        /** 每秒請求數 */
+        public double getRequestsPerSecond() {
+            return requests * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "請求 %d（失敗 %d），%.0f 請求/秒，%.0f 購物籃/秒%n" +
+                    "延遲 p50 %.2f ms，p99 %.2f ms，p99.9 %.2f ms，max %.2f ms",
+                    requests, failures, getRequestsPerSecond(), getBasketsPerSecond(),
+                    millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)),
+                    millis(latency.getValueAtPercentile(99.9)), millis(latency.getMax()));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String url = args.length > 0 ? args[0] : "http://localhost:" + PricingServer.PORT;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        int warmup = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+        String[] items = System.getProperty("pos.load.items", DEFAULT_ITEMS).split(",");
+        int maxLines = Integer.getInteger("pos.load.maxLines", 8);
+
+        System.out.printf("目標 %s，同時 %d 個請求，每個請求 %d 筆購物籃，暖機 %d 秒，量測 %d 秒%n",
+                url, concurrency, batchSize, warmup, seconds);
+        Result result = new LoadGenerator(url, concurrency, batchSize, items, maxLines).run(warmup, seconds);
+        System.out.println(result);
+    }
+}
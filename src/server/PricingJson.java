@@ -0,0 +1,364 @@
+package server;
+
+import model.Basket;
+import model.CartItem;
+import model.Line;
+import model.Receipt;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 計價服務的 JSON 轉換 (PricingJson)
+ * ------------------------------------------------------------
+ * 專案不引入 JSON 函式庫，只處理計價服務需要的格式：
+ *  1. 解析：物件 → Map、陣列 → List、數字 → BigDecimal（金額不經過 double）
+ *  2. 請求：{"transactionDate": "yyyy-MM-dd HH:mm:ss", "companyMember": true,
+ *            "items": [{"itemCode": "WINE001", "quantity": 2}]}
+ *     transactionDate 可省略（使用伺服器目前時間），也可只給日期
+ *  3. 回應：收據明細與總額，金額以 JSON 數字輸出（BigDecimal.toPlainString）
+ * 格式錯誤一律丟出 IllegalArgumentException，由伺服器回應 400；
+ * 巢狀層數超過 -Dpos.server.maxJsonDepth（預設 32）也視為格式錯誤，
+ * 避免深層的 [[[[… 讓遞迴解析器 StackOverflowError。
+ * ------------------------------------------------------------
+ */
+public final class PricingJson {
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DATE_TIME_MINUTES = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    /** 物件與陣列的最大巢狀層數（計價請求本身只有 4 層） */
+    public static final int MAX_DEPTH = Integer.getInteger("pos.server.maxJsonDepth", 32);
+
+    private PricingJson() {}
+
+    /**
+     * 解析 JSON 文字。
+     *
+     * @param text JSON
+     * @return Map、List、String、BigDecimal、Boolean 或 null
+     */
+    public static Object parse(String text) {
+        Parser parser = new Parser(text);
+        Object value = parser.readValue();
+        parser.skipWhitespace();
+        if (parser.pos != text.length()) throw parser.error("多餘的字元");
+        return value;
+    }
+
+    /**
+     * 解析單筆計價請求。
+     *
+     * @param json 已解析的請求物件
+     * @param now 未指定交易日期時使用的時間
+     * @return 購物籃
+     */
+    public static Basket toBasket(Object json, Date now) {
+        Map<?, ?> request = asObject(json, "請求");
+        Object itemsJson = request.get("items");
+        if (!(itemsJson instanceof List)) throw new IllegalArgumentException("缺少 items 陣列");
+        List<?> itemList = (List<?>) itemsJson;
+        List<CartItem> cartItems = new ArrayList<>(itemList.size());
+        for (Object element : itemList) {
+            Map<?, ?> item = asObject(element, "items 元素");
+            Object code = item.get("itemCode");
+            if (!(code instanceof String) || ((String) code).isEmpty()) throw new IllegalArgumentException("缺少 itemCode");
+            int quantity = item.containsKey("quantity") ? asQuantity(item.get("quantity")) : 1;
+            cartItems.add(new CartItem((String) code, quantity));
+        }
+
+        Object member = request.get("companyMember");
+        if (member != null && !(member instanceof Boolean)) throw new IllegalArgumentException("companyMember 必須是 true/false");
+        Object date = request.get("transactionDate");
+        if (date != null && !(date instanceof String)) throw new IllegalArgumentException("transactionDate 必須是字串");
+        return new Basket(cartItems, date == null ? now : parseDate((String) date), Boolean.TRUE.equals(member));
+    }
+
+    /**
+     * 解析批次計價請求：{"baskets": [ 單筆請求, ... ]}
+     *
+     * @param json 已解析的請求物件
+     * @param now 未指定交易日期時使用的時間
+     * @return 購物籃清單
+     */
+    public static List<Basket> toBaskets(Object json, Date now) {
+        List<?> list = basketsArray(json);
+        List<Basket> baskets = new ArrayList<>(list.size());
+        for (Object element : list) baskets.add(toBasket(element, now));
+        return baskets;
+    }
+
+    /**
+     * 批次計價請求的購物籃數（不建立購物籃，供伺服器在轉換前檢查批次上限）。
+     *
+     * @param json 已解析的請求物件
+     * @return baskets 陣列的元素數
+     */
+    public static int countBaskets(Object json) {
+        return basketsArray(json).size();
+    }
+
+    private static List<?> basketsArray(Object json) {
+        Object basketsJson = asObject(json, "請求").get("baskets");
+        if (!(basketsJson instanceof List)) throw new IllegalArgumentException("缺少 baskets 陣列");
+        return (List<?>) basketsJson;
+    }
+
+    /**
+     * 將收據寫成 JSON 物件。
+     *
+     * @param receipt 收據
+     * @param out 輸出
+     */
+    public static void writeReceipt(Receipt receipt, StringBuilder out) {
+        out.append("{\"lines\":[");
+        List<Line> lines = receipt.getLines();
+        for (int i = 0; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            if (i > 0) out.append(',');
+            out.append("{\"itemCode\":");
+            writeString(line.getItemCode(), out);
+            out.append(",\"itemName\":");
+            writeString(line.getItemName(), out);
+            out.append(",\"categoryCode\":");
+            writeString(line.getCategoryCode(), out);
+            out.append(",\"quantity\":").append(line.getQuantity());
+            writeAmount(",\"unitPrice\":", line.getUnitPrice(), out);
+            writeAmount(",\"originalAmount\":", line.getOriginalAmount(), out);
+            writeAmount(",\"manualDiscount\":", line.getManualDiscount(), out);
+            writeAmount(",\"memberDiscount\":", line.getMemberDiscount(), out);
+            writeAmount(",\"promotionDiscount\":", line.getPromotionDiscount(), out);
+            writeAmount(",\"finalAmount\":", line.getFinalAmount(), out);
+            out.append('}');
+        }
+        out.append("],\"activityDiscounts\":{");
+        boolean first = true;
+        for (Map.Entry<String, BigDecimal> entry : receipt.getActivityDiscounts().entrySet()) {
+            if (!first) out.append(',');
+            first = false;
+            writeString(entry.getKey(), out);
+            out.append(':').append(entry.getValue().toPlainString());
+        }
+        out.append('}');
+        writeAmount(",\"totalOriginalAmount\":", receipt.getTotalOriginalAmount(), out);
+        writeAmount(",\"totalMemberAmount\":", receipt.getTotalMemberAmount(), out);
+        writeAmount(",\"totalPromotionDiscount\":", receipt.getTotalPromotionDiscount(), out);
+        writeAmount(",\"totalDiscountAmount\":", receipt.getTotalDiscountAmount(), out);
+        writeAmount(",\"finalAmount\":", receipt.getFinalAmount(), out);
+        out.append('}');
+    }
+
+    /**
+     * 寫入 JSON 字串（含引號與跳脫字元），null 寫成 null。
+     *
+     * @param value 字串
+     * @param out 輸出
+     */
+    public static void writeString(String value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static void writeAmount(String name, BigDecimal amount, StringBuilder out) {
+        out.append(name).append(amount == null ? "null" : amount.toPlainString());
+    }
+
+    private static Map<?, ?> asObject(Object json, String what) {
+        if (!(json instanceof Map)) throw new IllegalArgumentException(what + "必須是 JSON 物件");
+        return (Map<?, ?>) json;
+    }
+
+    private static int asQuantity(Object value) {
+        if (!(value instanceof BigDecimal)) throw new IllegalArgumentException("quantity 必須是數字");
+        try {
+            int quantity = ((BigDecimal) value).intValueExact();
+            if (quantity <= 0) throw new IllegalArgumentException("quantity 必須大於 0");
+            return quantity;
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("quantity 必須是整數");
+        }
+    }
+
+    private static Date parseDate(String text) {
+        try {
+            LocalDateTime dateTime;
+            if (text.length() == 10) dateTime = LocalDate.parse(text).atStartOfDay();
+            else if (text.length() == 16) dateTime = LocalDateTime.parse(text, DATE_TIME_MINUTES);
+            else dateTime = LocalDateTime.parse(text, DATE_TIME);
+            return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("transactionDate 格式錯誤（yyyy-MM-dd HH:mm:ss）: " + text);
+        }
+    }
+
+    /** 遞迴下降解析器 */
+    private static final class Parser {
+        private final String text;
+        private int pos;
+        private int depth;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Object readValue() {
+            skipWhitespace();
+            if (pos >= text.length()) throw error("內容不完整");
+            char c = text.charAt(pos);
+            switch (c) {
+                case '{':
+                case '[':
+                    if (++depth > MAX_DEPTH) throw error("巢狀層數超過 " + MAX_DEPTH);
+                    Object nested = c == '{' ? readObject() : readArray();
+                    depth--;
+                    return nested;
+                case '"': return readString();
+                case 't': return readLiteral("true", Boolean.TRUE);
+                case 'f': return readLiteral("false", Boolean.FALSE);
+                case 'n': return readLiteral("null", null);
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) return readNumber();
+                    throw error("無法解析的字元 '" + c + "'");
+            }
+        }
+
+        private Map<String, Object> readObject() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') throw error("物件的鍵必須是字串");
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                map.put(key, readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    return map;
+                }
+            }
+        }
+
+        private List<Object> readArray() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                list.add(readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect(']');
+                    return list;
+                }
+            }
+        }
+
+        private String readString() {
+            pos++;
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= text.length()) throw error("字串沒有結束");
+                char c = text.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) throw error("字串沒有結束");
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case '"': case '\\': case '/': sb.append(escaped); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) throw error("\\u 跳脫字元不完整");
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("\\u 跳脫字元格式錯誤");
+                        }
+                        pos += 4;
+                        break;
+                    default: throw error("不支援的跳脫字元 \\" + escaped);
+                }
+            }
+        }
+
+        private BigDecimal readNumber() {
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) pos++;
+            try {
+                return new BigDecimal(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("數字格式錯誤");
+            }
+        }
+
+        private Object readLiteral(String literal, Object value) {
+            if (!text.startsWith(literal, pos)) throw error("無法解析的字元");
+            pos += literal.length();
+            return value;
+        }
+
+        private char peek() {
+            if (pos >= text.length()) throw error("內容不完整");
+            return text.charAt(pos);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) throw error("預期 '" + c + "'");
+            pos++;
+        }
+
+        void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("JSON 格式錯誤（位置 " + pos + "）: " + message);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import event.EventPublisher;
+import event.RequestFailed;
+import model.Basket;
+import model.Receipt;
+import service.PromotionService;
+import util.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本機計價服務 (PricingServer)
+ * ------------------------------------------------------------
+ * 以 JDK 內建的 HTTP 伺服器（com.sun.net.httpserver）提供 PromotionService 的 JSON 介面，
+ * 讓自助結帳機、電商預購、機上預購等系統直接呼叫計價引擎：
+ *  - POST /price        單筆計價，請求與回應格式見 {@link PricingJson}
+ *  - POST /price/batch  批次計價 {"baskets": [...]}，回應 {"receipts": [...]}，
+ *                       同一營業日的商品與活動只查詢一次（PromotionService.calculateReceipts）
+ *  - GET  /health       服務狀態與請求計數
+ *  - GET  /metrics      Prometheus text format（計價步驟指標 + HTTP 請求指標）
+ *
+ * 連線：HTTP/1.1 keep-alive，回應一律帶 Content-Length，連線可重複使用
+ *       （未讀取的請求內容由 HttpExchange.close 讀完丟棄）。
+ * 執行緒：固定大小的執行緒池 + 有上限的佇列（-Dpos.server.threads、-Dpos.server.queue），
+ *         佇列滿時由接受連線的執行緒自己處理，自然限制流量；
+ *         -Dpos.server.virtualThreads=true 時在支援的 JDK 上改用虛擬執行緒。
+ * 啟動：java Main.App --server [port]（預設 -Dpos.server.port=8080）；
+ *       預設只監聽本機（-Dpos.server.host=127.0.0.1），對外提供服務時需明確指定位址，例如 0.0.0.0
+ * 量測：{@link LoadGenerator}
+ * ------------------------------------------------------------
+ */
+public class PricingServer {
+
+    /** 監聽位址（預設只接受本機連線） */
+    public static final String HOST = System.getProperty("pos.server.host", "127.0.0.1");
+
+    /** 監聽埠 */
+    public static final int PORT = Integer.getInteger("pos.server.port", 8080);
+
+    /** 處理請求的執行緒數 */
+    public static final int THREADS = Integer.getInteger("pos.server.threads",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    /** 等待處理的請求上限 */
+    public static final int QUEUE_CAPACITY = Integer.getInteger("pos.server.queue", 1024);
+
+    /** 是否使用虛擬執行緒（JDK 21 以上） */
+    public static final boolean VIRTUAL_THREADS = Boolean.getBoolean("pos.server.virtualThreads");
+
+    /** 單次批次請求的購物籃上限 */
+    public static final int MAX_BATCH = Integer.getInteger("pos.server.maxBatch", 1000);
+
+    /** 請求內容上限（位元組） */
+    public static final int MAX_BODY_BYTES = Integer.getInteger("pos.server.maxBodyBytes", 4 * 1024 * 1024);
+
+    private static final String JSON = "application/json; charset=UTF-8";
+
+    private final PromotionService service;
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final long startedAt = System.currentTimeMillis();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder baskets = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private PricingServer(PromotionService service, HttpServer http, ExecutorService executor) {
+        this.service = service;
+        this.http = http;
+        this.executor = executor;
+    }
+
+    /**
+     * 在預設位址（-Dpos.server.host）啟動計價服務。
+     *
+     * @param service 計價服務
+     * @param port 監聽埠（0 表示由系統指定）
+     * @return 已啟動的伺服器
+     * @throws IOException 無法監聽時
+     */
+    public static PricingServer start(PromotionService service, int port) throws IOException {
+        return start(service, HOST, port);
+    }
+
+    /**
+     * 啟動計價服務。
+     *
+     * @param service 計價服務
+     * @param host 監聽位址（0.0.0.0 表示所有網路介面）
+     * @param port 監聽埠（0 表示由系統指定）
+     * @return 已啟動的伺服器
+     * @throws IOException 無法監聽時
+     */
+    public static PricingServer start(PromotionService service, String host, int port) throws IOException {
+        // 關閉 Nagle，小型 JSON 回應不等待合併封包（需在 HttpServer 類別載入前設定）
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer http = HttpServer.create(new InetSocketAddress(host, port), QUEUE_CAPACITY);
+        ExecutorService executor = newExecutor();
+        PricingServer server = new PricingServer(service, http, executor);
+        http.createContext("/price", server.handler(server::price));
+        http.createContext("/price/batch", server.handler(server::priceBatch));
+        http.createContext("/health", server.handler(server::health));
+        http.createContext("/metrics", server.handler(server::metrics));
+        http.setExecutor(executor);
+        http.start();
+        return server;
+    }
+
+    /** 實際監聽的位址 */
+    public InetSocketAddress getAddress() {
+        return http.getAddress();
+    }
+
+    /** 實際監聽的埠 */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /**
+     * 停止服務：不再接受新連線，最多等待 delaySeconds 讓進行中的請求完成。
+     *
+     * @param delaySeconds 等待秒數
+     */
+    public void stop(int delaySeconds) {
+        http.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    private static ExecutorService newExecutor() {
+        if (VIRTUAL_THREADS) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("警告: 此 JDK 不支援虛擬執行緒，改用固定大小的執行緒池");
+            }
+        }
+        AtomicInteger sequence = new AtomicInteger();
+        return new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                task -> {
+                    Thread thread = new Thread(task, "pricing-http-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /** 單一路徑的處理邏輯 */
+    @FunctionalInterface
+    private interface Endpoint {
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    /** 回應內容 */
+    private static final class Response {
+        final int status;
+        final String contentType;
+        final String body;
+
+        Response(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /** 共用的計數、錯誤處理與回應輸出 */
+    private HttpHandler handler(Endpoint endpoint) {
+        return exchange -> {
+            long start = System.nanoTime();
+            requests.increment();
+            Response response;
+            try {
+                if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                    response = error(404, "找不到路徑 " + exchange.getRequestURI().getPath());
+                } else {
+                    response = endpoint.handle(exchange);
+                }
+            } catch (IllegalArgumentException e) {
+                response = error(400, e.getMessage());
+            } catch (Exception e) {
+                EventPublisher.getDefault().publish(new RequestFailed(exchange.getRequestURI().getPath(), e));
+                response = error(500, "計算過程中發生錯誤: " + e.getMessage());
+            }
+            if (response.status >= 400) errors.increment();
+            try {
+                send(exchange, response);
+            } finally {
+                latency.record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    private Response price(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) return error(405, "只接受 POST");
+        Basket basket = PricingJson.toBasket(PricingJson.parse(readBody(exchange)), new Date());
+        Receipt receipt = service.calculateReceipt(basket.getCartItems(), basket.getTransactionDate(), basket.isCompanyMember());
+        baskets.increment();
+
+        StringBuilder out = new StringBuilder(1024);
+        PricingJson.writeReceipt(receipt, out);
+        return new Response(200, JSON, out.toString());
+    }
+
+    private Response priceBatch(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) return error(405, "只接受 POST");
+        Object request = PricingJson.parse(readBody(exchange));
+        // 先檢查筆數再轉換，超過上限的批次不建立任何購物籃
+        if (PricingJson.countBaskets(request) > MAX_BATCH) return error(413, "一次最多 " + MAX_BATCH + " 筆購物籃");
+        List<Basket> batch = PricingJson.toBaskets(request, new Date());
+        List<Receipt> receipts = service.calculateReceipts(batch);
+        baskets.add(batch.size());
+
+        StringBuilder out = new StringBuilder(512 + receipts.size() * 1024);
+        out.append("{\"receipts\":[");
+        for (int i = 0; i < receipts.size(); i++) {
+            if (i > 0) out.append(',');
+            PricingJson.writeReceipt(receipts.get(i), out);
+        }
+        out.append("]}");
+        return new Response(200, JSON, out.toString());
+    }
+
+    private Response health(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) return error(405, "只接受 GET");
+        String body = "{\"status\":\"UP\"" +
+                ",\"uptimeSeconds\":" + (System.currentTimeMillis() - startedAt) / 1000 +
+                ",\"requests\":" + requests.sum() +
+                ",\"errors\":" + errors.sum() +
+                ",\"baskets\":" + baskets.sum() + "}";
+        return new Response(200, JSON, body);
+    }
+
+    private Response metrics(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) return error(405, "只接受 GET");
+        StringBuilder out = new StringBuilder(service.exportMetrics());
+        appendCounter(out, "pos_http_requests_total", "HTTP 請求數", requests.sum());
+        appendCounter(out, "pos_http_errors_total", "HTTP 錯誤回應數（4xx、5xx）", errors.sum());
+        appendCounter(out, "pos_http_baskets_total", "計價的購物籃數", baskets.sum());
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        out.append("# HELP pos_http_request_latency_seconds HTTP 請求處理時間\n");
+        out.append("# TYPE pos_http_request_latency_seconds summary\n");
+        for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            out.append("pos_http_request_latency_seconds{quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(snapshot.getValueAtPercentile(quantile * 100))).append('\n');
+        }
+        out.append("pos_http_request_latency_seconds_sum ").append(seconds(snapshot.getSum())).append('\n');
+        out.append("pos_http_request_latency_seconds_count ").append(snapshot.getCount()).append('\n');
+        return new Response(200, "text/plain; version=0.0.4; charset=UTF-8", out.toString());
+    }
+
+    private static void appendCounter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(double nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1_000_000_000.0);
+    }
+
+    private static Response error(int status, String message) {
+        StringBuilder out = new StringBuilder("{\"error\":");
+        PricingJson.writeString(message, out);
+        return new Response(status, JSON, out.append('}').toString());
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("請求內容超過 " + MAX_BODY_BYTES + " 位元組");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 以預設資料來源（-Dpos.data.source）啟動計價服務。
+     *
+     * @param args [port]
+     * @throws IOException 無法監聽時
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+        PricingServer server = start(new PromotionService(), port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1), "pricing-http-shutdown"));
+        System.out.println("計價服務已啟動: http://" + HOST + ":" + server.getPort() +
+                "（POST /price、POST /price/batch、GET /health、GET /metrics）");
+    }
+}
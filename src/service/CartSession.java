@@ -0,0 +1,302 @@
+package service;
+
+import event.ItemNotFound;
+import model.Activity;
+import model.CartItem;
+import model.Item;
+import model.Line;
+import model.Receipt;
+import model.ReceiptTotals;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 收銀台購物車工作階段 (CartSession)
+ * ------------------------------------------------------------
+ * 收銀員逐筆掃描商品時，客顯需要在每次掃描後更新金額。
+ * 本類別保留收據與明細狀態，新增／刪除／修改數量時只重算受影響的部分：
+ *  1. 只查詢被掃描的那一項商品（經過商品快取），活動在開啟時載入一次
+ *  2. 手動折扣與會員折扣（流程中促銷之前的逐筆明細階段）只計算異動的明細
+ *  3. 從異動明細的分類出發，找出彼此有關聯的活動與分類（連通部分），
+ *     只清除並重新套用這些活動，其餘明細的促銷折扣不變
+ *  4. 收據總額以差額加減維護，不重新加總全部明細
+ * ------------------------------------------------------------
+ * 結果與對整個購物車呼叫 {@link PromotionService#calculateReceipt} 相同
+ * （金額相同；總額的 BigDecimal 小數位數可能因刪除明細而較多）。
+ * 全館（ALL）活動會把所有分類連成一個部分，此時仍需重算購物車內所有明細的促銷分攤。
+ * 啟用活動組合最佳化（{@link PromotionOptimizer}）時，每次異動都重新選擇整張收據的活動。
+ *
+ * 非執行緒安全：一個收銀台使用一個工作階段。
+ * ------------------------------------------------------------
+ */
+public class CartSession {
+
+    private final PromotionService service;
+    private final Date transactionDate;
+    private final PromotionIndex index;
+
+    private final Receipt receipt = new Receipt();
+
+    /** 與收據明細一一對應的購物車項目 */
+    private final List<CartItem> cartItems = new ArrayList<>();
+
+    /** 分類代碼（大寫）→ 該分類的明細 */
+    private final Map<String, List<Line>> linesByCategory = new HashMap<>();
+
+    /** 明細的掃描序號（刪除明細後仍可依收據順序排列） */
+    private final Map<Line, Long> sequence = new IdentityHashMap<>();
+    private long nextSequence;
+
+    /** 各活動目前的折扣金額（依活動位置，未觸發為 null；級距與累送使金額隨購物車變動） */
+    private final BigDecimal[] awarded;
+
+    /** 收據總額（以差額維護） */
+    private final ReceiptTotals totals = new ReceiptTotals();
+
+    /** 促銷階段之前的逐筆明細階段（依流程順序，非會員不含會員階段） */
+    private final List<LineDiscountStage> lineStages = new ArrayList<>();
+    private final boolean promotions;
+    private final DiscountContext context;
+
+    CartSession(PromotionService service, Date transactionDate, boolean companyMember, PromotionIndex index,
+                DiscountPipeline pipeline) {
+        this.service = service;
+        this.transactionDate = transactionDate;
+        this.index = index;
+        this.awarded = new BigDecimal[index.size()];
+        this.context = new DiscountContext(service, receipt, companyMember, index, service.getEventPublisher(), false);
+        for (LineDiscountStage stage : pipeline.getLineStages()) {
+            if (stage.appliesTo(context)) lineStages.add(stage);
+        }
+        this.promotions = pipeline.hasPromotions();
+    }
+
+    /**
+     * 掃描一項商品。
+     *
+     * @param itemCode 商品代碼
+     * @param quantity 數量
+     * @return 新增的明細；查無商品或交易日尚無價格時回傳 null（收據不變）
+     */
+    public Line add(String itemCode, int quantity) {
+        return add(itemCode, quantity, null);
+    }
+
+    /**
+     * 掃描一項商品並指定單項手動折扣。
+     *
+     * @param itemCode 商品代碼
+     * @param quantity 數量
+     * @param manualDiscount 手動折扣金額，可為 null
+     * @return 新增的明細（合併模式下為更新後的既有明細）；查無商品或交易日尚無價格時回傳 null（收據不變）
+     */
+    public Line add(String itemCode, int quantity, BigDecimal manualDiscount) {
+        if (service.isMergeDuplicateItems()) {
+            // 合併模式：同一商品再次掃描時只增加既有明細的數量
+            int position = receipt.indexOfItemCode(itemCode);
+            if (position >= 0) {
+                CartItem existing = cartItems.get(position);
+                if (manualDiscount != null) {
+                    existing.setManualDiscount(existing.getManualDiscount() == null
+                            ? manualDiscount : existing.getManualDiscount().add(manualDiscount));
+                }
+                changeQuantity(position, existing.getQuantity() + quantity);
+                return receipt.getLines().get(position);
+            }
+        }
+        Item item = service.findItem(itemCode, transactionDate);
+        if (!PromotionService.isPriced(item)) {
+            service.getEventPublisher().publish(new ItemNotFound(itemCode));
+            return null;
+        }
+        CartItem cartItem = new CartItem(itemCode, quantity);
+        cartItem.setManualDiscount(manualDiscount);
+        cartItem.setItem(item);
+
+        Line line = pricedLine(cartItem);
+        cartItems.add(cartItem);
+        receipt.appendLine(line);
+        register(line, nextSequence++);
+        totals.add(line);
+        recomputeComponent(line.getCategoryCode());
+        totals.applyTo(receipt);
+        return line;
+    }
+
+    /**
+     * 刪除一筆明細。
+     *
+     * @param lineIndex 明細位置（收據順序）
+     */
+    public void remove(int lineIndex) {
+        Line line = receipt.removeLine(lineIndex);
+        cartItems.remove(lineIndex);
+        totals.subtract(line);
+        unregister(line);
+        recomputeComponent(line.getCategoryCode());
+        totals.applyTo(receipt);
+    }
+
+    /**
+     * 修改明細數量；數量小於等於 0 時刪除該明細。
+     *
+     * @param lineIndex 明細位置（收據順序）
+     * @param quantity 新數量
+     */
+    public void changeQuantity(int lineIndex, int quantity) {
+        if (quantity <= 0) {
+            remove(lineIndex);
+            return;
+        }
+        Line previous = receipt.getLines().get(lineIndex);
+        CartItem cartItem = cartItems.get(lineIndex);
+        cartItem.setQuantity(quantity);
+
+        Line line = pricedLine(cartItem);
+        receipt.setLine(lineIndex, line);
+        totals.subtract(previous);
+        long position = sequence.get(previous);
+        unregister(previous);
+        register(line, position);
+        totals.add(line);
+        recomputeComponent(line.getCategoryCode());
+        totals.applyTo(receipt);
+    }
+
+    /** 目前的收據（每次異動後即為最新金額） */
+    public Receipt getReceipt() {
+        return receipt;
+    }
+
+    /** 目前的購物車內容（結帳時可交給 calculateReceipt 重新核算） */
+    public List<CartItem> getCartItems() {
+        return Collections.unmodifiableList(cartItems);
+    }
+
+    public int size() {
+        return cartItems.size();
+    }
+
+    /** 建立明細並套用促銷之前的逐筆明細階段（預設為手動折扣與會員折扣） */
+    private Line pricedLine(CartItem cartItem) {
+        Line line = service.toLine(cartItem);
+        for (LineDiscountStage stage : lineStages) {
+            stage.apply(line, context);
+        }
+        return line;
+    }
+
+    /**
+     * Step 3：重新套用與指定分類有關聯的活動。
+     * 從分類出發，交替展開「分類 → 適用活動 → 活動涵蓋的分類」，
+     * 得到的活動只會影響這些分類的明細，其他明細不受影響。
+     */
+    private void recomputeComponent(String categoryCode) {
+        String start = categoryKey(categoryCode);
+        if (start == null || !promotions) return;
+        if (service.getPromotionOptimizer() != null) {
+            recomputeAll();
+            return;
+        }
+
+        boolean[] selected = new boolean[index.size()];
+        Set<String> categories = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        categories.add(start);
+        pending.add(start);
+        while (!pending.isEmpty()) {
+            index.forEachMatchingActivity(pending.poll(), position -> {
+                if (selected[position]) return;
+                selected[position] = true;
+                PromotionIndex.CompiledActivity activity = index.getActivity(position);
+                Iterable<String> reachable = activity.isWildcard() ? linesByCategory.keySet() : activity.getCategories();
+                for (String category : reachable) {
+                    if (linesByCategory.containsKey(category) && categories.add(category)) {
+                        pending.add(category);
+                    }
+                }
+            });
+        }
+
+        // 依收據順序收集受影響的明細（分攤時最後一筆補差額，順序必須相同）
+        List<Line> affected = new ArrayList<>();
+        for (String category : categories) {
+            List<Line> lines = linesByCategory.get(category);
+            if (lines != null) affected.addAll(lines);
+        }
+        affected.sort((a, b) -> Long.compare(sequence.get(a), sequence.get(b)));
+
+        for (Line line : affected) {
+            totals.subtract(line);
+            line.clearPromotionDiscount();
+        }
+
+        // 未選取的活動不會被寫入 awarded，維持原本狀態
+        service.applyPromotionActivities(new Receipt(), affected, index, selected, awarded, false);
+
+        for (Line line : affected) {
+            totals.add(line);
+        }
+        rebuildActivityDiscounts();
+    }
+
+    /** 最佳化模式：活動之間互相取捨，任何異動都可能改變選擇，整張收據重新選擇並套用 */
+    private void recomputeAll() {
+        List<Line> lines = receipt.getLines();
+        for (Line line : lines) {
+            totals.subtract(line);
+            line.clearPromotionDiscount();
+        }
+        Arrays.fill(awarded, null);
+        service.applyPromotionActivities(new Receipt(), lines, index,
+                service.selectPromotionActivities(lines, index), awarded, false);
+        for (Line line : lines) {
+            totals.add(line);
+        }
+        rebuildActivityDiscounts();
+    }
+
+    /** 依活動順序重建活動折扣清單（同名活動以後者為準，與完整計算相同） */
+    private void rebuildActivityDiscounts() {
+        Map<String, BigDecimal> discounts = receipt.getActivityDiscounts();
+        discounts.clear();
+        for (int i = 0; i < awarded.length; i++) {
+            if (awarded[i] != null) {
+                Activity activity = index.getActivity(i).getActivity();
+                discounts.put(activity.getActivityName(), awarded[i]);
+            }
+        }
+    }
+
+    private void register(Line line, long position) {
+        sequence.put(line, position);
+        String key = categoryKey(line.getCategoryCode());
+        if (key != null) linesByCategory.computeIfAbsent(key, k -> new ArrayList<>()).add(line);
+    }
+
+    private void unregister(Line line) {
+        sequence.remove(line);
+        String key = categoryKey(line.getCategoryCode());
+        if (key == null) return;
+        List<Line> lines = linesByCategory.get(key);
+        lines.remove(line);
+        if (lines.isEmpty()) linesByCategory.remove(key);
+    }
+
+    private static String categoryKey(String categoryCode) {
+        return categoryCode == null ? null : categoryCode.toUpperCase(Locale.ROOT);
+    }
+}
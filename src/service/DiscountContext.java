@@ -0,0 +1,73 @@
+package service;
+
+import event.EventPublisher;
+import model.Line;
+import model.Receipt;
+
+import java.util.List;
+
+/**
+ * 單張收據的折扣計算狀態 (DiscountContext)
+ * ------------------------------------------------------------
+ * 由 PromotionService 為每張收據（或每個購物車工作階段）建立一次，
+ * 傳給流程中的每個 {@link DiscountStage}。只屬於這一張收據，不跨執行緒共用。
+ * ------------------------------------------------------------
+ */
+public final class DiscountContext {
+
+    private final PromotionService service;
+    private final Receipt receipt;
+    private final boolean companyMember;
+    private final PromotionIndex index;
+    private final EventPublisher events;
+    private final boolean trace;
+
+    /** 是否有明細的分類被活動涵蓋：0 未計算、1 是、-1 否 */
+    private int promotable;
+
+    DiscountContext(PromotionService service, Receipt receipt, boolean companyMember,
+                    PromotionIndex index, EventPublisher events, boolean trace) {
+        this.service = service;
+        this.receipt = receipt;
+        this.companyMember = companyMember;
+        this.index = index;
+        this.events = events;
+        this.trace = trace;
+    }
+
+    /** 收據（明細與活動折扣） */
+    public Receipt getReceipt() { return receipt; }
+
+    /** 收據明細（依收據順序） */
+    public List<Line> getLines() { return receipt.getLines(); }
+
+    public boolean isCompanyMember() { return companyMember; }
+
+    /** 交易日的活動索引 */
+    public PromotionIndex getIndex() { return index; }
+
+    /** 折扣事件發布器 */
+    public EventPublisher getEvents() { return events; }
+
+    /** 是否發布折扣事件（批次模式關閉） */
+    public boolean isTrace() { return trace; }
+
+    /** 計算這張收據的服務（內建促銷階段使用） */
+    PromotionService getService() { return service; }
+
+    /** 是否有任何明細的分類被活動涵蓋（第一次呼叫時計算） */
+    public boolean hasPromotableLines() {
+        if (promotable == 0) {
+            promotable = -1;
+            if (index.size() > 0) {
+                for (Line line : getLines()) {
+                    if (index.coversCategory(line.getCategoryCode())) {
+                        promotable = 1;
+                        break;
+                    }
+                }
+            }
+        }
+        return promotable > 0;
+    }
+}
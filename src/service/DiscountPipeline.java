@@ -0,0 +1,192 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 折扣計算流程 (DiscountPipeline)
+ * ------------------------------------------------------------
+ * 依序執行的折扣階段，建立時編譯成固定陣列，之後每張收據只做：
+ *  1. 逐一詢問階段 appliesTo（非會員略過會員階段、沒有活動涵蓋的分類略過促銷階段）
+ *  2. 依序套用其餘階段
+ * 不再有任何組態判斷或集合配置，新增規則類型不增加每張收據的額外成本。
+ *
+ * 建立時依各階段宣告的讀寫欄位（{@link LineField}）檢查：
+ *  - 不可寫入輸入欄位（原價、分類）
+ *  - 手動折扣、會員折扣只能由一個階段寫入
+ *  - 不可讀取由後面階段才寫入的折扣欄位
+ *  - 階段名稱不可重複
+ * 不符合時 build() 丟出 IllegalStateException。
+ *
+ * 預設流程為「手動 → 會員 → 促銷」（POS 銷售規則），
+ * 可用 -Dpos.pipeline.stages=manual,member,promotion 調整內建階段的組合與順序。
+ * 建立後不再改變，可由多個執行緒共用。
+ * ------------------------------------------------------------
+ */
+public final class DiscountPipeline {
+
+    /** 內建階段的預設順序 */
+    public static final String DEFAULT_STAGES = "manual,member,promotion";
+
+    private final DiscountStage[] stages;
+
+    /** 各階段記錄耗時的指標項目 */
+    private final PromotionMetrics.Stage[] metricStages;
+
+    /** 逐筆明細的階段都在促銷階段之前時，購物車工作階段可增量計算 */
+    private final boolean incremental;
+
+    /** 是否有促銷階段 */
+    private final boolean promotions;
+
+    /** 流程恰為「手動 → 會員 → 促銷」時的會員階段（定點數引擎可取代整個流程），否則為 null */
+    private final MemberDiscountStage standardMember;
+
+    private DiscountPipeline(DiscountStage[] stages) {
+        this.stages = stages;
+        this.metricStages = new PromotionMetrics.Stage[stages.length];
+        boolean incremental = true;
+        boolean promotions = false;
+        for (int i = 0; i < stages.length; i++) {
+            DiscountStage stage = stages[i];
+            if (stage instanceof ManualDiscountStage) metricStages[i] = PromotionMetrics.Stage.MANUAL_DISCOUNT;
+            else if (stage instanceof MemberDiscountStage) metricStages[i] = PromotionMetrics.Stage.MEMBER_DISCOUNT;
+            else if (stage instanceof PromotionStage) metricStages[i] = PromotionMetrics.Stage.APPLY_PROMOTIONS;
+            else metricStages[i] = PromotionMetrics.Stage.CUSTOM_DISCOUNT;
+
+            if (stage instanceof PromotionStage) {
+                if (promotions) incremental = false;
+                promotions = true;
+            } else if (!(stage instanceof LineDiscountStage) || promotions) {
+                incremental = false;
+            }
+        }
+        this.incremental = incremental;
+        this.promotions = promotions;
+        this.standardMember = stages.length == 3 && stages[0] instanceof ManualDiscountStage
+                && stages[1] instanceof MemberDiscountStage && stages[2] instanceof PromotionStage
+                ? (MemberDiscountStage) stages[1] : null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 依系統參數建立流程。
+     *
+     * @return -Dpos.pipeline.stages 指定的內建階段（預設手動 → 會員 → 促銷）
+     */
+    public static DiscountPipeline fromSystemProperties() {
+        Builder builder = builder();
+        for (String name : System.getProperty("pos.pipeline.stages", DEFAULT_STAGES).split(",")) {
+            switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "manual": builder.add(new ManualDiscountStage()); break;
+                case "member": builder.add(MemberDiscountStage.fromSystemProperties()); break;
+                case "promotion": builder.add(new PromotionStage()); break;
+                case "": break;
+                default: throw new IllegalArgumentException("未知的折扣階段: " + name.trim());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 依序套用各階段（無法套用的階段略過）。
+     *
+     * @param context 收據計算狀態
+     * @param metrics 記錄各階段耗時
+     */
+    void apply(DiscountContext context, PromotionMetrics metrics) {
+        for (int i = 0; i < stages.length; i++) {
+            DiscountStage stage = stages[i];
+            if (!stage.appliesTo(context)) continue;
+            long start = metrics.start();
+            stage.apply(context);
+            metrics.record(metricStages[i], start);
+        }
+    }
+
+    /** 促銷階段之前的逐筆明細階段（購物車工作階段逐筆套用） */
+    List<LineDiscountStage> getLineStages() {
+        List<LineDiscountStage> result = new ArrayList<>();
+        for (DiscountStage stage : stages) {
+            if (stage instanceof PromotionStage) break;
+            if (stage instanceof LineDiscountStage) result.add((LineDiscountStage) stage);
+        }
+        return result;
+    }
+
+    public int size() { return stages.length; }
+
+    public DiscountStage getStage(int position) { return stages[position]; }
+
+    /** 購物車工作階段能否增量計算（逐筆明細階段在前，最多一個促銷階段在最後） */
+    public boolean isIncremental() { return incremental; }
+
+    /** 是否有促銷階段 */
+    public boolean hasPromotions() { return promotions; }
+
+    /** 流程恰為「手動 → 會員 → 促銷」時回傳會員階段，否則回傳 null */
+    MemberDiscountStage getStandardMember() { return standardMember; }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (DiscountStage stage : stages) {
+            if (out.length() > 0) out.append(" → ");
+            out.append(stage.getName());
+        }
+        return out.toString();
+    }
+
+    /** 逐一加入階段，build() 檢查讀寫宣告後編譯成流程 */
+    public static final class Builder {
+        private final List<DiscountStage> stages = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder add(DiscountStage stage) {
+            stages.add(stage);
+            return this;
+        }
+
+        public DiscountPipeline build() {
+            Set<String> names = new HashSet<>();
+            Map<LineField, String> writers = new EnumMap<>(LineField.class);
+            for (DiscountStage stage : stages) {
+                if (!names.add(stage.getName())) {
+                    throw new IllegalStateException("折扣階段名稱重複: " + stage.getName());
+                }
+                for (LineField field : stage.getWrites()) {
+                    if (field.isInput()) {
+                        throw new IllegalStateException(stage.getName() + " 不可寫入輸入欄位 " + field);
+                    }
+                    String previous = writers.put(field, stage.getName());
+                    if (field.isExclusive() && previous != null) {
+                        throw new IllegalStateException(field + " 同時由 " + previous + " 與 " + stage.getName() + " 寫入");
+                    }
+                }
+            }
+            // 讀取的折扣欄位必須由自己或前面的階段寫入（或完全沒有階段寫入）
+            Set<LineField> written = new HashSet<>();
+            for (DiscountStage stage : stages) {
+                written.addAll(stage.getWrites());
+                for (LineField field : stage.getReads()) {
+                    if (field.isInput() || field == LineField.FINAL_AMOUNT) continue;
+                    if (writers.containsKey(field) && !written.contains(field)) {
+                        throw new IllegalStateException(stage.getName() + " 讀取 " + field
+                                + "，但它在後面的 " + writers.get(field) + " 才寫入");
+                    }
+                }
+            }
+            return new DiscountPipeline(stages.toArray(new DiscountStage[0]));
+        }
+    }
+}
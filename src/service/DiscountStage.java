@@ -0,0 +1,45 @@
+package service;
+
+import java.util.Set;
+
+/**
+ * 折扣計算階段 (DiscountStage)
+ * ------------------------------------------------------------
+ * 收據的折扣由一連串階段依序計算（見 {@link DiscountPipeline}），
+ * 內建階段為手動折扣、會員折扣與條件活動折扣；新的規則類型只需實作此介面並加入流程。
+ *  1. 宣告讀取與寫入的明細欄位，建立流程時檢查組合與順序
+ *  2. appliesTo 在計算前判斷這張收據是否可能套用，不可能時整個階段略過
+ *  3. apply 計算並寫入明細（與收據的活動折扣）
+ *
+ * 階段物件由多個執行緒共用，不可保存單張收據的狀態（放在 {@link DiscountContext}）。
+ * 只讀寫單一明細的規則請實作 {@link LineDiscountStage}，購物車工作階段可逐筆套用。
+ * ------------------------------------------------------------
+ */
+public interface DiscountStage {
+
+    /** 階段名稱（流程中不可重複） */
+    String getName();
+
+    /** 讀取的明細欄位 */
+    Set<LineField> getReads();
+
+    /** 寫入的明細欄位 */
+    Set<LineField> getWrites();
+
+    /**
+     * 這張收據是否可能套用此階段；回傳 false 時整個階段略過。
+     *
+     * @param context 收據計算狀態
+     * @return 預設一律套用
+     */
+    default boolean appliesTo(DiscountContext context) {
+        return true;
+    }
+
+    /**
+     * 計算此階段的折扣。
+     *
+     * @param context 收據計算狀態
+     */
+    void apply(DiscountContext context);
+}
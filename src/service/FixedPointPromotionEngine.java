@@ -0,0 +1,268 @@
+package service;
+
+import event.EventPublisher;
+import event.ManualDiscountApplied;
+import event.MemberDiscountApplied;
+import event.PromotionTriggered;
+import model.Activity;
+import model.CartItem;
+import model.Item;
+import model.Line;
+import model.Receipt;
+import util.MoneyMath;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 定點數促銷計算引擎 (FixedPointPromotionEngine)
+ * ------------------------------------------------------------
+ * 與 PromotionService 的 BigDecimal 流程使用相同的三個步驟：
+ *  1. 單項手動折扣
+ *  2. 公司會員折扣
+ *  3. 條件活動折扣（依比例分攤）
+ * 但所有中間金額以 long（分）存放在陣列中，
+ * 只有在最後組成 Receipt 時才轉回 BigDecimal。
+ *
+ * 捨入規則與小數位數完全比照 BigDecimal 流程，
+ * 產生的收據逐欄位相同（含 BigDecimal 的 scale）。
+ * 單價超過兩位小數等無法精確表示的情況，由 {@link #supports} 判斷後改走原流程。
+ * ------------------------------------------------------------
+ */
+class FixedPointPromotionEngine {
+
+    /** 比例計算的小數位數（與 BigDecimal 流程的 SCALE = 6 相同） */
+    private static final long RATIO_ONE = 1_000_000L;
+
+    private final String memberCategory;
+    private final BigDecimal memberDiscountRate;
+    private EventPublisher events = EventPublisher.getDefault();
+
+    /** 會員折扣比例 (1 - 折扣率) 以 memberNumerator / memberDenominator 表示 */
+    private final boolean memberRateExact;
+    private final long memberNumerator;
+    private final long memberDenominator;
+
+    FixedPointPromotionEngine(String memberCategory, BigDecimal memberDiscountRate) {
+        this.memberCategory = memberCategory;
+        this.memberDiscountRate = memberDiscountRate;
+
+        BigDecimal complement = BigDecimal.ONE.subtract(memberDiscountRate);
+        boolean exact = memberDiscountRate.compareTo(BigDecimal.ZERO) > 0
+                && complement.scale() >= 0 && complement.scale() <= 9;
+        long numerator = 0L;
+        long denominator = 1L;
+        if (exact) {
+            numerator = complement.unscaledValue().longValue();
+            denominator = BigDecimal.TEN.pow(complement.scale()).longValueExact() * MoneyMath.MINOR_PER_UNIT;
+        }
+        this.memberRateExact = exact;
+        this.memberNumerator = numerator;
+        this.memberDenominator = denominator;
+    }
+
+    void setEventPublisher(EventPublisher events) {
+        this.events = events;
+    }
+
+    /**
+     * 判斷此購物車能否以定點數精確計算。
+     * 單價為 null、超過兩位小數，或活動金額無法以分表示時回傳 false。
+     */
+    boolean supports(List<CartItem> cartItems, PromotionIndex index, boolean isCompanyMember) {
+        if (isCompanyMember && !memberRateExact) return false;
+        for (CartItem cartItem : cartItems) {
+            Item item = cartItem.getItem();
+            if (item == null) continue;
+            BigDecimal unitPrice = item.getUnitPrice();
+            if (unitPrice == null || unitPrice.scale() < 0 || unitPrice.scale() > MoneyMath.MINOR_SCALE
+                    || !MoneyMath.isMinorExact(unitPrice)) {
+                return false;
+            }
+        }
+        return index.isMinorExact();
+    }
+
+    /**
+     * 計算收據（購物車商品資訊須已補齊）。
+     *
+     * @param cartItems 購物車
+     * @param index 活動索引
+     * @param isCompanyMember 是否為公司會員
+     * @param trace 是否發布折扣事件
+     * @return 與 BigDecimal 流程相同的收據
+     */
+    Receipt calculate(List<CartItem> cartItems, PromotionIndex index, boolean isCompanyMember, boolean trace) {
+        // 轉換為明細陣列（只保留查得到商品的項目）
+        List<CartItem> priced = new ArrayList<>(cartItems.size());
+        for (CartItem cartItem : cartItems) {
+            if (PromotionService.isPriced(cartItem.getItem())) priced.add(cartItem);
+        }
+        int n = priced.size();
+        LineAmounts amounts = new LineAmounts(n);
+        String[] categoryCodes = new String[n];
+
+        for (int i = 0; i < n; i++) {
+            CartItem cartItem = priced.get(i);
+            Item item = cartItem.getItem();
+            categoryCodes[i] = item.getCategory01();
+            amounts.priceScale[i] = item.getUnitPrice().scale();
+            amounts.original[i] = Math.multiplyExact(MoneyMath.toMinor(item.getUnitPrice()), (long) cartItem.getQuantity());
+            amounts.finalAmount[i] = amounts.original[i];
+
+            // Step 1: 手動折扣（小計前）
+            BigDecimal manual = cartItem.getManualDiscount();
+            if (manual != null && manual.compareTo(BigDecimal.ZERO) > 0) {
+                long manualUnits = manual.setScale(0, RoundingMode.HALF_UP).longValueExact();
+                amounts.manual[i] = Math.multiplyExact(manualUnits, MoneyMath.MINOR_PER_UNIT);
+                amounts.recalc(i);
+                if (trace) events.publish(new ManualDiscountApplied(item.getItemCode(), item.getItemName(), BigDecimal.valueOf(manualUnits)));
+            }
+        }
+
+        // Step 2: 公司會員折扣
+        if (isCompanyMember) {
+            for (int i = 0; i < n; i++) {
+                if (memberCategory.equals(categoryCodes[i])) {
+                    long base = amounts.original[i] - amounts.manual[i];
+                    long discountUnits = MoneyMath.divideHalfUp(Math.multiplyExact(base, memberNumerator), memberDenominator);
+                    amounts.member[i] = discountUnits * MoneyMath.MINOR_PER_UNIT;
+                    amounts.recalc(i);
+                    if (trace) events.publish(new MemberDiscountApplied(priced.get(i).getItemCode(),
+                            priced.get(i).getItem().getItemName(), memberDiscountRate,
+                            BigDecimal.valueOf(amounts.member[i], MoneyMath.MINOR_SCALE)));
+                }
+            }
+        }
+
+        // Step 3: 條件活動折扣
+        Receipt receipt = new Receipt();
+        int[][] eligibleByActivity = index.eligibleIndexesByActivity(categoryCodes);
+        for (int a = 0; a < index.size(); a++) {
+            PromotionIndex.CompiledActivity compiled = index.getActivity(a);
+            int[] eligible = eligibleByActivity[a];
+            long eligibleTotal = 0L;
+            for (int i : eligible) eligibleTotal += amounts.finalAmount[i];
+
+            int tier = compiled.tierForMinor(eligibleTotal);
+            if (tier >= 0) {
+                long times = compiled.repeatTimesMinor(tier, eligibleTotal);
+                BigDecimal award = compiled.getAward(tier, times);
+                distributeDiscount(amounts, eligible, compiled.getAwardMinor(tier, times), eligibleTotal);
+                Activity activity = compiled.getActivity();
+                receipt.addActivityDiscount(activity.getActivityName(), award);
+                if (trace) events.publish(new PromotionTriggered(
+                        activity.getActivityCode(),
+                        activity.getActivityName(),
+                        activity.getItemDiscountGroup(),
+                        BigDecimal.valueOf(eligibleTotal, MoneyMath.MINOR_SCALE),
+                        award));
+            }
+        }
+
+        return toReceipt(receipt, priced, amounts);
+    }
+
+    /** 折扣分攤邏輯（與 BigDecimal 流程相同：比例取 6 位小數，最後一筆補差額） */
+    private void distributeDiscount(LineAmounts amounts, int[] eligible, long totalDiscount, long eligibleTotal) {
+        if (eligible.length == 0 || eligibleTotal == 0) return;
+
+        long distributed = 0L;
+        for (int k = 0; k < eligible.length; k++) {
+            int i = eligible[k];
+            long lineDiscount;
+            if (k == eligible.length - 1) {
+                lineDiscount = totalDiscount - distributed;
+            } else {
+                long ratio = MoneyMath.divideHalfUp(Math.multiplyExact(amounts.finalAmount[i], RATIO_ONE), eligibleTotal);
+                long units = MoneyMath.divideHalfUp(Math.multiplyExact(totalDiscount, ratio),
+                        MoneyMath.MINOR_PER_UNIT * RATIO_ONE);
+                lineDiscount = units * MoneyMath.MINOR_PER_UNIT;
+            }
+            distributed += lineDiscount;
+            if (lineDiscount > 0) {
+                amounts.promotion[i] += MoneyMath.roundToUnitHalfUp(lineDiscount);
+                amounts.recalc(i);
+            }
+        }
+    }
+
+    /** 在 API 邊界將定點數結果轉回 BigDecimal 的明細與總額 */
+    private Receipt toReceipt(Receipt receipt, List<CartItem> priced, LineAmounts amounts) {
+        List<Line> lines = new ArrayList<>(priced.size());
+        long totalOriginal = 0L, totalMember = 0L, totalPromotion = 0L, totalDiscount = 0L, totalFinal = 0L;
+        int originalScale = 0, finalScale = 0;
+
+        for (int i = 0; i < priced.size(); i++) {
+            CartItem cartItem = priced.get(i);
+            Item item = cartItem.getItem();
+            int scale = amounts.priceScale[i];
+            // 最終金額若曾被歸零，BigDecimal 流程會使用 BigDecimal.ZERO（scale 0）
+            int lineFinalScale = amounts.clamped[i] ? 0 : scale;
+            long lineDiscount = amounts.manual[i] + amounts.member[i] + amounts.promotion[i];
+
+            Line line = new Line();
+            line.setItemCode(cartItem.getItemCode());
+            line.setItemName(item.getItemName());
+            line.setCategoryCode(item.getCategory01());
+            line.setCategoryName(item.getCategory01Name());
+            line.setQuantity(cartItem.getQuantity());
+            line.setUnitPrice(item.getUnitPrice());
+            line.setOriginalAmount(MoneyMath.fromMinor(amounts.original[i], scale));
+            line.setManualDiscount(MoneyMath.fromMinor(amounts.manual[i], 0));
+            line.setMemberDiscount(MoneyMath.fromMinor(amounts.member[i], 0));
+            line.setPromotionDiscount(MoneyMath.fromMinor(amounts.promotion[i], 0));
+            line.setTotalDiscount(MoneyMath.fromMinor(lineDiscount, 0));
+            line.setFinalAmount(MoneyMath.fromMinor(amounts.finalAmount[i], lineFinalScale));
+            lines.add(line);
+
+            totalOriginal += amounts.original[i];
+            totalMember += amounts.original[i] - amounts.member[i];
+            totalPromotion += amounts.promotion[i];
+            totalDiscount += lineDiscount;
+            totalFinal += amounts.finalAmount[i];
+            originalScale = Math.max(originalScale, scale);
+            finalScale = Math.max(finalScale, lineFinalScale);
+        }
+
+        receipt.setLines(lines);
+        receipt.setTotalOriginalAmount(MoneyMath.fromMinor(totalOriginal, originalScale));
+        receipt.setTotalMemberAmount(MoneyMath.fromMinor(totalMember, originalScale));
+        receipt.setTotalPromotionDiscount(MoneyMath.fromMinor(totalPromotion, 0));
+        receipt.setTotalDiscountAmount(MoneyMath.fromMinor(totalDiscount, 0));
+        receipt.setFinalAmount(MoneyMath.fromMinor(totalFinal, finalScale));
+        return receipt;
+    }
+
+    /**
+     * 各明細金額（分），以平行陣列存放以減少物件配置。
+     */
+    private static final class LineAmounts {
+        final long[] original;
+        final long[] manual;
+        final long[] member;
+        final long[] promotion;
+        final long[] finalAmount;
+        final int[] priceScale;
+        final boolean[] clamped;
+
+        LineAmounts(int size) {
+            original = new long[size];
+            manual = new long[size];
+            member = new long[size];
+            promotion = new long[size];
+            finalAmount = new long[size];
+            priceScale = new int[size];
+            clamped = new boolean[size];
+        }
+
+        /** 對應 Line.recalcTotals()：最終金額 = 原價 - 總折扣，且不得為負 */
+        void recalc(int i) {
+            long value = original[i] - (manual[i] + member[i] + promotion[i]);
+            clamped[i] = value < 0;
+            finalAmount[i] = clamped[i] ? 0L : value;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package service;
+
+import model.Line;
+
+/**
+ * 逐筆明細的折扣階段 (LineDiscountStage)
+ * ------------------------------------------------------------
+ * 只讀寫單一明細、不受其他明細影響的規則（例如手動折扣、會員折扣）。
+ * 整張收據計算時依明細順序逐筆套用；購物車工作階段掃描商品時只計算新的明細。
+ * ------------------------------------------------------------
+ */
+public interface LineDiscountStage extends DiscountStage {
+
+    /**
+     * 計算單一明細的折扣。
+     *
+     * @param line 明細
+     * @param context 收據計算狀態
+     */
+    void apply(Line line, DiscountContext context);
+
+    @Override
+    default void apply(DiscountContext context) {
+        for (Line line : context.getLines()) {
+            apply(line, context);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package service;
+
+/**
+ * 折扣階段讀寫的明細欄位 (LineField)
+ * ------------------------------------------------------------
+ * 每個 {@link DiscountStage} 宣告它讀取與寫入哪些欄位，
+ * {@link DiscountPipeline.Builder#build()} 依宣告檢查階段的組合與順序：
+ *  - 輸入欄位（原價、分類）只能讀取，不可寫入
+ *  - 覆寫式的折扣欄位（手動、會員）只能由一個階段寫入
+ *  - 階段不可讀取由後面階段才寫入的折扣欄位（會讀到 0）
+ * 最終金額由明細依各折扣自動重算，每個寫入折扣的階段都會改變它，不列入順序檢查。
+ * ------------------------------------------------------------
+ */
+public enum LineField {
+    /** 原價小計（單價 × 數量） */
+    ORIGINAL_AMOUNT(true, false),
+    /** 商品大類 */
+    CATEGORY_CODE(true, false),
+    /** 手動折扣（Line.applyManualDiscount 覆寫） */
+    MANUAL_DISCOUNT(false, true),
+    /** 會員折扣（Line.applyMemberDiscount 覆寫） */
+    MEMBER_DISCOUNT(false, true),
+    /** 促銷折扣（Line.applyPromotionDiscount 累加，可由多個階段寫入） */
+    PROMOTION_DISCOUNT(false, false),
+    /** 最終金額（原價 - 總折扣） */
+    FINAL_AMOUNT(false, false);
+
+    private final boolean input;
+    private final boolean exclusive;
+
+    LineField(boolean input, boolean exclusive) {
+        this.input = input;
+        this.exclusive = exclusive;
+    }
+
+    /** 是否為明細建立時決定的輸入欄位（不可寫入） */
+    public boolean isInput() { return input; }
+
+    /** 是否只能由一個階段寫入 */
+    public boolean isExclusive() { return exclusive; }
+}
@@ -0,0 +1,38 @@
+package service;
+
+import event.ManualDiscountApplied;
+import model.Line;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 單項手動折扣（小計前）：收銀員在購物車項目輸入的折扣金額，四捨五入到整數。
+ */
+public final class ManualDiscountStage implements LineDiscountStage {
+
+    private static final Set<LineField> READS =
+            Collections.unmodifiableSet(EnumSet.of(LineField.ORIGINAL_AMOUNT, LineField.MANUAL_DISCOUNT));
+    private static final Set<LineField> WRITES =
+            Collections.unmodifiableSet(EnumSet.of(LineField.MANUAL_DISCOUNT, LineField.FINAL_AMOUNT));
+
+    @Override
+    public String getName() { return "manual"; }
+
+    @Override
+    public Set<LineField> getReads() { return READS; }
+
+    @Override
+    public Set<LineField> getWrites() { return WRITES; }
+
+    @Override
+    public void apply(Line line, DiscountContext context) {
+        if (line.getManualDiscount() != null && line.getManualDiscount().compareTo(BigDecimal.ZERO) > 0) {
+            line.applyManualDiscount(line.getManualDiscount());
+            if (context.isTrace()) context.getEvents().publish(
+                    new ManualDiscountApplied(line.getItemCode(), line.getItemName(), line.getManualDiscount()));
+        }
+    }
+}
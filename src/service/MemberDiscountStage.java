@@ -0,0 +1,67 @@
+package service;
+
+import event.MemberDiscountApplied;
+import model.Line;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 身份活動折扣（小計前）：公司會員購買指定分類的商品，以手動折扣後金額打折。
+ * 非會員的收據在計算前就略過此階段。
+ * 預設為酒類（09）95 折，可用 -Dpos.member.category、-Dpos.member.rate 調整。
+ */
+public final class MemberDiscountStage implements LineDiscountStage {
+
+    private static final Set<LineField> READS = Collections.unmodifiableSet(
+            EnumSet.of(LineField.CATEGORY_CODE, LineField.ORIGINAL_AMOUNT, LineField.MANUAL_DISCOUNT));
+    private static final Set<LineField> WRITES =
+            Collections.unmodifiableSet(EnumSet.of(LineField.MEMBER_DISCOUNT, LineField.FINAL_AMOUNT));
+
+    private final String categoryCode;
+    private final BigDecimal discountRate;
+
+    /**
+     * Constructor
+     * @param categoryCode 適用的商品大類
+     * @param discountRate 折扣率（例如 0.95 表示 95 折）
+     */
+    public MemberDiscountStage(String categoryCode, BigDecimal discountRate) {
+        this.categoryCode = categoryCode;
+        this.discountRate = discountRate;
+    }
+
+    /** 依系統參數建立（預設酒類 09、95 折） */
+    public static MemberDiscountStage fromSystemProperties() {
+        return new MemberDiscountStage(System.getProperty("pos.member.category", "09"),
+                new BigDecimal(System.getProperty("pos.member.rate", "0.95")));
+    }
+
+    public String getCategoryCode() { return categoryCode; }
+    public BigDecimal getDiscountRate() { return discountRate; }
+
+    @Override
+    public String getName() { return "member"; }
+
+    @Override
+    public Set<LineField> getReads() { return READS; }
+
+    @Override
+    public Set<LineField> getWrites() { return WRITES; }
+
+    @Override
+    public boolean appliesTo(DiscountContext context) {
+        return context.isCompanyMember();
+    }
+
+    @Override
+    public void apply(Line line, DiscountContext context) {
+        if (categoryCode.equals(line.getCategoryCode())) {
+            line.applyMemberDiscount(discountRate);
+            if (context.isTrace()) context.getEvents().publish(new MemberDiscountApplied(
+                    line.getItemCode(), line.getItemName(), discountRate, line.getMemberDiscount()));
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package service;
+
+import model.Activity;
+import model.ActivityTier;
+import model.Line;
+import util.MoneyMath;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * 預先編譯的促銷活動索引 (PromotionIndex)
+ * ------------------------------------------------------------
+ * 每份活動快照只建立一次：
+ *  1. 將 Activity.itemDiscountGroup（例如 "01,02"）解析成分類代碼集合
+ *  2. 建立「分類代碼 → 適用活動」對照表
+ *  3. "ALL" 活動放在萬用清單，任何有分類的商品都適用
+ *  4. 級距（G1..Gn）依門檻排序成陣列，符合金額以二分搜尋找到達到的最高級距
+ *
+ * 套用活動時只需掃描明細一次，即可取得每個活動的符合商品，
+ * 不必再對每個（明細, 活動）組合做字串切割與比對。
+ * ------------------------------------------------------------
+ */
+public class PromotionIndex {
+
+    private static final String WILDCARD = "ALL";
+    private static final int[] NONE = new int[0];
+
+    /** 建立索引時使用的活動清單（用於判斷快照是否相同） */
+    private final List<Activity> source;
+
+    /** 依原始順序編譯後的活動 */
+    private final CompiledActivity[] activities;
+
+    /** 分類代碼（大寫）→ 適用活動的位置（遞增） */
+    private final Map<String, int[]> activitiesByCategory;
+
+    /** "ALL" 活動的位置（遞增） */
+    private final int[] wildcardActivities;
+
+    private PromotionIndex(List<Activity> source, CompiledActivity[] activities,
+                           Map<String, int[]> activitiesByCategory, int[] wildcardActivities) {
+        this.source = source;
+        this.activities = activities;
+        this.activitiesByCategory = activitiesByCategory;
+        this.wildcardActivities = wildcardActivities;
+    }
+
+    /**
+     * 依活動清單建立索引。
+     *
+     * @param activities 活動快照（順序即套用順序）
+     * @return 編譯後的索引
+     */
+    public static PromotionIndex build(List<Activity> activities) {
+        CompiledActivity[] compiled = new CompiledActivity[activities.size()];
+        Map<String, List<Integer>> byCategory = new HashMap<>();
+        List<Integer> wildcard = new ArrayList<>();
+
+        for (int i = 0; i < compiled.length; i++) {
+            CompiledActivity activity = new CompiledActivity(activities.get(i));
+            compiled[i] = activity;
+            if (activity.isWildcard()) {
+                wildcard.add(i);
+            }
+            for (String category : activity.getCategories()) {
+                byCategory.computeIfAbsent(category, c -> new ArrayList<>()).add(i);
+            }
+        }
+
+        Map<String, int[]> index = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : byCategory.entrySet()) {
+            index.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        return new PromotionIndex(activities, compiled, index, toArray(wildcard));
+    }
+
+    private static int[] toArray(List<Integer> positions) {
+        int[] result = new int[positions.size()];
+        for (int i = 0; i < result.length; i++) result[i] = positions.get(i);
+        return result;
+    }
+
+    /** 是否由同一份活動快照建立（以物件身分比較） */
+    public boolean isBuiltFrom(List<Activity> activities) {
+        return source == activities;
+    }
+
+    public int size() { return activities.length; }
+
+    /** 所有活動的門檻與折扣是否都能以分精確表示（定點數引擎的前提） */
+    public boolean isMinorExact() {
+        for (CompiledActivity activity : activities) {
+            if (!activity.isMinorExact()) return false;
+        }
+        return true;
+    }
+
+    public CompiledActivity getActivity(int position) { return activities[position]; }
+
+    /**
+     * 掃描明細一次，依活動分組出符合條件的明細。
+     * 每組內的明細維持原本的明細順序。
+     *
+     * @param lines 收據明細
+     * @return 依活動位置排列的符合明細清單
+     */
+    public List<List<Line>> eligibleLinesByActivity(List<Line> lines) {
+        List<List<Line>> buckets = new ArrayList<>(activities.length);
+        for (int i = 0; i < activities.length; i++) buckets.add(new ArrayList<>());
+
+        for (Line line : lines) {
+            forEachMatchingActivity(line.getCategoryCode(), position -> buckets.get(position).add(line));
+        }
+        return buckets;
+    }
+
+    /**
+     * 與 {@link #eligibleLinesByActivity(List)} 相同，但以分類代碼陣列表示明細，
+     * 回傳每個活動符合的明細索引（遞增）。
+     *
+     * @param categoryCodes 各明細的分類代碼
+     * @return 依活動位置排列的明細索引
+     */
+    public int[][] eligibleIndexesByActivity(String[] categoryCodes) {
+        int[] counts = new int[activities.length];
+        for (String categoryCode : categoryCodes) {
+            forEachMatchingActivity(categoryCode, position -> counts[position]++);
+        }
+        int[][] result = new int[activities.length][];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts[i] == 0 ? NONE : new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int lineIndex = 0; lineIndex < categoryCodes.length; lineIndex++) {
+            final int current = lineIndex;
+            forEachMatchingActivity(categoryCodes[lineIndex], position -> result[position][counts[position]++] = current);
+        }
+        return result;
+    }
+
+    /** 依活動順序列出適用指定分類的活動（分類活動與 ALL 活動合併，同一活動只出現一次） */
+    void forEachMatchingActivity(String categoryCode, IntConsumer action) {
+        if (categoryCode == null) return;
+        int[] specific = activitiesFor(categoryCode);
+        // 合併兩個遞增序列
+        int s = 0, w = 0;
+        while (s < specific.length || w < wildcardActivities.length) {
+            int next;
+            if (w >= wildcardActivities.length) next = specific[s++];
+            else if (s >= specific.length) next = wildcardActivities[w++];
+            else if (specific[s] < wildcardActivities[w]) next = specific[s++];
+            else if (specific[s] > wildcardActivities[w]) next = wildcardActivities[w++];
+            else { next = specific[s++]; w++; }
+            action.accept(next);
+        }
+    }
+
+    /** 取得指定分類（不含 ALL）適用的活動位置 */
+    private int[] activitiesFor(String categoryCode) {
+        int[] positions = activitiesByCategory.get(categoryCode);
+        if (positions == null) {
+            positions = activitiesByCategory.get(categoryCode.toUpperCase(Locale.ROOT));
+        }
+        return positions == null ? NONE : positions;
+    }
+
+    /**
+     * 判斷指定分類是否被任何活動涵蓋（含 ALL 活動）。
+     */
+    public boolean coversCategory(String categoryCode) {
+        if (categoryCode == null) return false;
+        return wildcardActivities.length > 0 || activitiesFor(categoryCode).length > 0;
+    }
+
+    /**
+     * 編譯後的單一活動：保留原始 Activity，並預先解析適用分類與級距表。
+     */
+    public static final class CompiledActivity {
+        private final Activity activity;
+        private final boolean wildcard;
+        private final Set<String> categories;
+
+        /** 級距表：門檻遞增（相同門檻只保留欄位順序較後者），與折扣金額一一對應 */
+        private final BigDecimal[] thresholds;
+        private final BigDecimal[] awards;
+
+        /** 每滿門檻累送 */
+        private final boolean repeat;
+
+        /** 門檻與折扣金額（分），供定點數引擎使用 */
+        private final boolean minorExact;
+        private final long[] thresholdsMinor;
+        private final long[] awardsMinor;
+
+        CompiledActivity(Activity activity) {
+            this.activity = activity;
+            String group = activity.getItemDiscountGroup();
+            this.wildcard = group != null && group.equalsIgnoreCase(WILDCARD);
+            this.categories = wildcard || group == null
+                    ? Collections.emptySet()
+                    : parseCategories(group);
+
+            List<ActivityTier> tiers = new ArrayList<>();
+            for (ActivityTier tier : activity.getTiers()) {
+                if (tier.getMeetCriteriaAmt() != null && tier.getAwardAmt() != null) tiers.add(tier);
+            }
+            tiers.sort(Comparator.comparing(ActivityTier::getMeetCriteriaAmt));
+            List<ActivityTier> distinct = new ArrayList<>(tiers.size());
+            for (ActivityTier tier : tiers) {
+                int last = distinct.size() - 1;
+                if (last >= 0 && distinct.get(last).getMeetCriteriaAmt().compareTo(tier.getMeetCriteriaAmt()) == 0) {
+                    distinct.set(last, tier);
+                } else {
+                    distinct.add(tier);
+                }
+            }
+            this.thresholds = new BigDecimal[distinct.size()];
+            this.awards = new BigDecimal[distinct.size()];
+            boolean exact = true;
+            for (int t = 0; t < thresholds.length; t++) {
+                thresholds[t] = distinct.get(t).getMeetCriteriaAmt();
+                awards[t] = distinct.get(t).getAwardAmt();
+                exact &= MoneyMath.isMinorExact(thresholds[t]) && MoneyMath.isMinorExact(awards[t]);
+            }
+            this.repeat = activity.isRepeatAward();
+
+            this.minorExact = exact;
+            this.thresholdsMinor = new long[thresholds.length];
+            this.awardsMinor = new long[thresholds.length];
+            if (exact) {
+                for (int t = 0; t < thresholds.length; t++) {
+                    thresholdsMinor[t] = MoneyMath.toMinor(thresholds[t]);
+                    awardsMinor[t] = MoneyMath.toMinor(awards[t]);
+                }
+            }
+        }
+
+        private static Set<String> parseCategories(String group) {
+            Set<String> result = new LinkedHashSet<>();
+            for (String category : group.split(",")) {
+                String code = category.trim();
+                if (!code.isEmpty()) result.add(code.toUpperCase(Locale.ROOT).intern());
+            }
+            return Collections.unmodifiableSet(result);
+        }
+
+        public Activity getActivity() { return activity; }
+
+        /** 是否為全館（ALL）活動 */
+        public boolean isWildcard() { return wildcard; }
+
+        /** 適用分類代碼（大寫），ALL 活動為空集合 */
+        public Set<String> getCategories() { return categories; }
+
+        /** 級距數 */
+        public int getTierCount() { return thresholds.length; }
+
+        /** 是否每滿門檻累送 */
+        public boolean isRepeatAward() { return repeat; }
+
+        /** 門檻與折扣金額是否能以分精確表示 */
+        public boolean isMinorExact() { return minorExact; }
+
+        /**
+         * 符合金額達到的最高級距（二分搜尋）。
+         *
+         * @param eligibleTotal 符合金額
+         * @return 級距位置；金額不大於 0 或未達任何門檻時回傳 -1
+         */
+        public int tierFor(BigDecimal eligibleTotal) {
+            if (eligibleTotal.signum() <= 0) return -1;
+            int low = 0, high = thresholds.length - 1, found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (thresholds[mid].compareTo(eligibleTotal) <= 0) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        /** 與 {@link #tierFor(BigDecimal)} 相同，金額以分表示 */
+        public int tierForMinor(long eligibleTotal) {
+            if (eligibleTotal <= 0) return -1;
+            int low = 0, high = thresholdsMinor.length - 1, found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (thresholdsMinor[mid] <= eligibleTotal) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        /** 累送倍數：符合金額為級距門檻的幾倍（不累送或門檻為 0 時為 1） */
+        public long repeatTimes(int tier, BigDecimal eligibleTotal) {
+            if (!repeat || thresholds[tier].signum() <= 0) return 1L;
+            return eligibleTotal.divideToIntegralValue(thresholds[tier]).longValueExact();
+        }
+
+        /** 與 {@link #repeatTimes(int, BigDecimal)} 相同，金額以分表示 */
+        public long repeatTimesMinor(int tier, long eligibleTotal) {
+            if (!repeat || thresholdsMinor[tier] <= 0) return 1L;
+            return eligibleTotal / thresholdsMinor[tier];
+        }
+
+        /** 級距的折扣金額乘上累送倍數 */
+        public BigDecimal getAward(int tier, long times) {
+            return times == 1L ? awards[tier] : awards[tier].multiply(BigDecimal.valueOf(times));
+        }
+
+        /** 與 {@link #getAward} 相同，以分表示 */
+        public long getAwardMinor(int tier, long times) {
+            return Math.multiplyExact(awardsMinor[tier], times);
+        }
+
+        /**
+         * 符合金額對應的折扣金額。
+         *
+         * @param eligibleTotal 符合金額
+         * @return 折扣金額；未達門檻回傳 null
+         */
+        public BigDecimal awardFor(BigDecimal eligibleTotal) {
+            int tier = tierFor(eligibleTotal);
+            return tier < 0 ? null : getAward(tier, repeatTimes(tier, eligibleTotal));
+        }
+
+        /** 符合金額不超過 eligibleTotal 時可能得到的最大折扣（級距折扣不一定隨門檻遞增） */
+        public BigDecimal maxAwardFor(BigDecimal eligibleTotal) {
+            BigDecimal max = BigDecimal.ZERO;
+            for (int t = tierFor(eligibleTotal); t >= 0; t--) {
+                max = max.max(getAward(t, repeatTimes(t, eligibleTotal)));
+            }
+            return max;
+        }
+
+        /** 判斷商品分類是否適用此活動 */
+        public boolean matches(String categoryCode) {
+            if (categoryCode == null) return false;
+            if (wildcard) return true;
+            return categories.contains(categoryCode) || categories.contains(categoryCode.toUpperCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package service;
+
+import repo.CachedItemRepository;
+import util.LatencyHistogram;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 促銷計算效能指標 (PromotionMetrics)
+ * ------------------------------------------------------------
+ * 記錄 calculateReceipt 各步驟的耗時分布與計數，找出結帳變慢的原因
+ * （商品查詢、活動查詢、會員折扣或促銷計算）：
+ *  1. 每個步驟一個 {@link LatencyHistogram}（奈秒）
+ *  2. 計數：評估／觸發的活動數、處理的明細數、查詢的商品代碼數
+ *  3. 以 Prometheus text format 匯出，可由本機 scraper 讀取或直接寫入 log
+ *
+ * 預設關閉（-Dpos.metrics.enabled=true 開啟，或執行中呼叫 setEnabled）。
+ * 關閉時每個步驟只多一次 volatile 讀取，不呼叫 System.nanoTime、不寫入任何計數。
+ * ------------------------------------------------------------
+ */
+public class PromotionMetrics {
+
+    /** 計算步驟 */
+    public enum Stage {
+        /** 整筆收據（calculateReceipt） */
+        RECEIPT("receipt"),
+        /** 商品查詢（快取或資料庫） */
+        LOAD_ITEMS("load_items"),
+        /** 活動查詢（快取或資料庫） */
+        FIND_ACTIVITIES("find_activities"),
+        /** 補齊購物車商品資訊 */
+        COMPLETE_ITEM_INFO("complete_item_info"),
+        /** 轉換為 Line */
+        CONVERT_TO_LINES("convert_to_lines"),
+        /** Step 1 手動折扣 */
+        MANUAL_DISCOUNT("manual_discount"),
+        /** Step 2 會員折扣 */
+        MEMBER_DISCOUNT("member_discount"),
+        /** Step 3 促銷活動 */
+        APPLY_PROMOTIONS("apply_promotions"),
+        /** 收據合計 */
+        CALCULATE_TOTALS("calculate_totals"),
+        /** 定點數引擎（取代 Step 1～3 與合計） */
+        FIXED_POINT_ENGINE("fixed_point_engine"),
+        /** 自訂折扣階段（見 DiscountPipeline） */
+        CUSTOM_DISCOUNT("custom_discount");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    /** 計數項目 */
+    public enum Counter {
+        ACTIVITIES_EVALUATED("pos_activities_evaluated_total", "評估的活動數"),
+        ACTIVITIES_TRIGGERED("pos_activities_triggered_total", "達到門檻的活動數"),
+        LINES_PROCESSED("pos_lines_processed_total", "處理的明細數"),
+        ITEM_CODES_REQUESTED("pos_item_codes_requested_total", "查詢的商品代碼數"),
+        ITEMS_NOT_FOUND("pos_items_not_found_total", "查無資料的購物車商品數"),
+        OPTIMIZER_INCOMPLETE("pos_optimizer_incomplete_total", "活動組合最佳化逾時或候選過多，改用目前最佳組合的收據數");
+
+        private final String metricName;
+        private final String help;
+
+        Counter(String metricName, String help) {
+            this.metricName = metricName;
+            this.help = help;
+        }
+
+        public String getMetricName() { return metricName; }
+    }
+
+    /** 匯出的百分位數 */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private volatile boolean enabled;
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+
+    public PromotionMetrics() {
+        this(Boolean.getBoolean("pos.metrics.enabled"));
+    }
+
+    /**
+     * Constructor
+     * @param enabled 是否記錄
+     */
+    public PromotionMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (Stage stage : Stage.values()) histograms.put(stage, new LatencyHistogram());
+        for (Counter counter : Counter.values()) counters.put(counter, new LongAdder());
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    /**
+     * 開始計時。
+     *
+     * @return 開始時間（奈秒）；未開啟時回傳 0，對應的 {@link #record} 不會記錄
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * 記錄一個步驟的耗時。
+     *
+     * @param stage 步驟
+     * @param startNanos {@link #start()} 的回傳值
+     */
+    public void record(Stage stage, long startNanos) {
+        if (startNanos == 0L) return;
+        histograms.get(stage).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 累加計數。
+     *
+     * @param counter 計數項目
+     * @param amount 增加量
+     */
+    public void count(Counter counter, long amount) {
+        if (!enabled) return;
+        counters.get(counter).add(amount);
+    }
+
+    /** 清除所有紀錄（例如每次匯出後重新統計） */
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    public LatencyHistogram.Snapshot getSnapshot(Stage stage) {
+        return histograms.get(stage).snapshot();
+    }
+
+    public long getCount(Counter counter) {
+        return counters.get(counter).sum();
+    }
+
+    /**
+     * 以 Prometheus text format 匯出。
+     *
+     * @param cacheStats 商品快取統計（可為 null）
+     * @return 匯出內容
+     */
+    public String toPrometheusText(CachedItemRepository.CacheStats cacheStats) {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP pos_stage_latency_seconds 促銷計算各步驟耗時\n");
+        out.append("# TYPE pos_stage_latency_seconds summary\n");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram.Snapshot snapshot = getSnapshot(stage);
+            if (snapshot.getCount() == 0) continue;
+            for (double quantile : QUANTILES) {
+                out.append("pos_stage_latency_seconds{stage=\"").append(stage.label)
+                        .append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(snapshot.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            out.append("pos_stage_latency_seconds_sum{stage=\"").append(stage.label).append("\"} ")
+                    .append(seconds(snapshot.getSum())).append('\n');
+            out.append("pos_stage_latency_seconds_count{stage=\"").append(stage.label).append("\"} ")
+                    .append(snapshot.getCount()).append('\n');
+        }
+        out.append("# HELP pos_stage_latency_max_seconds 促銷計算各步驟最大耗時\n");
+        out.append("# TYPE pos_stage_latency_max_seconds gauge\n");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram.Snapshot snapshot = getSnapshot(stage);
+            if (snapshot.getCount() == 0) continue;
+            out.append("pos_stage_latency_max_seconds{stage=\"").append(stage.label).append("\"} ")
+                    .append(seconds(snapshot.getMax())).append('\n');
+        }
+        for (Counter counter : Counter.values()) {
+            appendCounter(out, counter.metricName, counter.help, getCount(counter));
+        }
+        if (cacheStats != null) {
+            appendCounter(out, "pos_item_cache_hits_total", "商品快取命中數（不含負向快取）", cacheStats.getHits());
+            appendCounter(out, "pos_item_cache_negative_hits_total", "商品負向快取命中數", cacheStats.getNegativeHits());
+            appendCounter(out, "pos_item_cache_misses_total", "商品快取未命中數", cacheStats.getMisses());
+            appendCounter(out, "pos_item_cache_evictions_total", "商品快取淘汰數", cacheStats.getEvictions());
+            out.append("# HELP pos_item_cache_size 商品快取筆數\n");
+            out.append("# TYPE pos_item_cache_size gauge\n");
+            out.append("pos_item_cache_size ").append(cacheStats.getSize()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void appendCounter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(double nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1_000_000_000.0);
+    }
+}
@@ -0,0 +1,347 @@
+package service;
+
+import model.Line;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 促銷活動組合最佳化 (PromotionOptimizer)
+ * ------------------------------------------------------------
+ * 一般流程依活動順序套用每個達到門檻的活動（貪婪）；前面的活動折扣會降低
+ * 後面活動的符合金額，結果取決於活動的順序。最佳化模式改為搜尋「要套用哪些活動」：
+ *  1. 候選：未套用任何促銷時已達門檻的活動（促銷只會降低金額，未達門檻者之後也不會達到）
+ *  2. 深度優先搜尋每個候選「套用／不套用」，套用的活動仍依活動順序計算與分攤，
+ *     金額與一般流程逐筆相同；先走「套用」分支，第一個完成的組合即為貪婪結果
+ *  3. 剪枝：目前折扣 + 剩餘候選折扣上限仍無法勝過已知最佳組合時不再展開
+ *     （級距與累送的折扣隨符合金額變動，上限取未套用促銷時可達到的最大折扣）
+ *  4. 記憶化：活動的符合金額只和「會影響其明細的前面活動」是否套用有關，
+ *     以該子集合為鍵快取，不同分支重複出現時不再加總
+ *  5. 每張收據有時間上限，逾時回傳目前最佳組合（至少與貪婪結果相同）；
+ *     候選超過 64 個時只走貪婪路徑（仍遵守 maxActivities）
+ *
+ * 目標：
+ *  - CUSTOMER：顧客最划算（促銷折扣總額最大，相同時活動數較少者）
+ *  - MARGIN：毛利優先（套用的活動數最多，相同時折扣總額最小）
+ * maxActivities 限制每張收據最多套用幾個活動（例如 1 表示活動互斥），0 表示不限。
+ *
+ * 啟用：-Dpos.promotion.optimizer=customer|margin、-Dpos.promotion.optimizer.maxActivities、
+ *       -Dpos.promotion.optimizer.budgetMicros（預設 2000 微秒）
+ * 建立後不再改變，可由多個執行緒共用。
+ * ------------------------------------------------------------
+ */
+public class PromotionOptimizer {
+
+    /** 最佳化目標 */
+    public enum Objective {
+        /** 促銷折扣總額最大 */
+        CUSTOMER,
+        /** 套用活動數最多、折扣總額最小 */
+        MARGIN
+    }
+
+    /** 搜尋的候選活動上限（以 long 位元遮罩表示組合） */
+    public static final int MAX_CANDIDATES = 64;
+
+    /** 每搜尋幾個節點檢查一次時間 */
+    private static final int CLOCK_CHECK_MASK = 63;
+
+    private static final int SCALE = 6;
+
+    private final Objective objective;
+    private final int maxActivities;
+    private final long budgetNanos;
+
+    /**
+     * Constructor
+     * @param objective 最佳化目標
+     * @param maxActivities 每張收據最多套用的活動數，0 表示不限
+     * @param budgetMicros 每張收據的搜尋時間上限（微秒）
+     */
+    public PromotionOptimizer(Objective objective, int maxActivities, long budgetMicros) {
+        this.objective = objective;
+        this.maxActivities = Math.max(0, maxActivities);
+        this.budgetNanos = budgetMicros * 1000L;
+    }
+
+    /**
+     * 依系統參數建立。
+     *
+     * @return 最佳化器；-Dpos.promotion.optimizer 未設定或為 off 時回傳 null（使用貪婪流程）
+     */
+    public static PromotionOptimizer fromSystemProperties() {
+        String mode = System.getProperty("pos.promotion.optimizer", "off").trim();
+        if (mode.isEmpty() || "off".equalsIgnoreCase(mode)) return null;
+        return new PromotionOptimizer(Objective.valueOf(mode.toUpperCase(Locale.ROOT)),
+                Integer.getInteger("pos.promotion.optimizer.maxActivities", 0),
+                Long.getLong("pos.promotion.optimizer.budgetMicros", 2000L));
+    }
+
+    public Objective getObjective() { return objective; }
+    public int getMaxActivities() { return maxActivities; }
+
+    /**
+     * 選出要套用的活動。明細需已完成手動折扣與會員折扣，且尚未套用促銷。
+     *
+     * @param lines 明細（依收據順序）
+     * @param index 活動索引
+     * @return 選擇結果
+     */
+    public Selection select(List<Line> lines, PromotionIndex index) {
+        String[] categories = new String[lines.size()];
+        BigDecimal[] base = new BigDecimal[lines.size()];
+        for (int i = 0; i < categories.length; i++) {
+            Line line = lines.get(i);
+            categories[i] = line.getCategoryCode();
+            base[i] = line.getFinalAmount();
+        }
+        int[][] eligible = index.eligibleIndexesByActivity(categories);
+
+        // 候選：目前已達門檻的活動（依活動順序）
+        int[] positions = new int[index.size()];
+        int n = 0;
+        for (int i = 0; i < index.size(); i++) {
+            if (eligible[i].length == 0) continue;
+            if (index.getActivity(i).tierFor(sum(base, eligible[i])) >= 0) positions[n++] = i;
+        }
+        Search search = new Search(index, eligible, base, positions, n);
+        boolean[] selected = new boolean[index.size()];
+        if (n > MAX_CANDIDATES) {
+            boolean[] chosen = search.greedy();
+            for (int c = 0; c < n; c++) selected[positions[c]] = chosen[c];
+            return new Selection(selected, false, n);
+        }
+        search.run();
+        for (int c = 0; c < n; c++) {
+            if ((search.bestMask & (1L << c)) != 0) selected[positions[c]] = true;
+        }
+        return new Selection(selected, !search.timedOut, search.nodes);
+    }
+
+    private static BigDecimal sum(BigDecimal[] amounts, int[] lineIndexes) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int l : lineIndexes) total = total.add(amounts[l]);
+        return total;
+    }
+
+    /** 一張收據的搜尋狀態 */
+    private final class Search {
+        private final int n;
+        private final int[][] lines;           // 候選 → 符合的明細索引
+        private final PromotionIndex.CompiledActivity[] activities;
+        private final BigDecimal[] base;       // 明細套用促銷前的金額
+        private final BigDecimal[] promotion;  // 明細目前累計的促銷折扣
+        private final BigDecimal[][] undo;     // 每個候選套用前的促銷折扣（回溯用）
+        private final BigDecimal[] awarded;    // 每個候選套用時的折扣金額（回溯用）
+        private final long[] influence;        // 會影響候選明細金額的前面候選
+        private final BigDecimal[] suffixAward;
+        private final BigDecimal[] suffixMaxAward;
+        private final List<Map<Long, BigDecimal>> memo;
+        private final long deadline;
+
+        private long mask;
+        private int count;
+        private BigDecimal discount = BigDecimal.ZERO;
+
+        private long bestMask;
+        private int bestCount = -1;
+        private BigDecimal bestDiscount;
+
+        private long nodes;
+        private boolean timedOut;
+
+        Search(PromotionIndex index, int[][] eligible, BigDecimal[] base, int[] positions, int n) {
+            this.n = n;
+            this.base = base;
+            this.promotion = new BigDecimal[base.length];
+            Arrays.fill(promotion, BigDecimal.ZERO);
+            this.lines = new int[n][];
+            this.activities = new PromotionIndex.CompiledActivity[n];
+            this.undo = new BigDecimal[n][];
+            this.awarded = new BigDecimal[n];
+            this.memo = new ArrayList<>(n);
+            for (int c = 0; c < n; c++) {
+                lines[c] = eligible[positions[c]];
+                activities[c] = index.getActivity(positions[c]);
+                undo[c] = new BigDecimal[lines[c].length];
+                memo.add(new HashMap<>());
+            }
+
+            // 候選 c 的明細金額取決於：與它有共同明細的前面候選，以及影響那些候選的更前面候選
+            this.influence = new long[n];
+            boolean[] touched = new boolean[base.length];
+            for (int c = 0; c < n && n <= MAX_CANDIDATES; c++) {
+                for (int l : lines[c]) touched[l] = true;
+                for (int p = 0; p < c; p++) {
+                    for (int l : lines[p]) {
+                        if (touched[l]) {
+                            influence[c] |= (1L << p) | influence[p];
+                            break;
+                        }
+                    }
+                }
+                for (int l : lines[c]) touched[l] = false;
+            }
+
+            this.suffixAward = new BigDecimal[n + 1];
+            this.suffixMaxAward = new BigDecimal[n + 1];
+            suffixAward[n] = BigDecimal.ZERO;
+            suffixMaxAward[n] = BigDecimal.ZERO;
+            for (int c = n - 1; c >= 0; c--) {
+                // 促銷只會降低符合金額，未套用促銷時的最大折扣即為上限
+                BigDecimal award = activities[c].maxAwardFor(sum(base, lines[c]));
+                suffixAward[c] = suffixAward[c + 1].add(award);
+                suffixMaxAward[c] = suffixMaxAward[c + 1].max(award);
+            }
+            this.deadline = System.nanoTime() + budgetNanos;
+        }
+
+        void run() {
+            search(0);
+        }
+
+        /** 只走貪婪路徑（候選過多時） */
+        boolean[] greedy() {
+            boolean[] chosen = new boolean[n];
+            for (int c = 0; c < n; c++) {
+                if (maxActivities > 0 && count >= maxActivities) break;
+                BigDecimal total = BigDecimal.ZERO;
+                for (int l : lines[c]) total = total.add(amount(l));
+                BigDecimal award = activities[c].awardFor(total);
+                if (award != null) {
+                    apply(c, total, award);
+                    chosen[c] = true;
+                }
+            }
+            return chosen;
+        }
+
+        private void search(int c) {
+            if (timedOut) return;
+            nodes++;
+            // 已有完整組合後才檢查時間，逾時時至少回傳貪婪結果
+            if ((nodes & CLOCK_CHECK_MASK) == 0 && bestCount >= 0 && System.nanoTime() > deadline) {
+                timedOut = true;
+                return;
+            }
+            if (c == n) {
+                if (isBetter()) {
+                    bestMask = mask;
+                    bestCount = count;
+                    bestDiscount = discount;
+                }
+                return;
+            }
+            if (bestCount >= 0 && !canImprove(c)) return;
+
+            // 先嘗試套用（第一條完整路徑即為貪婪結果）
+            if (maxActivities == 0 || count < maxActivities) {
+                BigDecimal total = eligibleTotal(c);
+                BigDecimal award = activities[c].awardFor(total);
+                if (award != null) {
+                    apply(c, total, award);
+                    search(c + 1);
+                    revert(c);
+                }
+            }
+            search(c + 1);
+        }
+
+        private boolean isBetter() {
+            if (bestCount < 0) return true;
+            if (objective == Objective.CUSTOMER) {
+                int cmp = discount.compareTo(bestDiscount);
+                return cmp > 0 || (cmp == 0 && count < bestCount);
+            }
+            return count > bestCount || (count == bestCount && discount.compareTo(bestDiscount) < 0);
+        }
+
+        /** 剩下的候選全部套用時，是否可能勝過目前最佳組合 */
+        private boolean canImprove(int c) {
+            int remaining = maxActivities == 0 ? n - c : Math.min(n - c, maxActivities - count);
+            if (objective == Objective.CUSTOMER) {
+                BigDecimal bound = suffixAward[c].min(suffixMaxAward[c].multiply(BigDecimal.valueOf(remaining)));
+                int cmp = discount.add(bound).compareTo(bestDiscount);
+                return cmp > 0 || (cmp == 0 && count < bestCount);
+            }
+            int maxCount = count + remaining;
+            return maxCount > bestCount || (maxCount == bestCount && discount.compareTo(bestDiscount) < 0);
+        }
+
+        /** 候選 c 目前的符合金額（依影響它的前面候選是否套用快取） */
+        private BigDecimal eligibleTotal(int c) {
+            Long key = mask & influence[c];
+            BigDecimal total = memo.get(c).get(key);
+            if (total == null) {
+                total = BigDecimal.ZERO;
+                for (int l : lines[c]) total = total.add(amount(l));
+                memo.get(c).put(key, total);
+            }
+            return total;
+        }
+
+        /** 與 Line 相同：最終金額不低於 0 */
+        private BigDecimal amount(int l) {
+            BigDecimal amount = base[l].subtract(promotion[l]);
+            return amount.signum() < 0 ? BigDecimal.ZERO : amount;
+        }
+
+        /** 與 PromotionService.distributeDiscount 相同的分攤（最後一筆補差額，折扣取整數） */
+        private void apply(int c, BigDecimal eligibleTotal, BigDecimal award) {
+            int[] eligible = lines[c];
+            BigDecimal distributed = BigDecimal.ZERO;
+            for (int i = 0; i < eligible.length; i++) {
+                int l = eligible[i];
+                undo[c][i] = promotion[l];
+                BigDecimal ratio = amount(l).divide(eligibleTotal, SCALE, RoundingMode.HALF_UP);
+                BigDecimal lineDiscount = (i == eligible.length - 1)
+                        ? award.subtract(distributed)
+                        : award.multiply(ratio).setScale(0, RoundingMode.HALF_UP);
+                distributed = distributed.add(lineDiscount);
+                if (lineDiscount.signum() > 0) {
+                    promotion[l] = promotion[l].add(lineDiscount.setScale(0, RoundingMode.HALF_UP));
+                }
+            }
+            if (c < MAX_CANDIDATES) mask |= 1L << c;
+            count++;
+            awarded[c] = award;
+            discount = discount.add(award);
+        }
+
+        private void revert(int c) {
+            int[] eligible = lines[c];
+            for (int i = 0; i < eligible.length; i++) promotion[eligible[i]] = undo[c][i];
+            mask &= ~(1L << c);
+            count--;
+            discount = discount.subtract(awarded[c]);
+        }
+    }
+
+    /** 選擇結果 */
+    public static final class Selection {
+        private final boolean[] selected;
+        private final boolean optimal;
+        private final long nodes;
+
+        Selection(boolean[] selected, boolean optimal, long nodes) {
+            this.selected = selected;
+            this.optimal = optimal;
+            this.nodes = nodes;
+        }
+
+        /** 要套用的活動（依活動位置） */
+        public boolean[] getSelected() { return selected; }
+
+        /** 是否在時間內完成搜尋（false 表示逾時，或候選過多只走貪婪路徑） */
+        public boolean isOptimal() { return optimal; }
+
+        /** 搜尋的節點數 */
+        public long getNodes() { return nodes; }
+    }
+}
@@ -1,18 +1,45 @@
 package service;
 
 import model.*;
+import event.EventPublisher;
+import event.ItemNotFound;
+import event.PromotionTriggered;
+import event.RepositoryError;
+import repo.ActivityCalendar;
+import repo.ActivityLookup;
 import repo.ActivityRepository;
+import repo.CachedActivityRepository;
+import repo.CachedItemRepository;
+import repo.CatalogLookup;
+import repo.CatalogSnapshot;
+import repo.InMemoryCatalog;
+import repo.ItemLookup;
 import repo.ItemRepository;
+import repo.OffHeapItemStore;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
  * 負責整體促銷邏輯的主要服務類。
  * -------------------------------------------------------
- * 計算順序符合 POS 銷售規則：
+ * 計算順序符合 POS 銷售規則（預設的 {@link DiscountPipeline}，可替換或加入新的階段）：
  *  1. 單項手動折扣（小計前）
  *  2. 身份活動折扣（公司會員95折，小計前）
  *  3. 條件活動折扣（滿額／分類活動，小計後）
@@ -21,125 +48,710 @@ import java.util.stream.Collectors;
  */
 public class PromotionService {
 
-    private ItemRepository itemRepository;
-    private ActivityRepository activityRepository;
-    private static final BigDecimal MEMBER_DISCOUNT_RATE = new BigDecimal("0.95");
+    private ItemLookup itemRepository;
+    private ActivityLookup activityRepository;
+
+    /**
+     * 批次查詢商品時每段的代碼數量上限。
+     * 取 ItemRepository IN 條件最大大小（256）的倍數：每段剛好分成完整的 IN 查詢，
+     * 只有最後一段需要補位（500 會被切成 256 + 256，第二段補 12 個重複代碼）。
+     */
+    private static final int ITEM_QUERY_CHUNK = 4 * ItemRepository.MAX_IN_SIZE;
+
+    /** 平行批次計算的執行緒數，可用 -Dpos.bulk.parallelism 調整 */
+    private static final int BULK_PARALLELISM =
+            Integer.getInteger("pos.bulk.parallelism", Runtime.getRuntime().availableProcessors());
+
+    /** 平行批次計算時，每個工作最少處理的購物籃數（低於此數不再切分） */
+    private static final int BULK_SPLIT_THRESHOLD = 32;
+
+    /** 平行批次計算使用的 ForkJoinPool（第一次使用時建立） */
+    private ForkJoinPool bulkPool;
+
+    /** 非同步查詢的商品／活動逾時（毫秒） */
+    private long itemLookupTimeoutMs = Long.getLong("pos.async.itemTimeoutMs", 2000L);
+    private long activityLookupTimeoutMs = Long.getLong("pos.async.activityTimeoutMs", 2000L);
+
+    /** 執行虛擬執行緒無法使用時，非同步查詢的執行緒數 */
+    private static final int ASYNC_FALLBACK_THREADS = Integer.getInteger("pos.async.threads", 64);
+
+    /** 非同步查詢使用的執行器（第一次使用時建立） */
+    private ExecutorService lookupExecutor;
+
+    /** 最近一次使用的活動索引；活動快照不變時直接重用 */
+    private volatile PromotionIndex promotionIndex;
+
+    /** 折扣計算流程（預設手動 → 會員 → 促銷，見 -Dpos.pipeline.stages） */
+    private volatile DiscountPipeline discountPipeline = DiscountPipeline.fromSystemProperties();
+
+    /** 定點數（long 分）計算引擎，可用 -Dpos.engine.fixedPoint=true 啟用；只支援預設流程，其他流程為 null */
+    private volatile FixedPointPromotionEngine fixedPointEngine = createFixedPointEngine(discountPipeline);
+    private boolean fixedPointEnabled = Boolean.getBoolean("pos.engine.fixedPoint");
+
+    /** 同一商品重複掃描時合併為一筆明細，可用 -Dpos.cart.mergeDuplicates=true 啟用 */
+    private boolean mergeDuplicateItems = Boolean.getBoolean("pos.cart.mergeDuplicates");
+
+    /** 活動組合最佳化，可用 -Dpos.promotion.optimizer=customer|margin 啟用；null 表示依活動順序貪婪套用 */
+    private volatile PromotionOptimizer promotionOptimizer = PromotionOptimizer.fromSystemProperties();
+
+    /** 各步驟耗時與計數（預設關閉，-Dpos.metrics.enabled=true 開啟） */
+    private final PromotionMetrics metrics = new PromotionMetrics();
+
+    /** 折扣事件（非同步輸出，預設輸出到 Console） */
+    private EventPublisher events = EventPublisher.getDefault();
+
+    /**
+     * 資料來源：mysql（預設）、memory（讀取 pos.data.dir 目錄下的 CSV）
+     * 或 snapshot（memory-map pos.data.snapshot 指定的二進位快照）
+     */
+    public static final String DATA_SOURCE = System.getProperty("pos.data.source", "mysql");
+
+    /** 記憶體資料的 CSV 目錄 */
+    public static final String DATA_DIR = System.getProperty("pos.data.dir", "data");
+
+    /** 離線快照檔（由 repo.CatalogSnapshotExporter 產生） */
+    public static final String DATA_SNAPSHOT = System.getProperty("pos.data.snapshot", "data/catalog.snap");
+
+    /** 商品索引：heap（預設）或 offheap（整份商品目錄放在堆外記憶體，見 repo.OffHeapItemStore） */
+    public static final String ITEM_STORE = System.getProperty("pos.item.store", "heap");
+
+    /** 啟動時一次載入全部活動的日曆索引（重算歷史、跨日回放；不檢查活動表異動，見 repo.ActivityCalendar） */
+    public static final boolean ACTIVITY_CALENDAR = Boolean.getBoolean("pos.activity.calendar");
 
     public PromotionService() {
-        this.itemRepository = new ItemRepository();
-        this.activityRepository = new ActivityRepository();
+        // 商品資料經過記憶體快取，只有未命中的代碼才查詢資料庫
+        // 活動依營業日快取，每天只查詢一次；定期檢查活動表是否被修改
+        this(createItemLookup(), createCachedActivityRepository());
+    }
+
+    /**
+     * 指定資料來源的建構子（例如測試、效能量測或記憶體資料）。
+     *
+     * @param itemRepository 商品查詢
+     * @param activityRepository 活動查詢
+     */
+    public PromotionService(ItemLookup itemRepository, ActivityLookup activityRepository) {
+        this.itemRepository = itemRepository;
+        this.activityRepository = activityRepository;
+    }
+
+    private static boolean isOffline() {
+        return "memory".equalsIgnoreCase(DATA_SOURCE) || "snapshot".equalsIgnoreCase(DATA_SOURCE);
+    }
+
+    private static ItemLookup createItemLookup() {
+        // 離線資料本身就在記憶體（或對映檔案）中，不需要再加快取
+        ItemLookup lookup = isOffline() ? OfflineCatalogHolder.CATALOG : new CachedItemRepository(new ItemRepository());
+        if (!"offheap".equalsIgnoreCase(ITEM_STORE)) return lookup;
+
+        // 營業開始時把整份商品目錄載入堆外索引，其他交易日仍由原本的來源查詢
+        long start = System.currentTimeMillis();
+        OffHeapItemStore store = OffHeapItemStore.load(
+                isOffline() ? OfflineCatalogHolder.CATALOG : new ItemRepository(), new Date(), lookup);
+        if (store.getItemCount() == 0) {
+            System.err.println("[堆外索引] 沒有載入任何商品，改用原本的商品查詢");
+            return lookup;
+        }
+        System.out.println("[堆外索引] 已載入 " + store.getItemCount() + " 項商品、"
+                + store.getOffHeapBytes() / 1024 + " KB（" + (System.currentTimeMillis() - start) + " ms）");
+        return store;
+    }
+
+    private static ActivityLookup createCachedActivityRepository() {
+        if (isOffline()) {
+            // 離線資料載入後不會改變，不需要異動檢查
+            return new CachedActivityRepository(OfflineCatalogHolder.CATALOG);
+        }
+        if (ACTIVITY_CALENDAR) {
+            long start = System.currentTimeMillis();
+            ActivityCalendar calendar = ActivityCalendar.load(new ActivityRepository());
+            System.out.println("[活動日曆] 已載入 " + calendar.getActivityCount() + " 個活動、"
+                    + calendar.getSegmentCount() + " 個日期分段（" + (System.currentTimeMillis() - start) + " ms）");
+            return calendar;
+        }
+        CachedActivityRepository cachedActivities = new CachedActivityRepository(new ActivityRepository());
+        cachedActivities.startChangeCheck(CachedActivityRepository.DEFAULT_CHECK_INTERVAL_MS);
+        return cachedActivities;
+    }
+
+    /** 離線資料（第一次使用時載入，所有 PromotionService 共用） */
+    private static final class OfflineCatalogHolder {
+        private static final CatalogLookup CATALOG = load();
+
+        private static CatalogLookup load() {
+            boolean snapshot = "snapshot".equalsIgnoreCase(DATA_SOURCE);
+            Path path = Paths.get(snapshot ? DATA_SNAPSHOT : DATA_DIR);
+            try {
+                long start = System.currentTimeMillis();
+                if (snapshot) {
+                    CatalogSnapshot catalog = CatalogSnapshot.open(path);
+                    System.out.println("[離線快照] 已開啟 " + catalog.getItemCount() + " 項商品、"
+                            + catalog.getActivityCount() + " 個活動（" + (System.currentTimeMillis() - start) + " ms）");
+                    return catalog;
+                }
+                InMemoryCatalog catalog = InMemoryCatalog.load(path);
+                System.out.println("[記憶體資料] 已載入 " + catalog.getItemCount() + " 項商品、"
+                        + catalog.getActivityCount() + " 個活動（" + path.toAbsolutePath() + "）");
+                return catalog;
+            } catch (IOException e) {
+                throw new IllegalStateException("無法載入離線資料: " + path.toAbsolutePath(), e);
+            }
+        }
+    }
+
+    /** 是否使用定點數引擎（結果與 BigDecimal 流程相同，但配置較少物件） */
+    public boolean isFixedPointEnabled() { return fixedPointEnabled; }
+    public void setFixedPointEnabled(boolean fixedPointEnabled) { this.fixedPointEnabled = fixedPointEnabled; }
+
+    /**
+     * 是否合併重複掃描的商品：同一商品代碼的多筆購物車項目合併為一筆明細
+     * （數量與手動折扣相加），明細數與活動計算量只和不同商品數有關。
+     * 會員折扣與促銷分攤改以合併後的明細計算，進位結果可能與逐筆明細差 1 元以內。
+     */
+    public boolean isMergeDuplicateItems() { return mergeDuplicateItems; }
+    public void setMergeDuplicateItems(boolean mergeDuplicateItems) { this.mergeDuplicateItems = mergeDuplicateItems; }
+
+    /**
+     * 活動組合最佳化器：搜尋要套用哪些活動，而不是依活動順序套用所有達標活動。
+     * 設定後不使用定點數引擎（定點數引擎只實作貪婪流程）。null 表示關閉。
+     */
+    public PromotionOptimizer getPromotionOptimizer() { return promotionOptimizer; }
+    public void setPromotionOptimizer(PromotionOptimizer promotionOptimizer) { this.promotionOptimizer = promotionOptimizer; }
+
+    /** 取得商品快取統計（命中、未命中、淘汰），未使用快取時回傳 null */
+    public CachedItemRepository.CacheStats getItemCacheStats() {
+        return itemRepository instanceof CachedItemRepository
+                ? ((CachedItemRepository) itemRepository).getStats()
+                : null;
+    }
+
+    /** 指定折扣事件的發布器（例如改為寫入檔案，或測試時收集事件） */
+    public void setEventPublisher(EventPublisher events) {
+        this.events = events;
+        FixedPointPromotionEngine engine = fixedPointEngine;
+        if (engine != null) engine.setEventPublisher(events);
+    }
+
+    EventPublisher getEventPublisher() { return events; }
+
+    /** 折扣計算流程 */
+    public DiscountPipeline getDiscountPipeline() { return discountPipeline; }
+
+    /**
+     * 替換折扣計算流程。流程不是「手動 → 會員 → 促銷」時不使用定點數引擎；
+     * 不能增量計算的流程無法開啟購物車工作階段。
+     */
+    public void setDiscountPipeline(DiscountPipeline discountPipeline) {
+        FixedPointPromotionEngine engine = createFixedPointEngine(discountPipeline);
+        if (engine != null) engine.setEventPublisher(events);
+        this.fixedPointEngine = engine;
+        this.discountPipeline = discountPipeline;
+    }
+
+    private static FixedPointPromotionEngine createFixedPointEngine(DiscountPipeline pipeline) {
+        MemberDiscountStage member = pipeline.getStandardMember();
+        return member == null ? null : new FixedPointPromotionEngine(member.getCategoryCode(), member.getDiscountRate());
+    }
+
+    /** 取得效能指標（開啟、關閉、清除） */
+    public PromotionMetrics getMetrics() { return metrics; }
+
+    /** 以 Prometheus text format 匯出效能指標（含商品快取統計） */
+    public String exportMetrics() {
+        return metrics.toPrometheusText(getItemCacheStats());
     }
 
     /** 主流程：計算整筆交易的收據金額 */
     public Receipt calculateReceipt(List<CartItem> cartItems, Date transactionDate, boolean isCompanyMember) {
-        completeItemInfo(cartItems);
+        long start = metrics.start();
+        Map<String, Item> itemMap = loadItems(distinctItemCodes(cartItems), transactionDate);
+        PromotionIndex index = indexFor(findValidActivities(transactionDate));
+        Receipt receipt = calculate(cartItems, itemMap, index, isCompanyMember, true);
+        metrics.record(PromotionMetrics.Stage.RECEIPT, start);
+        return receipt;
+    }
+
+    /**
+     * 非同步計算收據（POS 閘道同時處理大量結帳請求時使用）。
+     * ------------------------------------------------------------
+     *  1. 商品查詢與活動查詢同時送出，結帳延遲為兩者的較大值而非總和
+     *  2. 兩者都完成後才開始 Step 1，計算結果與 {@link #calculateReceipt} 相同
+     *  3. 查詢逾時或失敗時改用快取中的資料（商品快取、活動快照）；
+     *     沒有快取資料時 future 以 TimeoutException（或原本的例外）失敗
+     *  4. 逾時的查詢不會被中斷，完成後仍會寫入快取，供之後的交易使用
+     * ------------------------------------------------------------
+     * 查詢在虛擬執行緒上執行（執行環境支援時），否則使用固定大小的 daemon 執行緒池。
+     *
+     * @param cartItems 購物車
+     * @param transactionDate 交易日期
+     * @param isCompanyMember 是否為公司會員
+     * @return 收據的 future
+     */
+    public CompletableFuture<Receipt> calculateReceiptAsync(List<CartItem> cartItems, Date transactionDate,
+                                                           boolean isCompanyMember) {
+        long start = metrics.start();
+        ExecutorService executor = getLookupExecutor();
+        List<String> itemCodes = distinctItemCodes(cartItems);
+
+        CompletableFuture<Map<String, Item>> items = CompletableFuture
+                .supplyAsync(() -> loadItems(itemCodes, transactionDate), executor)
+                .orTimeout(itemLookupTimeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> cachedItems(itemCodes, transactionDate, e));
+        CompletableFuture<List<Activity>> activities = CompletableFuture
+                .supplyAsync(() -> findValidActivities(transactionDate), executor)
+                .orTimeout(activityLookupTimeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> cachedActivities(transactionDate, e));
+
+        return items.thenCombineAsync(activities, (itemMap, activityList) -> {
+            Receipt receipt = calculate(cartItems, itemMap, indexFor(activityList), isCompanyMember, true);
+            metrics.record(PromotionMetrics.Stage.RECEIPT, start);
+            return receipt;
+        }, executor);
+    }
+
+    /** 商品查詢逾時或失敗時的備援：只用快取中的商品（不在快取中的商品視為查無資料） */
+    private Map<String, Item> cachedItems(List<String> itemCodes, Date transactionDate, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (!(itemRepository instanceof CachedItemRepository)) throw new CompletionException(cause);
+        Map<String, Item> cached = ((CachedItemRepository) itemRepository).peekItems(itemCodes, transactionDate);
+        events.publish(new RepositoryError("商品查詢" + (cause instanceof TimeoutException ? "逾時" : "失敗")
+                + "，改用快取資料（" + cached.size() + "/" + itemCodes.size() + " 項）", cause));
+        return cached;
+    }
+
+    /** 活動查詢逾時或失敗時的備援：使用同一營業日已快取的活動快照 */
+    private List<Activity> cachedActivities(Date transactionDate, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        List<Activity> cached = activityRepository instanceof CachedActivityRepository
+                ? ((CachedActivityRepository) activityRepository).peek(transactionDate)
+                : null;
+        if (cached == null) throw new CompletionException(cause);
+        events.publish(new RepositoryError("活動查詢" + (cause instanceof TimeoutException ? "逾時" : "失敗")
+                + "，改用快取的活動快照", cause));
+        return cached;
+    }
+
+    /**
+     * 設定非同步查詢的逾時。
+     *
+     * @param itemTimeoutMs 商品查詢逾時（毫秒）
+     * @param activityTimeoutMs 活動查詢逾時（毫秒）
+     */
+    public void setLookupTimeouts(long itemTimeoutMs, long activityTimeoutMs) {
+        this.itemLookupTimeoutMs = itemTimeoutMs;
+        this.activityLookupTimeoutMs = activityTimeoutMs;
+    }
+
+    /** 取得非同步查詢使用的執行器 */
+    public synchronized ExecutorService getLookupExecutor() {
+        if (lookupExecutor == null) lookupExecutor = newLookupExecutor();
+        return lookupExecutor;
+    }
+
+    /** 指定非同步查詢使用的執行器 */
+    public synchronized void setLookupExecutor(ExecutorService lookupExecutor) {
+        this.lookupExecutor = lookupExecutor;
+    }
+
+    /**
+     * 建立查詢執行器：支援虛擬執行緒的 JDK 使用每個工作一個虛擬執行緒
+     * （以反射呼叫，專案仍以 Java 17 編譯），否則使用固定大小的 daemon 執行緒池。
+     */
+    private static ExecutorService newLookupExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(ASYNC_FALLBACK_THREADS, task -> {
+                Thread thread = new Thread(task, "promotion-lookup");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * 批次計算多筆交易（日結重算、離線終端機佇列回放）。
+     * ------------------------------------------------------------
+     * 依營業日分組：
+     *  1. 同一天所有購物籃的商品代碼取聯集，以分段批次查詢一次取得
+     *  2. 每個營業日只查詢一次活動並編譯一次索引
+     *  3. 以共用資料逐筆計算收據
+     * ------------------------------------------------------------
+     * 批次模式不輸出逐筆折扣訊息。
+     *
+     * @param baskets 待計算的交易
+     * @return 收據清單，順序與輸入相同
+     */
+    public List<Receipt> calculateReceipts(List<Basket> baskets) {
+        Map<LocalDate, BatchData> dataByDay = loadBatchData(baskets);
+        List<Receipt> receipts = new ArrayList<>(baskets.size());
+        for (Basket basket : baskets) {
+            BatchData data = dataByDay.get(businessDate(basket.getTransactionDate()));
+            receipts.add(calculate(basket.getCartItems(), data.items, data.index, basket.isCompanyMember(), false));
+        }
+        return receipts;
+    }
+
+    /**
+     * 平行批次計算（重算整月交易等大量資料）。
+     * ------------------------------------------------------------
+     *  1. 與 {@link #calculateReceipts(List)} 相同，先依營業日載入共用資料
+     *  2. 將購物籃依索引範圍切分給 ForkJoinPool 的各個工作執行緒
+     *  3. 每筆交易的 CartItem／Line／Receipt 只由一個執行緒修改，
+     *     共用的商品與活動索引只讀，不需加鎖
+     *  4. 結果依輸入順序寫入陣列
+     * ------------------------------------------------------------
+     * 同一個 CartItem 物件不可同時出現在多個購物籃中。
+     *
+     * @param baskets 待計算的交易
+     * @return 收據清單，順序與輸入相同
+     */
+    public List<Receipt> calculateReceiptsParallel(List<Basket> baskets) {
+        return calculateReceiptsParallel(baskets, getBulkPool());
+    }
+
+    /**
+     * 使用指定的 ForkJoinPool 平行批次計算。
+     *
+     * @param baskets 待計算的交易
+     * @param pool 執行計算的 ForkJoinPool
+     * @return 收據清單，順序與輸入相同
+     */
+    public List<Receipt> calculateReceiptsParallel(List<Basket> baskets, ForkJoinPool pool) {
+        Map<LocalDate, BatchData> dataByDay = loadBatchData(baskets);
+        Receipt[] receipts = new Receipt[baskets.size()];
+        pool.invoke(new BasketTask(baskets, dataByDay, receipts, 0, baskets.size()));
+        return Arrays.asList(receipts);
+    }
+
+    /** 取得平行批次計算使用的 ForkJoinPool */
+    public synchronized ForkJoinPool getBulkPool() {
+        if (bulkPool == null) bulkPool = new ForkJoinPool(BULK_PARALLELISM);
+        return bulkPool;
+    }
+
+    /** 指定平行批次計算使用的 ForkJoinPool（例如限制只用部分核心） */
+    public synchronized void setBulkPool(ForkJoinPool bulkPool) {
+        this.bulkPool = bulkPool;
+    }
+
+    /** 將購物籃範圍對半切分，直到小於門檻後直接計算 */
+    private final class BasketTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Basket> baskets;
+        private final Map<LocalDate, BatchData> dataByDay;
+        private final Receipt[] receipts;
+        private final int from;
+        private final int to;
+
+        BasketTask(List<Basket> baskets, Map<LocalDate, BatchData> dataByDay, Receipt[] receipts, int from, int to) {
+            this.baskets = baskets;
+            this.dataByDay = dataByDay;
+            this.receipts = receipts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BULK_SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    Basket basket = baskets.get(i);
+                    BatchData data = dataByDay.get(businessDate(basket.getTransactionDate()));
+                    receipts[i] = calculate(basket.getCartItems(), data.items, data.index, basket.isCompanyMember(), false);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BasketTask(baskets, dataByDay, receipts, from, middle),
+                      new BasketTask(baskets, dataByDay, receipts, middle, to));
+        }
+    }
+
+    /** 依營業日載入批次計算所需的商品與活動 */
+    private Map<LocalDate, BatchData> loadBatchData(List<Basket> baskets) {
+        Map<LocalDate, Date> dates = new LinkedHashMap<>();
+        Map<LocalDate, Set<String>> codesByDay = new HashMap<>();
+        for (Basket basket : baskets) {
+            LocalDate day = businessDate(basket.getTransactionDate());
+            dates.putIfAbsent(day, basket.getTransactionDate());
+            Set<String> codes = codesByDay.computeIfAbsent(day, d -> new LinkedHashSet<>());
+            for (CartItem cartItem : basket.getCartItems()) {
+                codes.add(cartItem.getItemCode());
+            }
+        }
+
+        Map<LocalDate, BatchData> dataByDay = new HashMap<>();
+        for (Map.Entry<LocalDate, Date> entry : dates.entrySet()) {
+            Date date = entry.getValue();
+            Map<String, Item> items = loadItems(new ArrayList<>(codesByDay.get(entry.getKey())), date);
+            PromotionIndex index = PromotionIndex.build(findValidActivities(date));
+            dataByDay.put(entry.getKey(), new BatchData(items, index));
+        }
+        return dataByDay;
+    }
+
+    private static LocalDate businessDate(Date date) {
+        return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    /** 批次計算時同一營業日共用的資料 */
+    private static final class BatchData {
+        private final Map<String, Item> items;
+        private final PromotionIndex index;
+
+        BatchData(Map<String, Item> items, PromotionIndex index) {
+            this.items = items;
+            this.index = index;
+        }
+    }
+
+    /**
+     * 以已載入的商品與活動索引計算一筆收據。
+     * 所有可變狀態（CartItem、Line、Receipt）都屬於這一筆交易，
+     * 共用的 Item 與 PromotionIndex 只讀不寫，因此可在多執行緒中同時呼叫。
+     *
+     * @param trace 是否發布折扣事件（批次模式關閉，避免大量事件塞滿佇列）
+     */
+    private Receipt calculate(List<CartItem> cartItems, Map<String, Item> itemMap,
+                              PromotionIndex index, boolean isCompanyMember, boolean trace) {
+        long start = metrics.start();
+        completeItemInfo(cartItems, itemMap, trace);
+        if (mergeDuplicateItems) cartItems = mergeDuplicates(cartItems);
+        metrics.record(PromotionMetrics.Stage.COMPLETE_ITEM_INFO, start);
+        FixedPointPromotionEngine engine = fixedPointEngine;
+        if (fixedPointEnabled && promotionOptimizer == null && engine != null
+                && engine.supports(cartItems, index, isCompanyMember)) {
+            start = metrics.start();
+            Receipt receipt = engine.calculate(cartItems, index, isCompanyMember, trace);
+            metrics.record(PromotionMetrics.Stage.FIXED_POINT_ENGINE, start);
+            return receipt;
+        }
+
+        start = metrics.start();
         List<Line> lines = convertToLines(cartItems);
-        applyManualLineDiscount(lines); // Step 1
+        metrics.record(PromotionMetrics.Stage.CONVERT_TO_LINES, start);
+
         Receipt receipt = new Receipt();
         receipt.setLines(lines);
-        applyMemberDiscount(receipt, isCompanyMember); // Step 2
-        List<Activity> validActivities = activityRepository.findValidActivities(transactionDate);
-        applyPromotionActivities(receipt, validActivities); // Step 3
+        discountPipeline.apply(new DiscountContext(this, receipt, isCompanyMember, index, events, trace), metrics); // Step 1～3
+
+        start = metrics.start();
         receipt.calculateTotals();
+        metrics.record(PromotionMetrics.Stage.CALCULATE_TOTALS, start);
         return receipt;
     }
 
-    /** 批次補齊商品資訊 */
-    private void completeItemInfo(List<CartItem> cartItems) {
-        List<String> itemCodes = cartItems.stream()
+    private static List<String> distinctItemCodes(List<CartItem> cartItems) {
+        return cartItems.stream()
                 .map(CartItem::getItemCode)
+                .distinct()
                 .collect(Collectors.toList());
-        List<Item> items = itemRepository.findItemsByCodes(itemCodes);
-        Map<String, Item> itemMap = items.stream()
-                .collect(Collectors.toMap(Item::getItemCode, item -> item));
+    }
 
+    /** 查詢單一商品（購物車掃描時使用，經過商品快取） */
+    Item findItem(String itemCode, Date transactionDate) {
+        return loadItems(List.of(itemCode), transactionDate).get(itemCode);
+    }
+
+    /**
+     * 開啟收銀台購物車工作階段：逐筆掃描商品時只重算受影響的部分。
+     * 活動在開啟時載入一次，之後每次掃描不再查詢活動。
+     *
+     * @param transactionDate 交易日期
+     * @param isCompanyMember 是否為公司會員
+     * @return 購物車工作階段
+     */
+    public CartSession openSession(Date transactionDate, boolean isCompanyMember) {
+        DiscountPipeline pipeline = discountPipeline;
+        if (!pipeline.isIncremental()) {
+            throw new IllegalStateException("折扣流程無法增量計算，不能開啟購物車工作階段: " + pipeline);
+        }
+        PromotionIndex index = indexFor(findValidActivities(transactionDate));
+        return new CartSession(this, transactionDate, isCompanyMember, index, pipeline);
+    }
+
+    /**
+     * 批次查詢商品（價格取交易日當時生效的價格）。
+     * 代碼數量很多時分段查詢，每段最多 ITEM_QUERY_CHUNK 筆。
+     */
+    private Map<String, Item> loadItems(List<String> itemCodes, Date transactionDate) {
+        long start = metrics.start();
+        metrics.count(PromotionMetrics.Counter.ITEM_CODES_REQUESTED, itemCodes.size());
+        Map<String, Item> itemMap = new HashMap<>();
+        for (int from = 0; from < itemCodes.size(); from += ITEM_QUERY_CHUNK) {
+            List<String> chunk = itemCodes.subList(from, Math.min(from + ITEM_QUERY_CHUNK, itemCodes.size()));
+            for (Item item : itemRepository.findItemsByCodes(chunk, transactionDate)) {
+                itemMap.putIfAbsent(item.getItemCode(), item);
+            }
+        }
+        metrics.record(PromotionMetrics.Stage.LOAD_ITEMS, start);
+        return itemMap;
+    }
+
+    /** 查詢交易日有效的活動（經過活動快取） */
+    private List<Activity> findValidActivities(Date transactionDate) {
+        long start = metrics.start();
+        List<Activity> activities = activityRepository.findValidActivities(transactionDate);
+        metrics.record(PromotionMetrics.Stage.FIND_ACTIVITIES, start);
+        return activities;
+    }
+
+    /**
+     * 商品在交易日是否有生效的價格。
+     * 價格全部在交易日之後才生效的商品，查詢結果的單價為 null，視同查無商品。
+     */
+    static boolean isPriced(Item item) {
+        return item != null && item.getUnitPrice() != null;
+    }
+
+    /** 補齊購物車的商品資訊（查無商品或交易日尚無價格的項目不補） */
+    private void completeItemInfo(List<CartItem> cartItems, Map<String, Item> itemMap, boolean trace) {
         for (CartItem cartItem : cartItems) {
             Item item = itemMap.get(cartItem.getItemCode());
-            if (item != null) {
+            if (isPriced(item)) {
                 cartItem.setItem(item);
-            } else {
-                System.err.println("警告: 未找到商品 " + cartItem.getItemCode());
+                continue;
+            }
+            metrics.count(PromotionMetrics.Counter.ITEMS_NOT_FOUND, 1);
+            if (trace) events.publish(new ItemNotFound(cartItem.getItemCode()));
+        }
+    }
+
+    /**
+     * 合併同一商品代碼的購物車項目（依第一次出現的順序），數量與手動折扣相加。
+     * 沒有重複時直接回傳原清單；有重複時回傳新的清單，原本的 CartItem 不會被修改。
+     */
+    static List<CartItem> mergeDuplicates(List<CartItem> cartItems) {
+        Map<String, CartItem> merged = new LinkedHashMap<>(cartItems.size() * 2);
+        boolean duplicated = false;
+        for (CartItem cartItem : cartItems) {
+            CartItem existing = merged.putIfAbsent(cartItem.getItemCode(), cartItem);
+            if (existing == null) continue;
+            if (!duplicated) {
+                // 第一次遇到重複才複製，避免修改呼叫端的 CartItem
+                duplicated = true;
+                for (Map.Entry<String, CartItem> entry : merged.entrySet()) {
+                    entry.setValue(copyOf(entry.getValue()));
+                }
+                existing = merged.get(cartItem.getItemCode());
+            }
+            existing.setQuantity(existing.getQuantity() + cartItem.getQuantity());
+            BigDecimal manual = cartItem.getManualDiscount();
+            if (manual != null) {
+                existing.setManualDiscount(existing.getManualDiscount() == null ? manual : existing.getManualDiscount().add(manual));
             }
         }
+        return duplicated ? new ArrayList<>(merged.values()) : cartItems;
+    }
+
+    private static CartItem copyOf(CartItem cartItem) {
+        CartItem copy = new CartItem(cartItem.getItemCode(), cartItem.getQuantity());
+        copy.setManualDiscount(cartItem.getManualDiscount());
+        if (cartItem.getItem() != null) copy.setItem(cartItem.getItem());
+        return copy;
     }
 
     /** 將購物車轉換為 Line 物件 */
     private List<Line> convertToLines(List<CartItem> cartItems) {
         List<Line> lines = new ArrayList<>();
         for (CartItem cartItem : cartItems) {
-            if (cartItem.getItem() != null) {
-                Line line = new Line(
-                        cartItem.getItemCode(),
-                        cartItem.getItem().getItemName(),
-                        cartItem.getItem().getCategory01(),
-                        cartItem.getItem().getCategory01Name(),
-                        cartItem.getQuantity(),
-                        cartItem.getItem().getUnitPrice()
-                );
-                if (cartItem.getManualDiscount() != null && cartItem.getManualDiscount().compareTo(BigDecimal.ZERO) > 0) {
-                    line.setManualDiscount(cartItem.getManualDiscount());
-                }
-                lines.add(line);
+            if (isPriced(cartItem.getItem())) {
+                lines.add(toLine(cartItem));
             }
         }
+        metrics.count(PromotionMetrics.Counter.LINES_PROCESSED, lines.size());
         return lines;
     }
 
-    /** Step 1: 手動折扣（小計前） */
-    private void applyManualLineDiscount(List<Line> lines) {
-        for (Line line : lines) {
-            if (line.getManualDiscount() != null && line.getManualDiscount().compareTo(BigDecimal.ZERO) > 0) {
-                line.applyManualDiscount(line.getManualDiscount());
-                System.out.printf("[手動折扣] %s 折讓 %.0f 元%n", line.getItemName(), line.getManualDiscount());
-            }
+    /** 將單一購物車項目（商品資訊與單價已補齊，見 {@link #isPriced(Item)}）轉換為 Line */
+    Line toLine(CartItem cartItem) {
+        Line line = new Line(
+                cartItem.getItemCode(),
+                cartItem.getItem().getItemName(),
+                cartItem.getItem().getCategory01(),
+                cartItem.getItem().getCategory01Name(),
+                cartItem.getQuantity(),
+                cartItem.getItem().getUnitPrice()
+        );
+        if (cartItem.getManualDiscount() != null && cartItem.getManualDiscount().compareTo(BigDecimal.ZERO) > 0) {
+            line.setManualDiscount(cartItem.getManualDiscount());
         }
+        return line;
     }
 
-    /** Step 2: 公司會員折扣（酒類95折） */
-    private void applyMemberDiscount(Receipt receipt, boolean isCompanyMember) {
-        if (!isCompanyMember) return;
-
-        for (Line line : receipt.getLines()) {
-            if ("09".equals(line.getCategoryCode())) {
-                line.applyMemberDiscount(MEMBER_DISCOUNT_RATE);
-                System.out.println("[會員折扣] " + line.getItemName() + " → 套用95折");
-            }
+    /** 取得活動快照對應的索引，同一份快照只編譯一次 */
+    private PromotionIndex indexFor(List<Activity> activities) {
+        PromotionIndex index = promotionIndex;
+        if (index == null || !index.isBuiltFrom(activities)) {
+            index = PromotionIndex.build(activities);
+            promotionIndex = index;
         }
-        receipt.calculateTotals();
+        return index;
+    }
+
+    /** Step 3: 套用促銷活動（依活動順序，符合商品由索引一次分組） */
+    void applyPromotionActivities(Receipt receipt, PromotionIndex index, boolean trace) {
+        applyPromotionActivities(receipt, receipt.getLines(), index,
+                selectPromotionActivities(receipt.getLines(), index), null, trace);
+    }
+
+    /**
+     * 最佳化模式下選出要套用的活動。
+     *
+     * @param lines 已完成手動折扣與會員折扣、尚未套用促銷的明細（依收據順序）
+     * @param index 活動索引
+     * @return 要套用的活動位置；未啟用最佳化時回傳 null（全部依序套用）
+     */
+    boolean[] selectPromotionActivities(List<Line> lines, PromotionIndex index) {
+        PromotionOptimizer optimizer = promotionOptimizer;
+        if (optimizer == null) return null;
+        PromotionOptimizer.Selection selection = optimizer.select(lines, index);
+        if (!selection.isOptimal()) metrics.count(PromotionMetrics.Counter.OPTIMIZER_INCOMPLETE, 1);
+        return selection.getSelected();
     }
 
-    /** Step 3: 套用促銷活動 */
-    private void applyPromotionActivities(Receipt receipt, List<Activity> activities) {
-        for (Activity activity : activities) {
-            List<Line> eligibleLines = findEligibleLines(receipt.getLines(), activity);
+    /**
+     * 對指定的明細子集合套用部分活動（購物車增量重算使用）。
+     *
+     * @param receipt 收據（記錄活動折扣）
+     * @param lines 參與計算的明細（依收據順序）
+     * @param index 活動索引
+     * @param selected 要套用的活動位置，null 表示全部
+     * @param awarded 回傳各活動的折扣金額（未達門檻為 null），可為 null
+     * @param trace 是否輸出折扣訊息
+     */
+    void applyPromotionActivities(Receipt receipt, List<Line> lines, PromotionIndex index,
+                                  boolean[] selected, BigDecimal[] awarded, boolean trace) {
+        List<List<Line>> eligibleByActivity = index.eligibleLinesByActivity(lines);
+        int evaluated = 0;
+        int triggeredCount = 0;
+        for (int i = 0; i < index.size(); i++) {
+            if (selected != null && !selected[i]) continue;
+            evaluated++;
+            PromotionIndex.CompiledActivity compiled = index.getActivity(i);
+            Activity activity = compiled.getActivity();
+            List<Line> eligibleLines = eligibleByActivity.get(i);
             BigDecimal eligibleTotal = calculateEligibleTotal(eligibleLines);
 
-            if (eligibleTotal.compareTo(activity.getMeetCriteriaAmtG1()) >= 0 && eligibleTotal.compareTo(BigDecimal.ZERO) > 0) {
-                distributeDiscount(eligibleLines, activity.getAwardAmtG1(), eligibleTotal);
-                receipt.addActivityDiscount(activity.getActivityName(), activity.getAwardAmtG1());
-                System.out.printf("[促銷觸發] %s | 分類: %s | 總金額: %,.0f | 折扣: %,.0f%n",
+            // 達到的最高級距（二分搜尋），累送時乘上倍數；未達門檻為 null
+            BigDecimal award = compiled.awardFor(eligibleTotal);
+            if (awarded != null) awarded[i] = award;
+            if (award != null) {
+                triggeredCount++;
+                distributeDiscount(eligibleLines, award, eligibleTotal);
+                receipt.addActivityDiscount(activity.getActivityName(), award);
+                if (trace) events.publish(new PromotionTriggered(
+                        activity.getActivityCode(),
                         activity.getActivityName(),
                         activity.getItemDiscountGroup(),
                         eligibleTotal,
-                        activity.getAwardAmtG1());
+                        award));
             }
         }
-    }
-
-    /** 找出符合活動條件的商品 */
-    private List<Line> findEligibleLines(List<Line> lines, Activity activity) {
-        return lines.stream()
-                .filter(line -> isCategoryMatch(line.getCategoryCode(), activity.getItemDiscountGroup()))
-                .collect(Collectors.toList());
-    }
-
-    private boolean isCategoryMatch(String itemCategoryCode, String activityCategoryGroup) {
-        if (itemCategoryCode == null || activityCategoryGroup == null) return false;
-        if (activityCategoryGroup.equalsIgnoreCase("ALL")) return true;
-        for (String category : activityCategoryGroup.split(",")) {
-            if (category.trim().equalsIgnoreCase(itemCategoryCode)) return true;
-        }
-        return false;
+        metrics.count(PromotionMetrics.Counter.ACTIVITIES_EVALUATED, evaluated);
+        metrics.count(PromotionMetrics.Counter.ACTIVITIES_TRIGGERED, triggeredCount);
     }
 
     /** 計算符合條件商品的金額 */
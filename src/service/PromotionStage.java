@@ -0,0 +1,37 @@
+package service;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 條件活動折扣（小計後）：滿額／分類活動依比例分攤到符合的明細。
+ * 購物車沒有任何分類被活動涵蓋時，在計算前就略過此階段。
+ * 啟用活動組合最佳化時由 {@link PromotionOptimizer} 決定套用哪些活動。
+ */
+public final class PromotionStage implements DiscountStage {
+
+    private static final Set<LineField> READS =
+            Collections.unmodifiableSet(EnumSet.of(LineField.CATEGORY_CODE, LineField.FINAL_AMOUNT));
+    private static final Set<LineField> WRITES =
+            Collections.unmodifiableSet(EnumSet.of(LineField.PROMOTION_DISCOUNT, LineField.FINAL_AMOUNT));
+
+    @Override
+    public String getName() { return "promotion"; }
+
+    @Override
+    public Set<LineField> getReads() { return READS; }
+
+    @Override
+    public Set<LineField> getWrites() { return WRITES; }
+
+    @Override
+    public boolean appliesTo(DiscountContext context) {
+        return context.hasPromotableLines();
+    }
+
+    @Override
+    public void apply(DiscountContext context) {
+        context.getService().applyPromotionActivities(context.getReceipt(), context.getIndex(), context.isTrace());
+    }
+}
@@ -0,0 +1,86 @@
+package test;
+
+import model.Activity;
+import repo.ActivityCalendar;
+import repo.InMemoryCatalog;
+import repo.SyntheticCatalogGenerator;
+
+import org.junit.jupiter.api.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 活動日曆測試：任何日期的查詢結果（含順序）與逐筆比對起訖日期相同，
+ * 同一分段回傳同一個不可修改的清單。
+ */
+public class ActivityCalendarTest {
+
+    @Test
+    void matchesLinearScanOnEveryDay() {
+        SyntheticCatalogGenerator generator = new SyntheticCatalogGenerator(23L);
+        generator.setItemCount(100);
+        generator.setActivityCount(1_500);
+        List<Activity> activities = generator.toInMemoryCatalog().getActivities();
+        ActivityCalendar calendar = ActivityCalendar.of(activities, ZoneId.systemDefault());
+        Assertions.assertEquals(1_500, calendar.getActivityCount());
+
+        LocalDate first = generator.getStartDate().minusDays(40);
+        for (int d = 0; d < generator.getDays() + 140; d++) {
+            LocalDate day = first.plusDays(d);
+            List<Activity> expected = new ArrayList<>();
+            for (Activity activity : activities) {
+                LocalDate start = ((java.sql.Date) activity.getStartActivityDate()).toLocalDate();
+                LocalDate end = ((java.sql.Date) activity.getEndActivityDate()).toLocalDate();
+                if (!day.isBefore(start) && !day.isAfter(end)) expected.add(activity);
+            }
+            Assertions.assertEquals(expected, calendar.findValidActivities(day), day.toString());
+        }
+    }
+
+    @Test
+    void boundariesAndStableSnapshots() throws Exception {
+        List<Activity> activities = List.of(
+                activity("A", "2025-10-01", "2025-10-31"),
+                activity("B", "2025-10-15", "2025-11-15"),
+                activity("C", "2025-10-20", "2025-10-10"),     // 結束日早於開始日，永遠無效
+                new Activity("D", "不限期", null, null, "ALL", BigDecimal.TEN, BigDecimal.ONE));
+        ActivityCalendar calendar = ActivityCalendar.of(activities, ZoneId.systemDefault());
+
+        Assertions.assertEquals(List.of("D"), codes(calendar.findValidActivities(LocalDate.parse("2025-09-30"))));
+        Assertions.assertEquals(List.of("A", "D"), codes(calendar.findValidActivities(LocalDate.parse("2025-10-01"))));
+        Assertions.assertEquals(List.of("A", "B", "D"), codes(calendar.findValidActivities(LocalDate.parse("2025-10-31"))));
+        Assertions.assertEquals(List.of("B", "D"), codes(calendar.findValidActivities(LocalDate.parse("2025-11-01"))));
+        Assertions.assertEquals(List.of("B", "D"), codes(calendar.findValidActivities(
+                new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2025-11-15 23:30"))), "結束日當天仍有效");
+        Assertions.assertEquals(List.of("D"), codes(calendar.findValidActivities(LocalDate.parse("2030-01-01"))));
+
+        List<Activity> a = calendar.findValidActivities(LocalDate.parse("2025-10-16"));
+        Assertions.assertSame(a, calendar.findValidActivities(LocalDate.parse("2025-10-30")), "同一分段回傳同一個清單");
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> a.add(activities.get(0)));
+
+        ActivityCalendar empty = ActivityCalendar.of(List.of(), ZoneId.systemDefault());
+        Assertions.assertTrue(empty.findValidActivities(LocalDate.parse("2025-10-16")).isEmpty());
+    }
+
+    @Test
+    void inMemoryCatalogUsesCalendar() throws Exception {
+        InMemoryCatalog catalog = InMemoryCatalog.load(java.nio.file.Paths.get("data"));
+        ActivityCalendar calendar = ActivityCalendar.of(catalog);
+        java.util.Date date = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2025-10-25 10:00");
+        Assertions.assertEquals(calendar.findValidActivities(date), catalog.findValidActivities(date));
+    }
+
+    private static Activity activity(String code, String start, String end) {
+        return new Activity(code, code, java.sql.Date.valueOf(start), java.sql.Date.valueOf(end), "01",
+                new BigDecimal("1000"), new BigDecimal("100"));
+    }
+
+    private static List<String> codes(List<Activity> activities) {
+        List<String> codes = new ArrayList<>();
+        for (Activity activity : activities) codes.add(activity.getActivityCode());
+        return codes;
+    }
+}
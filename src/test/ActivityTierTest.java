@@ -0,0 +1,148 @@
+package test;
+
+import model.Activity;
+import model.CartItem;
+import model.Receipt;
+import repo.CatalogSnapshot;
+import repo.CatalogSnapshotWriter;
+import repo.InMemoryCatalog;
+import service.PromotionIndex;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 級距活動測試：級距表以二分搜尋找到達到的最高級距，每滿門檻累送，
+ * CSV 依標題偵測 G2..Gn 與累送欄位，定點數引擎與 BigDecimal 流程結果相同，
+ * 快照可保存級距。不需要連線資料庫。
+ */
+public class ActivityTierTest {
+
+    private static Path directory;
+    private static InMemoryCatalog catalog;
+    private static Date date;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        directory = Files.createTempDirectory("tiers");
+        write("im_item_category.csv", "category_code,category_type,category_name\n01,category01,化妝品\n02,category01,香水\n");
+        write("im_item.csv", "item_code,item_c_name,category01\nCOSM001,保濕精華液,01\nPERF001,經典淡香水,02\n");
+        write("im_item_price.csv", "item_code,begin_date,unit_price\nCOSM001,2025-01-01,1800\nPERF001,2025-01-01,2800\n");
+        write("crm_promo_rebate_h.csv",
+                "activity_code,activity_name,start_activity_date,end_activity_date,item_discount_group," +
+                "meet_criteria_amt_g1,award_amt_g1,meet_criteria_amt_g2,award_amt_g2,meet_criteria_amt_g3,award_amt_g3,repeat_award_flag\n" +
+                "T1,化妝品滿三千送三百滿六千送七百,2025-01-01,2025-12-31,01,3000,300,6000,700,,,N\n" +
+                "T2,香水每滿兩千送一百,2025-01-01,2025-12-31,02,2000,100,,,,,Y\n");
+        catalog = InMemoryCatalog.load(directory);
+        date = new SimpleDateFormat("yyyy-MM-dd").parse("2025-10-25");
+    }
+
+    @AfterAll
+    static void cleanup() throws Exception {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void binarySearchFindsHighestReachedTier() {
+        Activity activity = new Activity("A1", "級距", null, null, "01", new BigDecimal("3000"), new BigDecimal("300"));
+        activity.addTier(new BigDecimal("9000"), new BigDecimal("1200"));
+        activity.addTier(new BigDecimal("6000"), new BigDecimal("700"));
+        activity.addTier(new BigDecimal("6000"), new BigDecimal("750"));   // 相同門檻以後者為準
+        activity.addTier(null, new BigDecimal("999"));                       // 未填的欄位略過
+        PromotionIndex.CompiledActivity compiled = PromotionIndex.build(List.of(activity)).getActivity(0);
+
+        Assertions.assertEquals(3, compiled.getTierCount());
+        Assertions.assertNull(compiled.awardFor(new BigDecimal("2999.99")));
+        Assertions.assertNull(compiled.awardFor(BigDecimal.ZERO));
+        Assertions.assertEquals(new BigDecimal("300"), compiled.awardFor(new BigDecimal("3000")));
+        Assertions.assertEquals(new BigDecimal("750"), compiled.awardFor(new BigDecimal("8999")));
+        Assertions.assertEquals(new BigDecimal("1200"), compiled.awardFor(new BigDecimal("50000")));
+        Assertions.assertEquals(1, compiled.tierForMinor(600000L));
+    }
+
+    @Test
+    void csvHeaderDetectsTierAndRepeatColumns() {
+        List<Activity> activities = catalog.getActivities();
+        Assertions.assertEquals(1, activities.get(0).getAdditionalTiers().size());
+        Assertions.assertFalse(activities.get(0).isRepeatAward());
+        Assertions.assertTrue(activities.get(1).getAdditionalTiers().isEmpty());
+        Assertions.assertTrue(activities.get(1).isRepeatAward());
+    }
+
+    @Test
+    void tieredAndRepeatAwardsInReceipt() {
+        PromotionService service = new PromotionService(catalog, catalog);
+        Receipt receipt = price(service, 4, 3);
+        Assertions.assertEquals(0, new BigDecimal("700").compareTo(receipt.getActivityDiscounts().get("化妝品滿三千送三百滿六千送七百")), "7200 達第二級");
+        Assertions.assertEquals(0, new BigDecimal("400").compareTo(receipt.getActivityDiscounts().get("香水每滿兩千送一百")), "8400 累送 4 次");
+
+        receipt = price(service, 2, 1);
+        Assertions.assertEquals(0, new BigDecimal("300").compareTo(receipt.getActivityDiscounts().get("化妝品滿三千送三百滿六千送七百")), "3600 只達第一級");
+        Assertions.assertEquals(0, new BigDecimal("100").compareTo(receipt.getActivityDiscounts().get("香水每滿兩千送一百")));
+    }
+
+    @Test
+    void fixedPointEngineMatchesTiers() {
+        PromotionService decimal = new PromotionService(catalog, catalog);
+        PromotionService fixed = new PromotionService(catalog, catalog);
+        fixed.setFixedPointEnabled(true);
+        for (int cosm = 0; cosm <= 6; cosm++) {
+            for (int perf = 0; perf <= 6; perf++) {
+                if (cosm + perf == 0) continue;
+                Receipt expected = price(decimal, cosm, perf);
+                Receipt actual = price(fixed, cosm, perf);
+                String context = "cosm=" + cosm + " perf=" + perf;
+                Assertions.assertEquals(0, expected.getFinalAmount().compareTo(actual.getFinalAmount()), context);
+                Assertions.assertEquals(expected.getActivityDiscounts(), actual.getActivityDiscounts(), context);
+            }
+        }
+    }
+
+    @Test
+    void snapshotKeepsTiers() throws Exception {
+        Path file = Files.createTempFile("tiers", ".snap");
+        try {
+            CatalogSnapshotWriter writer = new CatalogSnapshotWriter();
+            for (Activity activity : catalog.getActivities()) writer.addActivity(activity);
+            writer.write(file);
+            List<Activity> loaded = CatalogSnapshot.open(file).findValidActivities(date);
+            Assertions.assertEquals(2, loaded.size());
+            Assertions.assertEquals(new BigDecimal("6000"), loaded.get(0).getAdditionalTiers().get(0).getMeetCriteriaAmt());
+            Assertions.assertEquals(new BigDecimal("700"), loaded.get(0).getAdditionalTiers().get(0).getAwardAmt());
+            Assertions.assertFalse(loaded.get(0).isRepeatAward());
+            Assertions.assertTrue(loaded.get(1).isRepeatAward());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static Receipt price(PromotionService service, int cosm, int perf) {
+        List<CartItem> items = new ArrayList<>();
+        if (cosm > 0) items.add(new CartItem("COSM001", cosm));
+        if (perf > 0) items.add(new CartItem("PERF001", perf));
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return service.calculateReceipt(items, date, false);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void write(String name, String content) throws Exception {
+        Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,163 @@
+package test;
+
+import event.EventPublisher;
+import event.EventSink;
+import event.PricingEvent;
+import event.RepositoryError;
+import model.Activity;
+import model.CartItem;
+import model.Item;
+import model.Receipt;
+import repo.ActivityLookup;
+import repo.CachedActivityRepository;
+import repo.CachedItemRepository;
+import repo.InMemoryCatalog;
+import repo.ItemLookup;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 非同步收據計算測試：查詢同時進行、結果與同步計算相同、逾時改用快取。
+ */
+public class AsyncReceiptTest {
+
+    private static InMemoryCatalog catalog;
+    private static Date date;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        catalog = InMemoryCatalog.load(Paths.get("data"));
+        date = new SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2025-10-25 10:00");
+    }
+
+    @Test
+    void lookupsRunConcurrentlyAndMatchSynchronousResult() throws Exception {
+        SlowCatalog slow = new SlowCatalog(300);
+        PromotionService service = new PromotionService(slow, slow);
+        Receipt expected = new PromotionService(catalog, catalog).calculateReceipt(cart(), date, true);
+
+        long start = System.nanoTime();
+        Receipt actual = service.calculateReceiptAsync(cart(), date, true).get(5, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assertions.assertTrue(elapsedMs < 550, "商品與活動查詢應同時進行，實際 " + elapsedMs + " ms");
+        Assertions.assertEquals(expected.getFinalAmount(), actual.getFinalAmount());
+        Assertions.assertEquals(expected.getActivityDiscounts(), actual.getActivityDiscounts());
+    }
+
+    @Test
+    void manyInFlightRequests() throws Exception {
+        SlowCatalog slow = new SlowCatalog(50);
+        PromotionService service = new PromotionService(slow, slow);
+        List<CompletableFuture<Receipt>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) futures.add(service.calculateReceiptAsync(cart(), date, false));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        for (CompletableFuture<Receipt> future : futures) {
+            Assertions.assertEquals(4, future.get().getLines().size());
+        }
+    }
+
+    @Test
+    void timeoutFallsBackToCachedData() throws Exception {
+        SlowCatalog slow = new SlowCatalog(0);
+        CachedItemRepository items = new CachedItemRepository(slow);
+        CachedActivityRepository activities = new CachedActivityRepository(slow);
+        PromotionService service = new PromotionService(items, activities);
+        Receipt expected = service.calculateReceipt(cart(), date, true);   // 先暖快取
+
+        slow.delayMs = 2000;
+        service.setLookupTimeouts(100, 100);
+        List<PricingEvent> published = new CopyOnWriteArrayList<>();
+        EventSink sink = published::add;
+        Receipt actual;
+        long start = System.nanoTime();
+        try (EventPublisher publisher = new EventPublisher(64, EventPublisher.OverflowPolicy.BLOCK, List.of(sink))) {
+            service.setEventPublisher(publisher);
+            // BOOK001 不在快取中，商品查詢必須等資料庫而逾時；改用快取資料時視為查無商品
+            List<CartItem> withUncached = new ArrayList<>(cart());
+            withUncached.add(new CartItem("BOOK001", 1));
+            actual = service.calculateReceiptAsync(withUncached, date, true).get(5, TimeUnit.SECONDS);
+            Assertions.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500, "逾時後不等待資料庫");
+            publisher.flush();
+        } finally {
+            service.setEventPublisher(EventPublisher.getDefault());
+        }
+        Assertions.assertEquals(expected.getFinalAmount(), actual.getFinalAmount());
+
+        List<String> fallbacks = new ArrayList<>();
+        for (PricingEvent event : published) {
+            if (event instanceof RepositoryError) {
+                Assertions.assertTrue(((RepositoryError) event).getCause() instanceof TimeoutException);
+                fallbacks.add(((RepositoryError) event).getMessage());
+            }
+        }
+        Assertions.assertEquals(List.of("商品查詢逾時，改用快取資料（4/5 項）"), fallbacks, "備援以事件發布");
+    }
+
+    @Test
+    void timeoutWithoutCacheFails() {
+        SlowCatalog slow = new SlowCatalog(2000);
+        PromotionService service = new PromotionService(slow, slow);
+        service.setLookupTimeouts(100, 100);
+        ExecutionException failure = Assertions.assertThrows(ExecutionException.class,
+                () -> service.calculateReceiptAsync(cart(), date, false).get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(failure.getCause() instanceof TimeoutException, String.valueOf(failure.getCause()));
+    }
+
+    private static List<CartItem> cart() {
+        return List.of(new CartItem("WINE001", 1), new CartItem("COSM001", 2),
+                new CartItem("PERF002", 1), new CartItem("ELEC001", 1));
+    }
+
+    /** 模擬資料庫延遲的資料來源 */
+    private static final class SlowCatalog implements ItemLookup, ActivityLookup {
+        volatile long delayMs;
+
+        SlowCatalog(long delayMs) {
+            this.delayMs = delayMs;
+        }
+
+        private void pause() {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public Item findItemByCode(String itemCode) {
+            pause();
+            return catalog.findItemByCode(itemCode);
+        }
+
+        @Override
+        public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) {
+            pause();
+            return catalog.findItemsByCodes(itemCodes, asOfDate);
+        }
+
+        @Override
+        public void forEachItem(Date asOfDate, Consumer<Item> action) {
+            catalog.forEachItem(asOfDate, action);
+        }
+
+        @Override
+        public List<Activity> findValidActivities(Date targetDate) {
+            pause();
+            return catalog.findValidActivities(targetDate);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package test;
+
+import event.ActivitiesChanged;
+import event.EventPublisher;
+import event.EventSink;
+import event.PricingEvent;
+import event.RepositoryError;
+import model.Activity;
+import repo.ActivityLookup;
+import repo.CachedActivityRepository;
+import repo.LookupFailedException;
+
+import org.junit.jupiter.api.*;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 活動快取測試：同一營業日只查詢一次、同時未命中只查詢一次、
+ * 異動檢查清除快照、查詢期間被清除的結果不放回快取，以及查詢失敗不建立快照。
+ */
+public class CachedActivityRepositoryTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Taipei");
+    private static final Date DAY = Date.from(LocalDate.of(2025, 10, 25).atStartOfDay(ZONE).toInstant());
+    private static final Date SAME_DAY_LATER = new Date(DAY.getTime() + 15 * 60 * 60 * 1000L);
+    private static final Date NEXT_DAY = new Date(DAY.getTime() + 24 * 60 * 60 * 1000L);
+
+    private GatedLookup source;
+    private CachedActivityRepository cache;
+
+    @BeforeEach
+    void setup() {
+        source = new GatedLookup();
+        cache = new CachedActivityRepository(source, 31, ZONE);
+    }
+
+    @AfterEach
+    void teardown() {
+        cache.stopChangeCheck();
+    }
+
+    @Test
+    void sameBusinessDateLoadsOnce() {
+        List<Activity> first = cache.findValidActivities(DAY);
+        Assertions.assertSame(first, cache.findValidActivities(SAME_DAY_LATER));
+        Assertions.assertEquals(1, source.calls.get());
+        Assertions.assertEquals(1L, cache.getHits());
+
+        cache.findValidActivities(NEXT_DAY);
+        Assertions.assertEquals(2, source.calls.get());
+        Assertions.assertEquals(2, cache.getSnapshotCount());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.add(new Activity()));
+    }
+
+    @Test
+    void concurrentMissesShareOneQuery() throws Exception {
+        source.gate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Activity>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) results.add(pool.submit(() -> cache.findValidActivities(DAY)));
+            Assertions.assertTrue(source.entered.await(5, TimeUnit.SECONDS));
+            Thread.sleep(50);
+            source.gate.countDown();
+
+            List<Activity> shared = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<List<Activity>> result : results) Assertions.assertSame(shared, result.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, source.calls.get(), "同一營業日同時未命中只查詢一次");
+            Assertions.assertEquals(1L, cache.getLoads());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void resultLoadedDuringInvalidationIsNotCached() throws Exception {
+        source.gate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Activity>> stale = pool.submit(() -> cache.findValidActivities(DAY));
+            Assertions.assertTrue(source.entered.await(5, TimeUnit.SECONDS));
+            cache.invalidateAll();
+            source.gate.countDown();
+
+            Assertions.assertEquals("V1", stale.get(5, TimeUnit.SECONDS).get(0).getActivityCode());
+            Assertions.assertNull(cache.peek(DAY), "查詢期間快照被清除，結果不放回快取");
+            source.gate = null;
+            Assertions.assertEquals("V2", cache.findValidActivities(DAY).get(0).getActivityCode());
+            Assertions.assertEquals(2, source.calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedLoadIsNotCached() throws Exception {
+        List<PricingEvent> published = new CopyOnWriteArrayList<>();
+        EventSink sink = published::add;
+        try (EventPublisher publisher = new EventPublisher(16, EventPublisher.OverflowPolicy.BLOCK, List.of(sink))) {
+            cache.setEventPublisher(publisher);
+            source.failures.set(1);
+            Assertions.assertTrue(cache.findValidActivities(DAY).isEmpty(), "查詢失敗時這次沒有活動");
+            Assertions.assertNull(cache.peek(DAY), "失敗的結果不放入快取");
+            publisher.flush();
+        } finally {
+            cache.setEventPublisher(EventPublisher.getDefault());
+        }
+        Assertions.assertEquals(1, published.size());
+        Assertions.assertEquals("查询活动信息失败", ((RepositoryError) published.get(0)).getMessage());
+
+        Assertions.assertEquals("V2", cache.findValidActivities(DAY).get(0).getActivityCode(), "下一次查詢重新讀取");
+        Assertions.assertSame(cache.peek(DAY), cache.findValidActivities(DAY));
+        Assertions.assertEquals(2, source.calls.get());
+
+        source.failures.set(1);
+        Assertions.assertThrows(LookupFailedException.class, () -> cache.reload(DAY));
+        Assertions.assertEquals("V2", cache.peek(DAY).get(0).getActivityCode(), "重新載入失敗時保留原快照");
+    }
+
+    @Test
+    void fingerprintChangeClearsSnapshots() throws Exception {
+        List<PricingEvent> published = new CopyOnWriteArrayList<>();
+        EventSink sink = published::add;
+        try (EventPublisher publisher = new EventPublisher(16, EventPublisher.OverflowPolicy.BLOCK, List.of(sink))) {
+            cache.setEventPublisher(publisher);
+            source.fingerprint = "A";
+            cache.findValidActivities(DAY);
+            Assertions.assertFalse(cache.checkForChanges(), "第一次只記錄指紋");
+            Assertions.assertFalse(cache.checkForChanges());
+
+            source.fingerprint = "B";
+            Assertions.assertTrue(cache.checkForChanges());
+            publisher.flush();
+        }
+        Assertions.assertEquals(0, cache.getSnapshotCount());
+        Assertions.assertEquals(1L, cache.getInvalidations());
+        Assertions.assertEquals(1, published.size(), "異動以事件發布，不直接輸出到 Console");
+        Assertions.assertEquals("crm_promo_rebate_h", ((ActivitiesChanged) published.get(0)).getTable());
+        Assertions.assertFalse(published.get(0).isError());
+        cache.setEventPublisher(EventPublisher.getDefault());
+
+        source.fingerprint = null;
+        cache.findValidActivities(DAY);
+        Assertions.assertFalse(cache.checkForChanges(), "查詢指紋失敗時保留快照");
+        Assertions.assertEquals(1, cache.getSnapshotCount());
+    }
+
+    @Test
+    void scheduledChangeCheckInvalidates() throws Exception {
+        source.fingerprint = "A";
+        cache.findValidActivities(DAY);
+        cache.startChangeCheck(10);
+        source.fingerprint = "B";
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getSnapshotCount() > 0) {
+            if (System.currentTimeMillis() > deadline) Assertions.fail("異動檢查未清除快照");
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(1L, cache.getInvalidations());
+    }
+
+    /** 每次查詢回傳新版本的活動（V1、V2…）；設定 gate 時查詢會停住直到放行 */
+    private static final class GatedLookup implements ActivityLookup {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        volatile CountDownLatch gate;
+        volatile String fingerprint;
+
+        @Override
+        public List<Activity> loadValidActivities(Date targetDate) {
+            int version = calls.incrementAndGet();
+            if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new LookupFailedException("查询活动信息失败", new java.sql.SQLException("連線逾時"));
+            }
+            entered.countDown();
+            CountDownLatch current = gate;
+            if (current != null) {
+                try {
+                    current.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Activity activity = new Activity();
+            activity.setActivityCode("V" + version);
+            List<Activity> result = new ArrayList<>();
+            result.add(activity);
+            return result;
+        }
+
+        @Override
+        public List<Activity> findValidActivities(Date targetDate) {
+            try {
+                return loadValidActivities(targetDate);
+            } catch (LookupFailedException e) {
+                return new ArrayList<>();
+            }
+        }
+
+        @Override
+        public String findChangeFingerprint() {
+            return fingerprint;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package test;
+
+import event.EventPublisher;
+import event.EventSink;
+import event.PricingEvent;
+import model.Item;
+import repo.CachedItemRepository;
+import repo.CachedItemRepository.EvictionPolicy;
+import repo.ItemLookup;
+import repo.LookupFailedException;
+
+import org.junit.jupiter.api.*;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 商品快取測試：LRU／LFU 淘汰順序、存活時間、負向快取，
+ * peekItems() 不影響淘汰順序，以及來源查詢失敗時不記錄負向快取。
+ */
+public class CachedItemRepositoryTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private CountingLookup source;
+    private Date today;
+
+    @BeforeEach
+    void setup() {
+        source = new CountingLookup();
+        today = new Date();
+    }
+
+    @Test
+    void lruEvictsLeastRecentlyUsed() {
+        CachedItemRepository cache = new CachedItemRepository(source, HOUR, HOUR, 2, EvictionPolicy.LRU);
+        find(cache, "A", "B");
+        find(cache, "A");
+        find(cache, "C");
+        Assertions.assertEquals(1L, cache.getStats().getEvictions());
+
+        source.requested.clear();
+        find(cache, "A", "C");
+        Assertions.assertTrue(source.requested.isEmpty(), "A 剛使用過，淘汰的是 B");
+        find(cache, "B");
+        Assertions.assertEquals(List.of("B"), source.requested);
+    }
+
+    @Test
+    void peekDoesNotChangeEvictionOrder() {
+        CachedItemRepository cache = new CachedItemRepository(source, HOUR, HOUR, 2, EvictionPolicy.LRU);
+        find(cache, "A", "B");
+        long hits = cache.getStats().getHits();
+        Assertions.assertEquals(1, cache.peekItems(List.of("A", "Z"), today).size());
+        Assertions.assertEquals(hits, cache.getStats().getHits(), "peek 不計入命中");
+
+        find(cache, "C");
+        source.requested.clear();
+        find(cache, "B", "C");
+        Assertions.assertTrue(source.requested.isEmpty(), "peek 過的 A 仍是最舊的，被淘汰");
+        find(cache, "A");
+        Assertions.assertEquals(List.of("A"), source.requested);
+    }
+
+    @Test
+    void lfuEvictsLeastFrequentlyUsed() {
+        CachedItemRepository cache = new CachedItemRepository(source, HOUR, HOUR, 2, EvictionPolicy.LFU);
+        find(cache, "A", "B");
+        find(cache, "A");
+        find(cache, "A");
+        find(cache, "B");
+        find(cache, "C");
+
+        source.requested.clear();
+        find(cache, "A", "C");
+        Assertions.assertTrue(source.requested.isEmpty(), "A 使用次數最多、C 剛載入，淘汰的是 B");
+        find(cache, "B");
+        Assertions.assertEquals(List.of("B"), source.requested);
+    }
+
+    @Test
+    void expiredEntriesAreReloaded() throws InterruptedException {
+        CachedItemRepository cache = new CachedItemRepository(source, 20, 20, 10, EvictionPolicy.LRU);
+        find(cache, "A");
+        Thread.sleep(40);
+        source.requested.clear();
+        find(cache, "A");
+        Assertions.assertEquals(List.of("A"), source.requested);
+        Assertions.assertEquals(1L, cache.getStats().getExpirations());
+
+        source.requested.clear();
+        cache.findItemsByCodes(List.of("A"), new Date(today.getTime() - 24 * HOUR));
+        Assertions.assertEquals(List.of("A"), source.requested, "不同營業日的價格視為未命中");
+    }
+
+    @Test
+    void unknownCodesAreNegativelyCached() {
+        CachedItemRepository cache = new CachedItemRepository(source, HOUR, HOUR, 10, EvictionPolicy.LRU);
+        Assertions.assertTrue(find(cache, "MISSING").isEmpty());
+        source.requested.clear();
+        Assertions.assertTrue(find(cache, "MISSING").isEmpty());
+        Assertions.assertTrue(source.requested.isEmpty());
+        Assertions.assertEquals(1L, cache.getStats().getNegativeHits());
+
+        CachedItemRepository noNegative = new CachedItemRepository(source, HOUR, 0, 10, EvictionPolicy.LRU);
+        find(noNegative, "MISSING");
+        source.requested.clear();
+        find(noNegative, "MISSING");
+        Assertions.assertEquals(List.of("MISSING"), source.requested, "關閉負向快取時每次都查詢來源");
+    }
+
+    @Test
+    void failedLookupIsNotNegativelyCached() throws Exception {
+        CachedItemRepository cache = new CachedItemRepository(source, HOUR, HOUR, 10, EvictionPolicy.LRU);
+        find(cache, "A");
+        List<PricingEvent> published = new CopyOnWriteArrayList<>();
+        EventSink sink = published::add;
+        try (EventPublisher publisher = new EventPublisher(16, EventPublisher.OverflowPolicy.BLOCK, List.of(sink))) {
+            cache.setEventPublisher(publisher);
+            source.failures = 1;
+            List<Item> partial = find(cache, "A", "B", "MISSING");
+            Assertions.assertEquals(1, partial.size(), "查詢失敗時只回傳快取命中的商品");
+            Assertions.assertEquals("A", partial.get(0).getItemCode());
+            publisher.flush();
+        } finally {
+            cache.setEventPublisher(EventPublisher.getDefault());
+        }
+        Assertions.assertEquals(1, published.size());
+        Assertions.assertEquals(0L, cache.getStats().getNegativeHits());
+
+        source.requested.clear();
+        Assertions.assertEquals(1, find(cache, "B", "MISSING").size(), "失敗的代碼不記為查無商品，下次重新查詢");
+        Assertions.assertEquals(List.of("B", "MISSING"), source.requested);
+
+        source.failures = 1;
+        Assertions.assertThrows(LookupFailedException.class, () -> cache.loadItemsByCodes(List.of("C"), today));
+    }
+
+    private List<Item> find(CachedItemRepository cache, String... codes) {
+        return cache.findItemsByCodes(List.of(codes), today);
+    }
+
+    /** 記錄每次被查詢的代碼；代碼 MISSING 查無資料，failures 大於 0 時批次查詢失敗 */
+    private static final class CountingLookup implements ItemLookup {
+        final List<String> requested = new ArrayList<>();
+        int failures;
+
+        @Override
+        public List<Item> loadItemsByCodes(List<String> itemCodes, Date asOfDate) {
+            if (failures > 0) {
+                failures--;
+                throw new LookupFailedException("批量查询商品信息失败", new java.sql.SQLException("連線逾時"));
+            }
+            return findItemsByCodes(itemCodes, asOfDate);
+        }
+
+        @Override
+        public Item findItemByCode(String itemCode) {
+            List<Item> items = findItemsByCodes(List.of(itemCode), new Date());
+            return items.isEmpty() ? null : items.get(0);
+        }
+
+        @Override
+        public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) {
+            requested.addAll(itemCodes);
+            List<Item> result = new ArrayList<>();
+            for (String code : itemCodes) {
+                if (!code.equals("MISSING")) result.add(new Item(code, code, "01", "測試", BigDecimal.TEN));
+            }
+            return result;
+        }
+
+        @Override
+        public void forEachItem(Date asOfDate, Consumer<Item> action) {
+        }
+    }
+}
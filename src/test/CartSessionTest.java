@@ -0,0 +1,164 @@
+package test;
+
+import model.Activity;
+import model.CartItem;
+import model.Item;
+import model.Line;
+import model.Receipt;
+import repo.ActivityRepository;
+import repo.ItemRepository;
+import service.CartSession;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * 購物車工作階段測試：每次新增／刪除／修改數量後，
+ * 增量計算的收據必須與對整個購物車重新計算的結果相同。
+ * 不需要連線資料庫。
+ */
+public class CartSessionTest {
+
+    private static final Map<String, Item> CATALOG = new LinkedHashMap<>();
+    private static final List<Activity> ACTIVITIES = new ArrayList<>();
+
+    private List<Activity> activeActivities;
+    private int itemQueries;
+    private int activityQueries;
+    private PromotionService service;
+
+    @BeforeAll
+    static void fixtures() {
+        CATALOG.put("WINE001", new Item("WINE001", "Echo Zoo Rose 香檳 0.75L", "09", "酒類", new BigDecimal("18500")));
+        CATALOG.put("WINE002", new Item("WINE002", "單一麥芽威士忌", "09", "酒類", new BigDecimal("3299.50")));
+        CATALOG.put("COSM001", new Item("COSM001", "保濕精華液", "01", "化妝品", new BigDecimal("1800")));
+        CATALOG.put("COSM002", new Item("COSM002", "防曬乳", "01", "化妝品", new BigDecimal("950")));
+        CATALOG.put("PERF001", new Item("PERF001", "經典淡香水", "02", "香水", new BigDecimal("2800")));
+        CATALOG.put("ELEC001", new Item("ELEC001", "無線耳機", "05", "3C電子", new BigDecimal("5990")));
+        CATALOG.put("BOOK001", new Item("BOOK001", "旅遊指南", "10", "書籍", new BigDecimal("450")));
+        ACTIVITIES.add(new Activity("A01", "化妝品滿三千送三百", null, null, "01", new BigDecimal("3000"), new BigDecimal("300")));
+        ACTIVITIES.add(new Activity("A02", "酒類滿八千送八百", null, null, "09", new BigDecimal("8000"), new BigDecimal("800")));
+        ACTIVITIES.add(new Activity("A03", "美妝香水滿五千折五百", null, null, "01,02", new BigDecimal("5000"), new BigDecimal("500")));
+        ACTIVITIES.add(new Activity("A04", "3C滿五千送三百", null, null, "05", new BigDecimal("5000"), new BigDecimal("300")));
+    }
+
+    @BeforeEach
+    void createService() {
+        activeActivities = ACTIVITIES;
+        itemQueries = 0;
+        activityQueries = 0;
+        ItemRepository items = new ItemRepository() {
+            @Override
+            public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) {
+                itemQueries++;
+                List<Item> result = new ArrayList<>();
+                for (String code : itemCodes) {
+                    if (CATALOG.containsKey(code)) result.add(CATALOG.get(code));
+                }
+                return result;
+            }
+        };
+        ActivityRepository activities = new ActivityRepository() {
+            @Override
+            public List<Activity> findValidActivities(Date targetDate) {
+                activityQueries++;
+                return activeActivities;
+            }
+        };
+        service = new PromotionService(items, activities);
+    }
+
+    @Test
+    void scanQueriesOnlyScannedItem() {
+        CartSession session = service.openSession(new Date(), true);
+        session.add("WINE001", 1);
+        session.add("COSM001", 2);
+        session.add("UNKNOWN", 1);
+        Assertions.assertEquals(1, activityQueries, "活動只在開啟時查詢一次");
+        Assertions.assertEquals(3, itemQueries, "每次掃描只查詢一項商品");
+        Assertions.assertEquals(2, session.size(), "查無商品不加入明細");
+    }
+
+    @Test
+    void randomOperationsMatchFullRecalculation() {
+        runRandomOperations(2025L);
+        System.out.println("購物車增量計算結果與完整重算一致");
+    }
+
+    @Test
+    void wildcardActivityJoinsAllCategories() {
+        activeActivities = new ArrayList<>(ACTIVITIES);
+        activeActivities.add(1, new Activity("A05", "全館滿萬送千", null, null, "ALL", new BigDecimal("10000"), new BigDecimal("1000")));
+        runRandomOperations(7L);
+        System.out.println("含全館活動時，購物車增量計算結果與完整重算一致");
+    }
+
+    private void runRandomOperations(long seed) {
+        PrintStream console = System.out;
+        PrintStream errors = System.err;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Random random = new Random(seed);
+            List<String> codes = new ArrayList<>(CATALOG.keySet());
+            for (int run = 0; run < 200; run++) {
+                boolean member = random.nextBoolean();
+                Date date = new Date();
+                CartSession session = service.openSession(date, member);
+                for (int step = 0; step < 30; step++) {
+                    int op = random.nextInt(10);
+                    if (op < 6 || session.size() == 0) {
+                        BigDecimal manual = random.nextInt(5) == 0 ? BigDecimal.valueOf(random.nextInt(500)) : null;
+                        session.add(codes.get(random.nextInt(codes.size())), 1 + random.nextInt(3), manual);
+                    } else if (op < 8) {
+                        session.remove(random.nextInt(session.size()));
+                    } else {
+                        session.changeQuantity(random.nextInt(session.size()), random.nextInt(4));
+                    }
+                    Receipt expected = service.calculateReceipt(copy(session.getCartItems()), date, member);
+                    assertSameAmounts(expected, session.getReceipt(), "run=" + run + " step=" + step);
+                }
+            }
+        } finally {
+            System.setOut(console);
+            System.setErr(errors);
+        }
+    }
+
+    private static List<CartItem> copy(List<CartItem> cartItems) {
+        List<CartItem> copy = new ArrayList<>();
+        for (CartItem cartItem : cartItems) {
+            CartItem item = new CartItem(cartItem.getItemCode(), cartItem.getQuantity());
+            item.setManualDiscount(cartItem.getManualDiscount());
+            copy.add(item);
+        }
+        return copy;
+    }
+
+    private static void assertSameAmounts(Receipt expected, Receipt actual, String context) {
+        Assertions.assertEquals(expected.getLines().size(), actual.getLines().size(), context + " 明細筆數");
+        for (int i = 0; i < expected.getLines().size(); i++) {
+            Line e = expected.getLines().get(i);
+            Line a = actual.getLines().get(i);
+            String where = context + " line=" + i;
+            Assertions.assertEquals(e.getItemCode(), a.getItemCode(), where);
+            Assertions.assertEquals(e.getPromotionDiscount(), a.getPromotionDiscount(), where + " 促銷折扣");
+            Assertions.assertEquals(e.getFinalAmount(), a.getFinalAmount(), where + " 最終金額");
+        }
+        assertSameValue(expected.getTotalOriginalAmount(), actual.getTotalOriginalAmount(), context + " 原價總計");
+        assertSameValue(expected.getTotalMemberAmount(), actual.getTotalMemberAmount(), context + " 會員價總計");
+        assertSameValue(expected.getTotalPromotionDiscount(), actual.getTotalPromotionDiscount(), context + " 促銷折扣總計");
+        assertSameValue(expected.getTotalDiscountAmount(), actual.getTotalDiscountAmount(), context + " 總折扣");
+        assertSameValue(expected.getFinalAmount(), actual.getFinalAmount(), context + " 應付金額");
+        Assertions.assertEquals(expected.getActivityDiscounts(), actual.getActivityDiscounts(), context + " 活動折扣");
+    }
+
+    /** 總額以差額維護，小數位數可能不同，只比較數值 */
+    private static void assertSameValue(BigDecimal expected, BigDecimal actual, String message) {
+        Assertions.assertEquals(0, expected.compareTo(actual), message + " expected=" + expected + " actual=" + actual);
+    }
+}
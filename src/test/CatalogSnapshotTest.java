@@ -0,0 +1,160 @@
+package test;
+
+import model.Activity;
+import model.CartItem;
+import model.Item;
+import model.Receipt;
+import repo.CatalogSnapshot;
+import repo.CatalogSnapshotExporter;
+import repo.CatalogSnapshotWriter;
+import repo.InMemoryCatalog;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 二進位快照測試：由 data/ 的 CSV 匯出快照，
+ * 快照的查詢結果必須與 CSV 記憶體資料相同，且損毀或版本不符的檔案無法開啟。
+ */
+public class CatalogSnapshotTest {
+
+    private static final List<String> CODES = List.of(
+            "WINE001", "WINE002", "LIQUOR001", "COSM001", "COSM002", "PERF001",
+            "PERF002", "ELEC001", "ELEC002", "FOOD001", "BOOK001", "UNKNOWN");
+
+    private static InMemoryCatalog catalog;
+    private static Path file;
+    private static CatalogSnapshot snapshot;
+    private static SimpleDateFormat sdf;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        catalog = InMemoryCatalog.load(Paths.get("data"));
+        file = Files.createTempFile("catalog", ".snap");
+        CatalogSnapshotExporter.exportFromCatalog(catalog, file);
+        snapshot = CatalogSnapshot.open(file);
+        sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+    }
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void lookupsMatchCsvCatalog() throws Exception {
+        Assertions.assertEquals(catalog.getItemCount(), snapshot.getItemCount());
+        for (String dateTime : List.of("2025-06-01 12:00", "2025-10-25 10:00", "2025-12-31 23:59", "2026-01-01 00:00")) {
+            Date date = sdf.parse(dateTime);
+            assertSameItems(catalog.findItemsByCodes(CODES, date), snapshot.findItemsByCodes(CODES, date), dateTime);
+            assertSameActivities(catalog.findValidActivities(date), snapshot.findValidActivities(date), dateTime);
+        }
+        for (String code : CODES) {
+            Item expected = catalog.findItemByCode(code);
+            Item actual = snapshot.findItemByCode(code);
+            if (expected == null) {
+                Assertions.assertNull(actual, code);
+            } else {
+                assertSameItems(List.of(expected), List.of(actual), code);
+            }
+        }
+    }
+
+    @Test
+    void receiptsMatchCsvCatalog() throws Exception {
+        Date date = sdf.parse("2025-10-25 10:00");
+        PromotionService fromCsv = new PromotionService(catalog, catalog);
+        PromotionService fromSnapshot = new PromotionService(snapshot, snapshot);
+        Receipt expected = fromCsv.calculateReceipt(cart(), date, true);
+        Receipt actual = fromSnapshot.calculateReceipt(cart(), date, true);
+        Assertions.assertEquals(expected.getFinalAmount(), actual.getFinalAmount());
+        Assertions.assertEquals(expected.getActivityDiscounts(), actual.getActivityDiscounts());
+    }
+
+    @Test
+    void itemsWithoutPriceAndNullFields() throws Exception {
+        Path other = Files.createTempFile("catalog", ".snap");
+        try {
+            CatalogSnapshotWriter writer = new CatalogSnapshotWriter();
+            writer.addItem("NOPRICE", "未定價商品", "07", null);
+            writer.addItem("DECIMAL", "小數價格", "01", "化妝品");
+            writer.addPrice("DECIMAL", 0L, new BigDecimal("99.95"));
+            writer.addPrice("ORPHAN", 0L, BigDecimal.TEN);
+            writer.write(other);
+
+            CatalogSnapshot opened = CatalogSnapshot.open(other);
+            Assertions.assertEquals(2, opened.getItemCount(), "沒有主檔的價格不匯出");
+            Item noPrice = opened.findItemByCode("NOPRICE");
+            Assertions.assertNull(noPrice.getUnitPrice());
+            Assertions.assertNull(noPrice.getCategory01Name());
+            Assertions.assertEquals(new BigDecimal("99.95"), opened.findItemByCode("DECIMAL").getUnitPrice());
+            Assertions.assertNull(opened.findItemByCode("ORPHAN"));
+        } finally {
+            Files.deleteIfExists(other);
+        }
+    }
+
+    @Test
+    void corruptedOrUnknownVersionIsRejected() throws Exception {
+        byte[] original = Files.readAllBytes(file);
+        Path broken = Files.createTempFile("catalog", ".snap");
+        try {
+            byte[] corrupted = original.clone();
+            corrupted[corrupted.length - 1] ^= 0x01;
+            Files.write(broken, corrupted, StandardOpenOption.TRUNCATE_EXISTING);
+            Assertions.assertThrows(IOException.class, () -> CatalogSnapshot.open(broken), "CRC32 不符");
+
+            byte[] newer = original.clone();
+            newer[5] = 99;
+            Files.write(broken, newer, StandardOpenOption.TRUNCATE_EXISTING);
+            Assertions.assertThrows(IOException.class, () -> CatalogSnapshot.open(broken), "版本不符");
+
+            Files.write(broken, java.util.Arrays.copyOf(original, original.length / 2), StandardOpenOption.TRUNCATE_EXISTING);
+            Assertions.assertThrows(IOException.class, () -> CatalogSnapshot.open(broken), "檔案不完整");
+        } finally {
+            Files.deleteIfExists(broken);
+        }
+    }
+
+    private static List<CartItem> cart() {
+        return List.of(new CartItem("WINE001", 1), new CartItem("COSM001", 2),
+                new CartItem("PERF002", 1), new CartItem("ELEC001", 1));
+    }
+
+    private static void assertSameItems(List<Item> expected, List<Item> actual, String context) {
+        Assertions.assertEquals(expected.size(), actual.size(), context);
+        for (int i = 0; i < expected.size(); i++) {
+            Item e = expected.get(i);
+            Item a = actual.get(i);
+            Assertions.assertEquals(e.getItemCode(), a.getItemCode(), context);
+            Assertions.assertEquals(e.getItemName(), a.getItemName(), context);
+            Assertions.assertEquals(e.getCategory01(), a.getCategory01(), context);
+            Assertions.assertEquals(e.getCategory01Name(), a.getCategory01Name(), context);
+            Assertions.assertEquals(e.getUnitPrice(), a.getUnitPrice(), context + " " + e.getItemCode());
+        }
+    }
+
+    private static void assertSameActivities(List<Activity> expected, List<Activity> actual, String context) {
+        Assertions.assertEquals(expected.size(), actual.size(), context);
+        for (int i = 0; i < expected.size(); i++) {
+            Activity e = expected.get(i);
+            Activity a = actual.get(i);
+            Assertions.assertEquals(e.getActivityCode(), a.getActivityCode(), context);
+            Assertions.assertEquals(e.getActivityName(), a.getActivityName(), context);
+            Assertions.assertEquals(e.getItemDiscountGroup(), a.getItemDiscountGroup(), context);
+            Assertions.assertEquals(e.getStartActivityDate(), a.getStartActivityDate(), context);
+            Assertions.assertEquals(e.getEndActivityDate(), a.getEndActivityDate(), context);
+            Assertions.assertEquals(e.getMeetCriteriaAmtG1(), a.getMeetCriteriaAmtG1(), context);
+            Assertions.assertEquals(e.getAwardAmtG1(), a.getAwardAmtG1(), context);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package test;
+
+import config.ConnectionPool;
+import event.ConnectionLeaked;
+import event.EventPublisher;
+import event.EventSink;
+import event.PricingEvent;
+
+import org.junit.jupiter.api.*;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * 連線池測試：以假的 JDBC Driver 提供實體連線，不需要資料庫。
+ * 涵蓋借用逾時、歸還與丟棄失效連線、補足最小連線數、洩漏偵測，
+ * 以及由代理連線建立的 Statement 不會洩漏實體連線。
+ */
+public class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:pooltest:";
+    private static FakeDriver driver;
+
+    @BeforeAll
+    static void registerDriver() throws SQLException {
+        driver = new FakeDriver();
+        DriverManager.registerDriver(driver);
+    }
+
+    @AfterAll
+    static void deregisterDriver() throws SQLException {
+        DriverManager.deregisterDriver(driver);
+    }
+
+    @BeforeEach
+    void reset() {
+        driver.opened.clear();
+    }
+
+    @Test
+    void borrowTimesOutWhenPoolIsExhausted() throws Exception {
+        ConnectionPool pool = new ConnectionPool(URL, "u", "p", 0, 1, 50, 0, 0);
+        Connection held = pool.getConnection();
+        try {
+            long start = System.nanoTime();
+            Assertions.assertThrows(SQLException.class, pool::getConnection);
+            Assertions.assertTrue(System.nanoTime() - start >= 40_000_000L, "至少等待借用逾時");
+            Assertions.assertEquals(1L, pool.getStats().getTimeouts());
+            Assertions.assertEquals(1, pool.getActiveCount());
+        } finally {
+            held.close();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void returnedConnectionIsReusedAndInvalidOneEvicted() throws Exception {
+        ConnectionPool pool = new ConnectionPool(URL, "u", "p", 1, 2, 1000, 1, 0);
+        try {
+            Connection first = pool.getConnection();
+            first.close();
+            Assertions.assertTrue(first.isClosed());
+            Assertions.assertThrows(SQLException.class, first::createStatement, "歸還後不可再使用");
+            Assertions.assertEquals(0, pool.getActiveCount());
+            Assertions.assertEquals(1, pool.getIdleCount());
+
+            pool.getConnection().close();
+            Assertions.assertEquals(1L, pool.getStats().getCreated(), "重複使用同一條實體連線");
+
+            driver.opened.get(0).valid.set(false);
+            pool.getConnection().close();
+            Assertions.assertEquals(1L, pool.getStats().getValidationFailures());
+            Assertions.assertTrue(driver.opened.size() >= 2, "補建新連線（背景補足與借用可能各建一條）");
+            Assertions.assertFalse(driver.opened.get(0).open.get(), "失效連線已關閉");
+            Assertions.assertTrue(pool.getStats().getTotal() <= 2, "不超過最大連線數");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void evictedConnectionsAreReplenishedToMinSize() throws Exception {
+        ConnectionPool pool = new ConnectionPool(URL, "u", "p", 2, 4, 1000, 1, 0);
+        try {
+            Assertions.assertEquals(2, pool.getIdleCount());
+            for (FakeConnection physical : driver.opened) physical.valid.set(false);
+            Connection conn = pool.getConnection();
+            Assertions.assertEquals(2L, pool.getStats().getValidationFailures());
+            waitFor(() -> pool.getStats().getTotal() >= 2 && pool.getIdleCount() >= 1);
+            conn.close();
+            Assertions.assertTrue(pool.getStats().getTotal() >= 2, "補足到最小連線數");
+            Assertions.assertEquals(pool.getStats().getTotal(), pool.getIdleCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void statementsReturnPooledConnection() throws Exception {
+        ConnectionPool pool = new ConnectionPool(URL, "u", "p", 0, 1, 50, 0, 0);
+        try {
+            Connection conn = pool.getConnection();
+            Statement statement = conn.createStatement();
+            PreparedStatement prepared = conn.prepareStatement("SELECT 1");
+            Assertions.assertSame(conn, statement.getConnection());
+            Assertions.assertSame(conn, prepared.getConnection());
+            Assertions.assertSame(conn, conn.getMetaData().getConnection());
+
+            statement.getConnection().close();
+            Assertions.assertEquals(0, pool.getActiveCount(), "經由 Statement 關閉也會歸還連線池");
+            Assertions.assertTrue(driver.opened.get(0).open.get(), "實體連線仍保留在連線池");
+            pool.getConnection().close();
+            Assertions.assertEquals(1L, pool.getStats().getCreated());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void unwrapDoesNotExposePhysicalConnection() throws Exception {
+        ConnectionPool pool = new ConnectionPool(URL, "u", "p", 0, 1, 50, 0, 0);
+        try {
+            Connection conn = pool.getConnection();
+            Assertions.assertSame(conn, conn.unwrap(Connection.class), "unwrap 回傳代理連線");
+            Assertions.assertSame(conn, conn.unwrap(java.sql.Wrapper.class));
+            Assertions.assertTrue(conn.isWrapperFor(Connection.class));
+            Statement statement = conn.createStatement();
+            Assertions.assertSame(statement, statement.unwrap(Statement.class));
+            Assertions.assertSame(conn, statement.unwrap(Statement.class).getConnection());
+
+            conn.unwrap(Connection.class).close();
+            Assertions.assertEquals(0, pool.getActiveCount(), "經由 unwrap 關閉也是歸還連線池");
+            Assertions.assertTrue(driver.opened.get(0).open.get());
+            Assertions.assertSame(conn, conn.unwrap(Connection.class));
+            Assertions.assertThrows(SQLException.class, () -> conn.unwrap(java.sql.Array.class),
+                    "歸還後不可取得驅動程式專屬的物件");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void leakedConnectionIsReported() throws Exception {
+        ConnectionPool pool = new ConnectionPool(URL, "u", "p", 0, 1, 50, 0, 50);
+        List<PricingEvent> published = new CopyOnWriteArrayList<>();
+        EventSink sink = published::add;
+        try (EventPublisher publisher = new EventPublisher(16, EventPublisher.OverflowPolicy.BLOCK, List.of(sink))) {
+            pool.setEventPublisher(publisher);
+            Connection leaked = pool.getConnection();
+            waitFor(() -> pool.getStats().getLeaks() == 1L);
+            leaked.close();
+            publisher.flush();
+            Assertions.assertEquals(0, pool.getActiveCount());
+            Assertions.assertEquals(1L, pool.getStats().getLeaks(), "同一次借用只回報一次");
+        } finally {
+            pool.shutdown();
+        }
+        Assertions.assertEquals(1, published.size(), "洩漏以事件發布，不直接輸出到 Console");
+        ConnectionLeaked leak = (ConnectionLeaked) published.get(0);
+        Assertions.assertEquals(50L, leak.getLeakThresholdMs());
+        Assertions.assertNotNull(leak.getBorrowSite(), "附上借用位置");
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) Assertions.fail("等待逾時");
+            Thread.sleep(10);
+        }
+    }
+
+    /** 只接受 jdbc:pooltest: 的假 Driver，記錄每條建立的實體連線 */
+    private static final class FakeDriver implements Driver {
+        final List<FakeConnection> opened = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) return null;
+            FakeConnection physical = new FakeConnection();
+            opened.add(physical);
+            return physical.connection;
+        }
+
+        @Override
+        public boolean acceptsURL(String url) { return url != null && url.startsWith(URL); }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) { return new DriverPropertyInfo[0]; }
+
+        @Override
+        public int getMajorVersion() { return 1; }
+
+        @Override
+        public int getMinorVersion() { return 0; }
+
+        @Override
+        public boolean jdbcCompliant() { return false; }
+
+        @Override
+        public Logger getParentLogger() { return Logger.getGlobal(); }
+    }
+
+    /** 假的實體連線：可切換 isValid 結果，Statement 的 getConnection() 回傳實體連線 */
+    private static final class FakeConnection {
+        final AtomicBoolean valid = new AtomicBoolean(true);
+        final AtomicBoolean open = new AtomicBoolean(true);
+        final Connection connection;
+
+        FakeConnection() {
+            connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Connection.class}, (self, method, args) -> {
+                        switch (method.getName()) {
+                            case "close": open.set(false); return null;
+                            case "isClosed": return !open.get();
+                            case "isValid": return valid.get();
+                            case "getAutoCommit": return true;
+                            case "createStatement":
+                            case "prepareStatement":
+                            case "getMetaData":
+                                return child(method.getReturnType(), self);
+                            case "hashCode": return System.identityHashCode(self);
+                            case "equals": return self == args[0];
+                            default: return null;
+                        }
+                    });
+        }
+
+        private static Object child(Class<?> type, Object connection) {
+            return Proxy.newProxyInstance(FakeConnection.class.getClassLoader(), new Class<?>[]{type},
+                    (self, method, args) -> {
+                        switch (method.getName()) {
+                            case "getConnection": return connection;
+                            case "hashCode": return System.identityHashCode(self);
+                            case "equals": return self == args[0];
+                            default: return null;
+                        }
+                    });
+        }
+    }
+}
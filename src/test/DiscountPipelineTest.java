@@ -0,0 +1,196 @@
+package test;
+
+import model.CartItem;
+import model.Line;
+import model.Receipt;
+import repo.InMemoryCatalog;
+import service.CartSession;
+import service.DiscountContext;
+import service.DiscountPipeline;
+import service.LineDiscountStage;
+import service.LineField;
+import service.ManualDiscountStage;
+import service.MemberDiscountStage;
+import service.PromotionMetrics;
+import service.PromotionService;
+import service.PromotionStage;
+
+import org.junit.jupiter.api.*;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 折扣流程測試：預設流程與原本的三個步驟相同，建立流程時檢查讀寫宣告，
+ * 無法套用的階段在計算前略過，自訂階段可加入流程。
+ */
+public class DiscountPipelineTest {
+
+    private static InMemoryCatalog catalog;
+    private static Date date;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        catalog = InMemoryCatalog.load(Paths.get("data"));
+        date = new SimpleDateFormat("yyyy-MM-dd").parse("2025-10-25");
+    }
+
+    @Test
+    void defaultPipelineIsManualMemberPromotion() {
+        PromotionService service = new PromotionService(catalog, catalog);
+        Assertions.assertEquals("manual → member → promotion", service.getDiscountPipeline().toString());
+        Assertions.assertTrue(service.getDiscountPipeline().isIncremental());
+
+        PromotionService explicit = new PromotionService(catalog, catalog);
+        explicit.setDiscountPipeline(DiscountPipeline.builder()
+                .add(new ManualDiscountStage())
+                .add(new MemberDiscountStage("09", new BigDecimal("0.95")))
+                .add(new PromotionStage())
+                .build());
+        Receipt expected = price(service, date, true);
+        Receipt actual = price(explicit, date, true);
+        Assertions.assertEquals(0, expected.getFinalAmount().compareTo(actual.getFinalAmount()));
+        Assertions.assertEquals(expected.getActivityDiscounts(), actual.getActivityDiscounts());
+        Assertions.assertTrue(expected.getTotalDiscountAmount().signum() > 0);
+    }
+
+    @Test
+    void buildRejectsInvalidDeclarations() {
+        Assertions.assertThrows(IllegalStateException.class, () -> DiscountPipeline.builder()
+                .add(MemberDiscountStage.fromSystemProperties())
+                .add(new ManualDiscountStage())
+                .build(), "會員階段讀取手動折扣，手動階段必須在前");
+        Assertions.assertThrows(IllegalStateException.class, () -> DiscountPipeline.builder()
+                .add(new MemberDiscountStage("09", new BigDecimal("0.95")))
+                .add(new RateStage("member2", EnumSet.of(LineField.MEMBER_DISCOUNT), "09", new BigDecimal("0.9")))
+                .build(), "會員折扣只能由一個階段寫入");
+        Assertions.assertThrows(IllegalStateException.class, () -> DiscountPipeline.builder()
+                .add(new RateStage("reprice", EnumSet.of(LineField.ORIGINAL_AMOUNT), "10", BigDecimal.ONE))
+                .build(), "不可寫入原價");
+        Assertions.assertThrows(IllegalStateException.class, () -> DiscountPipeline.builder()
+                .add(new PromotionStage()).add(new PromotionStage()).build(), "名稱重複");
+    }
+
+    @Test
+    void stagesThatCannotApplyAreSkipped() {
+        PromotionService service = new PromotionService(catalog, catalog);
+        PromotionMetrics metrics = service.getMetrics();
+        metrics.setEnabled(true);
+
+        price(service, date, false);
+        Assertions.assertEquals(1, metrics.getSnapshot(PromotionMetrics.Stage.MANUAL_DISCOUNT).getCount());
+        Assertions.assertEquals(0, metrics.getSnapshot(PromotionMetrics.Stage.MEMBER_DISCOUNT).getCount(), "非會員略過會員階段");
+        Assertions.assertEquals(1, metrics.getSnapshot(PromotionMetrics.Stage.APPLY_PROMOTIONS).getCount());
+
+        Date noActivities = new Date(date.getTime() + 60L * 24 * 60 * 60 * 1000);
+        price(service, noActivities, true);
+        Assertions.assertEquals(1, metrics.getSnapshot(PromotionMetrics.Stage.MEMBER_DISCOUNT).getCount());
+        Assertions.assertEquals(1, metrics.getSnapshot(PromotionMetrics.Stage.APPLY_PROMOTIONS).getCount(), "沒有活動時略過促銷階段");
+    }
+
+    @Test
+    void customStageRunsAfterPromotions() {
+        PromotionService service = new PromotionService(catalog, catalog);
+        service.setFixedPointEnabled(true);
+        service.getMetrics().setEnabled(true);
+        service.setDiscountPipeline(DiscountPipeline.builder()
+                .add(new ManualDiscountStage())
+                .add(new PromotionStage())
+                .add(new RateStage("book", EnumSet.of(LineField.PROMOTION_DISCOUNT, LineField.FINAL_AMOUNT),
+                        "10", new BigDecimal("0.9")))
+                .build());
+
+        Receipt receipt = price(service, date, true);
+        Line book = receipt.getLines().get(receipt.indexOfItemCode("BOOK001"));
+        Line wine = receipt.getLines().get(receipt.indexOfItemCode("WINE001"));
+        Assertions.assertEquals(0, BigDecimal.ZERO.compareTo(wine.getMemberDiscount()), "流程中沒有會員階段");
+        PromotionService baseline = new PromotionService(catalog, catalog);
+        baseline.setDiscountPipeline(DiscountPipeline.builder()
+                .add(new ManualDiscountStage()).add(new PromotionStage()).build());
+        Receipt before = price(baseline, date, true);
+        BigDecimal afterPromotions = before.getLines().get(before.indexOfItemCode("BOOK001")).getFinalAmount();
+        Assertions.assertEquals(0, afterPromotions.multiply(new BigDecimal("0.9")).setScale(0, RoundingMode.HALF_UP)
+                .compareTo(book.getFinalAmount()), "書籍在活動折扣後再九折");
+        Assertions.assertEquals(1, service.getMetrics().getSnapshot(PromotionMetrics.Stage.CUSTOM_DISCOUNT).getCount());
+        Assertions.assertFalse(service.getDiscountPipeline().isIncremental());
+        Assertions.assertThrows(IllegalStateException.class, () -> service.openSession(date, true));
+    }
+
+    @Test
+    void cartSessionFollowsPipeline() {
+        PromotionService service = new PromotionService(catalog, catalog);
+        service.setDiscountPipeline(DiscountPipeline.builder()
+                .add(new ManualDiscountStage())
+                .add(new PromotionStage())
+                .build());
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            CartSession session = service.openSession(date, true);
+            for (CartItem item : cart()) session.add(item.getItemCode(), item.getQuantity());
+            Receipt expected = service.calculateReceipt(cart(), date, true);
+            Assertions.assertEquals(0, expected.getFinalAmount().compareTo(session.getReceipt().getFinalAmount()));
+            Assertions.assertEquals(expected.getActivityDiscounts(), session.getReceipt().getActivityDiscounts());
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static List<CartItem> cart() {
+        List<CartItem> items = new ArrayList<>();
+        items.add(new CartItem("WINE001", 1));
+        items.add(new CartItem("COSM001", 2));
+        items.add(new CartItem("BOOK001", 1));
+        return items;
+    }
+
+    private static Receipt price(PromotionService service, Date transactionDate, boolean member) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return service.calculateReceipt(cart(), transactionDate, member);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /** 測試用的自訂規則：指定分類以折扣率計算促銷折扣 */
+    private static final class RateStage implements LineDiscountStage {
+        private final String name;
+        private final Set<LineField> writes;
+        private final String categoryCode;
+        private final BigDecimal rate;
+
+        RateStage(String name, Set<LineField> writes, String categoryCode, BigDecimal rate) {
+            this.name = name;
+            this.writes = writes;
+            this.categoryCode = categoryCode;
+            this.rate = rate;
+        }
+
+        @Override
+        public String getName() { return name; }
+
+        @Override
+        public Set<LineField> getReads() { return EnumSet.of(LineField.CATEGORY_CODE, LineField.FINAL_AMOUNT); }
+
+        @Override
+        public Set<LineField> getWrites() { return writes; }
+
+        @Override
+        public void apply(Line line, DiscountContext context) {
+            if (categoryCode.equals(line.getCategoryCode())) {
+                line.applyPromotionDiscount(line.getFinalAmount().multiply(BigDecimal.ONE.subtract(rate))
+                        .setScale(0, RoundingMode.HALF_UP));
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package test;
+
+import event.EventPublisher;
+import event.EventSink;
+import event.ItemNotFound;
+import event.PricingEvent;
+import event.PromotionTriggered;
+import event.MemberDiscountApplied;
+import model.CartItem;
+import repo.InMemoryCatalog;
+import service.CartSession;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 計價事件測試：多執行緒發布不遺失、佇列滿時的丟棄／等待，以及計價流程發布的事件內容。
+ */
+public class EventPublisherTest {
+
+    @Test
+    void concurrentPublishersDeliverEveryEventInOrderPerThread() throws Exception {
+        CollectingSink sink = new CollectingSink();
+        try (EventPublisher publisher = new EventPublisher(64, EventPublisher.OverflowPolicy.BLOCK, List.of(sink))) {
+            int threads = 4;
+            int perThread = 5000;
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String prefix = "T" + t + "-";
+                workers.add(new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        publisher.publish(new PromotionTriggered(prefix + i, null, null, BigDecimal.ZERO, BigDecimal.ZERO));
+                    }
+                }));
+            }
+            workers.forEach(Thread::start);
+            for (Thread worker : workers) worker.join();
+            Assertions.assertTrue(publisher.flush(5000));
+
+            Assertions.assertEquals(threads * perThread, sink.events.size());
+            Assertions.assertEquals(0, publisher.getDroppedCount());
+            int[] next = new int[threads];
+            for (PricingEvent event : sink.events) {
+                String[] code = ((PromotionTriggered) event).getActivityCode().split("-");
+                int thread = Integer.parseInt(code[0].substring(1));
+                Assertions.assertEquals(next[thread]++, Integer.parseInt(code[1]), "同一執行緒的事件依序輸出");
+            }
+        }
+    }
+
+    @Test
+    void dropPolicyCountsDroppedEventsWhenSinkIsSlow() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CollectingSink sink = new CollectingSink() {
+            @Override
+            public void accept(PricingEvent event) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.accept(event);
+            }
+        };
+        try (EventPublisher publisher = new EventPublisher(8, EventPublisher.OverflowPolicy.DROP, List.of(sink))) {
+            int accepted = 0;
+            for (int i = 0; i < 100; i++) {
+                if (publisher.publish(new PromotionTriggered("A" + i, null, null, BigDecimal.ZERO, BigDecimal.ZERO))) accepted++;
+            }
+            Assertions.assertTrue(accepted <= 9, "佇列容量 8，加上背景執行緒正在處理的一筆");
+            Assertions.assertEquals(100 - accepted, publisher.getDroppedCount());
+            release.countDown();
+            Assertions.assertTrue(publisher.flush(5000));
+            Assertions.assertEquals(accepted, sink.events.size());
+        }
+    }
+
+    @Test
+    void pricingPublishesStructuredEvents() throws Exception {
+        CollectingSink sink = new CollectingSink();
+        InMemoryCatalog catalog = InMemoryCatalog.load(Paths.get("data"));
+        PromotionService service = new PromotionService(catalog, catalog);
+        try (EventPublisher publisher = new EventPublisher(1024, EventPublisher.OverflowPolicy.BLOCK, List.of(sink))) {
+            service.setEventPublisher(publisher);
+            service.calculateReceipt(List.of(new CartItem("WINE001", 1), new CartItem("COSM001", 2)),
+                    new SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2025-10-25 10:00"), true);
+            publisher.flush();
+        } finally {
+            service.setEventPublisher(EventPublisher.getDefault());
+        }
+
+        Set<String> activities = new HashSet<>();
+        int memberEvents = 0;
+        for (PricingEvent event : sink.events) {
+            if (event instanceof PromotionTriggered) activities.add(((PromotionTriggered) event).getActivityCode());
+            if (event instanceof MemberDiscountApplied) {
+                memberEvents++;
+                MemberDiscountApplied member = (MemberDiscountApplied) event;
+                Assertions.assertEquals("WINE001", member.getItemCode());
+                Assertions.assertEquals(0, member.getDiscount().compareTo(new BigDecimal("925")));
+                Assertions.assertEquals("[會員折扣] " + member.getItemName() + " → 套用95折", member.toText());
+            }
+        }
+        Assertions.assertEquals(1, memberEvents);
+        Assertions.assertTrue(activities.containsAll(List.of("PR2510001", "PR2510003")), activities.toString());
+    }
+
+    @Test
+    void unknownScanIsPublishedAsEvent() throws Exception {
+        CollectingSink sink = new CollectingSink();
+        InMemoryCatalog catalog = InMemoryCatalog.load(Paths.get("data"));
+        PromotionService service = new PromotionService(catalog, catalog);
+        try (EventPublisher publisher = new EventPublisher(64, EventPublisher.OverflowPolicy.BLOCK, List.of(sink))) {
+            service.setEventPublisher(publisher);
+            CartSession session = service.openSession(new SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2025-10-25 10:00"), false);
+            Assertions.assertNull(session.add("UNKNOWN", 1));
+            Assertions.assertNotNull(session.add("COSM001", 1));
+            publisher.flush();
+        } finally {
+            service.setEventPublisher(EventPublisher.getDefault());
+        }
+        List<ItemNotFound> notFound = new ArrayList<>();
+        for (PricingEvent event : sink.events) {
+            if (event instanceof ItemNotFound) notFound.add((ItemNotFound) event);
+        }
+        Assertions.assertEquals(1, notFound.size());
+        Assertions.assertEquals("UNKNOWN", notFound.get(0).getItemCode());
+        Assertions.assertEquals("警告: 未找到商品 UNKNOWN", notFound.get(0).toText());
+        Assertions.assertTrue(notFound.get(0).isError());
+    }
+
+    @Test
+    void unknownCartItemIsPublishedAsEvent() throws Exception {
+        CollectingSink sink = new CollectingSink();
+        InMemoryCatalog catalog = InMemoryCatalog.load(Paths.get("data"));
+        PromotionService service = new PromotionService(catalog, catalog);
+        try (EventPublisher publisher = new EventPublisher(64, EventPublisher.OverflowPolicy.BLOCK, List.of(sink))) {
+            service.setEventPublisher(publisher);
+            service.calculateReceipt(List.of(new CartItem("UNKNOWN", 1), new CartItem("COSM001", 1)),
+                    new SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2025-10-25 10:00"), false);
+            publisher.flush();
+        } finally {
+            service.setEventPublisher(EventPublisher.getDefault());
+        }
+        List<String> notFound = new ArrayList<>();
+        for (PricingEvent event : sink.events) {
+            if (event instanceof ItemNotFound) notFound.add(((ItemNotFound) event).getItemCode());
+        }
+        Assertions.assertEquals(List.of("UNKNOWN"), notFound);
+    }
+
+    /** 收集事件的輸出端（只由背景執行緒寫入，flush 之後讀取） */
+    private static class CollectingSink implements EventSink {
+        final List<PricingEvent> events = new ArrayList<>();
+
+        @Override
+        public void accept(PricingEvent event) {
+            events.add(event);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package test;
+
+import model.Activity;
+import model.CartItem;
+import model.Item;
+import model.Line;
+import model.Receipt;
+import repo.ActivityRepository;
+import repo.ItemRepository;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * 差異測試：定點數引擎與 BigDecimal 流程必須產生完全相同的收據。
+ * 以固定亂數種子產生商品、活動與購物車（含小數單價、手動折扣、會員身份），
+ * 逐欄位比對兩種流程的結果（BigDecimal 以 equals 比較，scale 也必須相同）。
+ * 不需要連線資料庫。
+ */
+public class FixedPointEngineDifferentialTest {
+
+    private static final String[] CATEGORIES = {"01", "02", "05", "09", "10"};
+    private static final String[] GROUPS = {"ALL", "01", "09", "01,02", " 05 , 09", "02,10"};
+
+    private static Map<String, Item> catalog;
+    private static PromotionService bigDecimalService;
+    private static PromotionService fixedPointService;
+    private static List<Activity> activities;
+
+    @BeforeAll
+    static void setup() {
+        Random random = new Random(20251110L);
+        catalog = new LinkedHashMap<>();
+        for (int i = 0; i < 40; i++) {
+            String code = "ITEM" + i;
+            long cents = 100 + random.nextInt(2_000_000);
+            BigDecimal price = BigDecimal.valueOf(cents, 2);
+            int scale = random.nextInt(3);
+            // 部分商品單價為整數或一位小數（scale 0 / 1），測試 scale 是否一致
+            if (scale < 2) price = price.setScale(scale, java.math.RoundingMode.DOWN).setScale(scale);
+            catalog.put(code, new Item(code, "商品" + i, CATEGORIES[random.nextInt(CATEGORIES.length)], "分類", price));
+        }
+
+        activities = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            BigDecimal threshold = BigDecimal.valueOf(1000 + random.nextInt(20000));
+            BigDecimal award = random.nextBoolean()
+                    ? BigDecimal.valueOf(100 + random.nextInt(1500))
+                    : BigDecimal.valueOf(10000 + random.nextInt(150000), 2);
+            activities.add(new Activity("ACT" + i, "活動" + i, null, null,
+                    GROUPS[random.nextInt(GROUPS.length)], threshold, award));
+        }
+
+        ItemRepository items = new ItemRepository() {
+            @Override
+            public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) {
+                List<Item> result = new ArrayList<>();
+                for (String code : itemCodes) {
+                    if (catalog.containsKey(code)) result.add(catalog.get(code));
+                }
+                return result;
+            }
+        };
+        ActivityRepository activityRepository = new ActivityRepository() {
+            @Override
+            public List<Activity> findValidActivities(Date targetDate) {
+                return activities;
+            }
+        };
+
+        bigDecimalService = new PromotionService(items, activityRepository);
+        fixedPointService = new PromotionService(items, activityRepository);
+        fixedPointService.setFixedPointEnabled(true);
+    }
+
+    @Test
+    void randomBasketsProduceIdenticalReceipts() {
+        Random random = new Random(42L);
+        Date date = new Date();
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int run = 0; run < 3000; run++) {
+                long seed = random.nextLong();
+                boolean member = random.nextBoolean();
+                Receipt expected = bigDecimalService.calculateReceipt(randomCart(seed), date, member);
+                Receipt actual = fixedPointService.calculateReceipt(randomCart(seed), date, member);
+                assertSameReceipt(expected, actual, "seed=" + seed);
+            }
+        } finally {
+            System.setOut(console);
+        }
+        System.out.println("定點數引擎與 BigDecimal 流程結果一致（3000 筆隨機購物車）");
+    }
+
+    /** 以種子重建同一個購物車（CartItem 會被補齊商品資訊，因此每次都重新建立） */
+    private static List<CartItem> randomCart(long seed) {
+        Random random = new Random(seed);
+        List<String> codes = new ArrayList<>(catalog.keySet());
+        int size = 1 + random.nextInt(12);
+        List<CartItem> cart = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String code = random.nextInt(20) == 0 ? "UNKNOWN" : codes.get(random.nextInt(codes.size()));
+            CartItem cartItem = new CartItem(code, 1 + random.nextInt(5));
+            int manual = random.nextInt(6);
+            if (manual == 0) cartItem.setManualDiscount(BigDecimal.valueOf(random.nextInt(50000), 1));
+            if (manual == 1) cartItem.setManualDiscount(BigDecimal.valueOf(5_000_000 + random.nextInt(5_000_000)));
+            cart.add(cartItem);
+        }
+        return cart;
+    }
+
+    private static void assertSameReceipt(Receipt expected, Receipt actual, String context) {
+        Assertions.assertEquals(expected.getLines().size(), actual.getLines().size(), context + " 明細筆數");
+        for (int i = 0; i < expected.getLines().size(); i++) {
+            Line e = expected.getLines().get(i);
+            Line a = actual.getLines().get(i);
+            String where = context + " line=" + i;
+            Assertions.assertEquals(e.getItemCode(), a.getItemCode(), where);
+            Assertions.assertEquals(e.getQuantity(), a.getQuantity(), where);
+            Assertions.assertEquals(e.getOriginalAmount(), a.getOriginalAmount(), where + " 原價");
+            Assertions.assertEquals(e.getManualDiscount(), a.getManualDiscount(), where + " 手動折扣");
+            Assertions.assertEquals(e.getMemberDiscount(), a.getMemberDiscount(), where + " 會員折扣");
+            Assertions.assertEquals(e.getPromotionDiscount(), a.getPromotionDiscount(), where + " 促銷折扣");
+            Assertions.assertEquals(e.getTotalDiscount(), a.getTotalDiscount(), where + " 總折扣");
+            Assertions.assertEquals(e.getFinalAmount(), a.getFinalAmount(), where + " 最終金額");
+        }
+        Assertions.assertEquals(expected.getTotalOriginalAmount(), actual.getTotalOriginalAmount(), context + " 原價總計");
+        Assertions.assertEquals(expected.getTotalMemberAmount(), actual.getTotalMemberAmount(), context + " 會員價總計");
+        Assertions.assertEquals(expected.getTotalPromotionDiscount(), actual.getTotalPromotionDiscount(), context + " 促銷折扣總計");
+        Assertions.assertEquals(expected.getTotalDiscountAmount(), actual.getTotalDiscountAmount(), context + " 總折扣");
+        Assertions.assertEquals(expected.getFinalAmount(), actual.getFinalAmount(), context + " 應付金額");
+        Assertions.assertEquals(expected.getActivityDiscounts(), actual.getActivityDiscounts(), context + " 活動折扣");
+    }
+}
@@ -0,0 +1,105 @@
+package test;
+
+import model.Activity;
+import model.CartItem;
+import model.Item;
+import model.Receipt;
+import repo.InMemoryCatalog;
+import service.PromotionMetrics;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 記憶體資料測試：讀取 data/ 目錄的 CSV，
+ * 驗證價格生效日、活動有效期間，以及不連線資料庫時的完整促銷計算
+ * （情境與 PromotionServiceIntegrationTest 相同）。
+ */
+public class InMemoryCatalogTest {
+
+    private static InMemoryCatalog catalog;
+    private static PromotionService service;
+    private static SimpleDateFormat sdf;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        catalog = InMemoryCatalog.load(Paths.get("data"));
+        service = new PromotionService(catalog, catalog);
+        sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+    }
+
+    @Test
+    void priceFollowsBeginDate() throws Exception {
+        Assertions.assertEquals(new BigDecimal("19800"), priceOf("WINE001", "2025-06-01 12:00"));
+        Assertions.assertEquals(new BigDecimal("18500"), priceOf("WINE001", "2025-10-25 12:00"));
+        Assertions.assertEquals(new BigDecimal("17900"), priceOf("WINE001", "2026-01-01 00:00"));
+        Assertions.assertEquals(new BigDecimal("17900"), catalog.findItemByCode("WINE001").getUnitPrice(), "單一查詢取最新價格");
+
+        Item cosmetic = catalog.findItemByCode("COSM001");
+        Assertions.assertEquals("化妝品", cosmetic.getCategory01Name());
+        Assertions.assertNull(catalog.findItemByCode("UNKNOWN"));
+    }
+
+    @Test
+    void batchLookupKeepsInputOrderWithoutDuplicates() throws Exception {
+        List<Item> items = catalog.findItemsByCodes(
+                List.of("PERF001", "UNKNOWN", "COSM001", "PERF001"), sdf.parse("2025-10-25 10:00"));
+        Assertions.assertEquals(2, items.size());
+        Assertions.assertEquals("PERF001", items.get(0).getItemCode());
+        Assertions.assertEquals("COSM001", items.get(1).getItemCode());
+    }
+
+    @Test
+    void activitiesValidWithinDateRange() throws Exception {
+        List<Activity> october = catalog.findValidActivities(sdf.parse("2025-10-25 10:00"));
+        Assertions.assertEquals(5, october.size());
+        Assertions.assertEquals(5, catalog.findValidActivities(sdf.parse("2025-11-30 23:30")).size(), "結束日當天仍有效");
+        Assertions.assertTrue(catalog.findValidActivities(sdf.parse("2025-12-01 00:00")).isEmpty());
+    }
+
+    @Test
+    void promotionsWithoutDatabase() throws Exception {
+        Date date = sdf.parse("2025-10-25 10:00");
+        assertPromotion(List.of(new CartItem("COSM001", 1), new CartItem("COSM002", 1)), date, false, "300");
+        assertPromotion(List.of(new CartItem("PERF001", 1), new CartItem("PERF002", 1)), date, false, "500");
+        assertPromotion(List.of(new CartItem("WINE001", 1), new CartItem("LIQUOR001", 1)), date, true, "800");
+        assertPromotion(List.of(new CartItem("ELEC002", 2), new CartItem("FOOD001", 5), new CartItem("BOOK001", 3)), date, false, "1000");
+        assertPromotion(List.of(new CartItem("ELEC001", 1)), date, false, "500");
+
+        Receipt member = service.calculateReceipt(List.of(new CartItem("WINE001", 1)), date, true);
+        Assertions.assertTrue(member.getTotalDiscountAmount().compareTo(new BigDecimal("800")) > 0, "公司會員應享95折");
+    }
+
+    @Test
+    void itemPricedOnlyAfterTransactionDateIsSkipped() throws Exception {
+        Date beforeFirstPrice = sdf.parse("2024-12-01 10:00");
+        Assertions.assertNull(catalog.findItemsByCodes(List.of("WINE001"), beforeFirstPrice).get(0).getUnitPrice());
+
+        PromotionService local = new PromotionService(catalog, catalog);
+        local.getMetrics().setEnabled(true);
+        List<CartItem> cart = List.of(new CartItem("WINE001", 1), new CartItem("COSM001", 1));
+        Receipt receipt = local.calculateReceipt(cart, beforeFirstPrice, true);
+        Assertions.assertTrue(receipt.getLines().isEmpty(), "交易日尚無價格的商品視為查無商品");
+        Assertions.assertEquals(0, BigDecimal.ZERO.compareTo(receipt.getFinalAmount()));
+        Assertions.assertEquals(2L, local.getMetrics().getCount(PromotionMetrics.Counter.ITEMS_NOT_FOUND));
+
+        local.setFixedPointEnabled(true);
+        Assertions.assertTrue(local.calculateReceipt(cart, beforeFirstPrice, false).getLines().isEmpty());
+        Assertions.assertNull(local.openSession(beforeFirstPrice, true).add("WINE001", 1));
+    }
+
+    private static BigDecimal priceOf(String itemCode, String dateTime) throws Exception {
+        return catalog.findItemsByCodes(List.of(itemCode), sdf.parse(dateTime)).get(0).getUnitPrice();
+    }
+
+    private static void assertPromotion(List<CartItem> cart, Date date, boolean member, String minimumDiscount) {
+        Receipt receipt = service.calculateReceipt(cart, date, member);
+        Assertions.assertTrue(receipt.getTotalPromotionDiscount().compareTo(new BigDecimal(minimumDiscount)) >= 0,
+                "促銷折扣應至少 " + minimumDiscount + "，實際 " + receipt.getTotalPromotionDiscount());
+    }
+}
@@ -0,0 +1,43 @@
+package test;
+
+import repo.ItemRepository;
+
+import org.junit.jupiter.api.*;
+import java.util.Arrays;
+
+/**
+ * 商品批次查詢的 IN 條件大小測試：只使用固定大小，超過 256 筆分段。
+ */
+public class ItemQueryBucketTest {
+
+    @Test
+    void usesSmallestBucketThatFits() {
+        Assertions.assertEquals(Arrays.toString(new int[0]), Arrays.toString(ItemRepository.planBuckets(0)));
+        Assertions.assertEquals(Arrays.toString(new int[]{1}), Arrays.toString(ItemRepository.planBuckets(1)));
+        Assertions.assertEquals(Arrays.toString(new int[]{4}), Arrays.toString(ItemRepository.planBuckets(2)));
+        Assertions.assertEquals(Arrays.toString(new int[]{4}), Arrays.toString(ItemRepository.planBuckets(4)));
+        Assertions.assertEquals(Arrays.toString(new int[]{16}), Arrays.toString(ItemRepository.planBuckets(5)));
+        Assertions.assertEquals(Arrays.toString(new int[]{64}), Arrays.toString(ItemRepository.planBuckets(17)));
+        Assertions.assertEquals(Arrays.toString(new int[]{256}), Arrays.toString(ItemRepository.planBuckets(65)));
+        Assertions.assertEquals(Arrays.toString(new int[]{256}), Arrays.toString(ItemRepository.planBuckets(256)));
+    }
+
+    @Test
+    void largeOrdersAreSplitIntoFullBuckets() {
+        Assertions.assertEquals(Arrays.toString(new int[]{256, 64}), Arrays.toString(ItemRepository.planBuckets(300)));
+        Assertions.assertEquals(Arrays.toString(new int[]{256, 256, 256, 1}), Arrays.toString(ItemRepository.planBuckets(769)));
+
+        int[] plan = ItemRepository.planBuckets(10_000);
+        int capacity = 0;
+        for (int bucket : plan) capacity += bucket;
+        Assertions.assertTrue(capacity >= 10_000 && capacity - 10_000 < 256, "只有最後一段需要補位");
+    }
+
+    @Test
+    void multiplesOfMaxInSizeNeedNoPadding() {
+        Assertions.assertEquals(256, ItemRepository.MAX_IN_SIZE);
+        int[] plan = ItemRepository.planBuckets(4 * ItemRepository.MAX_IN_SIZE);
+        Assertions.assertEquals(Arrays.toString(new int[]{256, 256, 256, 256}), Arrays.toString(plan),
+                "呼叫端以 MAX_IN_SIZE 的倍數分段時不產生補位");
+    }
+}
@@ -0,0 +1,132 @@
+package test;
+
+import model.CartItem;
+import model.Item;
+import model.Receipt;
+import repo.InMemoryCatalog;
+import repo.ItemLookup;
+import repo.OffHeapItemStore;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 堆外商品索引測試：由 data/ 的 CSV 建立索引，
+ * 建立當天的查詢結果必須與 CSV 記憶體資料相同，其他交易日交給 fallback。
+ */
+public class OffHeapItemStoreTest {
+
+    private static final List<String> CODES = List.of(
+            "WINE001", "WINE002", "LIQUOR001", "COSM001", "COSM002", "PERF001",
+            "PERF002", "ELEC001", "ELEC002", "FOOD001", "BOOK001", "UNKNOWN", "WINE001");
+
+    private static InMemoryCatalog catalog;
+    private static SimpleDateFormat sdf;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        catalog = InMemoryCatalog.load(Paths.get("data"));
+        sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+    }
+
+    @Test
+    void lookupsMatchCsvCatalogOnBusinessDay() throws Exception {
+        Date opening = sdf.parse("2025-10-25 08:00");
+        OffHeapItemStore store = OffHeapItemStore.load(catalog, opening, catalog);
+        Assertions.assertEquals(catalog.getItemCount(), store.getItemCount());
+
+        Date date = sdf.parse("2025-10-25 15:30");
+        List<Item> expected = catalog.findItemsByCodes(CODES, date);
+        List<Item> actual = store.findItemsByCodes(CODES, date);
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameItem(expected.get(i), actual.get(i));
+        }
+        Assertions.assertEquals(new BigDecimal("18500"), store.findItemByCode("WINE001").getUnitPrice(), "單一查詢取建立時的價格");
+        Assertions.assertNull(store.findItemByCode("UNKNOWN"));
+
+        PromotionService fromCsv = new PromotionService(catalog, catalog);
+        PromotionService fromStore = new PromotionService(store, catalog);
+        List<CartItem> cart = List.of(new CartItem("WINE001", 1), new CartItem("COSM001", 2),
+                new CartItem("PERF002", 1), new CartItem("ELEC001", 1));
+        Receipt a = fromCsv.calculateReceipt(cart, date, true);
+        Receipt b = fromStore.calculateReceipt(cart, date, true);
+        Assertions.assertEquals(a.getFinalAmount(), b.getFinalAmount());
+    }
+
+    @Test
+    void otherBusinessDayUsesFallback() throws Exception {
+        OffHeapItemStore store = OffHeapItemStore.load(catalog, sdf.parse("2025-10-25 08:00"), catalog);
+        Date nextYear = sdf.parse("2026-01-01 09:00");
+        Assertions.assertEquals(new BigDecimal("17900"),
+                store.findItemsByCodes(List.of("WINE001"), nextYear).get(0).getUnitPrice());
+
+        OffHeapItemStore withoutFallback = OffHeapItemStore.load(catalog, sdf.parse("2025-10-25 08:00"), null);
+        Assertions.assertEquals(new BigDecimal("18500"),
+                withoutFallback.findItemsByCodes(List.of("WINE001"), nextYear).get(0).getUnitPrice(), "沒有 fallback 時以建立時的價格回答");
+    }
+
+    @Test
+    void pricesKeepScaleAndGrowBeyondInitialCapacity() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            items.add(new Item(String.format("SKU%05d", i), "商品" + i, "C" + (i % 40), "分類" + (i % 40),
+                    BigDecimal.valueOf(i * 7L, i % 3)));
+        }
+        items.add(new Item("NOPRICE", null, null, null, null));
+        items.add(new Item("PRECISE", "四位小數", "C1", "分類1", new BigDecimal("12.3456")));
+        items.add(new Item("HUGE", "超出 long", "C1", "分類1", new BigDecimal("1E+30")));
+        items.add(new Item("SKU00001", "重複代碼以後者為準", "C1", "分類1", new BigDecimal("99.90")));
+
+        OffHeapItemStore store = OffHeapItemStore.load(new ListLookup(items), new Date(), null, ZoneId.systemDefault(), 16);
+        Assertions.assertEquals(5003, store.getItemCount());
+        Assertions.assertEquals(40, store.getCategoryCount());
+        for (int i = 2; i < 5000; i++) {
+            Item item = store.findItemByCode(String.format("SKU%05d", i));
+            Assertions.assertEquals(BigDecimal.valueOf(i * 7L, i % 3), item.getUnitPrice(), "scale 必須保留");
+            Assertions.assertEquals("分類" + (i % 40), item.getCategory01Name());
+        }
+        Item noPrice = store.findItemByCode("NOPRICE");
+        Assertions.assertNull(noPrice.getUnitPrice());
+        Assertions.assertNull(noPrice.getItemName());
+        Assertions.assertNull(noPrice.getCategory01());
+        Assertions.assertEquals(new BigDecimal("12.3456"), store.findItemByCode("PRECISE").getUnitPrice());
+        Assertions.assertEquals(new BigDecimal("1E+30"), store.findItemByCode("HUGE").getUnitPrice());
+        Assertions.assertEquals("重複代碼以後者為準", store.findItemByCode("SKU00001").getItemName());
+        Assertions.assertEquals(new BigDecimal("99.90"), store.findItemByCode("SKU00001").getUnitPrice());
+    }
+
+    private static void assertSameItem(Item expected, Item actual) {
+        Assertions.assertEquals(expected.getItemCode(), actual.getItemCode());
+        Assertions.assertEquals(expected.getItemName(), actual.getItemName());
+        Assertions.assertEquals(expected.getCategory01(), actual.getCategory01());
+        Assertions.assertEquals(expected.getCategory01Name(), actual.getCategory01Name());
+        Assertions.assertEquals(expected.getUnitPrice(), actual.getUnitPrice(), expected.getItemCode());
+    }
+
+    /** 測試用商品來源：依清單順序走訪 */
+    private static final class ListLookup implements ItemLookup {
+        private final List<Item> items;
+
+        ListLookup(List<Item> items) {
+            this.items = items;
+        }
+
+        @Override
+        public Item findItemByCode(String itemCode) { return null; }
+
+        @Override
+        public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) { return List.of(); }
+
+        @Override
+        public void forEachItem(Date asOfDate, Consumer<Item> action) { items.forEach(action); }
+    }
+}
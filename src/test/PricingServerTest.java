@@ -0,0 +1,147 @@
+package test;
+
+import model.CartItem;
+import model.Receipt;
+import repo.InMemoryCatalog;
+import server.LoadGenerator;
+import server.PricingJson;
+import server.PricingServer;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP 計價服務測試：回應與直接呼叫 PromotionService 的結果相同，
+ * 批次與錯誤處理，以及 LoadGenerator 可以完成一次短時間量測。
+ */
+public class PricingServerTest {
+
+    private static InMemoryCatalog catalog;
+    private static PricingServer server;
+    private static HttpClient client;
+    private static String baseUrl;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        catalog = InMemoryCatalog.load(Paths.get("data"));
+        server = PricingServer.start(new PromotionService(catalog, catalog), 0);
+        baseUrl = "http://localhost:" + server.getPort();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void priceMatchesDirectCalculation() throws Exception {
+        String body = "{\"transactionDate\":\"2025-10-25 15:30:00\",\"companyMember\":true,\"items\":[" +
+                "{\"itemCode\":\"WINE001\",\"quantity\":2},{\"itemCode\":\"COSM001\",\"quantity\":1}," +
+                "{\"itemCode\":\"ELEC001\",\"quantity\":1}]}";
+        HttpResponse<String> response = post("/price", body);
+        Assertions.assertEquals(200, response.statusCode());
+
+        Receipt expected = new PromotionService(catalog, catalog).calculateReceipt(
+                List.of(new CartItem("WINE001", 2), new CartItem("COSM001", 1), new CartItem("ELEC001", 1)),
+                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse("2025-10-25 15:30:00"), true);
+        Map<?, ?> json = (Map<?, ?>) PricingJson.parse(response.body());
+        Assertions.assertEquals(0, expected.getFinalAmount().compareTo((BigDecimal) json.get("finalAmount")), "最終金額");
+        Assertions.assertEquals(3, ((List<?>) json.get("lines")).size());
+        Assertions.assertEquals(expected.getActivityDiscounts().size(), ((Map<?, ?>) json.get("activityDiscounts")).size());
+    }
+
+    @Test
+    void batchReturnsOneReceiptPerBasketInOrder() throws Exception {
+        String body = "{\"baskets\":[" +
+                "{\"transactionDate\":\"2025-10-25\",\"items\":[{\"itemCode\":\"WINE001\",\"quantity\":1}]}," +
+                "{\"transactionDate\":\"2025-10-25\",\"items\":[{\"itemCode\":\"BOOK001\"}]}," +
+                "{\"transactionDate\":\"2025-10-26 10:00\",\"companyMember\":true,\"items\":[{\"itemCode\":\"WINE002\",\"quantity\":3}]}]}";
+        HttpResponse<String> response = post("/price/batch", body);
+        Assertions.assertEquals(200, response.statusCode());
+
+        List<?> receipts = (List<?>) ((Map<?, ?>) PricingJson.parse(response.body())).get("receipts");
+        Assertions.assertEquals(3, receipts.size());
+        String[] codes = {"WINE001", "BOOK001", "WINE002"};
+        for (int i = 0; i < codes.length; i++) {
+            Map<?, ?> line = (Map<?, ?>) ((List<?>) ((Map<?, ?>) receipts.get(i)).get("lines")).get(0);
+            Assertions.assertEquals(codes[i], line.get("itemCode"));
+        }
+    }
+
+    @Test
+    void invalidRequestsAreRejected() throws Exception {
+        Assertions.assertEquals(400, post("/price", "{\"items\":[").statusCode(), "JSON 不完整");
+        Assertions.assertEquals(400, post("/price", "{\"items\":[{\"itemCode\":\"WINE001\",\"quantity\":0}]}").statusCode(), "數量必須大於 0");
+        Assertions.assertEquals(400, post("/price", "{\"companyMember\":true}").statusCode(), "缺少 items");
+        Assertions.assertEquals(400, post("/price", "[".repeat(100_000)).statusCode(), "巢狀過深不會 StackOverflowError");
+        Assertions.assertEquals(405, get("/price").statusCode());
+        Assertions.assertEquals(404, get("/pricing").statusCode());
+
+        HttpResponse<String> health = get("/health");
+        Assertions.assertEquals(200, health.statusCode());
+        Assertions.assertEquals("UP", ((Map<?, ?>) PricingJson.parse(health.body())).get("status"));
+        Assertions.assertTrue(get("/metrics").body().contains("pos_http_requests_total"));
+    }
+
+    @Test
+    void jsonEscapesRoundTrip() {
+        StringBuilder out = new StringBuilder();
+        PricingJson.writeString("酒類 \"95折\"\\\n", out);
+        Assertions.assertEquals("酒類 \"95折\"\\\n", PricingJson.parse(out.toString()));
+        Assertions.assertEquals(new BigDecimal("1.50"), ((List<?>) PricingJson.parse(" [1.50, null, false] ")).get(0));
+    }
+
+    @Test
+    void oversizedBatchIsRejectedBeforeConversion() throws Exception {
+        // 元素本身不是合法的購物籃：先轉換才檢查筆數時會回應 400，先檢查筆數則回應 413
+        String body = "{\"baskets\":[" + String.join(",", Collections.nCopies(PricingServer.MAX_BATCH + 1, "{}")) + "]}";
+        Assertions.assertEquals(413, post("/price/batch", body).statusCode());
+        Assertions.assertEquals(PricingServer.MAX_BATCH + 1, PricingJson.countBaskets(PricingJson.parse(body)));
+        Assertions.assertEquals(400, post("/price/batch", "{\"baskets\":[{}]}").statusCode());
+    }
+
+    @Test
+    void nestingDepthIsLimited() {
+        String nested = "[".repeat(PricingJson.MAX_DEPTH) + "]".repeat(PricingJson.MAX_DEPTH);
+        Assertions.assertTrue(PricingJson.parse(nested) instanceof List, "上限以內可以解析");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PricingJson.parse("[" + nested + "]"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> PricingJson.parse("{\"a\":".repeat(PricingJson.MAX_DEPTH + 1)));
+    }
+
+    @Test
+    void listensOnLoopbackByDefault() {
+        Assertions.assertEquals("127.0.0.1", PricingServer.HOST);
+        Assertions.assertTrue(server.getAddress().getAddress().isLoopbackAddress(), server.getAddress().toString());
+    }
+
+    @Test
+    void loadGeneratorCompletesShortRun() throws Exception {
+        LoadGenerator.Result result = new LoadGenerator(baseUrl, 4, 1,
+                new String[]{"WINE001", "COSM001", "ELEC001", "BOOK001"}, 4).run(0, 1);
+        Assertions.assertTrue(result.getRequests() > 0, "一秒內至少完成一個請求");
+        Assertions.assertEquals(0, result.getFailures());
+    }
+
+    private static HttpResponse<String> post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,118 @@
+package test;
+
+import model.Activity;
+import model.Line;
+import service.PromotionIndex;
+
+import org.junit.jupiter.api.*;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 促銷活動索引測試：分類代碼對照、ALL 萬用活動、大小寫、多分類群組，
+ * 以及兩種分組方式（明細清單、分類代碼陣列）結果一致。
+ */
+public class PromotionIndexTest {
+
+    private static List<Activity> activities;
+    private static PromotionIndex index;
+
+    @BeforeAll
+    static void setup() {
+        activities = new ArrayList<>();
+        activities.add(activity("A0", "01, 02"));   // 多分類，含空白
+        activities.add(activity("A1", "all"));      // 萬用活動，小寫
+        activities.add(activity("A2", "xb"));       // 小寫分類代碼
+        activities.add(activity("A3", "02,,05"));   // 空白項目略過
+        activities.add(activity("A4", null));       // 未設定分類
+        activities.add(activity("A5", "ALL"));
+        index = PromotionIndex.build(activities);
+    }
+
+    @Test
+    void multiCategoryGroupsAreSplitAndTrimmed() {
+        Assertions.assertEquals(List.of("01", "02"), new ArrayList<>(index.getActivity(0).getCategories()));
+        Assertions.assertEquals(List.of("02", "05"), new ArrayList<>(index.getActivity(3).getCategories()));
+        Assertions.assertEquals(List.of("A0", "A1", "A5"), matching("01"));
+        Assertions.assertEquals(List.of("A0", "A1", "A3", "A5"), matching("02"), "依活動原始順序，同一活動只出現一次");
+        Assertions.assertEquals(List.of("A1", "A3", "A5"), matching("05"));
+    }
+
+    @Test
+    void wildcardMatchesEveryCategory() {
+        Assertions.assertTrue(index.getActivity(1).isWildcard(), "ALL 不分大小寫");
+        Assertions.assertTrue(index.getActivity(5).isWildcard());
+        Assertions.assertTrue(index.getActivity(1).getCategories().isEmpty());
+        Assertions.assertEquals(List.of("A1", "A5"), matching("99"));
+        Assertions.assertTrue(index.coversCategory("99"));
+        Assertions.assertEquals(List.of(), matching(null), "沒有分類的明細不適用任何活動");
+        Assertions.assertFalse(index.coversCategory(null));
+    }
+
+    @Test
+    void categoryCodesAreCaseInsensitive() {
+        Assertions.assertEquals(List.of("A1", "A2", "A5"), matching("XB"));
+        Assertions.assertEquals(List.of("A1", "A2", "A5"), matching("xb"));
+        Assertions.assertTrue(index.getActivity(2).matches("Xb"));
+        Assertions.assertFalse(index.getActivity(2).matches("01"));
+    }
+
+    @Test
+    void activityWithoutGroupMatchesNothing() {
+        PromotionIndex.CompiledActivity none = index.getActivity(4);
+        Assertions.assertFalse(none.isWildcard());
+        Assertions.assertTrue(none.getCategories().isEmpty());
+        Assertions.assertFalse(none.matches("01"));
+
+        PromotionIndex specificOnly = PromotionIndex.build(List.of(activity("B0", "01"), activity("B1", null)));
+        Assertions.assertTrue(specificOnly.coversCategory("01"));
+        Assertions.assertFalse(specificOnly.coversCategory("02"), "沒有 ALL 活動時只涵蓋列出的分類");
+    }
+
+    @Test
+    void lineAndIndexGroupingAgree() {
+        String[] categories = {"01", "05", null, "xb", "02", "99"};
+        List<Line> lines = new ArrayList<>();
+        for (int i = 0; i < categories.length; i++) {
+            lines.add(new Line("I" + i, "item" + i, categories[i], "", 1, BigDecimal.TEN));
+        }
+        List<List<Line>> byLine = index.eligibleLinesByActivity(lines);
+        int[][] byIndex = index.eligibleIndexesByActivity(categories);
+        Assertions.assertEquals(index.size(), byLine.size());
+        for (int a = 0; a < index.size(); a++) {
+            List<Line> expected = new ArrayList<>();
+            for (int i : byIndex[a]) expected.add(lines.get(i));
+            Assertions.assertEquals(expected, byLine.get(a), "活動 " + a);
+        }
+        Assertions.assertEquals("[0, 4]", Arrays.toString(byIndex[0]));
+        Assertions.assertEquals("[0, 1, 3, 4, 5]", Arrays.toString(byIndex[1]));
+        Assertions.assertEquals(0, byIndex[4].length);
+    }
+
+    @Test
+    void indexRemembersItsSnapshot() {
+        Assertions.assertTrue(index.isBuiltFrom(activities));
+        Assertions.assertFalse(index.isBuiltFrom(new ArrayList<>(activities)), "以物件身分比較快照");
+        Assertions.assertEquals(0, PromotionIndex.build(List.of()).size());
+        Assertions.assertFalse(PromotionIndex.build(List.of()).coversCategory("01"));
+    }
+
+    /** 依索引列出適用指定分類的活動代碼 */
+    private static List<String> matching(String categoryCode) {
+        List<String> result = new ArrayList<>();
+        String[] single = {categoryCode};
+        int[][] groups = index.eligibleIndexesByActivity(single);
+        for (int a = 0; a < groups.length; a++) {
+            if (groups[a].length > 0) result.add(index.getActivity(a).getActivity().getActivityCode());
+        }
+        return result;
+    }
+
+    private static Activity activity(String code, String group) {
+        return new Activity(code, code, new Date(0), new Date(Long.MAX_VALUE / 2), group,
+                new BigDecimal("1000"), new BigDecimal("100"));
+    }
+}
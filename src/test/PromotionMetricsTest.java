@@ -0,0 +1,91 @@
+package test;
+
+import model.CartItem;
+import repo.InMemoryCatalog;
+import service.PromotionMetrics;
+import service.PromotionService;
+import util.LatencyHistogram;
+
+import org.junit.jupiter.api.*;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 效能指標測試：分桶誤差、關閉時不記錄，以及 Prometheus text format 匯出。
+ */
+public class PromotionMetricsTest {
+
+    private static InMemoryCatalog catalog;
+    private static Date date;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        catalog = InMemoryCatalog.load(Paths.get("data"));
+        date = new SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2025-10-25 10:00");
+    }
+
+    @Test
+    void histogramPercentilesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) histogram.record(v * 1000);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assertions.assertEquals(100_000, snapshot.getCount());
+        Assertions.assertEquals(100_000_000L, snapshot.getMax());
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            double expected = percentile * 1_000_000;
+            long actual = snapshot.getValueAtPercentile(percentile);
+            Assertions.assertTrue(actual >= expected && actual <= expected * (1 + 1.0 / 32),
+                    "p" + percentile + " = " + actual);
+        }
+        Assertions.assertEquals(100_000_000L, snapshot.getValueAtPercentile(100));
+
+        histogram.reset();
+        Assertions.assertEquals(0, histogram.snapshot().getCount());
+        Assertions.assertEquals(0, histogram.snapshot().getValueAtPercentile(99));
+    }
+
+    @Test
+    void disabledMetricsRecordNothing() {
+        PromotionService service = new PromotionService(catalog, catalog);
+        service.getMetrics().setEnabled(false);
+        service.calculateReceipt(cart(), date, true);
+        for (PromotionMetrics.Stage stage : PromotionMetrics.Stage.values()) {
+            Assertions.assertEquals(0, service.getMetrics().getSnapshot(stage).getCount(), stage.getLabel());
+        }
+        Assertions.assertEquals(0, service.getMetrics().getCount(PromotionMetrics.Counter.LINES_PROCESSED));
+    }
+
+    @Test
+    void enabledMetricsExportPrometheusText() {
+        PromotionService service = new PromotionService(catalog, catalog);
+        PromotionMetrics metrics = service.getMetrics();
+        metrics.setEnabled(true);
+        for (int i = 0; i < 3; i++) service.calculateReceipt(cart(), date, true);
+
+        Assertions.assertEquals(3, metrics.getSnapshot(PromotionMetrics.Stage.RECEIPT).getCount());
+        Assertions.assertEquals(3, metrics.getSnapshot(PromotionMetrics.Stage.LOAD_ITEMS).getCount());
+        Assertions.assertEquals(3, metrics.getSnapshot(PromotionMetrics.Stage.APPLY_PROMOTIONS).getCount());
+        Assertions.assertEquals(12, metrics.getCount(PromotionMetrics.Counter.LINES_PROCESSED));
+        Assertions.assertEquals(15, metrics.getCount(PromotionMetrics.Counter.ACTIVITIES_EVALUATED));
+        Assertions.assertTrue(metrics.getCount(PromotionMetrics.Counter.ACTIVITIES_TRIGGERED) > 0);
+
+        String text = service.exportMetrics();
+        Assertions.assertTrue(text.contains("# TYPE pos_stage_latency_seconds summary"));
+        Assertions.assertTrue(text.contains("pos_stage_latency_seconds_count{stage=\"receipt\"} 3"));
+        Assertions.assertTrue(text.contains("pos_stage_latency_seconds{stage=\"member_discount\",quantile=\"0.99\"}"));
+        Assertions.assertTrue(text.contains("pos_lines_processed_total 12"));
+        for (String line : text.split("\n")) {
+            Assertions.assertTrue(line.startsWith("# ") || line.matches("[a-z_]+(\\{[^}]*\\})? [0-9.]+"), line);
+        }
+
+        metrics.reset();
+        Assertions.assertEquals(0, metrics.getSnapshot(PromotionMetrics.Stage.RECEIPT).getCount());
+    }
+
+    private static List<CartItem> cart() {
+        return List.of(new CartItem("WINE001", 1), new CartItem("COSM001", 2),
+                new CartItem("PERF002", 1), new CartItem("ELEC001", 1));
+    }
+}
@@ -0,0 +1,157 @@
+package test;
+
+import model.Activity;
+import model.CartItem;
+import model.Item;
+import model.Receipt;
+import repo.ActivityRepository;
+import repo.ItemRepository;
+import service.CartSession;
+import service.PromotionMetrics;
+import service.PromotionOptimizer;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * 活動組合最佳化測試：活動順序造成貪婪結果較差時，最佳化可找到較好的組合；
+ * 活動數上限、毛利優先目標、候選過多的退回路徑，以及購物車增量計算的一致性。
+ * 不需要連線資料庫。
+ */
+public class PromotionOptimizerTest {
+
+    private static final Map<String, Item> CATALOG = new LinkedHashMap<>();
+
+    private List<Activity> activities;
+    private PromotionService service;
+
+    @BeforeAll
+    static void fixtures() {
+        CATALOG.put("COSM001", new Item("COSM001", "保濕精華液", "01", "化妝品", new BigDecimal("1800")));
+        CATALOG.put("PERF001", new Item("PERF001", "經典淡香水", "02", "香水", new BigDecimal("2800")));
+        CATALOG.put("BOOK001", new Item("BOOK001", "旅遊指南", "10", "書籍", new BigDecimal("450")));
+    }
+
+    @BeforeEach
+    void createService() {
+        // A1 先套用會讓香水金額低於 A2 門檻：貪婪只得到 A1 + A3，最佳組合是 A2 + A3
+        activities = new ArrayList<>();
+        activities.add(new Activity("A1", "美妝香水滿四千送千", null, null, "01,02", new BigDecimal("4000"), new BigDecimal("1000")));
+        activities.add(new Activity("A2", "香水滿兩千八送一千五", null, null, "02", new BigDecimal("2800"), new BigDecimal("1500")));
+        activities.add(new Activity("A3", "化妝品滿千送兩百", null, null, "01", new BigDecimal("1000"), new BigDecimal("200")));
+        ItemRepository items = new ItemRepository() {
+            @Override
+            public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) {
+                List<Item> result = new ArrayList<>();
+                for (String code : itemCodes) {
+                    if (CATALOG.containsKey(code)) result.add(CATALOG.get(code));
+                }
+                return result;
+            }
+        };
+        ActivityRepository repository = new ActivityRepository() {
+            @Override
+            public List<Activity> findValidActivities(Date targetDate) {
+                return activities;
+            }
+        };
+        service = new PromotionService(items, repository);
+        service.setPromotionOptimizer(null);
+    }
+
+    @Test
+    void customerObjectiveBeatsActivityOrder() {
+        Assertions.assertEquals(Set.of("美妝香水滿四千送千", "化妝品滿千送兩百"), price().getActivityDiscounts().keySet(), "貪婪");
+
+        service.setPromotionOptimizer(new PromotionOptimizer(PromotionOptimizer.Objective.CUSTOMER, 0, 1_000_000));
+        Receipt receipt = price();
+        Assertions.assertEquals(Set.of("香水滿兩千八送一千五", "化妝品滿千送兩百"), receipt.getActivityDiscounts().keySet());
+        assertValue("1700", receipt.getTotalPromotionDiscount());
+        assertValue("2900", receipt.getFinalAmount());
+    }
+
+    @Test
+    void maxActivitiesPicksBestSingleActivity() {
+        service.setPromotionOptimizer(new PromotionOptimizer(PromotionOptimizer.Objective.CUSTOMER, 1, 1_000_000));
+        Receipt receipt = price();
+        Assertions.assertEquals(Set.of("香水滿兩千八送一千五"), receipt.getActivityDiscounts().keySet());
+        assertValue("1500", receipt.getTotalPromotionDiscount());
+    }
+
+    @Test
+    void marginObjectivePrefersMoreActivitiesAtLowerDiscount() {
+        service.setPromotionOptimizer(new PromotionOptimizer(PromotionOptimizer.Objective.MARGIN, 0, 1_000_000));
+        assertValue("1200", price().getTotalPromotionDiscount());
+
+        service.setPromotionOptimizer(new PromotionOptimizer(PromotionOptimizer.Objective.MARGIN, 1, 1_000_000));
+        assertValue("200", price().getTotalPromotionDiscount());
+    }
+
+    @Test
+    void tooManyCandidatesFallsBackToGreedy() {
+        for (int i = 0; i < PromotionOptimizer.MAX_CANDIDATES + 6; i++) {
+            activities.add(new Activity(String.format("B%02d", i), "化妝品小額回饋" + i, null, null, "01",
+                    new BigDecimal("100"), BigDecimal.ONE));
+        }
+        BigDecimal greedy = price().getFinalAmount();
+
+        service.getMetrics().setEnabled(true);
+        service.setPromotionOptimizer(new PromotionOptimizer(PromotionOptimizer.Objective.CUSTOMER, 0, 0));
+        assertValue(greedy.toPlainString(), price().getFinalAmount());
+        Assertions.assertEquals(1L, service.getMetrics().getCount(PromotionMetrics.Counter.OPTIMIZER_INCOMPLETE));
+
+        service.setPromotionOptimizer(new PromotionOptimizer(PromotionOptimizer.Objective.CUSTOMER, 5, 0));
+        Assertions.assertEquals(5, price().getActivityDiscounts().size(), "候選過多時仍遵守活動數上限");
+    }
+
+    @Test
+    void cartSessionMatchesFullRecalculation() {
+        service.setPromotionOptimizer(new PromotionOptimizer(PromotionOptimizer.Objective.CUSTOMER, 0, 1_000_000));
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Date date = new Date();
+            CartSession session = service.openSession(date, false);
+            session.add("COSM001", 1);
+            session.add("BOOK001", 1);
+            session.add("PERF001", 1);
+            assertSameReceipt(service.calculateReceipt(copy(session.getCartItems()), date, false), session.getReceipt());
+            session.changeQuantity(0, 3);
+            assertSameReceipt(service.calculateReceipt(copy(session.getCartItems()), date, false), session.getReceipt());
+            session.remove(2);
+            assertSameReceipt(service.calculateReceipt(copy(session.getCartItems()), date, false), session.getReceipt());
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private Receipt price() {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return service.calculateReceipt(
+                    new ArrayList<>(List.of(new CartItem("COSM001", 1), new CartItem("PERF001", 1))), new Date(), false);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static List<CartItem> copy(List<CartItem> cartItems) {
+        List<CartItem> copy = new ArrayList<>();
+        for (CartItem cartItem : cartItems) copy.add(new CartItem(cartItem.getItemCode(), cartItem.getQuantity()));
+        return copy;
+    }
+
+    private static void assertSameReceipt(Receipt expected, Receipt actual) {
+        assertValue(expected.getFinalAmount().toPlainString(), actual.getFinalAmount());
+        Assertions.assertEquals(expected.getActivityDiscounts(), actual.getActivityDiscounts());
+    }
+
+    private static void assertValue(String expected, BigDecimal actual) {
+        Assertions.assertEquals(0, new BigDecimal(expected).compareTo(actual), "expected=" + expected + " actual=" + actual);
+    }
+}
@@ -0,0 +1,131 @@
+package test;
+
+import model.Activity;
+import model.Basket;
+import model.CartItem;
+import model.Item;
+import model.Receipt;
+import repo.ActivityRepository;
+import repo.ItemRepository;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 批次計算測試：calculateReceipts 必須與逐筆 calculateReceipt 結果相同，
+ * 且同一營業日只查詢一次商品與一次活動。不需要連線資料庫。
+ */
+public class PromotionServiceBatchTest {
+
+    private static final Map<String, Item> CATALOG = new LinkedHashMap<>();
+    private static final List<Activity> ACTIVITIES = new ArrayList<>();
+
+    private int itemQueries;
+    private int activityQueries;
+    private PromotionService service;
+
+    @BeforeAll
+    static void fixtures() {
+        CATALOG.put("WINE001", new Item("WINE001", "Echo Zoo Rose 香檳 0.75L", "09", "酒類", new BigDecimal("18500")));
+        CATALOG.put("COSM001", new Item("COSM001", "保濕精華液", "01", "化妝品", new BigDecimal("1800")));
+        CATALOG.put("PERF001", new Item("PERF001", "經典淡香水", "02", "香水", new BigDecimal("2800")));
+        CATALOG.put("ELEC001", new Item("ELEC001", "無線耳機", "05", "3C電子", new BigDecimal("5990")));
+        ACTIVITIES.add(new Activity("A01", "化妝品滿三千送三百", null, null, "01", new BigDecimal("3000"), new BigDecimal("300")));
+        ACTIVITIES.add(new Activity("A02", "酒類滿八千送八百", null, null, "09", new BigDecimal("8000"), new BigDecimal("800")));
+        ACTIVITIES.add(new Activity("A03", "全館滿萬送千", null, null, "ALL", new BigDecimal("10000"), new BigDecimal("1000")));
+    }
+
+    @BeforeEach
+    void createService() {
+        itemQueries = 0;
+        activityQueries = 0;
+        ItemRepository items = new ItemRepository() {
+            @Override
+            public List<Item> findItemsByCodes(List<String> itemCodes, Date asOfDate) {
+                itemQueries++;
+                List<Item> result = new ArrayList<>();
+                for (String code : itemCodes) {
+                    if (CATALOG.containsKey(code)) result.add(CATALOG.get(code));
+                }
+                return result;
+            }
+        };
+        ActivityRepository activities = new ActivityRepository() {
+            @Override
+            public List<Activity> findValidActivities(Date targetDate) {
+                activityQueries++;
+                return ACTIVITIES;
+            }
+        };
+        service = new PromotionService(items, activities);
+    }
+
+    @Test
+    void batchMatchesSingleReceipts() throws Exception {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        Date day1 = sdf.parse("2025-10-25 10:00");
+        Date day1Later = sdf.parse("2025-10-25 18:30");
+        Date day2 = sdf.parse("2025-10-26 09:15");
+
+        List<Basket> baskets = List.of(
+                new Basket(cart("WINE001", 1, "COSM001", 2), day1, true),
+                new Basket(cart("PERF001", 3, "ELEC001", 1), day1Later, false),
+                new Basket(cart("COSM001", 1, "WINE001", 2), day2, false));
+
+        List<Receipt> batch = service.calculateReceipts(baskets);
+        Assertions.assertEquals(3, batch.size());
+        Assertions.assertEquals(2, itemQueries, "每個營業日只查詢一次商品");
+        Assertions.assertEquals(2, activityQueries, "每個營業日只查詢一次活動");
+
+        for (int i = 0; i < baskets.size(); i++) {
+            Basket basket = baskets.get(i);
+            Receipt single = service.calculateReceipt(copy(basket.getCartItems()),
+                    basket.getTransactionDate(), basket.isCompanyMember());
+            Assertions.assertEquals(single.getFinalAmount(), batch.get(i).getFinalAmount(), "第 " + i + " 筆應付金額");
+            Assertions.assertEquals(single.getActivityDiscounts(), batch.get(i).getActivityDiscounts(), "第 " + i + " 筆活動折扣");
+        }
+        System.out.println("批次計算結果與逐筆計算一致");
+    }
+
+    @Test
+    void parallelMatchesSequential() throws Exception {
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2025-10-25");
+        List<String> codes = new ArrayList<>(CATALOG.keySet());
+        Random random = new Random(7L);
+        List<Basket> sequentialBaskets = new ArrayList<>();
+        List<Basket> parallelBaskets = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            List<CartItem> cart = new ArrayList<>();
+            int size = 1 + random.nextInt(6);
+            for (int j = 0; j < size; j++) {
+                cart.add(new CartItem(codes.get(random.nextInt(codes.size())), 1 + random.nextInt(4)));
+            }
+            boolean member = random.nextBoolean();
+            sequentialBaskets.add(new Basket(cart, date, member));
+            parallelBaskets.add(new Basket(copy(cart), date, member));
+        }
+
+        List<Receipt> sequential = service.calculateReceipts(sequentialBaskets);
+        List<Receipt> parallel = service.calculateReceiptsParallel(parallelBaskets, new ForkJoinPool(4));
+        Assertions.assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            Assertions.assertEquals(sequential.get(i).getFinalAmount(), parallel.get(i).getFinalAmount(), "第 " + i + " 筆應付金額");
+            Assertions.assertEquals(sequential.get(i).getActivityDiscounts(), parallel.get(i).getActivityDiscounts(), "第 " + i + " 筆活動折扣");
+        }
+        System.out.println("平行批次計算結果與循序計算一致，順序相同");
+    }
+
+    private static List<CartItem> cart(String code1, int qty1, String code2, int qty2) {
+        return List.of(new CartItem(code1, qty1), new CartItem(code2, qty2));
+    }
+
+    private static List<CartItem> copy(List<CartItem> cartItems) {
+        List<CartItem> copy = new ArrayList<>();
+        for (CartItem cartItem : cartItems) copy.add(new CartItem(cartItem.getItemCode(), cartItem.getQuantity()));
+        return copy;
+    }
+}
@@ -0,0 +1,129 @@
+package test;
+
+import model.CartItem;
+import model.Line;
+import model.Receipt;
+import repo.InMemoryCatalog;
+import service.CartSession;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 收據明細索引與合併重複商品測試（含直接經由 getLines() 修改、明細數不變的情況）。
+ */
+public class ReceiptLineIndexTest {
+
+    private static InMemoryCatalog catalog;
+    private static Date date;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        catalog = InMemoryCatalog.load(Paths.get("data"));
+        date = new SimpleDateFormat("yyyy-MM-dd HH:mm").parse("2025-10-25 10:00");
+    }
+
+    @Test
+    void indexStaysConsistentAcrossModifications() {
+        Receipt receipt = new Receipt();
+        receipt.addLine(line("A"));
+        receipt.addLine(line("B"));
+        receipt.addLine(line("A"));
+        Assertions.assertEquals(0, receipt.indexOfItemCode("A"), "重複代碼回傳第一筆");
+        Assertions.assertEquals(1, receipt.indexOfItemCode("B"));
+        Assertions.assertNull(receipt.findLineByItemCode("C"));
+
+        receipt.getLines().add(line("C"));
+        Assertions.assertEquals(3, receipt.indexOfItemCode("C"), "直接加入 getLines() 也能查到");
+
+        receipt.removeLine(0);
+        Assertions.assertEquals(1, receipt.indexOfItemCode("A"));
+        Assertions.assertEquals(0, receipt.indexOfItemCode("B"));
+
+        receipt.setLine(0, line("D"));
+        Assertions.assertEquals(0, receipt.indexOfItemCode("D"));
+        Assertions.assertEquals(-1, receipt.indexOfItemCode("B"));
+
+        receipt.setLines(new ArrayList<>(List.of(line("E"))));
+        Assertions.assertEquals(0, receipt.indexOfItemCode("E"));
+        Assertions.assertEquals(-1, receipt.indexOfItemCode("A"));
+    }
+
+    @Test
+    void sameSizeDirectChangesRebuildIndex() {
+        Receipt receipt = new Receipt();
+        receipt.addLine(line("A"));
+        receipt.addLine(line("B"));
+        Assertions.assertEquals(1, receipt.indexOfItemCode("B"));
+
+        receipt.getLines().set(1, line("C"));
+        Assertions.assertEquals(1, receipt.indexOfItemCode("C"), "取代明細後明細數不變也能查到");
+        Assertions.assertEquals(-1, receipt.indexOfItemCode("B"));
+
+        receipt.getLines().remove(0);
+        receipt.getLines().add(line("D"));
+        Assertions.assertEquals(0, receipt.indexOfItemCode("C"));
+        Assertions.assertEquals(1, receipt.indexOfItemCode("D"), "先刪後加、明細數不變也會重建索引");
+        Assertions.assertEquals(-1, receipt.indexOfItemCode("A"));
+        Assertions.assertSame(receipt.getLines().get(1), receipt.findLineByItemCode("D"), "合併模式據此找到既有明細");
+
+        receipt.getLines().add(line("E"));
+        receipt.addLine(line("F"));
+        Assertions.assertEquals(0, new BigDecimal("40").compareTo(receipt.getTotalOriginalAmount()),
+                "直接加入的明細也計入總金額");
+    }
+
+    @Test
+    void mergeModeFoldsDuplicateScans() {
+        PromotionService service = new PromotionService(catalog, catalog);
+        service.setMergeDuplicateItems(true);
+        List<CartItem> scans = new ArrayList<>();
+        for (int i = 0; i < 6; i++) scans.add(new CartItem("COSM001", 1));
+        scans.add(new CartItem("PERF001", 1));
+        CartItem discounted = new CartItem("PERF001", 2);
+        discounted.setManualDiscount(new BigDecimal("100"));
+        scans.add(discounted);
+
+        Receipt merged = service.calculateReceipt(scans, date, false);
+        Assertions.assertEquals(2, merged.getLines().size(), "明細數等於不同商品數");
+        Assertions.assertEquals(6, merged.findLineByItemCode("COSM001").getQuantity());
+        Assertions.assertEquals(3, merged.findLineByItemCode("PERF001").getQuantity());
+        Assertions.assertEquals(1, scans.get(0).getQuantity(), "呼叫端的 CartItem 不被修改");
+
+        CartItem perf = new CartItem("PERF001", 3);
+        perf.setManualDiscount(new BigDecimal("100"));
+        Receipt expected = new PromotionService(catalog, catalog)
+                .calculateReceipt(List.of(new CartItem("COSM001", 6), perf), date, false);
+        Assertions.assertEquals(0, expected.getFinalAmount().compareTo(merged.getFinalAmount()));
+        Assertions.assertEquals(expected.getActivityDiscounts(), merged.getActivityDiscounts());
+
+        Receipt separate = new PromotionService(catalog, catalog).calculateReceipt(scans, date, false);
+        Assertions.assertEquals(8, separate.getLines().size(), "預設不合併");
+    }
+
+    @Test
+    void sessionMergesRepeatedScans() {
+        PromotionService service = new PromotionService(catalog, catalog);
+        service.setMergeDuplicateItems(true);
+        CartSession session = service.openSession(date, true);
+        session.add("WINE001", 1);
+        session.add("COSM001", 1);
+        Line wine = session.add("WINE001", 2);
+        Assertions.assertEquals(2, session.size());
+        Assertions.assertEquals(3, wine.getQuantity());
+
+        Receipt expected = new PromotionService(catalog, catalog)
+                .calculateReceipt(List.of(new CartItem("WINE001", 3), new CartItem("COSM001", 1)), date, true);
+        Assertions.assertEquals(0, expected.getFinalAmount().compareTo(session.getReceipt().getFinalAmount()));
+    }
+
+    private static Line line(String itemCode) {
+        return new Line(itemCode, itemCode, "01", "分類", 1, BigDecimal.TEN);
+    }
+}
@@ -0,0 +1,107 @@
+package test;
+
+import model.Line;
+import model.Receipt;
+import model.ReceiptTotals;
+
+import org.junit.jupiter.api.*;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 收據總額累加器測試：一次迴圈與差額更新的結果必須與逐欄位加總相同。
+ */
+public class ReceiptTotalsTest {
+
+    @Test
+    void singlePassMatchesPerFieldSums() {
+        List<Line> lines = randomLines(new Random(16), 300);
+        Receipt receipt = new Receipt();
+        receipt.setLines(lines);
+        receipt.calculateTotals();
+
+        BigDecimal original = BigDecimal.ZERO, member = BigDecimal.ZERO, promotion = BigDecimal.ZERO;
+        BigDecimal discount = BigDecimal.ZERO, finalAmount = BigDecimal.ZERO;
+        for (Line line : lines) {
+            original = original.add(line.getOriginalAmount());
+            member = member.add(line.getOriginalAmount().subtract(line.getMemberDiscount()));
+            promotion = promotion.add(line.getPromotionDiscount());
+            discount = discount.add(line.getTotalDiscount());
+            finalAmount = finalAmount.add(line.getFinalAmount());
+        }
+        Assertions.assertEquals(original, receipt.getTotalOriginalAmount());
+        Assertions.assertEquals(member, receipt.getTotalMemberAmount());
+        Assertions.assertEquals(promotion, receipt.getTotalPromotionDiscount());
+        Assertions.assertEquals(discount, receipt.getTotalDiscountAmount());
+        Assertions.assertEquals(finalAmount, receipt.getFinalAmount());
+    }
+
+    @Test
+    void deltaUpdatesMatchFullRecalculation() {
+        Random random = new Random(2025);
+        List<Line> lines = randomLines(random, 200);
+        ReceiptTotals totals = ReceiptTotals.of(lines);
+        for (int round = 0; round < 500; round++) {
+            Line line = lines.get(random.nextInt(lines.size()));
+            totals.subtract(line);
+            line.clearPromotionDiscount();
+            line.applyPromotionDiscount(BigDecimal.valueOf(random.nextInt(300)));
+            totals.add(line);
+        }
+        Receipt incremental = new Receipt();
+        totals.applyTo(incremental);
+        Receipt full = new Receipt();
+        full.setLines(lines);
+        full.calculateTotals();
+        Assertions.assertEquals(full.getTotalMemberAmount(), incremental.getTotalMemberAmount());
+        Assertions.assertEquals(full.getTotalPromotionDiscount(), incremental.getTotalPromotionDiscount());
+        Assertions.assertEquals(full.getTotalDiscountAmount(), incremental.getTotalDiscountAmount());
+        Assertions.assertEquals(full.getFinalAmount(), incremental.getFinalAmount());
+    }
+
+    @Test
+    void addLineUpdatesTotalsIncrementally() {
+        List<Line> lines = randomLines(new Random(7), 50);
+        Receipt receipt = new Receipt();
+        for (Line line : lines) receipt.addLine(line);
+        Assertions.assertEquals(ReceiptTotals.of(lines).getFinalAmount(), receipt.getFinalAmount());
+        Assertions.assertEquals(ReceiptTotals.of(lines).getMemberAmount(), receipt.getTotalMemberAmount());
+    }
+
+    @Test
+    void addLineAfterSetLinesRecomputes() {
+        List<Line> lines = randomLines(new Random(16), 20);
+        Receipt receipt = new Receipt();
+        receipt.setLines(new ArrayList<>(lines.subList(0, 10)));
+        receipt.addLine(lines.get(10));
+        Assertions.assertEquals(ReceiptTotals.of(lines.subList(0, 11)).getFinalAmount(), receipt.getFinalAmount(),
+                "setLines 後未計算總金額，addLine 應重新計算");
+
+        receipt.removeLine(0);
+        receipt.addLine(lines.get(11));
+        Assertions.assertEquals(ReceiptTotals.of(receipt.getLines()).getFinalAmount(), receipt.getFinalAmount());
+
+        receipt.calculateTotals();
+        receipt.setFinalAmount(BigDecimal.ZERO);
+        receipt.addLine(lines.get(12));
+        Assertions.assertEquals(ReceiptTotals.of(receipt.getLines()).getFinalAmount(), receipt.getFinalAmount(),
+                "直接設定總金額後不以它為差額起點");
+        Assertions.assertEquals(ReceiptTotals.of(receipt.getLines()).getOriginalAmount(), receipt.getTotalOriginalAmount());
+    }
+
+    private static List<Line> randomLines(Random random, int count) {
+        List<Line> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BigDecimal price = BigDecimal.valueOf(100 + random.nextInt(50_000), random.nextInt(3));
+            Line line = new Line("SKU" + i, "商品" + i, random.nextBoolean() ? "09" : "01", "分類",
+                    1 + random.nextInt(5), price);
+            if (random.nextInt(4) == 0) line.applyManualDiscount(BigDecimal.valueOf(random.nextInt(50)));
+            if ("09".equals(line.getCategoryCode())) line.applyMemberDiscount(new BigDecimal("0.95"));
+            if (random.nextBoolean()) line.applyPromotionDiscount(BigDecimal.valueOf(random.nextInt(200)));
+            lines.add(line);
+        }
+        return lines;
+    }
+}
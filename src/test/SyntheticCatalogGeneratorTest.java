@@ -0,0 +1,129 @@
+package test;
+
+import model.Activity;
+import model.Basket;
+import model.CartItem;
+import model.Item;
+import model.Receipt;
+import repo.InMemoryCatalog;
+import repo.SyntheticCatalogGenerator;
+import service.PromotionService;
+
+import org.junit.jupiter.api.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 合成資料產生器測試：同一種子產生相同資料，CSV 與直接建立的記憶體資料一致，
+ * 活動包含 "ALL" 與多分類，購物籃商品熱門度偏斜且可直接計價。
+ */
+public class SyntheticCatalogGeneratorTest {
+
+    private static SyntheticCatalogGenerator newGenerator(long seed) {
+        SyntheticCatalogGenerator generator = new SyntheticCatalogGenerator(seed);
+        generator.setItemCount(5_000);
+        generator.setActivityCount(300);
+        generator.setCategoryCount(20);
+        return generator;
+    }
+
+    @Test
+    void sameSeedProducesSameCsv() throws Exception {
+        Path a = Files.createTempDirectory("synth-a");
+        Path b = Files.createTempDirectory("synth-b");
+        newGenerator(7L).writeCsv(a);
+        newGenerator(7L).writeCsv(b);
+        for (String file : List.of(InMemoryCatalog.ITEM_FILE, InMemoryCatalog.CATEGORY_FILE,
+                InMemoryCatalog.PRICE_FILE, InMemoryCatalog.ACTIVITY_FILE)) {
+            Assertions.assertEquals(Files.readString(a.resolve(file)), Files.readString(b.resolve(file)), file);
+        }
+
+        Path c = Files.createTempDirectory("synth-c");
+        newGenerator(8L).writeCsv(c);
+        Assertions.assertFalse(Files.readString(a.resolve(InMemoryCatalog.ITEM_FILE))
+                .equals(Files.readString(c.resolve(InMemoryCatalog.ITEM_FILE))), "不同種子應產生不同資料");
+    }
+
+    @Test
+    void csvAndInMemoryCatalogAgree() throws Exception {
+        SyntheticCatalogGenerator generator = newGenerator(11L);
+        Path dir = Files.createTempDirectory("synth");
+        generator.writeCsv(dir);
+        InMemoryCatalog fromCsv = InMemoryCatalog.load(dir);
+        InMemoryCatalog direct = generator.toInMemoryCatalog();
+        Assertions.assertEquals(5_000, direct.getItemCount());
+        Assertions.assertEquals(300, direct.getActivityCount());
+        Assertions.assertEquals(direct.getItemCount(), fromCsv.getItemCount());
+
+        for (Basket basket : generator.baskets(3L).next(50)) {
+            List<String> codes = new ArrayList<>();
+            for (CartItem cartItem : basket.getCartItems()) codes.add(cartItem.getItemCode());
+            List<Item> expected = direct.findItemsByCodes(codes, basket.getTransactionDate());
+            List<Item> actual = fromCsv.findItemsByCodes(codes, basket.getTransactionDate());
+            Assertions.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assertions.assertEquals(expected.get(i).getUnitPrice(), actual.get(i).getUnitPrice(), expected.get(i).getItemCode());
+                Assertions.assertEquals(expected.get(i).getCategory01Name(), actual.get(i).getCategory01Name());
+            }
+            Assertions.assertEquals(direct.findValidActivities(basket.getTransactionDate()).size(),
+                    fromCsv.findValidActivities(basket.getTransactionDate()).size());
+        }
+    }
+
+    @Test
+    void activitiesOverlapAndUseAllAndMultiCategoryGroups() {
+        SyntheticCatalogGenerator generator = newGenerator(13L);
+        InMemoryCatalog catalog = generator.toInMemoryCatalog();
+        Date midPeriod = java.sql.Date.valueOf(generator.getStartDate().plusDays(45));
+        List<Activity> active = catalog.findValidActivities(midPeriod);
+        Assertions.assertTrue(active.size() > 20, "同一天應有多個重疊的活動，實際 " + active.size());
+
+        int all = 0;
+        int multi = 0;
+        for (Activity activity : active) {
+            if ("ALL".equals(activity.getItemDiscountGroup())) all++;
+            else if (activity.getItemDiscountGroup().contains(",")) multi++;
+            Assertions.assertTrue(activity.getAwardAmtG1().compareTo(activity.getMeetCriteriaAmtG1()) < 0);
+        }
+        Assertions.assertTrue(all > 0, "應包含全館活動");
+        Assertions.assertTrue(multi > 0, "應包含多分類活動");
+    }
+
+    @Test
+    void basketsAreDeterministicSkewedAndPriceable() {
+        SyntheticCatalogGenerator generator = newGenerator(17L);
+        generator.setMaxBasketLines(120);
+        generator.setLargeBasketRate(0.05);
+        List<Basket> first = generator.baskets(99L).next(2_000);
+        List<Basket> second = generator.baskets(99L).next(2_000);
+
+        Map<String, Integer> scans = new HashMap<>();
+        int maxLines = 0;
+        for (int i = 0; i < first.size(); i++) {
+            Basket a = first.get(i);
+            Basket b = second.get(i);
+            Assertions.assertEquals(a.getTransactionDate(), b.getTransactionDate());
+            Assertions.assertEquals(a.getCartItems().size(), b.getCartItems().size());
+            Assertions.assertEquals(a.getCartItems().get(0).getItemCode(), b.getCartItems().get(0).getItemCode());
+            maxLines = Math.max(maxLines, a.getCartItems().size());
+            for (CartItem cartItem : a.getCartItems()) scans.merge(cartItem.getItemCode(), 1, Integer::sum);
+        }
+        Assertions.assertTrue(maxLines > 50 && maxLines <= 120, "應包含企業訂單，實際最大 " + maxLines);
+        int top = scans.getOrDefault(SyntheticCatalogGenerator.itemCode(0), 0);
+        int tail = scans.getOrDefault(SyntheticCatalogGenerator.itemCode(4_000), 0);
+        Assertions.assertTrue(top > 20 * Math.max(1, tail), "熱門商品的掃描次數應遠多於冷門商品");
+
+        InMemoryCatalog catalog = generator.toInMemoryCatalog();
+        PromotionService service = new PromotionService(catalog, catalog);
+        List<Receipt> receipts = service.calculateReceipts(first.subList(0, 200));
+        for (int i = 0; i < receipts.size(); i++) {
+            Assertions.assertEquals(first.get(i).getCartItems().size(), receipts.get(i).getLines().size());
+            Assertions.assertTrue(receipts.get(i).getFinalAmount().signum() >= 0);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延遲分布統計 (LatencyHistogram)
+ * ------------------------------------------------------------
+ * 與 HdrHistogram 相同的 log-linear 分桶：每個 2 的次方區間再切成 32 格，
+ * 因此任何數值的相對誤差都在 1/32（約 3%）以內，而桶數固定，不需要事先指定上限。
+ *  - 記錄：計算桶位置後遞增一個計數，不配置物件，可由多個執行緒同時呼叫
+ *  - 查詢：走訪所有桶計算百分位數（p50、p99 等）
+ * 數值單位由使用者決定（PromotionMetrics 使用奈秒）。
+ * ------------------------------------------------------------
+ */
+public class LatencyHistogram {
+
+    /** 每個 2 的次方區間切成 2^SUB_BUCKET_BITS 格 */
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /** long 最高有效位元為 62，對應的最後一格 */
+    private static final int BUCKET_COUNT = (62 - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 記錄一個數值（負數視為 0）。
+     *
+     * @param value 數值
+     */
+    public void record(long value) {
+        long v = Math.max(0L, value);
+        counts.incrementAndGet(bucketIndex(v));
+        count.increment();
+        sum.add(v);
+        if (v > max.get()) max.accumulateAndGet(v, Math::max);
+    }
+
+    /** 清除所有紀錄 */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) counts.set(i, 0L);
+        count.reset();
+        sum.reset();
+        max.set(0L);
+    }
+
+    /** 取得目前分布的複本（記錄中途取得時，各欄位之間可能有少量誤差） */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) copy[i] = counts.get(i);
+        return new Snapshot(copy, count.sum(), sum.sum(), max.get());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    /** 桶內最大的數值（回報百分位數時使用，不會低估） */
+    static long highestValueInBucket(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) return index;
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lowest = (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /** 不再變動的分布複本 */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+        public long getSum() { return sum; }
+        public long getMax() { return max; }
+
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * 百分位數（不超過實際最大值）。
+         *
+         * @param percentile 0 到 100
+         * @return 百分位數；沒有紀錄時回傳 0
+         */
+        public long getValueAtPercentile(double percentile) {
+            long total = 0;
+            for (long c : counts) total += c;
+            if (total == 0) return 0L;
+            long target = Math.max(1L, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) return Math.min(highestValueInBucket(i), max);
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package util;
+
+import java.math.BigDecimal;
+
+/**
+ * 定點數金額運算工具類。
+ * 以 long 儲存「分」（小數兩位，minor units），避免在折扣計算過程中
+ * 大量建立 BigDecimal 物件；只在收據輸出時轉回 BigDecimal。
+ * 所有捨入皆為 HALF_UP（四捨五入，遠離零），與 BigDecimal.setScale(0, RoundingMode.HALF_UP) 一致。
+ */
+public class MoneyMath {
+
+    /** 小數位數（分） */
+    public static final int MINOR_SCALE = 2;
+
+    /** 1 元 = 100 分 */
+    public static final long MINOR_PER_UNIT = 100L;
+
+    /**
+     * 判斷金額是否可無損轉換為分（最多兩位小數且不超出 long 範圍）。
+     * @param amount 金額
+     * @return 可轉換回傳 true；null 回傳 false
+     */
+    public static boolean isMinorExact(BigDecimal amount) {
+        if (amount == null) return false;
+        try {
+            toMinor(amount);
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 將金額轉為分。
+     * @param amount 金額（最多兩位小數）
+     * @return 以分表示的金額
+     * @throws ArithmeticException 小數超過兩位或超出 long 範圍
+     */
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(MINOR_SCALE).unscaledValue().longValueExact();
+    }
+
+    /**
+     * 將分轉回 BigDecimal，並指定輸出的小數位數。
+     * @param minor 以分表示的金額
+     * @param scale 輸出小數位數（0～2），數值必須可無損表示
+     * @return 金額
+     */
+    public static BigDecimal fromMinor(long minor, int scale) {
+        return BigDecimal.valueOf(minor, MINOR_SCALE).setScale(scale);
+    }
+
+    /**
+     * 整數除法，結果以 HALF_UP 捨入到整數。
+     * @param dividend 被除數
+     * @param divisor 除數（必須大於 0）
+     * @return 四捨五入後的商
+     */
+    public static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) * 2 >= divisor) {
+            quotient += dividend < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    /**
+     * 將以分表示的金額四捨五入到整數元，仍以分表示。
+     * @param minor 以分表示的金額
+     * @return 整數元（以分表示）
+     */
+    public static long roundToUnitHalfUp(long minor) {
+        return divideHalfUp(minor, MINOR_PER_UNIT) * MINOR_PER_UNIT;
+    }
+}